@@ -3,6 +3,7 @@ package com.cardconnect.langchain4j_spring.assistant;
 import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.Result;
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.memory.ChatMemoryAccess;
 
@@ -10,6 +11,12 @@ import dev.langchain4j.service.memory.ChatMemoryAccess;
 public interface CustomerSupportAgent extends ChatMemoryAccess {
 
     @SystemMessage(fromResource = "/templates/system-prompt.st")
-    Result<String> answer(@MemoryId Long memoryId, @UserMessage String userMessage);
+    Result<String> answer(@MemoryId String memoryId, @UserMessage String userMessage);
+
+    /**
+     * Streaming variant of {@link #answer(String, String)}; tokens are emitted as they are generated.
+     */
+    @SystemMessage(fromResource = "/templates/system-prompt.st")
+    TokenStream answerStream(@MemoryId String memoryId, @UserMessage String userMessage);
 }
 
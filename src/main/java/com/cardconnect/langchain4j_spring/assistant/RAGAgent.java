@@ -1,6 +1,7 @@
 package com.cardconnect.langchain4j_spring.assistant;
 
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
 
 /**
@@ -9,32 +10,13 @@ import dev.langchain4j.service.UserMessage;
  */
 public interface RAGAgent {
 
-    @SystemMessage("""
-            You are a knowledgeable storyteller assistant specializing in the VeggieVille story.
-            Your role is to answer questions about Charlie the happy carrot and his vegetable friends.
-            
-            CRITICAL RULES - You MUST follow these strictly:
-            
-            1. SOURCE OF TRUTH:
-               - Answer questions ONLY using information from the retrieved document context
-               - The system automatically retrieves relevant story segments from the embedding store
-               - DO NOT use external knowledge or make up information
-            
-            2. WHEN INFORMATION IS NOT AVAILABLE:
-               - If the retrieved context lacks the answer, respond: "I don't have that information in the VeggieVille story."
-               - Never guess or assume story details not present in the retrieved segments
-            
-            3. RESPONSE GUIDELINES:
-               - Base answers strictly on retrieved content
-               - Keep answers focused and relevant to the question
-               - Maintain the cheerful, friendly tone of the original story
-               - You may reference specific details from the story when they appear in the context
-            
-            4. CONVERSATION STYLE:
-               - Be enthusiastic about the VeggieVille characters
-               - Use age-appropriate language suitable for children
-               - Keep responses concise but engaging
-            """)
+    @SystemMessage(fromResource = "/templates/rag-system-prompt.st")
     String retrieve(@UserMessage String userMessage);
 
+    /**
+     * Streaming variant of {@link #retrieve(String)}; tokens are emitted as they are generated.
+     */
+    @SystemMessage(fromResource = "/templates/rag-system-prompt.st")
+    TokenStream retrieveStream(@UserMessage String userMessage);
+
 }
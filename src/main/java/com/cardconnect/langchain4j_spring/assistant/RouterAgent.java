@@ -2,6 +2,7 @@ package com.cardconnect.langchain4j_spring.assistant;
 
 import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.V;
 import dev.langchain4j.service.memory.ChatMemoryAccess;
@@ -12,15 +13,14 @@ import dev.langchain4j.service.memory.ChatMemoryAccess;
  */
 public interface RouterAgent extends ChatMemoryAccess {
 
-    @SystemMessage("""
-        You are a routing assistant. Route user requests to the appropriate expert:
-        - Use medicalRequest for health/medical questions
-        - Use legalRequest for legal/law questions  
-        - Use technicalRequest for technology/IT questions
-        
-        After calling the expert, return their complete response verbatim.
-        """)
+    @SystemMessage(fromResource = "/templates/router-system-prompt.st")
     @UserMessage("{{it}}")
     String askToExpert(@MemoryId String memoryId, @V("it") String request);
-}
 
+    /**
+     * Streaming variant of {@link #askToExpert(String, String)}; tokens are emitted as they are generated.
+     */
+    @SystemMessage(fromResource = "/templates/router-system-prompt.st")
+    @UserMessage("{{it}}")
+    TokenStream askToExpertStream(@MemoryId String memoryId, @V("it") String request);
+}
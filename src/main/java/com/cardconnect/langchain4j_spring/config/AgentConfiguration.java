@@ -26,58 +26,87 @@ import com.cardconnect.langchain4j_spring.assistant.RouterAgent;
 import com.cardconnect.langchain4j_spring.assistant.TechnicalExpert;
 import com.cardconnect.langchain4j_spring.dto.CvReview;
 import com.cardconnect.langchain4j_spring.dto.RequestCategory;
+import com.cardconnect.langchain4j_spring.execution.AgentExecutorRegistry;
+import com.cardconnect.langchain4j_spring.execution.DependencyGraphPlanner;
+import com.cardconnect.langchain4j_spring.execution.SpeculativeExpertRouter;
+import com.cardconnect.langchain4j_spring.memory.CachingChatMemoryStore;
+import com.cardconnect.langchain4j_spring.memory.MessageLogChatMemoryStore;
 import com.cardconnect.langchain4j_spring.memory.PersistentChatMemoryStore;
-import com.cardconnect.langchain4j_spring.observability.ModelListenerConfiguration;
+import com.cardconnect.langchain4j_spring.memory.SessionKeyResolver;
+import com.cardconnect.langchain4j_spring.memory.codec.BinaryChatMessageCodec;
+import com.cardconnect.langchain4j_spring.memory.codec.ChatMessageCodecs;
+import com.cardconnect.langchain4j_spring.memory.codec.JsonChatMessageCodec;
+import com.cardconnect.langchain4j_spring.observability.AgentMetricsService;
+import com.cardconnect.langchain4j_spring.observability.AgentObservations;
+import com.cardconnect.langchain4j_spring.observability.ChatModelMetricsListener;
+import com.cardconnect.langchain4j_spring.observability.RetrievalMetrics;
+import com.cardconnect.langchain4j_spring.observability.StreamingChatModelPostProcessor;
+import com.cardconnect.langchain4j_spring.rag.Bm25Index;
+import com.cardconnect.langchain4j_spring.rag.CachingRAGAgent;
+import com.cardconnect.langchain4j_spring.rag.DocumentIngestionService;
+import com.cardconnect.langchain4j_spring.rag.EmbeddedEmbeddingStore;
+import com.cardconnect.langchain4j_spring.rag.EmbeddingCachePostProcessor;
+import com.cardconnect.langchain4j_spring.rag.HybridContentRetriever;
+import com.cardconnect.langchain4j_spring.rag.IncrementalDocumentIngestor;
+import com.cardconnect.langchain4j_spring.rag.IngestionManifest;
+import com.cardconnect.langchain4j_spring.rag.IngestionPipeline;
+import com.cardconnect.langchain4j_spring.rag.RetrievalClassifier;
+import com.cardconnect.langchain4j_spring.rag.RetrievalPipeline;
+import com.cardconnect.langchain4j_spring.rag.TunedQdrantEmbeddingStore;
+import com.cardconnect.langchain4j_spring.rag.VectorContentRetriever;
+import com.cardconnect.langchain4j_spring.repository.ChatMessageLogRepository;
 import com.cardconnect.langchain4j_spring.repository.ChatMessageRepository;
+import com.cardconnect.langchain4j_spring.repository.ChatSessionKeyRepository;
 import com.cardconnect.langchain4j_spring.tools.BankTool;
 import com.cardconnect.langchain4j_spring.tools.BookingTools;
 import com.cardconnect.langchain4j_spring.tools.ExchangeTool;
 import dev.langchain4j.agentic.AgenticServices;
 import dev.langchain4j.agentic.UntypedAgent;
+import dev.langchain4j.agentic.agent.AgentBuilder;
 import dev.langchain4j.agentic.agent.ErrorRecoveryResult;
 import dev.langchain4j.agentic.patterns.goap.GoalOrientedPlanner;
+import dev.langchain4j.agentic.planner.PlannerBasedServiceImpl;
 import dev.langchain4j.agentic.supervisor.SupervisorAgent;
 import dev.langchain4j.agentic.supervisor.SupervisorContextStrategy;
 import dev.langchain4j.agentic.supervisor.SupervisorResponseStrategy;
 import dev.langchain4j.agentic.workflow.HumanInTheLoop;
-import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
-import dev.langchain4j.data.document.parser.TextDocumentParser;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
-import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.rag.DefaultRetrievalAugmentor;
 import dev.langchain4j.rag.RetrievalAugmentor;
+import dev.langchain4j.rag.content.injector.DefaultContentInjector;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
-import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
-import dev.langchain4j.rag.query.router.DefaultQueryRouter;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.tool.ToolErrorHandlerResult;
-import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
+import dev.langchain4j.store.embedding.filter.Filter;
 import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
-import org.springframework.util.DigestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
 
-import static dev.langchain4j.data.document.loader.FileSystemDocumentLoader.loadDocument;
 import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
 
 @Configuration
@@ -86,9 +115,11 @@ import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metad
 public class AgentConfiguration {
 
     private final LangChain4jProperties properties;
+    private final AgentObservations agentObservations;
 
     @Bean
-    RouterAgent routerAgent(ChatModel chatModel) {
+    RouterAgent routerAgent(ChatModel chatModel, StreamingChatModel streamingChatModel,
+            AgentExecutorRegistry agentExecutors) {
         int maxMessages = properties.getChatMemory().getMaxMessages();
 
         MedicalExpert medicalExpert = AiServices.builder(MedicalExpert.class)
@@ -108,9 +139,10 @@ public class AgentConfiguration {
 
         return AiServices.builder(RouterAgent.class)
                 .chatModel(chatModel)
+                .streamingChatModel(streamingChatModel)
                 .chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(maxMessages))
                 .tools(medicalExpert, legalExpert, technicalExpert)
-                .executeToolsConcurrently()
+                .executeToolsConcurrently(agentExecutors.get(AgentExecutorRegistry.TOOLS))
                 .toolArgumentsErrorHandler((error, context) ->
                     ToolErrorHandlerResult.text("Something is wrong with tool argument: " + error.getMessage()))
                 .toolExecutionErrorHandler((error, context) -> {
@@ -122,6 +154,7 @@ public class AgentConfiguration {
     @Bean
     CustomerSupportAgent customerSupportAgent(
             ChatModel chatModel,
+            StreamingChatModel streamingChatModel,
             ChatMemoryProvider chatMemoryProvider,
             BookingTools bookingTools) {
 
@@ -129,19 +162,67 @@ public class AgentConfiguration {
 
         return AiServices.builder(CustomerSupportAgent.class)
                 .chatModel(chatModel)
+                .streamingChatModel(streamingChatModel)
                 .chatMemoryProvider(chatMemoryProvider)
-                .tools(bookingTools)  // Wire BookingTools for booking operations
+                .toolProvider(agentObservations.tools(bookingTools))  // Wire BookingTools for booking operations
                 .build();
     }
 
     @Bean
-    ChatModelListener chatModelListener() {
-        return new ModelListenerConfiguration();
+    ChatModelListener chatModelListener(AgentMetricsService metricsService, MeterRegistry meterRegistry,
+            ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new ChatModelMetricsListener(metricsService, meterRegistry,
+                observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP), properties.getModelCalls());
     }
 
+    /**
+     * Static, so the streaming chat model can be wrapped without instantiating this configuration early.
+     */
     @Bean
-    ChatMemoryStore chatMemoryStore(ChatMessageRepository chatMessageRepository) {
-        return new PersistentChatMemoryStore(chatMessageRepository);
+    static StreamingChatModelPostProcessor streamingChatModelPostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+            ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new StreamingChatModelPostProcessor(meterRegistry, observationRegistry);
+    }
+
+    @Bean
+    ChatMessageCodecs chatMessageCodecs() {
+        LangChain4jProperties.ChatMemory chatMemory = properties.getChatMemory();
+        // Binary first: its magic byte can never be mistaken for the start of a JSON document
+        return new ChatMessageCodecs(List.of(
+                new BinaryChatMessageCodec(chatMemory.getCompressionThreshold()),
+                new JsonChatMessageCodec()),
+                chatMemory.getCodec());
+    }
+
+    @Bean
+    SessionKeyResolver sessionKeyResolver(ChatSessionKeyRepository chatSessionKeyRepository,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        return new SessionKeyResolver(chatSessionKeyRepository, transactionTemplate,
+                properties.getChatMemory().getSessionKey(), meterRegistry);
+    }
+
+    @Bean
+    ChatMemoryStore chatMemoryStore(ChatMessageRepository chatMessageRepository,
+            ChatMessageLogRepository chatMessageLogRepository,
+            TransactionTemplate transactionTemplate,
+            ChatMessageCodecs chatMessageCodecs,
+            SessionKeyResolver sessionKeyResolver,
+            MeterRegistry meterRegistry) {
+        LangChain4jProperties.StorageMode storageMode = properties.getChatMemory().getStorageMode();
+        log.info("Creating chat memory store with storage mode {} and codec {}",
+                storageMode, chatMessageCodecs.writeCodec().name());
+
+        ChatMemoryStore chatMemoryStore = storageMode == LangChain4jProperties.StorageMode.MESSAGE_LOG
+                ? new MessageLogChatMemoryStore(chatMessageLogRepository, transactionTemplate,
+                        chatMessageCodecs, sessionKeyResolver)
+                : new PersistentChatMemoryStore(chatMessageRepository, chatMessageCodecs, sessionKeyResolver);
+
+        LangChain4jProperties.MemoryCache cache = properties.getChatMemory().getCache();
+        if (cache.isEnabled()) {
+            return new CachingChatMemoryStore(chatMemoryStore, cache, meterRegistry);
+        }
+        return chatMemoryStore;
     }
 
     @Bean
@@ -154,133 +235,155 @@ public class AgentConfiguration {
                 .build();
     }
 
+    /**
+     * Keyword index over the ingested segments, filled by the document ingestor.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.langchain4j.rag.hybrid", name = "enabled", havingValue = "true")
+    Bm25Index keywordIndex(MeterRegistry meterRegistry) {
+        return new Bm25Index(meterRegistry);
+    }
+
     @Bean
-    EmbeddingStoreIngestor documentIngestor(
+    IncrementalDocumentIngestor documentIngestor(
             EmbeddingStore<TextSegment> embeddingStore,
             EmbeddingModel embeddingModel,
-            ResourceLoader resourceLoader) throws IOException {
-
-        // Load the document
-        Resource resource = resourceLoader.getResource("classpath:/static/story-about-happy-carrot.txt");
-        String documentId = generateDocumentId(resource);
-
-        // Remove existing embeddings if document already ingested
-        if (isDocumentIngested(embeddingStore, embeddingModel, documentId)) {
-            log.info("Document already ingested, removing existing embeddings");
-            removeEmbeddings(embeddingStore);
-        }
-
-        Document document = loadDocument(resource.getFile().toPath(), new TextDocumentParser());
-
-        // Use configuration properties for metadata
-        LangChain4jProperties.Document docProps = properties.getDocument();
-        document.metadata().put("document_id", documentId);
-        document.metadata().put("source", docProps.getSource());
-        document.metadata().put("type", docProps.getType());
-        document.metadata().put("author", docProps.getAuthor());
-        document.metadata().put("title", docProps.getTitle());
-        document.metadata().put("language", docProps.getLanguage());
-
-        // 1. Split the document into segments 100 tokens each
-        // DocumentSplitter splitter = DocumentSplitters.recursive(600, 0);
-        // 2. Convert segments into embeddings
-        // List<TextSegment> segments = splitter.split(document);
-        // 3. Store embeddings into embedding store
-        // List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
-        // embeddingStore.addAll(embeddings, segments);
-        // All this can be done manually, but we will use EmbeddingStoreIngestor to automate this:
-        // Create ingestor with configured chunk size
+            ObjectProvider<Bm25Index> keywordIndex,
+            MeterRegistry meterRegistry,
+            @Value("${langchain4j.qdrant.collection-name:documents}") String qdrantCollection) {
+        // Split documents into segments; only segments that are new or changed since the last
+        // ingestion are embedded and stored, stale ones are removed
         int chunkSize = properties.getRag().getChunkSize();
         int chunkOverlap = properties.getRag().getChunkOverlap();
         DocumentSplitter documentSplitter = DocumentSplitters.recursive(chunkSize, chunkOverlap);
-
-        EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
-                .documentSplitter(documentSplitter)
-                .embeddingModel(embeddingModel)
-                .embeddingStore(embeddingStore)
-                .build();
-
-
-
-        log.info("Ingesting document: {} (chunk size: {}, overlap: {})",
-                docProps.getTitle(), chunkSize, chunkOverlap);
-        ingestor.ingest(document);
-
-        return ingestor;
-    }
-
-    private boolean isDocumentIngested(EmbeddingStore<TextSegment> embeddingStore,
-            EmbeddingModel embeddingModel, String documentId) {
-        // Create a dummy embedding for the search request
-        Embedding queryEmbedding = embeddingModel.embed("test").content();
-
-        // Query embedding store for existing document
-        String source = properties.getDocument().getSource();
-        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
-                .filter(metadataKey("document_id").isEqualTo(documentId)
-                        .and(metadataKey("source").isEqualTo(source)))
-                .queryEmbedding(queryEmbedding)
-                .maxResults(1)
-                .minScore(0.0)
-                .build();
-
-        return !embeddingStore.search(request).matches().isEmpty();
+        log.info("Document ingestion with chunk size: {}, overlap: {}", chunkSize, chunkOverlap);
+
+        LangChain4jProperties.Ingestion ingestion = properties.getRag().getIngestion();
+        // The manifest is kept per store and collection, and checked against what the store holds
+        // by each ingestion run, so a store that is down is retried instead of blocking startup
+        LangChain4jProperties.VectorStore vectorStore = properties.getRag().getVectorStore();
+        String store = vectorStore.getType() == LangChain4jProperties.VectorStoreType.EMBEDDED
+                ? "embedded:" + Path.of(vectorStore.getPath()).toAbsolutePath().normalize()
+                : "qdrant:" + qdrantCollection;
+        IngestionManifest manifest = new IngestionManifest(Path.of(ingestion.getManifestPath()),
+                ingestion.getCheckpointInterval(), store);
+        LongSupplier storedSegments = null;
+        if (embeddingStore instanceof EmbeddedEmbeddingStore embedded) {
+            storedSegments = embedded::size;
+        } else if (embeddingStore instanceof TunedQdrantEmbeddingStore qdrant) {
+            storedSegments = qdrant::count;
+        }
+        return new IncrementalDocumentIngestor(embeddingStore, embeddingModel, documentSplitter,
+                manifest, keywordIndex.getIfAvailable(), storedSegments, ingestion.getBatchSize(), meterRegistry);
     }
 
-    private void removeEmbeddings(EmbeddingStore<TextSegment> embeddingStore) {
-        embeddingStore.removeAll();
-        log.debug("Removed all existing embeddings from the store");
+    @Bean
+    IngestionPipeline ingestionPipeline(IncrementalDocumentIngestor documentIngestor, MeterRegistry meterRegistry) {
+        LangChain4jProperties.Ingestion ingestion = properties.getRag().getIngestion();
+        return new IngestionPipeline(documentIngestor, ingestion.getPipeline(), ingestion.getBatchSize(), meterRegistry);
     }
 
-    private String generateDocumentId(Resource resource) throws IOException {
-        try (InputStream inputStream = resource.getInputStream()) {
-            return DigestUtils.md5DigestAsHex(inputStream);
-        }
+    /**
+     * Ingests the configured document sources in the background once the application is ready.
+     */
+    @Bean
+    DocumentIngestionService documentIngestionService(IngestionPipeline ingestionPipeline,
+            ResourceLoader resourceLoader,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry) {
+        return new DocumentIngestionService(ingestionPipeline, resourceLoader, properties, eventPublisher,
+                meterRegistry);
     }
 
     @Bean
     ContentRetriever contentRetriever(EmbeddingStore<TextSegment> embeddingStore,
-            EmbeddingModel embeddingModel) {
+            EmbeddingModel embeddingModel,
+            ObjectProvider<Bm25Index> keywordIndex,
+            AgentExecutorRegistry agentExecutors,
+            MeterRegistry meterRegistry,
+            @Value("${langchain4j.qdrant.collection-name:documents}") String qdrantCollection) {
         int maxResults = properties.getRag().getMaxResults();
         double minScore = properties.getRag().getMinScore();
-        String source = properties.getDocument().getSource();
-        String author = properties.getDocument().getAuthor();
+        Filter filter = properties.getRag().getFilter().entrySet().stream()
+                .map(entry -> (Filter) metadataKey(entry.getKey()).isEqualTo(entry.getValue()))
+                .reduce((left, right) -> left.and(right))
+                .orElse(null);
+
+        RetrievalMetrics metrics = RetrievalMetrics.disabled();
+        if (properties.getRag().isMetricsEnabled()) {
+            String collection = properties.getRag().getVectorStore().getType() == LangChain4jProperties.VectorStoreType.EMBEDDED
+                    ? "embedded" : qdrantCollection;
+            metrics = RetrievalMetrics.create(meterRegistry, collection,
+                    properties.getRag().getFilter().getOrDefault(IncrementalDocumentIngestor.SOURCE, "all"));
+        }
 
-        return EmbeddingStoreContentRetriever.builder()
-                .embeddingStore(embeddingStore)
-                .embeddingModel(embeddingModel)
-                .maxResults(maxResults)
-                .minScore(minScore)
-                .filter(metadataKey("source").isEqualTo(source)
-                        .and(metadataKey("author").isEqualTo(author)))
-                .build();
+        Bm25Index index = keywordIndex.getIfAvailable();
+        if (index != null) {
+            LangChain4jProperties.Hybrid hybrid = properties.getRag().getHybrid();
+            log.info("Hybrid retrieval with {} candidates per retriever, fast path up to {} terms",
+                    hybrid.getCandidates(), hybrid.getFastPathMaxTerms());
+            VectorContentRetriever vectorRetriever = new VectorContentRetriever(embeddingStore, embeddingModel,
+                    hybrid.getCandidates(), minScore, filter, metrics);
+            return new HybridContentRetriever(index, vectorRetriever, maxResults, filter, hybrid,
+                    agentExecutors.get(AgentExecutorRegistry.RETRIEVAL), meterRegistry);
+        }
+        return new VectorContentRetriever(embeddingStore, embeddingModel, maxResults, minScore, filter, metrics);
     }
 
+    /**
+     * Queries every content retriever bean in parallel; retrievers are named by their bean name in
+     * the timeouts and metrics.
+     */
     @Bean
-    RetrievalAugmentor retrievalAugmentor(ContentRetriever contentRetriever) {
-        return DefaultRetrievalAugmentor.builder()
-                .queryRouter(new DefaultQueryRouter(contentRetriever))
-                .build();
+    RetrievalAugmentor retrievalAugmentor(Map<String, ContentRetriever> contentRetrievers,
+            AgentExecutorRegistry agentExecutors,
+            AgentMetricsService metricsService,
+            MeterRegistry meterRegistry,
+            ObjectProvider<ObservationRegistry> observationRegistry) {
+        LangChain4jProperties.Augmentation augmentation = properties.getRag().getAugmentation();
+        log.info("Retrieval pipeline with retrievers: {}, context budget: {} tokens",
+                contentRetrievers.keySet(), augmentation.getMaxContextTokens());
+        return new RetrievalPipeline(contentRetrievers, new RetrievalClassifier(augmentation.getSkipPatterns()),
+                new DefaultContentInjector(), augmentation, agentExecutors.get(AgentExecutorRegistry.ROUTING),
+                properties.getRag().isMetricsEnabled() ? metricsService : null, meterRegistry,
+                observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
     }
 
+    /**
+     * Static, so the embedding model can be wrapped without instantiating this configuration early.
+     */
     @Bean
-    RAGAgent ragAgent(ChatModel chatModel, RetrievalAugmentor retrievalAugmentor) {
-        return AiServices.builder(RAGAgent.class)
+    static EmbeddingCachePostProcessor embeddingCachePostProcessor(ObjectProvider<LangChain4jProperties> properties,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        return new EmbeddingCachePostProcessor(properties, meterRegistry);
+    }
+
+    @Bean
+    RAGAgent ragAgent(ChatModel chatModel, StreamingChatModel streamingChatModel,
+            RetrievalAugmentor retrievalAugmentor,
+            EmbeddingModel embeddingModel,
+            MeterRegistry meterRegistry) {
+        RAGAgent ragAgent = AiServices.builder(RAGAgent.class)
                 .chatModel(chatModel)
+                .streamingChatModel(streamingChatModel)
                 .retrievalAugmentor(retrievalAugmentor)
                 .build();
+
+        LangChain4jProperties.AnswerCache answerCache = properties.getRag().getAnswerCache();
+        if (answerCache.isEnabled()) {
+            return new CachingRAGAgent(ragAgent, embeddingModel, answerCache, meterRegistry);
+        }
+        return ragAgent;
     }
 
 
     @Bean
     NovelCreator novelCreator(ChatModel chatModel) {
-        CreativeWriter creativeWriter = AgenticServices
-                .agentBuilder(CreativeWriter.class)
+        CreativeWriter creativeWriter = agent(CreativeWriter.class)
                 .chatModel(chatModel)
                 .build();
 
-        StyleEditor styleEditor = AgenticServices
-                .agentBuilder(StyleEditor.class)
+        StyleEditor styleEditor = agent(StyleEditor.class)
                 .chatModel(chatModel)
                 .build();
 
@@ -307,18 +410,18 @@ public class AgentConfiguration {
 
     @Bean
     @Qualifier("cvReviewer")
-    UntypedAgent cvReviewer(ChatModel chatModel) {
-        HrCvReviewer hrCvReviewer = AgenticServices.agentBuilder(HrCvReviewer.class)
+    UntypedAgent cvReviewer(ChatModel chatModel, AgentExecutorRegistry agentExecutors) {
+        HrCvReviewer hrCvReviewer = agent(HrCvReviewer.class)
                 .chatModel(chatModel)
                 .outputKey("hrReview") // this will be overwritten in every iteration, and also be used as the final output we want to observe
                 .build();
 
-        ManagerCvReviewer managerCvReviewer = AgenticServices.agentBuilder(ManagerCvReviewer.class)
+        ManagerCvReviewer managerCvReviewer = agent(ManagerCvReviewer.class)
                 .chatModel(chatModel)
                 .outputKey("managerReview") // this overwrites the original input instructions, and is overwritten in every iteration and used as new instructions for the CvTailor
                 .build();
 
-        TeamMemberCvReviewer teamMemberCvReviewer = AgenticServices.agentBuilder(TeamMemberCvReviewer.class)
+        TeamMemberCvReviewer teamMemberCvReviewer = agent(TeamMemberCvReviewer.class)
                 .chatModel(chatModel)
                 .outputKey("teamMemberReview") // this overwrites the original input instructions, and is overwritten in every iteration and used as new instructions for the CvTailor
                 .build();
@@ -326,7 +429,7 @@ public class AgentConfiguration {
         UntypedAgent cvReviewGenerator = AgenticServices
                 .parallelBuilder()
                 .subAgents(hrCvReviewer, managerCvReviewer, teamMemberCvReviewer)
-                .executor(Executors.newFixedThreadPool(3))
+                .executor(agentExecutors.get(AgentExecutorRegistry.WORKFLOW))
                 .outputKey("fullCvReview") // this is the final output we want to observe
                 .output(agenticScope -> {
                     // read the outputs of each reviewer from the agentic scope
@@ -354,32 +457,41 @@ public class AgentConfiguration {
     }
 
     @Bean
-    ExpertRouterAgent expertRouterAgent(ChatModel chatModel) {
-        com.cardconnect.langchain4j_spring.agentic.agents.conditional.MedicalExpert medicalExpert = AgenticServices
-                .agentBuilder(com.cardconnect.langchain4j_spring.agentic.agents.conditional.MedicalExpert.class)
+    ExpertRouterAgent expertRouterAgent(ChatModel chatModel, AgentExecutorRegistry agentExecutors,
+                                        MeterRegistry meterRegistry) {
+        com.cardconnect.langchain4j_spring.agentic.agents.conditional.MedicalExpert medicalExpert = agent(
+                com.cardconnect.langchain4j_spring.agentic.agents.conditional.MedicalExpert.class)
                 .chatModel(chatModel)
                 .outputKey("response")
               //  .async(true)  Asyncronous execution
                 .build();
-        com.cardconnect.langchain4j_spring.agentic.agents.conditional.LegalExpert legalExpert = AgenticServices
-                .agentBuilder(com.cardconnect.langchain4j_spring.agentic.agents.conditional.LegalExpert.class)
+        com.cardconnect.langchain4j_spring.agentic.agents.conditional.LegalExpert legalExpert = agent(
+                com.cardconnect.langchain4j_spring.agentic.agents.conditional.LegalExpert.class)
                 .chatModel(chatModel)
                 .outputKey("response")
                 //  .async(true)  Asyncronous execution
                 .build();
-        com.cardconnect.langchain4j_spring.agentic.agents.conditional.TechnicalExpert technicalExpert = AgenticServices
-                .agentBuilder(com.cardconnect.langchain4j_spring.agentic.agents.conditional.TechnicalExpert.class)
+        com.cardconnect.langchain4j_spring.agentic.agents.conditional.TechnicalExpert technicalExpert = agent(
+                com.cardconnect.langchain4j_spring.agentic.agents.conditional.TechnicalExpert.class)
                 .chatModel(chatModel)
                 .outputKey("response")
                 //  .async(true)  Asyncronous execution
                 .build();
-        CategoryRouter routerAgent = AgenticServices
-                .agentBuilder(CategoryRouter.class)
+        CategoryRouter routerAgent = agent(CategoryRouter.class)
                 .chatModel(chatModel)
                 .outputKey("category")
                 //  .async(true)  Asyncronous execution
                 .build();
 
+        LangChain4jProperties.Speculation speculation = properties.getExecution().getSpeculation();
+        if (speculation.isEnabled()) {
+            return new SpeculativeExpertRouter(routerAgent, Map.of(
+                    RequestCategory.MEDICAL, medicalExpert::medical,
+                    RequestCategory.LEGAL, legalExpert::legal,
+                    RequestCategory.TECHNICAL, technicalExpert::technical),
+                    agentExecutors.get(AgentExecutorRegistry.WORKFLOW), speculation, meterRegistry);
+        }
+
         UntypedAgent expertsAgent = AgenticServices.conditionalBuilder()
                 .subAgents( agenticScope -> agenticScope.readState("category", RequestCategory.UNKNOWN) == RequestCategory.MEDICAL, medicalExpert)
                 .subAgents( agenticScope -> agenticScope.readState("category", RequestCategory.UNKNOWN) == RequestCategory.LEGAL, legalExpert)
@@ -402,21 +514,18 @@ public class AgentConfiguration {
         bankTool.createAccount("Mario", 1000.0);
         bankTool.createAccount("Georgios", 1000.0);
 
-        WithdrawAgent withdrawAgent = AgenticServices
-                .agentBuilder(WithdrawAgent.class)
+        WithdrawAgent withdrawAgent = agent(WithdrawAgent.class)
                 .chatModel(chatModel)
-                .tools(bankTool)
+                .toolProvider(agentObservations.tools(bankTool))
                 .build();
-        CreditAgent creditAgent = AgenticServices
-                .agentBuilder(CreditAgent.class)
+        CreditAgent creditAgent = agent(CreditAgent.class)
                 .chatModel(chatModel)
-                .tools(bankTool)
+                .toolProvider(agentObservations.tools(bankTool))
                 .build();
 
-        ExchangeAgent exchangeAgent = AgenticServices
-                .agentBuilder(ExchangeAgent.class)
+        ExchangeAgent exchangeAgent = agent(ExchangeAgent.class)
                 .chatModel(chatModel)
-                .tools(new ExchangeTool())
+                .toolProvider(agentObservations.tools(new ExchangeTool()))
                 .build();
 
         SupervisorAgent bankSupervisor = AgenticServices
@@ -433,29 +542,36 @@ public class AgentConfiguration {
 
     @Bean
     @Qualifier("writerAgent")
-    UntypedAgent writerAgent(ChatModel chatModel) {
-        PersonExtractor personExtractor = AgenticServices.agentBuilder(PersonExtractor.class)
+    UntypedAgent writerAgent(ChatModel chatModel, AgentExecutorRegistry agentExecutors) {
+        PersonExtractor personExtractor = agent(PersonExtractor.class)
                 .chatModel(chatModel)
                 .outputKey("person")
                 .build();
-        SignExtractor signExtractor = AgenticServices.agentBuilder(SignExtractor.class)
+        SignExtractor signExtractor = agent(SignExtractor.class)
                 .chatModel(chatModel)
                 .outputKey("sign")
                 .build();
-        HoroscopeGenerator horoscopeGenerator = AgenticServices.agentBuilder(HoroscopeGenerator.class)
+        HoroscopeGenerator horoscopeGenerator = agent(HoroscopeGenerator.class)
                 .chatModel(chatModel)
                 .outputKey("horoscope")
                 .build();
-        StoryFinder storyFinder = AgenticServices.agentBuilder(StoryFinder.class)
+        StoryFinder storyFinder = agent(StoryFinder.class)
                 .chatModel(chatModel)
                 .outputKey("story")
                 .build();
-        Writer writer = AgenticServices.agentBuilder(Writer.class)
+        Writer writer = agent(Writer.class)
                 .chatModel(chatModel)
                 .outputKey("writeup")
                 .build();
 
-        UntypedAgent horoscopeAgent = AgenticServices.plannerBuilder()
+        if (properties.getExecution().getPlannerMode() == LangChain4jProperties.PlannerMode.DEPENDENCY_GRAPH) {
+            return new DependencyGraphPlanner(agentExecutors.get(AgentExecutorRegistry.WORKFLOW))
+                    .build("writeup", personExtractor, signExtractor, horoscopeGenerator, storyFinder, writer);
+        }
+
+        // executor() is not exposed on PlannerBasedService; actions with several agents run in parallel on it
+        UntypedAgent horoscopeAgent = ((PlannerBasedServiceImpl<UntypedAgent>) AgenticServices.plannerBuilder())
+                .executor(agentExecutors.get(AgentExecutorRegistry.WORKFLOW))
                 .subAgents(personExtractor, signExtractor, horoscopeGenerator, storyFinder, writer)
                 .outputKey("writeup")
                 .planner(GoalOrientedPlanner::new)
@@ -468,13 +584,12 @@ public class AgentConfiguration {
     @Qualifier("humanInLoopAgent")
     UntypedAgent humenInLoopAgent(ChatModel chatModel) {
         // Create involved agents
-        MeetingProposer proposer = AgenticServices
-                .agentBuilder(MeetingProposer.class)
+        MeetingProposer proposer = agent(MeetingProposer.class)
                 .chatModel(chatModel)
                 .chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(15)) // so the agent remembers what he proposed already
                 .outputKey("proposal")
                 .build();
-        DecisionsReachedService decisionService = AgenticServices.agentBuilder(DecisionsReachedService.class)
+        DecisionsReachedService decisionService = agent(DecisionsReachedService.class)
                 .chatModel(chatModel)
                 .outputKey("decisionsReached")
                 .build();
@@ -518,4 +633,11 @@ public class AgentConfiguration {
 
         return schedulingLoop;
     }
+
+    /**
+     * Agent builder whose agents report every invocation as a child span of the workflow or request.
+     */
+    private <T> AgentBuilder<T> agent(Class<T> agentType) {
+        return agentObservations.instrument(AgenticServices.agentBuilder(agentType));
+    }
 }
@@ -0,0 +1,40 @@
+package com.cardconnect.langchain4j_spring.config;
+
+import com.cardconnect.langchain4j_spring.rag.EmbeddedEmbeddingStore;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration for the embedded vector store, selected with
+ * {@code app.langchain4j.rag.vector-store.type=embedded}. Replaces Qdrant for local development,
+ * CI and small corpora; no container is needed.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.langchain4j.rag.vector-store", name = "type", havingValue = "embedded")
+@Slf4j
+public class EmbeddedVectorStoreConfig {
+
+    /**
+     * Creates the embedded store, loading the segments of the last run from its snapshot and log.
+     * The store writes a final snapshot when the context closes.
+     *
+     * @param properties    application properties holding the snapshot location
+     * @param meterRegistry registry for the search metrics
+     * @return embedded embedding store
+     */
+    @Bean
+    public EmbeddingStore<TextSegment> embeddingStore(LangChain4jProperties properties, MeterRegistry meterRegistry) {
+        LangChain4jProperties.VectorStore vectorStore = properties.getRag().getVectorStore();
+        log.info("Initializing embedded vector store - Snapshot: {}, compacting after {} changes",
+                vectorStore.getPath(), vectorStore.getCompactAfter());
+        return new EmbeddedEmbeddingStore(Path.of(vectorStore.getPath()), vectorStore.getCompactAfter(),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,45 @@
+package com.cardconnect.langchain4j_spring.config;
+
+import com.cardconnect.langchain4j_spring.execution.AgentExecutorRegistry;
+import com.cardconnect.langchain4j_spring.observability.AgentObservations;
+import com.cardconnect.langchain4j_spring.observability.AgentTaskDecorator;
+import com.cardconnect.langchain4j_spring.observability.VirtualThreadPinningMonitor;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Execution model for agent work that runs off the request thread.
+ *
+ * <p>With {@code spring.threads.virtual.enabled=true} on Java 21+ Spring Boot serves requests on virtual
+ * threads ({@link Threading#VIRTUAL}), and the agent executors follow: concurrent tool calls and parallel agent workflows get one virtual
+ * thread per running task, so blocking calls to Ollama and Qdrant no longer hold a platform thread
+ * each. Pinned virtual threads are reported by the {@link VirtualThreadPinningMonitor}.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ExecutionConfiguration {
+
+    private final LangChain4jProperties properties;
+
+    /**
+     * Bounded executors for concurrent tool calls and parallel agent workflows, shut down with the context.
+     * Tasks carry the submitter's observation, so sub-agent spans stay in the request's trace.
+     */
+    @Bean
+    AgentExecutorRegistry agentExecutorRegistry(MeterRegistry meterRegistry, AgentObservations agentObservations,
+            Environment environment) {
+        return new AgentExecutorRegistry(properties.getExecution(), Threading.VIRTUAL.isActive(environment),
+                meterRegistry, new AgentTaskDecorator(agentObservations));
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    VirtualThreadPinningMonitor virtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+        return new VirtualThreadPinningMonitor(properties.getExecution().getPinnedThreshold(), meterRegistry);
+    }
+}
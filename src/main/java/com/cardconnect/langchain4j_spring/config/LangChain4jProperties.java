@@ -5,20 +5,34 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.validation.annotation.Validated;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Positive;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Configuration
 @ConfigurationProperties(prefix = "app.langchain4j")
 @Data
 @Validated
 public class LangChain4jProperties {
 
+    @Valid
     private ChatMemory chatMemory = new ChatMemory();
     private Rag rag = new Rag();
-    private Document document = new Document();
+    private Streaming streaming = new Streaming();
+    private ModelCalls modelCalls = new ModelCalls();
+    @Valid
+    private Observability observability = new Observability();
+    @Valid
+    private Execution execution = new Execution();
 
     /**
      * Configuration for chat memory management.
@@ -42,103 +56,989 @@ public class LangChain4jProperties {
          * When true, conversations survive application restarts.
          */
         private boolean persistEnabled;
+
+        /**
+         * How persisted chat memory is laid out in the database.
+         * BLOB rewrites the whole window as one JSON document per session on every turn,
+         * MESSAGE_LOG stores one row per message and only writes the difference.
+         */
+        private StorageMode storageMode = StorageMode.BLOB;
+
+        /**
+         * Codec used to encode newly persisted chat messages ("json" or "binary").
+         * Stored messages are read with whichever codec wrote them and rewritten with this one on first read.
+         *
+         * @must not be blank
+         */
+        @NotBlank
+        private String codec = "json";
+
+        /**
+         * Minimum size in bytes of a message string (e.g. a tool result) before the binary codec compresses it.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int compressionThreshold = 512;
+
+        /**
+         * Write-behind cache in front of the persistent chat memory store.
+         */
+        private MemoryCache cache = new MemoryCache();
+
+        /**
+         * Mapping of external session ids to persistent chat memory keys.
+         */
+        @Valid
+        private SessionKey sessionKey = new SessionKey();
     }
 
     /**
-     * Configuration for RAG (Retrieval-Augmented Generation).
-     * Controls document retrieval and similarity search behavior.
+     * Configuration for the session id to chat memory key mapping.
+     * String and UUID memory ids are hashed to 64-bit keys; collisions are resolved through the chat_session_key table.
      */
     @Data
     @Validated
-    public static class Rag {
+    public static class SessionKey {
         /**
-         * Maximum number of document chunks to retrieve from vector store.
-         * Higher values provide more context but increase latency.
+         * 128-bit SipHash key as 32 hex characters, e.g. from {@code openssl rand -hex 16}. Keeps session
+         * keys unpredictable to clients, so it has no default and must be kept secret.
+         * Changing it maps existing sessions to new keys.
          *
-         * @must be between 1 and 20
+         * @must be 32 hex characters
+         */
+        @NotBlank
+        @Pattern(regexp = "[0-9a-fA-F]{32}")
+        private String hashKey;
+
+        /**
+         * Maximum number of resolved session keys kept in memory.
+         * Resolving a cached session needs no database access.
+         *
+         * @must be positive
          */
         @Positive
-        @Max(20)
-        private int maxResults;
+        private int cacheSize = 100_000;
+    }
+
+    /**
+     * Configuration for the write-behind chat memory cache.
+     * Hot sessions are served from memory and writes are flushed to the database asynchronously.
+     */
+    @Data
+    @Validated
+    public static class MemoryCache {
+        /**
+         * Whether the cache is placed in front of the persistent store.
+         */
+        private boolean enabled;
 
         /**
-         * Minimum cosine similarity score threshold (0.0 to 1.0).
-         * Only documents with similarity above this threshold are returned.
-         * Higher values return only very similar documents.
+         * Maximum number of sessions kept in memory. Least recently used clean sessions are evicted first.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int maxEntries = 10_000;
+
+        /**
+         * Time after the last access when a clean session is reloaded from the database.
+         */
+        private Duration ttl = Duration.ofMinutes(30);
+
+        /**
+         * Interval between background flushes of dirty sessions.
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * Number of dirty sessions that triggers an immediate flush, independent of the flush interval.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int maxDirtyEntries = 500;
+
+        /**
+         * Maximum number of sessions written to the database by a single flush batch.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int flushBatchSize = 100;
+
+        /**
+         * Number of failed flushes after which a session's pending window is dropped from the cache
+         * and reported, so an unwritable session does not stay dirty and pinned in memory forever.
+         * A newer update of the session starts over.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int maxFlushAttempts = 5;
+    }
+
+    /**
+     * Storage layout for persisted chat memory.
+     */
+    public enum StorageMode {
+        BLOB,
+        MESSAGE_LOG
+    }
+
+    /**
+     * Configuration for the streaming (server-sent events) agent endpoints.
+     */
+    @Data
+    @Validated
+    public static class Streaming {
+        /**
+         * Maximum time a streamed response may take before the event stream is closed with a timeout.
+         */
+        private Duration timeout = Duration.ofMinutes(2);
+    }
+
+    /**
+     * Configuration of the chat model listener recording metrics of every model call.
+     */
+    @Data
+    @Validated
+    public static class ModelCalls {
+        /**
+         * Whether requests and responses of sampled model calls are logged. Off by default: the
+         * payload of every call includes the whole conversation.
+         */
+        private boolean payloadLogging;
+
+        /**
+         * Fraction of model calls whose payload is logged when payload logging is enabled.
          *
          * @must be between 0.0 and 1.0
          */
         @Min(0)
         @Max(1)
-        private double minScore;
+        private double payloadSampleRate = 0.01;
 
         /**
-         * Size of text chunks for document splitting in tokens.
-         * Smaller chunks provide more precise retrieval but more database entries.
+         * Characters of a logged request or response after which it is cut off.
          *
          * @must be positive
          */
         @Positive
-        private int chunkSize;
+        private int maxPayloadChars = 2000;
+    }
+
+    /**
+     * Configuration of the cost of tracing and logging on the request path.
+     */
+    @Data
+    @Validated
+    public static class Observability {
+        /**
+         * Requests taking at least this long are logged at WARN by the tracing interceptor; faster
+         * ones are logged at DEBUG only.
+         */
+        private Duration slowRequestThreshold = Duration.ofSeconds(2);
 
         /**
-         * Number of tokens to overlap between consecutive chunks.
-         * Helps maintain context across chunk boundaries.
+         * Which finished traces are exported.
+         */
+        @Valid
+        private TailSampling tailSampling = new TailSampling();
+
+        /**
+         * Logging through a bounded queue instead of on the request thread.
+         */
+        @Valid
+        private AsyncLogging asyncLogging = new AsyncLogging();
+
+        /**
+         * Critical-path profiles of agentic workflow requests.
+         */
+        @Valid
+        private WorkflowProfiler workflowProfiler = new WorkflowProfiler();
+    }
+
+    /**
+     * Configuration of tail sampling: spans are held back until the local root span of their trace
+     * has ended, then the whole trace is exported or dropped. Traces with an error and traces slower
+     * than {@code slowThreshold} are always exported. Needs every trace recorded, i.e.
+     * {@code management.tracing.sampling.probability=1.0}.
+     */
+    @Data
+    @Validated
+    public static class TailSampling {
+        /**
+         * Whether span exporters are wrapped in the tail sampler. Disabled exports every recorded span.
+         */
+        private boolean enabled;
+
+        /**
+         * Traces whose local root span took at least this long are always exported.
+         */
+        private Duration slowThreshold = Duration.ofSeconds(2);
+
+        /**
+         * Fraction of the remaining traces that are exported, for endpoints without their own rate.
          *
-         * @must be non-negative and less than chunkSize
+         * @must be between 0.0 and 1.0
          */
         @Min(0)
-        private int chunkOverlap;
+        @Max(1)
+        private double sampleRate = 0.1;
+
+        /**
+         * Sample rates by endpoint, as path patterns matched against the {@code uri} of the root span,
+         * e.g. {@code /actuator/**=0.0}. The most specific matching pattern wins.
+         */
+        private Map<String, Double> endpointSampleRates = new LinkedHashMap<>();
+
+        /**
+         * Traces waiting for their root span. When exceeded, the oldest waiting trace is dropped.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int maxPendingTraces = 10_000;
+
+        /**
+         * Traces whose root span has not ended after this long are decided without it: exported when
+         * they contain an error, dropped otherwise.
+         */
+        private Duration pendingTimeout = Duration.ofSeconds(30);
     }
 
     /**
-     * Metadata configuration for ingested documents.
-     * Used to tag and filter documents in the vector store.
+     * Configuration of asynchronous logging: the appenders of the root logger are moved behind a
+     * bounded queue drained by one background thread.
      */
     @Data
     @Validated
-    public static class Document {
+    public static class AsyncLogging {
+        /**
+         * Whether the root logger's appenders are made asynchronous.
+         */
+        private boolean enabled;
+
         /**
-         * Unique source identifier for the document.
-         * Used for filtering queries to specific document sources.
+         * Log events buffered for the appenders.
          *
-         * @must not be blank
+         * @must be positive
          */
-        @NotBlank
-        private String source;
+        @Positive
+        private int queueSize = 8192;
+
+        /**
+         * Whether events are dropped instead of blocking the logging thread when the queue is full.
+         * TRACE, DEBUG and INFO events are discarded either way once the queue is four fifths full.
+         */
+        private boolean neverBlock = true;
+    }
+
+    /**
+     * Configuration of the workflow profiler: the sub-agent invocations of each {@code agent.*} endpoint
+     * request are collected into a graph, from which the critical path, the parallel efficiency and the
+     * self time of every agent are computed.
+     */
+    @Data
+    @Validated
+    public static class WorkflowProfiler {
+        /**
+         * Whether workflow requests are profiled.
+         */
+        private boolean enabled = true;
 
         /**
-         * Author of the document.
-         * Used for filtering and attribution.
+         * Most recent profiles kept per workflow for the {@code workflows} actuator endpoint.
          *
-         * @must not be blank
+         * @must be positive
          */
-        @NotBlank
-        private String author;
+        @Positive
+        private int recentProfiles = 20;
 
         /**
-         * Type classification of the document (e.g., "story", "manual", "article").
+         * Sub-agent invocations recorded per request, bounding the profile of long loops. Further
+         * invocations are left out of the profile.
          *
-         * @must not be blank
+         * @must be positive
          */
-        @NotBlank
-        private String type;
+        @Positive
+        private int maxInvocations = 256;
+    }
+
+    /**
+     * Configuration for agent execution: concurrent tool calls and parallel agent workflows.
+     * Virtual threads are switched on with {@code spring.threads.virtual.enabled}.
+     */
+    @Data
+    @Validated
+    public static class Execution {
+        /**
+         * Virtual threads pinned to their carrier for longer than this are reported.
+         * Only used when virtual threads are enabled.
+         */
+        private Duration pinnedThreshold = Duration.ofMillis(20);
+
+        /**
+         * Maximum time to wait for running agent tasks on shutdown before they are interrupted.
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+        /**
+         * How the planner workflow of {@code /write} runs its agents.
+         */
+        private PlannerMode plannerMode = PlannerMode.DEPENDENCY_GRAPH;
+
+        /**
+         * Speculative execution of the experts of {@code /help}.
+         */
+        @Valid
+        private Speculation speculation = new Speculation();
+
+        /**
+         * Named executors for agent work. {@code workflow} runs parallel and planner workflows,
+         * {@code tools} runs concurrent tool calls, {@code retrieval} runs keyword searches next to
+         * vector searches, {@code routing} queries the content retrievers of the RAG pipeline.
+         */
+        private Map<String, ExecutorPool> pools = new LinkedHashMap<>(Map.of(
+                "workflow", new ExecutorPool(),
+                "tools", new ExecutorPool(),
+                "retrieval", new ExecutorPool(),
+                "routing", new ExecutorPool()));
+    }
+
+    /**
+     * Configuration for speculative expert calls of {@code /help}. The experts most likely to be
+     * chosen are started on the {@code workflow} executor while the request is classified; the one
+     * matching the classification is kept, the others are cancelled.
+     */
+    @Data
+    @Validated
+    public static class Speculation {
+        /**
+         * Whether likely experts are started before the request is classified.
+         */
+        private boolean enabled;
 
         /**
-         * Human-readable title of the document.
+         * Experts started per request at most.
          *
-         * @must not be blank
+         * @must be between 1 and 3
          */
-        @NotBlank
-        private String title;
+        @Min(1)
+        @Max(3)
+        private int maxExperts = 1;
 
         /**
-         * Language of the document content (e.g., "English", "Spanish").
+         * Prior probability a category needs before its expert is started.
          *
-         * @must not be blank
+         * @must be between 0.0 and 1.0
          */
-        @NotBlank
-        private String language;
+        @Min(0)
+        @Max(1)
+        private double minConfidence = 0.5;
+
+        /**
+         * Speculative expert calls allowed per budget window. Once spent, requests wait for their
+         * classification as without speculation.
+         *
+         * @must be non-negative
+         */
+        @Min(0)
+        private int budget = 60;
+
+        /**
+         * Window the budget is granted for.
+         */
+        private Duration budgetWindow = Duration.ofMinutes(1);
+
+        /**
+         * Recent classifications whose category frequencies are the prior of requests without
+         * keywords.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int historySize = 100;
+
+        /**
+         * Keywords per category ({@code legal}, {@code medical}, {@code technical}), matched against
+         * the starts of the words of a request.
+         */
+        private Map<String, List<String>> keywords = new LinkedHashMap<>(Map.of(
+                "legal", List.of("law", "legal", "contract", "court", "lawyer", "attorney", "sue", "lawsuit",
+                        "liabil", "copyright", "tenant", "landlord", "divorce", "regulat", "complian"),
+                "medical", List.of("doctor", "medic", "symptom", "pain", "disease", "illness", "fever",
+                        "headache", "diagnos", "treatment", "prescri", "health", "injur", "allerg", "vaccin"),
+                "technical", List.of("software", "code", "coding", "program", "java", "python", "server",
+                        "database", "network", "bug", "error", "install", "comput", "api", "deploy", "linux")));
+    }
+
+    /**
+     * Configuration for one bounded agent executor.
+     */
+    @Data
+    @Validated
+    public static class ExecutorPool {
+        /**
+         * Number of threads running tasks before further tasks are queued. Idle threads are released
+         * after keepAlive. Ignored with virtual threads.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int coreSize = 16;
+
+        /**
+         * Maximum number of tasks running at the same time. Threads above coreSize are only started
+         * once the queue is full, so with a queue it must equal coreSize; only a pool without a queue
+         * (queueCapacity 0) grows from coreSize to maxSize.
+         *
+         * @must be positive, not less than coreSize, and equal to coreSize if queueCapacity is positive
+         */
+        @Positive
+        private int maxSize = 16;
+
+        /**
+         * Number of tasks that may wait for a free thread. Once full, new tasks are handled by
+         * the rejection policy.
+         *
+         * @must be non-negative
+         */
+        @Min(0)
+        private int queueCapacity = 100;
+
+        /**
+         * Time after which idle threads are released.
+         */
+        private Duration keepAlive = Duration.ofSeconds(60);
+
+        /**
+         * What happens to a task when all threads are busy and the queue is full.
+         */
+        private RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
     }
-}
 
+    /**
+     * Execution of planner workflows.
+     */
+    public enum PlannerMode {
+        /**
+         * Let the goal-oriented planner pick one agent at a time.
+         */
+        GOAL_ORIENTED,
+        /**
+         * Run agents in waves computed from their inputs and output keys, the agents of a wave in
+         * parallel on the {@code workflow} executor.
+         */
+        DEPENDENCY_GRAPH
+    }
+
+    /**
+     * Handling of tasks submitted to a saturated agent executor.
+     */
+    public enum RejectionPolicy {
+        /**
+         * Fail the submission with a {@link java.util.concurrent.RejectedExecutionException}.
+         */
+        ABORT,
+        /**
+         * Run the task on the submitting thread, which slows down the caller.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * Configuration for RAG (Retrieval-Augmented Generation).
+     * Controls document retrieval and similarity search behavior.
+     */
+    @Data
+    @Validated
+    public static class Rag {
+        /**
+         * Maximum number of document chunks to retrieve from vector store.
+         * Higher values provide more context but increase latency.
+         *
+         * @must be between 1 and 20
+         */
+        @Positive
+        @Max(20)
+        private int maxResults;
+
+        /**
+         * Minimum cosine similarity score threshold (0.0 to 1.0).
+         * Only documents with similarity above this threshold are returned.
+         * Higher values return only very similar documents.
+         *
+         * @must be between 0.0 and 1.0
+         */
+        @Min(0)
+        @Max(1)
+        private double minScore;
+
+        /**
+         * Size of text chunks for document splitting in tokens.
+         * Smaller chunks provide more precise retrieval but more database entries.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int chunkSize;
+
+        /**
+         * Number of tokens to overlap between consecutive chunks.
+         * Helps maintain context across chunk boundaries.
+         *
+         * @must be non-negative and less than chunkSize
+         */
+        @Min(0)
+        private int chunkOverlap;
+
+        /**
+         * Answer cache in front of the RAG agent.
+         */
+        private AnswerCache answerCache = new AnswerCache();
+
+        /**
+         * Cache for embeddings of queries and document segments.
+         */
+        private EmbeddingCache embeddingCache = new EmbeddingCache();
+
+        /**
+         * Metadata values a retrieved segment must match, e.g. {@code source}.
+         * Empty searches all ingested documents.
+         */
+        private Map<String, String> filter = new LinkedHashMap<>();
+
+        /**
+         * Search-time parameters of the vector store, trading recall for latency.
+         */
+        @Valid
+        private Search search = new Search();
+
+        /**
+         * Whether query embedding and vector search latencies, match counts and scores are recorded
+         * ({@code rag.retrieval.*}), as well as the retrieval pipeline's stage timings, documents and
+         * average score. Disabled retrievers and pipeline register no meters.
+         */
+        private boolean metricsEnabled = true;
+
+        /**
+         * Keyword search fused with the vector search.
+         */
+        @Valid
+        private Hybrid hybrid = new Hybrid();
+
+        /**
+         * Query-side stages between the RAG agent and its content retrievers.
+         */
+        @Valid
+        private Augmentation augmentation = new Augmentation();
+
+        /**
+         * Vector store holding the ingested segments.
+         */
+        @Valid
+        private VectorStore vectorStore = new VectorStore();
+
+        /**
+         * Incremental document ingestion.
+         */
+        private Ingestion ingestion = new Ingestion();
+    }
+
+    /**
+     * Configuration for incremental document ingestion.
+     */
+    @Data
+    @Validated
+    public static class Ingestion {
+        /**
+         * File recording the ingested segments per document source. Deleting it forces a full re-ingestion.
+         *
+         * @must not be blank
+         */
+        @NotBlank
+        private String manifestPath = "data/ingestion-manifest.json";
+
+        /**
+         * Number of segments embedded and stored per batch. The manifest is checkpointed after every batch.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int batchSize = 32;
+
+        /**
+         * Time to wait before retrying a failed background ingestion.
+         */
+        private Duration retryInterval = Duration.ofSeconds(30);
+
+        /**
+         * Minimum time between two writes of the manifest; updates in between are kept in memory.
+         * Zero writes it after every batch.
+         */
+        private Duration checkpointInterval = Duration.ofSeconds(1);
+
+        /**
+         * Documents to ingest. Ingested documents no longer listed keep their segments in the store.
+         */
+        @Valid
+        private List<DocumentSource> sources = new ArrayList<>();
+
+        /**
+         * Worker threads and queues of the ingestion pipeline.
+         */
+        @Valid
+        private Pipeline pipeline = new Pipeline();
+    }
+
+    /**
+     * A location to ingest documents from, with the metadata of its documents.
+     */
+    @Data
+    @Validated
+    public static class DocumentSource {
+        /**
+         * Spring resource location, may contain Ant-style patterns, e.g. {@code classpath:/static/*.txt}.
+         * A directory tree is matched with {@code **} in a {@code file:} location.
+         *
+         * @must not be blank
+         */
+        @NotBlank
+        private String location;
+
+        /**
+         * Metadata of every document found at the location, used to tag and filter segments in the
+         * vector store. {@code source} defaults to the path of the file below the root directory of the
+         * location and identifies the document across ingestions, {@code title} defaults to the file
+         * name without extension.
+         */
+        private Map<String, String> metadata = new LinkedHashMap<>();
+    }
+
+    /**
+     * Configuration for the staged ingestion pipeline: parse, split, embed, store.
+     */
+    @Data
+    @Validated
+    public static class Pipeline {
+        /**
+         * Threads reading documents.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int parseWorkers = 2;
+
+        /**
+         * Threads splitting documents and comparing their segments with the manifest.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int splitWorkers = 2;
+
+        /**
+         * Threads calling the embedding model; the number of concurrent embedding requests.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int embedWorkers = 2;
+
+        /**
+         * Threads writing to the embedding store.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int storeWorkers = 1;
+
+        /**
+         * Maximum segments per write to the embedding store. Embedded batches waiting in the queue are
+         * merged up to this size.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int storeBatchSize = 256;
+
+        /**
+         * Capacity of each queue between two stages. A full queue blocks the stage in front of it.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int queueCapacity = 256;
+    }
+
+    /**
+     * Configuration for the embedding cache.
+     * Text that was embedded before is not sent to the embedding model again.
+     */
+    @Data
+    @Validated
+    public static class EmbeddingCache {
+        /**
+         * Whether the embedding model is wrapped in the cache.
+         */
+        private boolean enabled;
+
+        /**
+         * Maximum number of embeddings kept in memory. Least recently used embeddings are evicted first.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int maxEntries = 10_000;
+
+        /**
+         * Whether embeddings are also written to a memory-mapped file that survives restarts.
+         */
+        private boolean diskEnabled;
+
+        /**
+         * Location of the disk cache file. It is recreated if diskMaxEntries changes; a model with another
+         * dimension needs a new file.
+         *
+         * @must not be blank
+         */
+        @NotBlank
+        private String diskPath = "data/embedding-cache.bin";
+
+        /**
+         * Maximum number of embeddings in the disk cache. The file is sized for this up front, about
+         * {@code 1.5 * diskMaxEntries * (16 + 4 * dimension)} bytes (~50 MB for 10000 entries of 768
+         * dimensions); a file over 2 GB disables the disk tier.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int diskMaxEntries = 10_000;
+    }
+
+    /**
+     * Configuration of the vector store.
+     */
+    @Data
+    @Validated
+    public static class VectorStore {
+        /**
+         * Store the segments are ingested into and retrieved from. The ingestion manifest is kept per
+         * store, so after switching stores the documents are ingested into the new one.
+         */
+        private VectorStoreType type = VectorStoreType.QDRANT;
+
+        /**
+         * Snapshot file of the embedded store. Its change log is kept next to it, with a {@code .log} suffix.
+         *
+         * @must not be blank
+         */
+        @NotBlank
+        private String path = "data/vector-store.bin";
+
+        /**
+         * Number of logged changes after which the embedded store writes a new snapshot and starts an empty log.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int compactAfter = 10_000;
+    }
+
+    /**
+     * Implementation of the vector store.
+     */
+    public enum VectorStoreType {
+        /**
+         * Qdrant, configured under {@code langchain4j.qdrant}.
+         */
+        QDRANT,
+        /**
+         * In-process store with exact search and no network round trip, for small corpora, local
+         * development and CI.
+         */
+        EMBEDDED
+    }
+
+    /**
+     * Search-time parameters of the Qdrant vector store.
+     * The collection side (HNSW graph, quantization) is configured under {@code langchain4j.qdrant}.
+     */
+    @Data
+    @Validated
+    public static class Search {
+        /**
+         * Size of the HNSW candidate list per search. Higher values raise recall and latency.
+         * 0 uses the collection's ef_construct.
+         *
+         * @must be non-negative
+         */
+        @Min(0)
+        private int hnswEf;
+
+        /**
+         * Whether to scan all points instead of the HNSW index. Full recall, linear latency;
+         * meant for measuring the recall of the approximate search.
+         */
+        private boolean exact;
+
+        /**
+         * Whether candidates found on quantized vectors are re-scored with the original vectors.
+         */
+        private boolean rescore = true;
+
+        /**
+         * Factor of extra candidates fetched on quantized vectors before re-scoring, e.g. 2.0 fetches
+         * twice the requested results.
+         *
+         * @must be at least 1.0
+         */
+        @Min(1)
+        private double oversampling = 2.0;
+
+        /**
+         * Time limit of one search request.
+         */
+        private Duration timeout = Duration.ofSeconds(10);
+
+        /**
+         * Whether matches carry their stored vector. Only needed by callers reading
+         * {@code EmbeddingMatch.embedding()}; each vector is read from disk and sent over gRPC.
+         */
+        private boolean withVectors;
+    }
+
+    /**
+     * Configuration of hybrid retrieval: BM25 keyword search over the ingested segments, fused with
+     * vector search by reciprocal rank.
+     */
+    @Data
+    @Validated
+    public static class Hybrid {
+        /**
+         * Whether segments are indexed for keyword search during ingestion and retrieved by both
+         * keyword and vector search. Disabled retrieves by vector search only.
+         */
+        private boolean enabled;
+
+        /**
+         * Number of candidates taken from each of keyword and vector search before fusion.
+         * Should be well above maxResults, so segments ranked lower by one search can still win.
+         *
+         * @must be between 1 and 100
+         */
+        @Positive
+        @Max(100)
+        private int candidates = 20;
+
+        /**
+         * Rank constant of reciprocal-rank fusion. Higher values flatten the difference between
+         * top and lower ranks.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int rrfK = 60;
+
+        /**
+         * Queries of at most this many words are answered from the keyword index alone when some
+         * segments contain all their terms, without calling the embedding model. 0 disables the fast path.
+         *
+         * @must be non-negative
+         */
+        @Min(0)
+        private int fastPathMaxTerms = 3;
+    }
+
+    /**
+     * Configuration of the retrieval augmentation pipeline: which queries retrieve at all, how long
+     * each content retriever may take and how much retrieved content goes into the prompt.
+     */
+    @Data
+    @Validated
+    public static class Augmentation {
+        /**
+         * Whether queries matching a skip pattern, or without any content word, are answered
+         * without retrieval.
+         */
+        private boolean classifierEnabled = true;
+
+        /**
+         * Regular expressions matched against the whole lower-cased query; a match skips retrieval.
+         */
+        private List<String> skipPatterns = new ArrayList<>(List.of(
+                "(hi|hello|hey|thanks|thank you|ok|okay|bye|goodbye|good (morning|afternoon|evening))( there)?[.!]*"));
+
+        /**
+         * Time a content retriever may take before the query goes on without its results.
+         */
+        private Duration retrieverTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Timeouts for single content retrievers by bean name, overriding retrieverTimeout.
+         */
+        private Map<String, Duration> retrieverTimeouts = new LinkedHashMap<>();
+
+        /**
+         * Word-shingle similarity (Jaccard) at or above which a retrieved segment counts as a
+         * duplicate of a better ranked one and is dropped.
+         *
+         * @must be between 0.0 and 1.0
+         */
+        @Min(0)
+        @Max(1)
+        private double duplicateThreshold = 0.9;
+
+        /**
+         * Estimated tokens of retrieved content injected into the prompt. Segments are added by
+         * rank until the next one would exceed the budget.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int maxContextTokens = 600;
+    }
+
+    /**
+     * Configuration for the RAG answer cache.
+     * Repeated questions are answered from memory instead of running retrieval and a chat completion.
+     */
+    @Data
+    @Validated
+    public static class AnswerCache {
+        /**
+         * Whether answers of the RAG agent are cached.
+         */
+        private boolean enabled;
+
+        /**
+         * Whether a question may be answered with the cached answer of a semantically similar question.
+         * Costs one embedding call per exact-cache miss.
+         */
+        private boolean semanticEnabled = true;
+
+        /**
+         * Minimum cosine similarity between two questions for a semantic cache hit.
+         *
+         * @must be between 0.0 and 1.0
+         */
+        @Min(0)
+        @Max(1)
+        private double similarityThreshold = 0.95;
+
+        /**
+         * Maximum number of cached answers. Least recently used answers are evicted first.
+         *
+         * @must be positive
+         */
+        @Positive
+        private int maxEntries = 1_000;
+
+        /**
+         * Time after which a cached answer expires.
+         */
+        private Duration ttl = Duration.ofHours(1);
+    }
+}
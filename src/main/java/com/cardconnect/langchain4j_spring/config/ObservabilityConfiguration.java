@@ -1,32 +1,75 @@
 package com.cardconnect.langchain4j_spring.config;
 
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import com.cardconnect.langchain4j_spring.observability.AgentMetricsService;
+import com.cardconnect.langchain4j_spring.observability.AgentObservations;
+import com.cardconnect.langchain4j_spring.observability.AsyncLogAppenders;
+import com.cardconnect.langchain4j_spring.observability.TailSamplingPostProcessor;
 import com.cardconnect.langchain4j_spring.observability.TracingInterceptor;
+import com.cardconnect.langchain4j_spring.observability.WorkflowProfiler;
+import com.cardconnect.langchain4j_spring.observability.WorkflowsEndpoint;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.observation.ObservationRegistry;
 import io.micrometer.observation.aop.ObservedAspect;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 /**
  * Configuration for observability, monitoring, and distributed tracing.
  * Registers interceptors and aspects for automatic instrumentation.
+ *
+ * <p>The cost of tracing and logging on the request path is bounded by
+ * {@code app.langchain4j.observability.*}: tail sampling exports errored, slow and a per-endpoint
+ * share of the other traces, and asynchronous logging keeps appender I/O off request threads.
+ * The {@code prod} profile switches both on.
  */
 @Configuration
 @RequiredArgsConstructor
+@Slf4j
 public class ObservabilityConfiguration implements WebMvcConfigurer {
 
     private final TracingInterceptor tracingInterceptor;
+    private final AgentObservations agentObservations;
 
     /**
-     * Register tracing interceptor for all HTTP requests
+     * Register tracing interceptor for all HTTP requests, and stop the agent invocations a failed
+     * request left open on its thread
      */
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(tracingInterceptor)
                 .addPathPatterns("/api/**")
                 .addPathPatterns("/agent/**");
+        registry.addInterceptor(new HandlerInterceptor() {
+                    @Override
+                    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                                Object handler, Exception ex) {
+                        agentObservations.closeAbandoned(0);
+                    }
+                })
+                .addPathPatterns("/api/**")
+                .addPathPatterns("/agent/**");
+    }
+
+    /**
+     * Spans for the invocations of sub-agents. Static, as this configuration depends on it.
+     */
+    @Bean
+    static AgentObservations agentObservations(ObservationRegistry observationRegistry, MeterRegistry meterRegistry,
+            AgentMetricsService metricsService) {
+        return new AgentObservations(observationRegistry, meterRegistry, metricsService);
     }
 
     /**
@@ -36,5 +79,54 @@ public class ObservabilityConfiguration implements WebMvcConfigurer {
     public ObservedAspect observedAspect(ObservationRegistry observationRegistry) {
         return new ObservedAspect(observationRegistry);
     }
-}
 
+    /**
+     * Critical-path profiles of agentic workflow requests, registered as observation handler. Static,
+     * as the observation registry this configuration depends on is configured with it.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.langchain4j.observability.workflow-profiler", name = "enabled",
+            havingValue = "true", matchIfMissing = true)
+    static WorkflowProfiler workflowProfiler(LangChain4jProperties properties, MeterRegistry meterRegistry) {
+        return new WorkflowProfiler(properties.getObservability().getWorkflowProfiler(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.langchain4j.observability.workflow-profiler", name = "enabled",
+            havingValue = "true", matchIfMissing = true)
+    WorkflowsEndpoint workflowsEndpoint(WorkflowProfiler workflowProfiler) {
+        return new WorkflowsEndpoint(workflowProfiler);
+    }
+
+    /**
+     * Tail sampling of exported traces. Static, so span exporters can be wrapped without
+     * instantiating this configuration early.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.langchain4j.observability.tail-sampling", name = "enabled", havingValue = "true")
+    static TailSamplingPostProcessor tailSamplingPostProcessor(ObjectProvider<LangChain4jProperties> properties,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        return new TailSamplingPostProcessor(properties, meterRegistry);
+    }
+
+    /**
+     * Moves the root logger appenders behind an asynchronous appender once the singletons are created,
+     * before the web server takes requests. The appender is not a bean, so it is not stopped with the
+     * application context: logback stops and drains it on shutdown, after the last application log events.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.langchain4j.observability.async-logging", name = "enabled", havingValue = "true")
+    SmartInitializingSingleton asyncLogAppenderInstaller(LangChain4jProperties properties) {
+        return () -> {
+            LangChain4jProperties.AsyncLogging config = properties.getObservability().getAsyncLogging();
+            if (!(LoggerFactory.getILoggerFactory() instanceof LoggerContext context)) {
+                log.warn("Asynchronous logging needs logback, logging stays synchronous");
+                return;
+            }
+            AsyncAppender appender = AsyncLogAppenders.install(context, config.getQueueSize(), config.isNeverBlock());
+            log.info("Asynchronous logging {} (queue size {}, never block {})",
+                    appender != null ? "enabled" : "already enabled or without appenders",
+                    config.getQueueSize(), config.isNeverBlock());
+        };
+    }
+}
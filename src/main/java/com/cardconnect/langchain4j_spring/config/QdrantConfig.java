@@ -1,24 +1,42 @@
 package com.cardconnect.langchain4j_spring.config;
 
+import com.cardconnect.langchain4j_spring.rag.TunedQdrantEmbeddingStore;
+import com.google.common.util.concurrent.ListenableFuture;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.qdrant.QdrantEmbeddingStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.qdrant.client.QdrantClient;
 import io.qdrant.client.QdrantGrpcClient;
 import io.qdrant.client.grpc.Collections;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Configuration for Qdrant vector database.
  * Creates and manages the embedding store for RAG operations.
+ *
+ * <p>The collection is tuned for a growing corpus: the HNSW graph parameters are configurable,
+ * vectors and payload live on disk, and int8 scalar quantization keeps a compact copy of the vectors
+ * in RAM for the graph search. Keyword payload indexes cover the metadata keys the retriever filters
+ * on. Search-time parameters are set under {@code app.langchain4j.rag.search}.
+ *
+ * <p>Active unless {@code app.langchain4j.rag.vector-store.type} selects the embedded store.
  */
 @Configuration
+@ConditionalOnProperty(prefix = "app.langchain4j.rag.vector-store", name = "type", havingValue = "qdrant",
+        matchIfMissing = true)
 @Slf4j
 public class QdrantConfig {
 
@@ -31,19 +49,65 @@ public class QdrantConfig {
     @Value("${langchain4j.qdrant.collection-name:documents}")
     private String collectionName;
 
+    @Value("${langchain4j.qdrant.upsert.batch-size:64}")
+    private int upsertBatchSize;
+
+    @Value("${langchain4j.qdrant.upsert.max-in-flight:4}")
+    private int upsertMaxInFlight;
+
+    @Value("${langchain4j.qdrant.upsert.max-retries:3}")
+    private int upsertMaxRetries;
+
+    @Value("${langchain4j.qdrant.upsert.retry-backoff:200ms}")
+    private Duration upsertRetryBackoff;
+
+    @Value("${langchain4j.qdrant.upsert.timeout:30s}")
+    private Duration upsertTimeout;
+
+    @Value("${langchain4j.qdrant.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${langchain4j.qdrant.hnsw.ef-construct:100}")
+    private int hnswEfConstruct;
+
+    @Value("${langchain4j.qdrant.hnsw.on-disk:false}")
+    private boolean hnswOnDisk;
+
+    @Value("${langchain4j.qdrant.vectors.on-disk:true}")
+    private boolean vectorsOnDisk;
+
+    @Value("${langchain4j.qdrant.payload.on-disk:true}")
+    private boolean payloadOnDisk;
+
+    @Value("${langchain4j.qdrant.quantization.enabled:true}")
+    private boolean quantizationEnabled;
+
+    @Value("${langchain4j.qdrant.quantization.quantile:0.99}")
+    private float quantizationQuantile;
+
+    @Value("${langchain4j.qdrant.quantization.always-ram:true}")
+    private boolean quantizationAlwaysRam;
+
+    @Value("${langchain4j.qdrant.payload-indexes:source,author,document_id}")
+    private List<String> payloadIndexes;
+
     /**
      * Creates an EmbeddingStore backed by Qdrant.
-     * If the collection doesn't exist, it will be created automatically.
+     * The collection is set up by {@link #setUpCollection} on first use of the store, not here, so
+     * startup neither waits for Qdrant nor for Ollama.
+     * Points added in bulk are upserted in concurrent batches and searches use the configured search
+     * params, see {@link TunedQdrantEmbeddingStore}.
      *
      * @param embeddingModel the embedding model to determine vector dimensions
+     * @param properties     application properties holding the search params
+     * @param meterRegistry  registry for the upsert and search metrics
      * @return configured embedding store
-     * @throws RuntimeException if connection or collection creation fails
      */
     @Bean
-    public EmbeddingStore<TextSegment> embeddingStore(EmbeddingModel embeddingModel) {
+    public EmbeddingStore<TextSegment> embeddingStore(EmbeddingModel embeddingModel,
+                                                      LangChain4jProperties properties,
+                                                      MeterRegistry meterRegistry) {
 
-        // Create an in-memory embedding store
-        // EmbeddingStore<TextSegment> embeddingStore = new InMemoryEmbeddingStore<>();
         log.info("Initializing Qdrant embedding store - Host: {}, Port: {}, Collection: {}",
                 host, port, collectionName);
 
@@ -51,13 +115,44 @@ public class QdrantConfig {
             QdrantGrpcClient.newBuilder(host, port, false).build()
         );
 
+        EmbeddingStore<TextSegment> qdrantStore = QdrantEmbeddingStore.builder()
+            .client(qdrantClient)
+            .collectionName(collectionName)
+            .payloadTextKey(TunedQdrantEmbeddingStore.PAYLOAD_TEXT_KEY)
+            .build();
+
+        log.info("Qdrant upserts in batches of {} with up to {} in flight", upsertBatchSize, upsertMaxInFlight);
+        LangChain4jProperties.Search search = properties.getRag().getSearch();
+        log.info("Qdrant searches with hnsw_ef={}, exact={}, rescore={}, oversampling={}",
+            search.getHnswEf() > 0 ? search.getHnswEf() : "ef_construct", search.isExact(), search.isRescore(),
+            search.getOversampling());
+        return new TunedQdrantEmbeddingStore(qdrantStore,
+            TunedQdrantEmbeddingStore.upserter(qdrantClient, collectionName, upsertTimeout),
+            TunedQdrantEmbeddingStore.searcher(qdrantClient, collectionName),
+            TunedQdrantEmbeddingStore.counter(qdrantClient, collectionName),
+            () -> setUpCollection(qdrantClient, embeddingModel),
+            search, upsertBatchSize, upsertMaxInFlight, upsertMaxRetries, upsertRetryBackoff, meterRegistry);
+    }
+
+    /**
+     * Creates the collection if it doesn't exist, asking the embedding model for the vector size.
+     * An existing collection is updated to the configured HNSW, quantization and on-disk settings.
+     * Missing payload indexes are created in both cases. Each request waits at most the upsert timeout.
+     *
+     * @throws RuntimeException if Qdrant or the embedding model cannot be reached, to be retried
+     */
+    void setUpCollection(QdrantClient qdrantClient, EmbeddingModel embeddingModel) {
+        Collections.CollectionInfo collectionInfo = null;
         try {
             // Try to get collection info
-            qdrantClient.getCollectionInfoAsync(collectionName).get();
+            collectionInfo = qdrantClient.getCollectionInfoAsync(collectionName)
+                    .get(upsertTimeout.toMillis(), TimeUnit.MILLISECONDS);
             log.info("Qdrant collection '{}' already exists", collectionName);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Interrupted while checking Qdrant collection", e);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out checking Qdrant collection: " + collectionName, e);
         } catch (ExecutionException e) {
             // Collection doesn't exist, create it
             log.info("Creating Qdrant collection '{}'", collectionName);
@@ -65,27 +160,127 @@ public class QdrantConfig {
                 int vectorSize = embeddingModel.dimension();
                 log.info("Using vector size: {}", vectorSize);
 
-                qdrantClient.createCollectionAsync(
-                        collectionName,
-                        Collections.VectorParams.newBuilder()
-                                .setSize(vectorSize)
-                                .setDistance(Collections.Distance.Cosine)
-                                .build()
-                ).get();
-
-                log.info("Successfully created Qdrant collection '{}'", collectionName);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Interrupted while creating Qdrant collection", ie);
-            } catch (ExecutionException ee) {
+                await(qdrantClient.createCollectionAsync(createCollectionRequest(vectorSize)),
+                        "create Qdrant collection " + collectionName);
+
+                log.info("Successfully created Qdrant collection '{}' - HNSW m={} ef_construct={}, "
+                                + "int8 quantization: {}, vectors on disk: {}, payload on disk: {}",
+                        collectionName, hnswM, hnswEfConstruct, quantizationEnabled, vectorsOnDisk, payloadOnDisk);
+            } catch (RuntimeException ee) {
                 log.error("Failed to create Qdrant collection '{}'", collectionName, ee);
-                throw new RuntimeException("Failed to create Qdrant collection: " + collectionName, ee);
+                throw ee;
             }
         }
 
-        return QdrantEmbeddingStore.builder()
-            .client(qdrantClient)
-            .collectionName(collectionName)
-            .build();
+        if (collectionInfo != null) {
+            Optional<Collections.UpdateCollection> update = updateCollectionRequest(collectionInfo.getConfig());
+            if (update.isPresent()) {
+                log.info("Updating Qdrant collection '{}' to the configured HNSW, quantization and on-disk settings; "
+                        + "Qdrant rebuilds the affected segments in the background", collectionName);
+                await(qdrantClient.updateCollectionAsync(update.get()), "update Qdrant collection");
+            }
+        }
+        for (String field : missingPayloadIndexes(collectionInfo)) {
+            log.info("Creating keyword payload index on '{}' in Qdrant collection '{}'", field, collectionName);
+            await(qdrantClient.createPayloadIndexAsync(collectionName, field, Collections.PayloadSchemaType.Keyword,
+                    null, true, null, null), "create Qdrant payload index on " + field);
+        }
+    }
+
+    Collections.CreateCollection createCollectionRequest(int vectorSize) {
+        Collections.VectorParams.Builder vectorParams = Collections.VectorParams.newBuilder()
+                .setSize(vectorSize)
+                .setDistance(Collections.Distance.Cosine)
+                .setOnDisk(vectorsOnDisk);
+        Collections.CreateCollection.Builder request = Collections.CreateCollection.newBuilder()
+                .setCollectionName(collectionName)
+                .setVectorsConfig(Collections.VectorsConfig.newBuilder().setParams(vectorParams))
+                .setHnswConfig(hnswConfig())
+                .setOnDiskPayload(payloadOnDisk);
+        if (quantizationEnabled) {
+            request.setQuantizationConfig(Collections.QuantizationConfig.newBuilder().setScalar(scalarQuantization()));
+        }
+        return request.build();
+    }
+
+    /**
+     * Compares an existing collection with the configured settings.
+     *
+     * @return an update holding only the settings that differ, or empty if the collection is up to date
+     */
+    Optional<Collections.UpdateCollection> updateCollectionRequest(Collections.CollectionConfig config) {
+        Collections.UpdateCollection.Builder update = Collections.UpdateCollection.newBuilder()
+                .setCollectionName(collectionName);
+        boolean changed = false;
+
+        Collections.HnswConfigDiff hnsw = config.getHnswConfig();
+        if (hnsw.getM() != hnswM || hnsw.getEfConstruct() != hnswEfConstruct || hnsw.getOnDisk() != hnswOnDisk) {
+            update.setHnswConfig(hnswConfig());
+            changed = true;
+        }
+        if (config.getParams().getVectorsConfig().getParams().getOnDisk() != vectorsOnDisk) {
+            update.setVectorsConfig(Collections.VectorsConfigDiff.newBuilder()
+                    .setParams(Collections.VectorParamsDiff.newBuilder().setOnDisk(vectorsOnDisk)));
+            changed = true;
+        }
+        if (config.getParams().getOnDiskPayload() != payloadOnDisk) {
+            update.setParams(Collections.CollectionParamsDiff.newBuilder().setOnDiskPayload(payloadOnDisk));
+            changed = true;
+        }
+        Collections.ScalarQuantization scalar = config.getQuantizationConfig().getScalar();
+        if (quantizationEnabled && !(config.getQuantizationConfig().hasScalar()
+                && scalar.getType() == Collections.QuantizationType.Int8
+                && scalar.getQuantile() == quantizationQuantile
+                && scalar.getAlwaysRam() == quantizationAlwaysRam)) {
+            update.setQuantizationConfig(Collections.QuantizationConfigDiff.newBuilder().setScalar(scalarQuantization()));
+            changed = true;
+        } else if (!quantizationEnabled && config.hasQuantizationConfig()) {
+            update.setQuantizationConfig(Collections.QuantizationConfigDiff.newBuilder()
+                    .setDisabled(Collections.Disabled.getDefaultInstance()));
+            changed = true;
+        }
+        return changed ? Optional.of(update.build()) : Optional.empty();
+    }
+
+    /**
+     * @param collectionInfo the existing collection, or null if it was just created
+     * @return the configured payload index fields the collection has no index on
+     */
+    List<String> missingPayloadIndexes(Collections.CollectionInfo collectionInfo) {
+        return payloadIndexes.stream()
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .filter(field -> collectionInfo == null || !collectionInfo.getPayloadSchemaMap().containsKey(field))
+                .toList();
+    }
+
+    private Collections.HnswConfigDiff hnswConfig() {
+        return Collections.HnswConfigDiff.newBuilder()
+                .setM(hnswM)
+                .setEfConstruct(hnswEfConstruct)
+                .setOnDisk(hnswOnDisk)
+                .build();
+    }
+
+    private Collections.ScalarQuantization scalarQuantization() {
+        return Collections.ScalarQuantization.newBuilder()
+                .setType(Collections.QuantizationType.Int8)
+                .setQuantile(quantizationQuantile)
+                .setAlwaysRam(quantizationAlwaysRam)
+                .build();
+    }
+
+    private <T> T await(ListenableFuture<T> future, String action) {
+        try {
+            return future.get(upsertTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while trying to " + action, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to " + action, e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RuntimeException("Timed out trying to " + action, e);
+        }
     }
 }
@@ -123,11 +123,7 @@ public class AgentController {
                 request.getSessionId(), request.getMessage().length());
 
         try {
-            // Convert String sessionId to Long for persistent memory store
-            Long memoryId = sessionIdToLong(request.getSessionId());
-            log.debug("Converted sessionId '{}' to memoryId: {}", request.getSessionId(), memoryId);
-
-            Result<String> result = customerSupportAgent.answer(memoryId, request.getMessage());
+            Result<String> result = customerSupportAgent.answer(request.getSessionId(), request.getMessage());
             long duration = System.currentTimeMillis() - startTime;
             metricsService.recordSuccess("support", duration);
             return ResponseEntity.ok(ChatResponse.of(result.content(), request.getSessionId()));
@@ -138,18 +134,6 @@ public class AgentController {
         }
     }
 
-    /**
-     * Converts a String sessionId to a Long for use with persistent memory store.
-     * Uses hashCode to ensure consistent conversion for the same sessionId.
-     *
-     * @param sessionId the session identifier string
-     * @return a Long representation of the sessionId
-     */
-    private Long sessionIdToLong(String sessionId) {
-        // Use hashCode and convert to positive long to ensure consistency
-        return Math.abs((long) sessionId.hashCode());
-    }
-
     /**
      * RAG (Retrieval-Augmented Generation) endpoint for document-based queries.
      * Answers questions using the embedded story documents.
@@ -0,0 +1,175 @@
+package com.cardconnect.langchain4j_spring.controller;
+
+import com.cardconnect.langchain4j_spring.assistant.CustomerSupportAgent;
+import com.cardconnect.langchain4j_spring.assistant.RAGAgent;
+import com.cardconnect.langchain4j_spring.assistant.RouterAgent;
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.dto.ChatRequest;
+import com.cardconnect.langchain4j_spring.dto.ChatResponse;
+import com.cardconnect.langchain4j_spring.observability.AgentMetricsService;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import dev.langchain4j.service.TokenStream;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Server-sent event variants of the conversational agent endpoints.
+ *
+ * <p>The request thread only starts the model stream and returns; tokens are pushed to the client
+ * from the model's streaming thread as soon as they arrive. Each stream emits {@code thinking} and
+ * {@code token} events with the raw text, followed by a single {@code done} event carrying the
+ * complete {@link ChatResponse}, or an {@code error} event. If the client goes away or the stream
+ * times out, the upstream generation is cancelled. Each stream is recorded once, as completed,
+ * failed or timed out, whichever comes first.
+ */
+@RestController
+@RequestMapping("/api/v1/agent")
+@Slf4j
+@Validated
+@RequiredArgsConstructor
+public class StreamingAgentController {
+
+    private final CustomerSupportAgent customerSupportAgent;
+    private final RouterAgent routerAgent;
+    private final RAGAgent ragAgent;
+    private final AgentMetricsService metricsService;
+    private final LangChain4jProperties properties;
+
+    /**
+     * Streaming variant of the customer support endpoint.
+     *
+     * @param request the chat request with session ID and message
+     * @return event stream of response tokens
+     */
+    @PostMapping(path = "/support/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Observed(name = "agent.support.stream", contextualName = "support-agent-stream-request")
+    public ResponseEntity<SseEmitter> customerSupportAgentStream(@Valid @RequestBody ChatRequest request) {
+        log.info("Customer support stream request - Session: {}, Message length: {}",
+                request.getSessionId(), request.getMessage().length());
+        return stream("support", request.getSessionId(),
+                () -> customerSupportAgent.answerStream(request.getSessionId(), request.getMessage()));
+    }
+
+    /**
+     * Streaming variant of the router endpoint.
+     *
+     * @param request the chat request with session ID and message
+     * @return event stream of response tokens
+     */
+    @PostMapping(path = "/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Observed(name = "agent.router.stream", contextualName = "router-agent-stream-request")
+    public ResponseEntity<SseEmitter> askStream(@Valid @RequestBody ChatRequest request) {
+        log.info("Router agent stream request - Session: {}, Message length: {}",
+                request.getSessionId(), request.getMessage().length());
+        return stream("router", request.getSessionId(),
+                () -> routerAgent.askToExpertStream(request.getSessionId(), request.getMessage()));
+    }
+
+    /**
+     * Streaming variant of the RAG endpoint.
+     *
+     * @param message the user's question about the story
+     * @return event stream of response tokens
+     */
+    @PostMapping(path = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Observed(name = "agent.rag.stream", contextualName = "rag-agent-stream-request")
+    public ResponseEntity<SseEmitter> chatStream(@RequestParam @NotBlank String message) {
+        log.info("RAG agent stream request - Message length: {}", message.length());
+        return stream("rag", null, () -> ragAgent.retrieveStream(message));
+    }
+
+    private ResponseEntity<SseEmitter> stream(String agentType, String sessionId, Supplier<TokenStream> tokenStream) {
+        SseEmitter emitter = new SseEmitter(properties.getStreaming().getTimeout().toMillis());
+        AgentMetricsService.StreamRecording recording = metricsService.startStream(agentType);
+        AtomicBoolean finished = new AtomicBoolean();
+        // Only known once the first token arrived; a timeout before that cancels on the first token
+        AtomicReference<StreamingHandle> streamingHandle = new AtomicReference<>();
+        emitter.onTimeout(() -> {
+            if (finished.compareAndSet(false, true)) {
+                log.warn("{} agent stream timed out, cancelling generation", agentType);
+                metricsService.recordFailure(agentType, "StreamTimeout");
+                StreamingHandle handle = streamingHandle.get();
+                if (handle != null) {
+                    handle.cancel();
+                }
+            }
+            emitter.complete();
+        });
+
+        try {
+            tokenStream.get()
+                    .onPartialThinking(thinking -> send(emitter, "thinking", thinking.text()))
+                    .onPartialResponseWithContext((partial, context) -> {
+                        streamingHandle.set(context.streamingHandle());
+                        if (finished.get()) {
+                            context.streamingHandle().cancel();
+                            return;
+                        }
+                        recording.recordToken();
+                        if (!send(emitter, "token", partial.text())) {
+                            log.debug("{} agent stream client disconnected, cancelling generation", agentType);
+                            context.streamingHandle().cancel();
+                        }
+                    })
+                    .onCompleteResponse(response -> {
+                        if (finished.compareAndSet(false, true)) {
+                            recording.recordCompletion();
+                            send(emitter, "done", ChatResponse.of(response.aiMessage().text(), sessionId));
+                            emitter.complete();
+                        }
+                    })
+                    .onError(error -> {
+                        if (finished.compareAndSet(false, true)) {
+                            log.error("{} agent stream failed", agentType, error);
+                            recording.recordError(error);
+                            send(emitter, "error", error.getClass().getSimpleName());
+                            emitter.complete();
+                        }
+                    })
+                    .start();
+        } catch (Exception e) {
+            log.error("{} agent stream could not be started", agentType, e);
+            if (finished.compareAndSet(false, true)) {
+                recording.recordError(e);
+            }
+            throw e;
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header("X-Accel-Buffering", "no") // keep reverse proxies from buffering the stream
+                .body(emitter);
+    }
+
+    /**
+     * Sends one event and flushes it to the client.
+     *
+     * @return false if the client is gone
+     */
+    private static boolean send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+}
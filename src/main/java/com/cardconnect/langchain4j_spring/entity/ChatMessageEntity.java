@@ -9,7 +9,8 @@ import lombok.Setter;
 /**
  * Stores chat conversation history in the database.
  * Each entity represents the complete chat history for a session (identified by memoryId).
- * The content is stored as a JSON string containing all messages.
+ * New content is stored in {@code contentBytes}, encoded by the configured chat message codec;
+ * {@code content} only holds the JSON of sessions written before codecs were introduced.
  */
 @Entity
 @Table(name = "chat_message_entity")
@@ -23,14 +24,19 @@ public class ChatMessageEntity {
     @Column(name = "memory_id")
     private Long memoryId;
 
-    @Column(columnDefinition = "LONGVARCHAR", nullable = false)
+    @Column(columnDefinition = "LONGVARCHAR")
     private String content;
 
+    @Lob
+    @Column(name = "content_bytes")
+    private byte[] contentBytes;
+
     @Override
     public String toString() {
         return "ChatMessageEntity{" +
                 "memoryId=" + memoryId +
                 ", contentLength=" + (content != null ? content.length() : 0) +
+                ", contentBytes=" + (contentBytes != null ? contentBytes.length : 0) +
                 '}';
     }
 }
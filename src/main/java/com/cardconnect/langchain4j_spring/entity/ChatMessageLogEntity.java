@@ -0,0 +1,66 @@
+package com.cardconnect.langchain4j_spring.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Stores a single chat message of a session (identified by memoryId).
+ * Messages of a session are ordered by their sequence number; {@code payloadBytes} holds the message
+ * encoded by the configured chat message codec, {@code payload} the JSON of rows written before codecs
+ * were introduced.
+ *
+ * <p>Rows are only ever inserted or deleted, never updated, so the entity always reports itself
+ * as new. This makes {@code save()} issue a plain INSERT instead of a SELECT followed by a merge.
+ */
+@Entity
+@Table(name = "chat_message_log")
+@IdClass(ChatMessageLogId.class)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatMessageLogEntity implements Persistable<ChatMessageLogId> {
+
+    @Id
+    @Column(name = "memory_id")
+    private Long memoryId;
+
+    @Id
+    @Column(name = "seq")
+    private Long seq;
+
+    @Column(name = "role", length = 32, nullable = false)
+    private String role;
+
+    @Column(name = "payload", columnDefinition = "LONGVARCHAR")
+    private String payload;
+
+    @Lob
+    @Column(name = "payload_bytes")
+    private byte[] payloadBytes;
+
+    @Override
+    public ChatMessageLogId getId() {
+        return new ChatMessageLogId(memoryId, seq);
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatMessageLogEntity{" +
+                "memoryId=" + memoryId +
+                ", seq=" + seq +
+                ", role=" + role +
+                ", payloadLength=" + (payload != null ? payload.length() : 0) +
+                ", payloadBytes=" + (payloadBytes != null ? payloadBytes.length : 0) +
+                '}';
+    }
+}
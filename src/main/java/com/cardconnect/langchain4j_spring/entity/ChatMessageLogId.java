@@ -0,0 +1,19 @@
+package com.cardconnect.langchain4j_spring.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Composite primary key of {@link ChatMessageLogEntity}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatMessageLogId implements Serializable {
+
+    private Long memoryId;
+    private Long seq;
+}
@@ -0,0 +1,48 @@
+package com.cardconnect.langchain4j_spring.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Claims a chat memory key for one external session id.
+ *
+ * <p>Rows are only ever inserted, so the entity always reports itself as new and {@code save()}
+ * issues a plain INSERT. A concurrent claim of the same key fails on the primary key.
+ */
+@Entity
+@Table(name = "chat_session_key")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatSessionKeyEntity implements Persistable<Long> {
+
+    @Id
+    @Column(name = "session_key")
+    private Long sessionKey;
+
+    @Column(name = "session_id", nullable = false, unique = true)
+    private String sessionId;
+
+    @Override
+    public Long getId() {
+        return sessionKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatSessionKeyEntity{" +
+                "sessionKey=" + sessionKey +
+                ", sessionId=" + sessionId +
+                '}';
+    }
+}
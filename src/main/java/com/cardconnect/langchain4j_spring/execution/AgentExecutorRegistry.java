@@ -0,0 +1,185 @@
+package com.cardconnect.langchain4j_spring.execution;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskDecorator;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named, bounded executors for agent work that runs off the request thread.
+ *
+ * <p>Every executor is a {@link ThreadPoolExecutor} with a bounded queue and a configured rejection
+ * policy, so a burst of parallel workflows or tool calls cannot create unbounded threads or queue
+ * unbounded work. A pool with a queue runs up to its core size of tasks at once, since a
+ * {@link ThreadPoolExecutor} only adds threads above the core size once the queue is full; such pools
+ * are rejected unless core and max size are equal. With virtual threads the executors start a
+ * virtual thread per running task and the pool size only limits concurrency.
+ *
+ * <p>Each executor publishes the Micrometer {@code executor.*} meters tagged with its name, plus
+ * {@code executor.rejected} for tasks that hit the rejection policy. All executors are shut down on
+ * {@link #close()}, waiting up to the configured timeout for running tasks.
+ *
+ * <p>Tasks are wrapped by an optional {@link TaskDecorator} when submitted, e.g. to carry the
+ * submitting thread's observation and MDC over to the executor thread.
+ */
+@Slf4j
+public class AgentExecutorRegistry implements AutoCloseable {
+
+    /**
+     * Executor for parallel and planner agent workflows.
+     */
+    public static final String WORKFLOW = "workflow";
+
+    /**
+     * Executor for concurrent tool calls.
+     */
+    public static final String TOOLS = "tools";
+
+    /**
+     * Executor for keyword searches running next to vector searches.
+     */
+    public static final String RETRIEVAL = "retrieval";
+
+    /**
+     * Executor for content retrievers queried in parallel by the RAG pipeline. Kept apart from
+     * {@link #RETRIEVAL}, so a routed retriever never waits for a keyword search queued behind it.
+     */
+    public static final String ROUTING = "routing";
+
+    private final Map<String, ThreadPoolExecutor> executors = new LinkedHashMap<>();
+    private final Duration shutdownTimeout;
+
+    public AgentExecutorRegistry(LangChain4jProperties.Execution config, boolean virtualThreads,
+                                 MeterRegistry meterRegistry) {
+        this(config, virtualThreads, meterRegistry, task -> task);
+    }
+
+    public AgentExecutorRegistry(LangChain4jProperties.Execution config, boolean virtualThreads,
+                                 MeterRegistry meterRegistry, TaskDecorator taskDecorator) {
+        this.shutdownTimeout = config.getShutdownTimeout();
+        config.getPools().forEach((name, pool) ->
+                executors.put(name, create(name, pool, virtualThreads, meterRegistry, taskDecorator)));
+        log.info("Agent executors: {} - virtual threads: {}", executors.keySet(), virtualThreads);
+    }
+
+    /**
+     * Returns the executor with the given name.
+     *
+     * @throws IllegalArgumentException if no executor with this name is configured
+     */
+    public ExecutorService get(String name) {
+        ThreadPoolExecutor executor = executors.get(name);
+        if (executor == null) {
+            throw new IllegalArgumentException("Unknown agent executor: " + name
+                    + " (configured: " + executors.keySet() + ")");
+        }
+        return executor;
+    }
+
+    private static ThreadPoolExecutor create(String name, LangChain4jProperties.ExecutorPool pool,
+                                             boolean virtualThreads, MeterRegistry meterRegistry,
+                                             TaskDecorator taskDecorator) {
+        if (pool.getMaxSize() < pool.getCoreSize()) {
+            throw new IllegalArgumentException("Agent executor " + name + ": maxSize " + pool.getMaxSize()
+                    + " is less than coreSize " + pool.getCoreSize());
+        }
+        // A ThreadPoolExecutor only starts threads above the core size once its queue is full
+        if (pool.getQueueCapacity() > 0 && pool.getMaxSize() > pool.getCoreSize()) {
+            throw new IllegalArgumentException("Agent executor " + name + ": maxSize " + pool.getMaxSize()
+                    + " is never reached with coreSize " + pool.getCoreSize() + " and queueCapacity "
+                    + pool.getQueueCapacity() + "; set coreSize to maxSize");
+        }
+
+        // Virtual threads are cheap to create, so keep none around and let the pool size limit concurrency
+        int coreSize = virtualThreads ? pool.getMaxSize() : pool.getCoreSize();
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("agent-" + name + "-vt-", 0).factory()
+                : Thread.ofPlatform().name("agent-" + name + "-", 0).daemon(true).factory();
+        BlockingQueue<Runnable> queue = pool.getQueueCapacity() == 0
+                ? new SynchronousQueue<>()
+                : new ArrayBlockingQueue<>(pool.getQueueCapacity());
+
+        Counter rejected = Counter.builder("executor.rejected")
+                .description("Tasks rejected by a saturated agent executor")
+                .tag("name", name)
+                .register(meterRegistry);
+
+        ThreadPoolExecutor executor = new DecoratingThreadPoolExecutor(coreSize, pool.getMaxSize(),
+                pool.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS, queue, threadFactory,
+                new CountingRejectionHandler(name, rejectionHandler(pool.getRejectionPolicy()), rejected),
+                taskDecorator);
+        executor.allowCoreThreadTimeOut(true);
+
+        new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    private static RejectedExecutionHandler rejectionHandler(LangChain4jProperties.RejectionPolicy policy) {
+        return switch (policy) {
+            case ABORT -> new ThreadPoolExecutor.AbortPolicy();
+            case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+        };
+    }
+
+    @Override
+    public void close() {
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        executors.forEach((name, executor) -> {
+            try {
+                if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    log.warn("Agent executor {} did not terminate within {}, interrupting {} running tasks",
+                            name, shutdownTimeout, executor.getActiveCount());
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static final class DecoratingThreadPoolExecutor extends ThreadPoolExecutor {
+
+        private final TaskDecorator taskDecorator;
+
+        private DecoratingThreadPoolExecutor(int coreSize, int maxSize, long keepAlive, TimeUnit unit,
+                                             BlockingQueue<Runnable> queue, ThreadFactory threadFactory,
+                                             RejectedExecutionHandler rejectionHandler, TaskDecorator taskDecorator) {
+            super(coreSize, maxSize, keepAlive, unit, queue, threadFactory, rejectionHandler);
+            this.taskDecorator = taskDecorator;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            super.execute(taskDecorator.decorate(command));
+        }
+    }
+
+    private record CountingRejectionHandler(String name, RejectedExecutionHandler delegate, Counter rejected)
+            implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            rejected.increment();
+            log.debug("Agent executor {} saturated - active: {}, queued: {}",
+                    name, executor.getActiveCount(), executor.getQueue().size());
+            delegate.rejectedExecution(task, executor);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.cardconnect.langchain4j_spring.execution;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.dto.RequestCategory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap guess of the category of a request before the model classified it.
+ *
+ * <p>Requests containing configured keywords are guessed by keyword hits: a category's probability is
+ * its share of all hits. Requests without any are guessed by the categories the most recent requests
+ * were classified as. {@link RequestCategory#UNKNOWN} is never guessed, it has no expert to start.
+ */
+public class CategoryPrior {
+
+    private static final Pattern WORD = Pattern.compile("\\p{L}+");
+
+    private final Map<RequestCategory, List<String>> keywords = new EnumMap<>(RequestCategory.class);
+    private final int historySize;
+    private final Deque<RequestCategory> history = new ArrayDeque<>();
+    private final Map<RequestCategory, Integer> counts = new EnumMap<>(RequestCategory.class);
+
+    public CategoryPrior(LangChain4jProperties.Speculation config) {
+        config.getKeywords().forEach((category, words) -> keywords.put(
+                RequestCategory.valueOf(category.toUpperCase(Locale.ROOT)),
+                words.stream().map(word -> word.toLowerCase(Locale.ROOT)).toList()));
+        this.historySize = config.getHistorySize();
+    }
+
+    /**
+     * Categories the request may belong to, most likely first.
+     */
+    public List<Guess> guess(String request) {
+        Map<RequestCategory, Integer> hits = keywordHits(request);
+        int total = hits.values().stream().mapToInt(Integer::intValue).sum();
+        if (total == 0) {
+            synchronized (this) {
+                hits = new EnumMap<>(counts);
+                total = history.size();
+            }
+        }
+        List<Guess> guesses = new ArrayList<>();
+        for (Map.Entry<RequestCategory, Integer> entry : hits.entrySet()) {
+            if (entry.getKey() != RequestCategory.UNKNOWN && entry.getValue() > 0) {
+                guesses.add(new Guess(entry.getKey(), (double) entry.getValue() / total));
+            }
+        }
+        guesses.sort(Comparator.comparingDouble(Guess::probability).reversed());
+        return guesses;
+    }
+
+    /**
+     * Remembers the category a request was classified as.
+     */
+    public synchronized void record(RequestCategory category) {
+        history.addLast(category);
+        counts.merge(category, 1, Integer::sum);
+        if (history.size() > historySize) {
+            counts.merge(history.removeFirst(), -1, Integer::sum);
+        }
+    }
+
+    private Map<RequestCategory, Integer> keywordHits(String request) {
+        Map<RequestCategory, Integer> hits = new EnumMap<>(RequestCategory.class);
+        Matcher matcher = WORD.matcher(request.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            String word = matcher.group();
+            keywords.forEach((category, words) -> {
+                if (words.stream().anyMatch(word::startsWith)) {
+                    hits.merge(category, 1, Integer::sum);
+                }
+            });
+        }
+        return hits;
+    }
+
+    public record Guess(RequestCategory category, double probability) {
+    }
+}
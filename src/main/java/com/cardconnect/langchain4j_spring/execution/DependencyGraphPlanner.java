@@ -0,0 +1,143 @@
+package com.cardconnect.langchain4j_spring.execution;
+
+import dev.langchain4j.agentic.AgenticServices;
+import dev.langchain4j.agentic.UntypedAgent;
+import dev.langchain4j.agentic.planner.AgentArgument;
+import dev.langchain4j.agentic.planner.AgentInstance;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Plans a workflow from the data dependencies of its sub-agents instead of one agent at a time.
+ *
+ * <p>Every sub-agent reads the {@code @V} arguments of its agent method from the agentic scope and
+ * writes its output key to it, so an agent depends on the agents producing its arguments. Only the
+ * agents the goal output key depends on are kept, and each of them is placed in the first wave after
+ * all of its producers. Waves run in order, and the agents of one wave run in parallel on the given
+ * bounded executor. A wave only starts once every agent of the previous wave has written its output,
+ * so each agent reads the outputs it depends on.
+ *
+ * <p>The plan is computed once when the workflow is built. Arguments no agent produces are inputs of
+ * the workflow invocation, e.g. {@code prompt} of {@code /write}. Cycles, two agents writing the same
+ * key and goals no agent produces are rejected with an {@link IllegalArgumentException}.
+ *
+ * <p>The agentic planner loop is not used for this: it hands the next action of each finished agent
+ * to the loop without synchronization, so actions of agents finishing at the same time can be lost.
+ */
+@Slf4j
+public class DependencyGraphPlanner {
+
+    private final Executor executor;
+
+    public DependencyGraphPlanner(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Builds the workflow producing {@code goal} from the given agents.
+     *
+     * @param subAgents agents built with {@link AgenticServices#agentBuilder(Class)}
+     * @return agent returning the value of {@code goal} of its agentic scope
+     */
+    public UntypedAgent build(String goal, Object... subAgents) {
+        List<AgentInstance> agents = new ArrayList<>(subAgents.length);
+        Map<AgentInstance, Object> agentObjects = new HashMap<>();
+        for (Object subAgent : subAgents) {
+            if (!(subAgent instanceof AgentInstance agent)) {
+                throw new IllegalArgumentException("Not an agent: " + subAgent);
+            }
+            agents.add(agent);
+            agentObjects.put(agent, subAgent);
+        }
+
+        List<List<AgentInstance>> waves = waves(agents, goal);
+        log.info("Planned {} as {}", goal, waves.stream()
+                .map(wave -> wave.stream().map(AgentInstance::name).toList())
+                .toList());
+
+        List<Object> steps = new ArrayList<>(waves.size());
+        for (List<AgentInstance> wave : waves) {
+            if (wave.size() == 1) {
+                steps.add(agentObjects.get(wave.get(0)));
+            } else {
+                steps.add(AgenticServices.parallelBuilder()
+                        .subAgents(wave.stream().map(agentObjects::get).toArray())
+                        .executor(executor)
+                        .build());
+            }
+        }
+        return AgenticServices.sequenceBuilder()
+                .subAgents(steps.toArray())
+                .outputKey(goal)
+                .build();
+    }
+
+    /**
+     * Agents needed for {@code goal}, grouped into waves of agents that only depend on agents of
+     * earlier waves. Agents keep their given order within a wave.
+     */
+    static List<List<AgentInstance>> waves(List<AgentInstance> agents, String goal) {
+        Map<String, AgentInstance> producers = new HashMap<>();
+        for (AgentInstance agent : agents) {
+            String outputKey = agent.outputKey();
+            if (outputKey == null || outputKey.isBlank()) {
+                throw new IllegalArgumentException("Agent " + agent.name() + " has no output key");
+            }
+            AgentInstance previous = producers.putIfAbsent(outputKey, agent);
+            if (previous != null) {
+                throw new IllegalArgumentException("Agents " + previous.name() + " and " + agent.name()
+                        + " both write " + outputKey);
+            }
+        }
+        AgentInstance goalProducer = producers.get(goal);
+        if (goalProducer == null) {
+            throw new IllegalArgumentException("No agent writes " + goal);
+        }
+
+        Map<AgentInstance, Integer> waveIndexes = new LinkedHashMap<>();
+        waveIndex(goalProducer, producers, waveIndexes, new LinkedHashSet<>());
+
+        List<List<AgentInstance>> waves = new ArrayList<>();
+        for (AgentInstance agent : agents) {
+            Integer index = waveIndexes.get(agent);
+            if (index == null) {
+                continue;
+            }
+            while (waves.size() <= index) {
+                waves.add(new ArrayList<>());
+            }
+            waves.get(index).add(agent);
+        }
+        return waves.stream().map(List::copyOf).toList();
+    }
+
+    private static int waveIndex(AgentInstance agent, Map<String, AgentInstance> producers,
+                                 Map<AgentInstance, Integer> waveIndexes, Set<AgentInstance> visiting) {
+        Integer known = waveIndexes.get(agent);
+        if (known != null) {
+            return known;
+        }
+        if (!visiting.add(agent)) {
+            throw new IllegalArgumentException("Cyclic dependency between agents "
+                    + visiting.stream().map(AgentInstance::name).toList());
+        }
+        int index = 0;
+        for (AgentArgument argument : agent.arguments()) {
+            AgentInstance producer = producers.get(argument.name());
+            if (producer != null) {
+                index = Math.max(index, waveIndex(producer, producers, waveIndexes, visiting) + 1);
+            }
+        }
+        visiting.remove(agent);
+        waveIndexes.put(agent, index);
+        return index;
+    }
+}
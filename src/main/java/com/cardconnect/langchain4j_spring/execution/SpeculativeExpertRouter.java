@@ -0,0 +1,230 @@
+package com.cardconnect.langchain4j_spring.execution;
+
+import com.cardconnect.langchain4j_spring.agentic.agents.conditional.CategoryRouter;
+import com.cardconnect.langchain4j_spring.agentic.agents.conditional.ExpertRouterAgent;
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.dto.RequestCategory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Expert router starting the likely experts while the request is still being classified, instead of
+ * paying the classification and the expert call one after the other.
+ *
+ * <p>The {@link CategoryPrior} guesses the category; experts of the guesses reaching the configured
+ * confidence, at most {@code maxExperts}, are started on the given executor. Once the
+ * {@link CategoryRouter} answered, the expert of its category is kept and the other speculative calls
+ * are cancelled. Without a matching speculative call the expert is called as usual. Speculative calls
+ * are capped by a budget per window; with the budget spent, requests are routed without speculation.
+ *
+ * <p>Speculative calls never run on the calling thread: a saturated executor whose rejection policy
+ * runs the task on the caller, as the agent executors do, would otherwise call the expert before the
+ * request is even classified. Such a call is rejected instead and the request routed without it.
+ *
+ * <p>Meters:
+ * <ul>
+ *   <li>{@code agent.speculation.requests} - requests by {@code outcome}: {@code hit}, {@code miss},
+ *       {@code none} (no confident guess) or {@code skipped} (budget spent, executor saturated)</li>
+ *   <li>{@code agent.speculation.hit.ratio} - hits per request with speculative calls</li>
+ *   <li>{@code agent.speculation.calls} - speculative expert calls by {@code result}: {@code used} or
+ *       {@code cancelled}</li>
+ *   <li>{@code agent.speculation.saved} - latency saved by hits compared to classifying first</li>
+ * </ul>
+ */
+@Slf4j
+public class SpeculativeExpertRouter implements ExpertRouterAgent {
+
+    private final CategoryRouter router;
+    private final Map<RequestCategory, Function<String, String>> experts;
+    private final ExecutorService executor;
+    private final LangChain4jProperties.Speculation config;
+    private final CategoryPrior prior;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter none;
+    private final Counter skipped;
+    private final Counter used;
+    private final Counter cancelled;
+    private final Timer saved;
+
+    private long windowStart = System.nanoTime();
+    private int spent;
+
+    /**
+     * @param experts expert per category; requests of other categories get no answer, as with the
+     *                conditional workflow
+     */
+    public SpeculativeExpertRouter(CategoryRouter router, Map<RequestCategory, Function<String, String>> experts,
+                                   ExecutorService executor, LangChain4jProperties.Speculation config,
+                                   MeterRegistry meterRegistry) {
+        this.router = router;
+        this.experts = Map.copyOf(experts);
+        this.executor = executor;
+        this.config = config;
+        this.prior = new CategoryPrior(config);
+
+        this.hits = requests("hit", meterRegistry);
+        this.misses = requests("miss", meterRegistry);
+        this.none = requests("none", meterRegistry);
+        this.skipped = requests("skipped", meterRegistry);
+        this.used = calls("used", meterRegistry);
+        this.cancelled = calls("cancelled", meterRegistry);
+        this.saved = Timer.builder("agent.speculation.saved")
+                .description("Latency saved by speculative expert calls matching the classification")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("agent.speculation.hit.ratio", this, SpeculativeExpertRouter::hitRatio)
+                .description("Requests whose speculative expert call matched the classification, per request "
+                        + "with speculative calls")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String ask(String request) {
+        long start = System.nanoTime();
+        Map<RequestCategory, Speculation> speculations = speculate(request);
+
+        RequestCategory category;
+        try {
+            category = router.classify(request);
+        } catch (RuntimeException e) {
+            speculations.values().forEach(this::cancel);
+            throw e;
+        }
+        long classifyNanos = System.nanoTime() - start;
+        prior.record(category);
+
+        boolean speculated = !speculations.isEmpty();
+        Speculation winner = speculations.remove(category);
+        speculations.values().forEach(this::cancel);
+        if (winner != null) {
+            hits.increment();
+            used.increment();
+            String response = winner.join();
+            long savedNanos = classifyNanos + winner.durationNanos.get() - (System.nanoTime() - start);
+            saved.record(Duration.ofNanos(Math.max(savedNanos, 0)));
+            return response;
+        }
+        if (speculated) {
+            misses.increment();
+        }
+        Function<String, String> expert = experts.get(category);
+        return expert != null ? expert.apply(request) : null;
+    }
+
+    private Map<RequestCategory, Speculation> speculate(String request) {
+        Map<RequestCategory, Speculation> speculations = new EnumMap<>(RequestCategory.class);
+        List<CategoryPrior.Guess> guesses = prior.guess(request).stream()
+                .filter(guess -> guess.probability() >= config.getMinConfidence())
+                .filter(guess -> experts.containsKey(guess.category()))
+                .limit(config.getMaxExperts())
+                .toList();
+        if (guesses.isEmpty()) {
+            none.increment();
+            return speculations;
+        }
+        for (CategoryPrior.Guess guess : guesses) {
+            if (!spend()) {
+                break;
+            }
+            Function<String, String> expert = experts.get(guess.category());
+            AtomicLong durationNanos = new AtomicLong();
+            FutureTask<String> task = new FutureTask<>(() -> {
+                long start = System.nanoTime();
+                try {
+                    return expert.apply(request);
+                } finally {
+                    durationNanos.set(System.nanoTime() - start);
+                }
+            });
+            Thread caller = Thread.currentThread();
+            try {
+                executor.execute(() -> {
+                    if (Thread.currentThread() == caller) {
+                        throw new RejectedExecutionException("Executor is saturated and runs tasks on the caller");
+                    }
+                    task.run();
+                });
+                speculations.put(guess.category(), new Speculation(task, durationNanos));
+            } catch (RejectedExecutionException e) {
+                log.debug("Speculative {} expert call rejected: {}", guess.category(), e.getMessage());
+                break;
+            }
+        }
+        if (speculations.isEmpty()) {
+            skipped.increment();
+        }
+        return speculations;
+    }
+
+    private synchronized boolean spend() {
+        long now = System.nanoTime();
+        if (now - windowStart >= config.getBudgetWindow().toNanos()) {
+            windowStart = now;
+            spent = 0;
+        }
+        if (spent >= config.getBudget()) {
+            return false;
+        }
+        spent++;
+        return true;
+    }
+
+    private void cancel(Speculation speculation) {
+        speculation.future.cancel(true);
+        cancelled.increment();
+    }
+
+    private double hitRatio() {
+        double speculated = hits.count() + misses.count();
+        return speculated > 0 ? hits.count() / speculated : 0;
+    }
+
+    private static Counter requests(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("agent.speculation.requests")
+                .description("Expert router requests by outcome of speculative expert calls")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Counter calls(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("agent.speculation.calls")
+                .description("Speculative expert calls by whether their answer was used")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Speculation(Future<String> future, AtomicLong durationNanos) {
+
+        String join() {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException("Expert failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new IllegalStateException("Interrupted while waiting for the expert", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.cardconnect.langchain4j_spring.memory;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind cache in front of a persistent ChatMemoryStore.
+ *
+ * <p>Hot sessions are kept in a bounded LRU map and served from memory. Updates only replace the
+ * cached window and mark the session dirty; dirty sessions are written to the delegate in batches
+ * by a background flush, either every {@code flushInterval} or as soon as {@code maxDirtyEntries}
+ * sessions are waiting. Only the latest window of a session is written, so several turns between
+ * two flushes are coalesced into one write.
+ *
+ * <p>Dirty sessions are never evicted. A session that fails to flush stays dirty and is retried by
+ * the next flush, up to {@code maxFlushAttempts} times; then its pending update is dropped, logged and
+ * counted, and the session is reloaded from the persistent store on its next read. On shutdown every
+ * dirty session is flushed before the store is released. The cache is local to this instance, so it is only safe when a session is
+ * served by a single application instance.
+ */
+@Slf4j
+public class CachingChatMemoryStore implements ChatMemoryStore, DisposableBean {
+
+    private final ChatMemoryStore delegate;
+    private final LangChain4jProperties.MemoryCache config;
+    private final long ttlNanos;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Object, Entry> dirty = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter flushFailureCounter;
+    private final Counter droppedCounter;
+    private final Timer flushTimer;
+
+    public CachingChatMemoryStore(ChatMemoryStore delegate,
+                                  LangChain4jProperties.MemoryCache config,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.config = config;
+        this.ttlNanos = config.getTtl().toNanos();
+
+        this.hitCounter = Counter.builder("chat.memory.cache.requests")
+                .tag("result", "hit")
+                .description("Chat memory reads served by the cache")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("chat.memory.cache.requests")
+                .tag("result", "miss")
+                .description("Chat memory reads served by the cache")
+                .register(meterRegistry);
+        this.flushFailureCounter = Counter.builder("chat.memory.cache.flush.failures")
+                .description("Sessions that could not be written to the persistent store")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("chat.memory.cache.dropped")
+                .description("Sessions whose pending update was dropped after too many failed flushes")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.memory.cache.flush")
+                .description("Latency of a write-behind flush batch")
+                .register(meterRegistry);
+
+        Gauge.builder("chat.memory.cache.hit.ratio", this, CachingChatMemoryStore::hitRatio)
+                .description("Ratio of chat memory reads served from the cache")
+                .register(meterRegistry);
+        Gauge.builder("chat.memory.cache.dirty", this, CachingChatMemoryStore::dirtyCount)
+                .description("Sessions waiting to be flushed to the persistent store")
+                .register(meterRegistry);
+        Gauge.builder("chat.memory.cache.size", this, CachingChatMemoryStore::size)
+                .description("Sessions held in the cache")
+                .register(meterRegistry);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = config.getFlushInterval().toMillis();
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+        log.info("Chat memory write-behind cache enabled - maxEntries: {}, ttl: {}, flushInterval: {}, maxDirtyEntries: {}",
+                config.getMaxEntries(), config.getTtl(), config.getFlushInterval(), config.getMaxDirtyEntries());
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        synchronized (lock) {
+            Entry entry = entries.get(memoryId);
+            if (entry != null && (entry.dirty || !entry.isExpired(System.nanoTime(), ttlNanos))) {
+                entry.touch();
+                hitCounter.increment();
+                return entry.messages;
+            }
+        }
+
+        missCounter.increment();
+        List<ChatMessage> messages = List.copyOf(delegate.getMessages(memoryId));
+
+        synchronized (lock) {
+            // A concurrent update wins over the value loaded from the database
+            Entry current = entries.get(memoryId);
+            if (current != null && current.dirty) {
+                return current.messages;
+            }
+            entries.put(memoryId, new Entry(messages, false, false));
+            evictIfNecessary();
+        }
+        return messages;
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        put(memoryId, new Entry(List.copyOf(messages), true, false));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        put(memoryId, new Entry(List.of(), true, true));
+    }
+
+    private void put(Object memoryId, Entry entry) {
+        int dirtyCount;
+        synchronized (lock) {
+            entries.put(memoryId, entry);
+            dirty.put(memoryId, entry);
+            dirtyCount = dirty.size();
+            evictIfNecessary();
+        }
+        if (dirtyCount >= config.getMaxDirtyEntries() && flushRequested.compareAndSet(false, true)) {
+            log.debug("Dirty backlog reached {} sessions, requesting early flush", dirtyCount);
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Evicts least recently used clean sessions until the cache fits its bound.
+     * Must be called while holding {@link #lock}.
+     */
+    private void evictIfNecessary() {
+        if (entries.size() <= config.getMaxEntries()) {
+            return;
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > config.getMaxEntries() && iterator.hasNext()) {
+            if (!iterator.next().dirty) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Writes all dirty sessions to the persistent store in batches of {@code flushBatchSize}.
+     * Sessions updated again while being written stay dirty and are picked up by the next flush.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+
+            List<Map.Entry<Object, Entry>> pending;
+            synchronized (lock) {
+                pending = new ArrayList<>(dirty.entrySet());
+                purgeExpired();
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            int batchSize = config.getFlushBatchSize();
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                List<Map.Entry<Object, Entry>> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+                flushTimer.record(() -> writeBatch(batch));
+            }
+            log.debug("Flushed {} chat memory sessions", pending.size());
+        }
+    }
+
+    private void writeBatch(List<Map.Entry<Object, Entry>> batch) {
+        for (Map.Entry<Object, Entry> pending : batch) {
+            Object memoryId = pending.getKey();
+            Entry entry = pending.getValue();
+            try {
+                if (entry.deleted) {
+                    delegate.deleteMessages(memoryId);
+                } else {
+                    delegate.updateMessages(memoryId, entry.messages);
+                }
+            } catch (Exception e) {
+                flushFailureCounter.increment();
+                log.error("Failed to flush chat memory for memory ID: {}", memoryId, e);
+                if (++entry.failedFlushes >= config.getMaxFlushAttempts()) {
+                    drop(memoryId, entry);
+                }
+                continue;
+            }
+
+            synchronized (lock) {
+                // Only clear the dirty flag if the session was not updated while it was written
+                if (dirty.get(memoryId) == entry) {
+                    dirty.remove(memoryId);
+                    if (entry.deleted) {
+                        entries.remove(memoryId);
+                    } else {
+                        entry.dirty = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives up on a session that failed {@code maxFlushAttempts} flushes. The session is removed from
+     * the cache, so it is not served with messages the persistent store does not have.
+     */
+    private void drop(Object memoryId, Entry entry) {
+        synchronized (lock) {
+            // A newer update of the session gets its own attempts
+            if (dirty.get(memoryId) != entry) {
+                return;
+            }
+            dirty.remove(memoryId);
+            entries.remove(memoryId);
+        }
+        droppedCounter.increment();
+        log.error("Dropped {} of chat memory ID: {} after {} failed flushes",
+                entry.deleted ? "deletion" : "window of " + entry.messages.size() + " messages",
+                memoryId, entry.failedFlushes);
+    }
+
+    /**
+     * Drops clean sessions that have not been accessed within the TTL.
+     * Must be called while holding {@link #lock}.
+     */
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> !entry.dirty && entry.isExpired(now, ttlNanos));
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Chat memory flush failed", e);
+        }
+    }
+
+    /**
+     * Flushes every dirty session before the application context closes.
+     * Runs after the web server has drained in-flight requests during graceful shutdown.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(config.getFlushInterval().toMillis() + 5_000, TimeUnit.MILLISECONDS);
+        log.info("Flushing {} dirty chat memory sessions before shutdown", dirtyCount());
+        flush();
+        if (dirtyCount() > 0) {
+            log.warn("{} chat memory sessions could not be flushed before shutdown", dirtyCount());
+        }
+    }
+
+    private double hitRatio() {
+        double hits = hitCounter.count();
+        double total = hits + missCounter.count();
+        return total == 0 ? 0.0 : hits / total;
+    }
+
+    private int dirtyCount() {
+        synchronized (lock) {
+            return dirty.size();
+        }
+    }
+
+    private int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    private static final class Entry {
+
+        private final List<ChatMessage> messages;
+        private final boolean deleted;
+        private volatile boolean dirty;
+        private volatile long lastAccess = System.nanoTime();
+        private int failedFlushes; // only accessed by the flush holding flushLock
+
+        private Entry(List<ChatMessage> messages, boolean dirty, boolean deleted) {
+            this.messages = messages;
+            this.dirty = dirty;
+            this.deleted = deleted;
+        }
+
+        private void touch() {
+            lastAccess = System.nanoTime();
+        }
+
+        private boolean isExpired(long now, long ttlNanos) {
+            return now - lastAccess > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.cardconnect.langchain4j_spring.memory;
+
+import com.cardconnect.langchain4j_spring.entity.ChatMessageLogEntity;
+import com.cardconnect.langchain4j_spring.memory.codec.ChatMessageCodecs;
+import com.cardconnect.langchain4j_spring.repository.ChatMessageLogRepository;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only implementation of ChatMemoryStore that stores one database row per chat message.
+ *
+ * <p>Instead of re-serializing and rewriting the whole message window on every turn, the incoming
+ * window is diffed against the persisted rows: messages that are still present are left untouched,
+ * evicted messages are deleted and only new messages are inserted. A typical turn therefore writes
+ * the new user and AI messages only, independent of the window size.
+ *
+ * <p>Each row holds one message encoded with the configured {@link ChatMessageCodecs codec}. Rows
+ * written by another codec, including the JSON payloads of earlier versions, are re-encoded the
+ * first time the session is read.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class MessageLogChatMemoryStore implements ChatMemoryStore {
+
+    private final ChatMessageLogRepository chatMessageLogRepository;
+    private final TransactionOperations transactionOperations;
+    private final ChatMessageCodecs codecs;
+    private final SessionKeyResolver sessionKeyResolver;
+
+    /**
+     * Retrieves chat messages for a given memory/session ID.
+     *
+     * @param memoryId the session identifier (Long, String or UUID)
+     * @return list of chat messages in conversation order, or empty list if none found
+     * @throws IllegalArgumentException if memoryId has an unsupported type
+     * @throws IllegalStateException if a stored message cannot be decoded
+     */
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        Long id = sessionKeyResolver.resolve(memoryId);
+        log.debug("Retrieving messages for memory ID: {}", id);
+
+        List<ChatMessageLogEntity> rows = chatMessageLogRepository.findByMemoryIdOrderBySeqAsc(id);
+        List<ChatMessage> messages = new ArrayList<>(rows.size());
+        int outdated = 0;
+        for (ChatMessageLogEntity row : rows) {
+            byte[] stored = storedBytes(row);
+            try {
+                messages.add(decodeSingle(stored));
+            } catch (Exception e) {
+                // Dropping the row would let the next update evict it, so fail the read instead
+                log.error("Failed to deserialize message {} for memory ID: {}", row.getSeq(), id, e);
+                throw new IllegalStateException("Failed to deserialize chat message " + row.getSeq()
+                        + " for memory ID " + id, e);
+            }
+            if (!codecs.isCurrent(stored)) {
+                outdated++;
+            }
+        }
+        if (outdated > 0) {
+            migrate(id, rows, messages, outdated);
+        }
+
+        log.debug("Retrieved {} messages for memory ID: {}", messages.size(), id);
+        return messages;
+    }
+
+    /**
+     * Stores the given message window for a memory/session ID.
+     * Only the difference to the persisted rows is written.
+     *
+     * @param memoryId the session identifier (Long, String or UUID)
+     * @param messages the current list of chat messages
+     * @throws IllegalArgumentException if memoryId has an unsupported type
+     */
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        Long id = sessionKeyResolver.resolve(memoryId);
+        log.debug("Updating {} messages for memory ID: {}", messages.size(), id);
+
+        try {
+            transactionOperations.executeWithoutResult(status -> applyDiff(id, messages));
+        } catch (Exception e) {
+            log.error("Failed to update messages for memory ID: {}", id, e);
+            throw new RuntimeException("Failed to persist chat messages", e);
+        }
+    }
+
+    /**
+     * Deletes all chat messages for a given memory/session ID.
+     *
+     * @param memoryId the session identifier (Long, String or UUID)
+     * @throws IllegalArgumentException if memoryId has an unsupported type
+     */
+    @Override
+    public void deleteMessages(Object memoryId) {
+        Long id = sessionKeyResolver.resolve(memoryId);
+        log.info("Deleting messages for memory ID: {}", id);
+        transactionOperations.executeWithoutResult(status -> chatMessageLogRepository.deleteByMemoryId(id));
+    }
+
+    /**
+     * Matches the incoming messages against the persisted rows as an ordered subsequence.
+     * Rows that are skipped while matching have been evicted from the window; once an incoming
+     * message has no persisted counterpart, it and every message after it are appended.
+     * Messages are compared by their encoded bytes, which are deterministic for a given codec.
+     */
+    private void applyDiff(Long id, List<ChatMessage> messages) {
+        List<ChatMessageLogEntity> persisted = chatMessageLogRepository.findByMemoryIdOrderBySeqAsc(id);
+
+        List<byte[]> payloads = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            payloads.add(codecs.encode(List.of(message)));
+        }
+        List<byte[]> persistedPayloads = new ArrayList<>(persisted.size());
+        for (ChatMessageLogEntity row : persisted) {
+            byte[] stored = storedBytes(row);
+            persistedPayloads.add(codecs.isCurrent(stored) ? stored : codecs.encode(List.of(decodeSingle(stored))));
+        }
+
+        List<Long> evicted = new ArrayList<>();
+        int next = 0;
+        int matched = 0;
+        for (; matched < payloads.size(); matched++) {
+            byte[] payload = payloads.get(matched);
+            int candidate = next;
+            while (candidate < persisted.size() && !Arrays.equals(persistedPayloads.get(candidate), payload)) {
+                candidate++;
+            }
+            if (candidate == persisted.size()) {
+                break;
+            }
+            for (int i = next; i < candidate; i++) {
+                evicted.add(persisted.get(i).getSeq());
+            }
+            next = candidate + 1;
+        }
+        for (int i = next; i < persisted.size(); i++) {
+            evicted.add(persisted.get(i).getSeq());
+        }
+
+        if (!evicted.isEmpty()) {
+            chatMessageLogRepository.deleteByMemoryIdAndSeqIn(id, evicted);
+        }
+
+        long seq = persisted.isEmpty() ? 0 : persisted.get(persisted.size() - 1).getSeq() + 1;
+        List<ChatMessageLogEntity> appended = new ArrayList<>(payloads.size() - matched);
+        for (int i = matched; i < payloads.size(); i++) {
+            appended.add(new ChatMessageLogEntity(id, seq++, messages.get(i).type().name(), null, payloads.get(i)));
+        }
+        if (!appended.isEmpty()) {
+            chatMessageLogRepository.saveAll(appended);
+        }
+
+        log.debug("Memory ID {}: kept {}, evicted {}, appended {} messages",
+                id, matched, evicted.size(), appended.size());
+    }
+
+    /**
+     * Re-encodes rows written by another codec. A failed migration is not fatal,
+     * the rows stay readable and are migrated by a later read.
+     */
+    private void migrate(Long id, List<ChatMessageLogEntity> rows, List<ChatMessage> messages, int outdated) {
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    if (!codecs.isCurrent(storedBytes(rows.get(i)))) {
+                        chatMessageLogRepository.updatePayloadBytes(id, rows.get(i).getSeq(),
+                                codecs.encode(List.of(messages.get(i))));
+                    }
+                }
+            });
+            log.debug("Migrated {} messages for memory ID {} to codec {}", outdated, id, codecs.writeCodec().name());
+        } catch (Exception e) {
+            log.warn("Failed to migrate messages for memory ID {} to codec {}", id, codecs.writeCodec().name(), e);
+        }
+    }
+
+    private ChatMessage decodeSingle(byte[] stored) {
+        List<ChatMessage> decoded = codecs.decode(stored);
+        if (decoded.size() != 1) {
+            throw new IllegalArgumentException("Expected a single message per row, got " + decoded.size());
+        }
+        return decoded.get(0);
+    }
+
+    private static byte[] storedBytes(ChatMessageLogEntity row) {
+        if (row.getPayloadBytes() != null) {
+            return row.getPayloadBytes();
+        }
+        return row.getPayload() != null ? row.getPayload().getBytes(StandardCharsets.UTF_8) : null;
+    }
+}
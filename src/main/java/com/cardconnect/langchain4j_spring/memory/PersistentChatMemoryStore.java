@@ -1,58 +1,63 @@
 package com.cardconnect.langchain4j_spring.memory;
 
 import com.cardconnect.langchain4j_spring.entity.ChatMessageEntity;
+import com.cardconnect.langchain4j_spring.memory.codec.ChatMessageCodecs;
 import com.cardconnect.langchain4j_spring.repository.ChatMessageRepository;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 
-import static dev.langchain4j.data.message.ChatMessageDeserializer.messagesFromJson;
-import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
-
 /**
  * Persistent implementation of ChatMemoryStore that stores chat history in a database.
  * This allows conversation context to persist across application restarts.
  *
- * <p>Messages are serialized to JSON and stored in the database, keyed by session/memory ID.
+ * <p>Messages are encoded with the configured {@link ChatMessageCodecs codec} and stored in the
+ * database, keyed by the session/memory ID as resolved by the {@link SessionKeyResolver}. Rows
+ * written by another codec, including the plain JSON of earlier versions, are re-encoded with the
+ * current codec the first time they are read.
  */
 @RequiredArgsConstructor
 @Slf4j
 public class PersistentChatMemoryStore implements ChatMemoryStore {
 
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageCodecs codecs;
+    private final SessionKeyResolver sessionKeyResolver;
 
     /**
      * Retrieves chat messages for a given memory/session ID.
      *
-     * @param memoryId the session identifier (must be a Long)
+     * @param memoryId the session identifier (Long, String or UUID)
      * @return list of chat messages, or empty list if none found
-     * @throws ClassCastException if memoryId is not a Long
+     * @throws IllegalArgumentException if memoryId has an unsupported type
+     * @throws IllegalStateException if the stored messages cannot be decoded
      */
     @Override
     public List<ChatMessage> getMessages(Object memoryId) {
-        if (!(memoryId instanceof Long)) {
-            log.error("Invalid memoryId type: {}. Expected Long, got {}",
-                    memoryId, memoryId.getClass().getSimpleName());
-            throw new IllegalArgumentException("memoryId must be of type Long");
-        }
-
-        Long id = (Long) memoryId;
+        Long id = sessionKeyResolver.resolve(memoryId);
         log.debug("Retrieving messages for memory ID: {}", id);
 
         Optional<ChatMessageEntity> entity = chatMessageRepository.findById(id);
         if (entity.isPresent()) {
+            byte[] stored = storedBytes(entity.get());
+            List<ChatMessage> messages;
             try {
-                List<ChatMessage> messages = messagesFromJson(entity.get().getContent());
-                log.debug("Retrieved {} messages for memory ID: {}", messages.size(), id);
-                return messages;
+                messages = codecs.decode(stored);
             } catch (Exception e) {
+                // Failing loudly keeps the next update from overwriting the unreadable history
                 log.error("Failed to deserialize messages for memory ID: {}", id, e);
-                return List.of();
+                throw new IllegalStateException("Failed to deserialize chat messages for memory ID " + id, e);
             }
+            if (!codecs.isCurrent(stored)) {
+                migrate(id, messages);
+            }
+            log.debug("Retrieved {} messages for memory ID: {}", messages.size(), id);
+            return messages;
         }
 
         log.debug("No messages found for memory ID: {}", id);
@@ -62,24 +67,17 @@ public class PersistentChatMemoryStore implements ChatMemoryStore {
     /**
      * Stores or updates chat messages for a given memory/session ID.
      *
-     * @param memoryId the session identifier (must be a Long)
+     * @param memoryId the session identifier (Long, String or UUID)
      * @param messages the list of chat messages to store
-     * @throws ClassCastException if memoryId is not a Long
+     * @throws IllegalArgumentException if memoryId has an unsupported type
      */
     @Override
     public void updateMessages(Object memoryId, List<ChatMessage> messages) {
-        if (!(memoryId instanceof Long)) {
-            log.error("Invalid memoryId type: {}. Expected Long, got {}",
-                    memoryId, memoryId.getClass().getSimpleName());
-            throw new IllegalArgumentException("memoryId must be of type Long");
-        }
-
-        Long id = (Long) memoryId;
+        Long id = sessionKeyResolver.resolve(memoryId);
         log.debug("Updating {} messages for memory ID: {}", messages.size(), id);
 
         try {
-            String json = messagesToJson(messages);
-            ChatMessageEntity entity = new ChatMessageEntity(id, json);
+            ChatMessageEntity entity = new ChatMessageEntity(id, null, codecs.encode(messages));
             chatMessageRepository.save(entity);
             log.debug("Successfully updated messages for memory ID: {}", id);
         } catch (Exception e) {
@@ -91,19 +89,33 @@ public class PersistentChatMemoryStore implements ChatMemoryStore {
     /**
      * Deletes all chat messages for a given memory/session ID.
      *
-     * @param memoryId the session identifier (must be a Long)
-     * @throws ClassCastException if memoryId is not a Long
+     * @param memoryId the session identifier (Long, String or UUID)
+     * @throws IllegalArgumentException if memoryId has an unsupported type
      */
     @Override
     public void deleteMessages(Object memoryId) {
-        if (!(memoryId instanceof Long)) {
-            log.error("Invalid memoryId type: {}. Expected Long, got {}",
-                    memoryId, memoryId.getClass().getSimpleName());
-            throw new IllegalArgumentException("memoryId must be of type Long");
-        }
-
-        Long id = (Long) memoryId;
+        Long id = sessionKeyResolver.resolve(memoryId);
         log.info("Deleting messages for memory ID: {}", id);
         chatMessageRepository.deleteById(id);
     }
-}
\ No newline at end of file
+
+    private static byte[] storedBytes(ChatMessageEntity entity) {
+        if (entity.getContentBytes() != null) {
+            return entity.getContentBytes();
+        }
+        return entity.getContent() != null ? entity.getContent().getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Rewrites a session with the current codec. A failed migration is not fatal,
+     * the row stays readable and is migrated by the next read or update.
+     */
+    private void migrate(Long id, List<ChatMessage> messages) {
+        try {
+            chatMessageRepository.save(new ChatMessageEntity(id, null, codecs.encode(messages)));
+            log.debug("Migrated {} messages for memory ID {} to codec {}", messages.size(), id, codecs.writeCodec().name());
+        } catch (Exception e) {
+            log.warn("Failed to migrate messages for memory ID {} to codec {}", id, codecs.writeCodec().name(), e);
+        }
+    }
+}
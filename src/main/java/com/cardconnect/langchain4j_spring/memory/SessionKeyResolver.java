@@ -0,0 +1,227 @@
+package com.cardconnect.langchain4j_spring.memory;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.entity.ChatSessionKeyEntity;
+import com.cardconnect.langchain4j_spring.repository.ChatSessionKeyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Maps chat memory ids to the 64-bit keys used by the persistent chat memory stores.
+ *
+ * <p>{@code Long} ids are used as they are. String and UUID session ids are hashed with SipHash-2-4
+ * under a configured key and the result is claimed in the {@code chat_session_key} table. If the
+ * key is already claimed by another session, the following keys are probed until a free or matching
+ * one is found, so two sessions never share a key. Other failed inserts are not retried. Hashed keys always have the sign bit set and can
+ * therefore never clash with non-negative {@code Long} ids.
+ *
+ * <p>Resolved keys are kept in a bounded LRU cache. A cached session resolves without touching the
+ * database; an uncached one costs a primary key lookup, plus an insert the first time it is seen.
+ */
+@Slf4j
+public class SessionKeyResolver {
+
+    private static final int MAX_PROBES = 16;
+
+    private final ChatSessionKeyRepository chatSessionKeyRepository;
+    private final TransactionOperations transactionOperations;
+    private final int cacheSize;
+    private final long k0;
+    private final long k1;
+
+    private final Map<String, Long> cache;
+    private final Counter collisionCounter;
+
+    public SessionKeyResolver(ChatSessionKeyRepository chatSessionKeyRepository,
+                              TransactionOperations transactionOperations,
+                              LangChain4jProperties.SessionKey config,
+                              MeterRegistry meterRegistry) {
+        this.chatSessionKeyRepository = chatSessionKeyRepository;
+        this.transactionOperations = transactionOperations;
+        this.cacheSize = config.getCacheSize();
+
+        if (config.getHashKey() == null) {
+            throw new IllegalArgumentException("Session key hash key is not configured");
+        }
+        byte[] key = HexFormat.of().parseHex(config.getHashKey());
+        if (key.length != 16) {
+            throw new IllegalArgumentException("Session key hash key must be 128 bits");
+        }
+        this.k0 = littleEndianLong(key, 0);
+        this.k1 = littleEndianLong(key, 8);
+
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.collisionCounter = Counter.builder("chat.session.key.collisions")
+                .description("Session ids whose hashed key was already claimed by another session")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resolves the persistent key of a chat memory id.
+     *
+     * @param memoryId a {@code Long}, {@code String} or {@code UUID}
+     * @return the key under which the session's messages are stored
+     * @throws IllegalArgumentException if the memory id has an unsupported type
+     */
+    public long resolve(Object memoryId) {
+        if (memoryId instanceof Long id) {
+            return id;
+        }
+        String sessionId = toSessionId(memoryId);
+
+        synchronized (cache) {
+            Long cached = cache.get(sessionId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long key = claim(sessionId);
+        synchronized (cache) {
+            cache.put(sessionId, key);
+        }
+        return key;
+    }
+
+    private long claim(String sessionId) {
+        long hash = hash(sessionId);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long key = (hash + probe) | Long.MIN_VALUE;
+
+            Optional<ChatSessionKeyEntity> existing = chatSessionKeyRepository.findById(key);
+            if (existing.isEmpty()) {
+                if (tryInsert(key, sessionId)) {
+                    log.debug("Claimed chat memory key {} for session {}", key, sessionId);
+                    return key;
+                }
+                // Another instance claimed the key concurrently, check whether it was for this session
+                existing = chatSessionKeyRepository.findById(key);
+            }
+            if (existing.isPresent() && existing.get().getSessionId().equals(sessionId)) {
+                return key;
+            }
+
+            collisionCounter.increment();
+            log.warn("Chat memory key {} of session {} is claimed by another session, probing next key", key, sessionId);
+        }
+        throw new IllegalStateException("No free chat memory key for session " + sessionId
+                + " after " + MAX_PROBES + " probes");
+    }
+
+    private boolean tryInsert(long key, String sessionId) {
+        try {
+            transactionOperations.executeWithoutResult(status ->
+                    chatSessionKeyRepository.saveAndFlush(new ChatSessionKeyEntity(key, sessionId)));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateKey(e)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the insert failed because the key is already claimed, as opposed to e.g. a session id
+     * too long for its column, which probing other keys would not fix.
+     */
+    private static boolean isDuplicateKey(DataIntegrityViolationException e) {
+        if (e instanceof DuplicateKeyException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE;
+            }
+        }
+        return false;
+    }
+
+    private static String toSessionId(Object memoryId) {
+        if (memoryId instanceof String sessionId) {
+            return sessionId;
+        }
+        if (memoryId instanceof UUID uuid) {
+            return uuid.toString();
+        }
+        log.error("Invalid memoryId type: {}. Expected Long, String or UUID, got {}",
+                memoryId, memoryId == null ? null : memoryId.getClass().getSimpleName());
+        throw new IllegalArgumentException("memoryId must be of type Long, String or UUID");
+    }
+
+    /**
+     * SipHash-2-4 of the UTF-16 code units of the session id, read as little-endian bytes.
+     * Works on the chars directly so hashing does not allocate.
+     */
+    long hash(String sessionId) {
+        long v0 = k0 ^ 0x736f6d6570736575L;
+        long v1 = k1 ^ 0x646f72616e646f6dL;
+        long v2 = k0 ^ 0x6c7967656e657261L;
+        long v3 = k1 ^ 0x7465646279746573L;
+
+        int length = sessionId.length();
+        int i = 0;
+        int rounds;
+        long m;
+        for (; i + 4 <= length; i += 4) {
+            m = sessionId.charAt(i)
+                    | (long) sessionId.charAt(i + 1) << 16
+                    | (long) sessionId.charAt(i + 2) << 32
+                    | (long) sessionId.charAt(i + 3) << 48;
+            v3 ^= m;
+            for (rounds = 0; rounds < 2; rounds++) {
+                v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+                v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+                v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+                v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+            }
+            v0 ^= m;
+        }
+
+        m = ((long) (length * 2) & 0xFF) << 56;
+        for (int shift = 0; i < length; i++, shift += 16) {
+            m |= (long) sessionId.charAt(i) << shift;
+        }
+        v3 ^= m;
+        for (rounds = 0; rounds < 2; rounds++) {
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+        }
+        v0 ^= m;
+
+        v2 ^= 0xFF;
+        for (rounds = 0; rounds < 4; rounds++) {
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+        }
+        return v0 ^ v1 ^ v2 ^ v3;
+    }
+
+    private static long littleEndianLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = value << 8 | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
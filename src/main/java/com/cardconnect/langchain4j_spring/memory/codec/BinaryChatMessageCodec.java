@@ -0,0 +1,324 @@
+package com.cardconnect.langchain4j_spring.memory.codec;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static dev.langchain4j.data.message.ChatMessageDeserializer.messageFromJson;
+import static dev.langchain4j.data.message.ChatMessageSerializer.messageToJson;
+
+/**
+ * Compact binary codec for chat messages.
+ *
+ * <p>Layout: a two byte header (magic, version), the message count as varint, then one record per
+ * message starting with a one byte role tag. Strings are written as a varint header carrying the
+ * length and a two bit mode: raw UTF-8, Deflate-compressed (used for strings of at least
+ * {@code compressionThreshold} bytes, e.g. long tool results), a back-reference to a previously
+ * written symbol (tool and user names), or null. Messages the compact records cannot represent
+ * (multi-modal user content, attributes, custom messages) are embedded as JSON so nothing is lost.
+ */
+public class BinaryChatMessageCodec implements ChatMessageCodec {
+
+    public static final String NAME = "binary";
+
+    private static final byte MAGIC = (byte) 0xC4;
+    private static final byte VERSION = 1;
+
+    private static final int TAG_SYSTEM = 0;
+    private static final int TAG_USER_TEXT = 1;
+    private static final int TAG_AI = 2;
+    private static final int TAG_TOOL_RESULT = 3;
+    private static final int TAG_JSON = 4;
+
+    private static final int MODE_RAW = 0;
+    private static final int MODE_DEFLATE = 1;
+    private static final int MODE_SYMBOL = 2;
+    private static final int MODE_NULL = 3;
+
+    private final int compressionThreshold;
+
+    /**
+     * @param compressionThreshold minimum UTF-8 length in bytes of a string before Deflate is attempted
+     */
+    public BinaryChatMessageCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean canDecode(byte[] data) {
+        return data.length >= 2 && data[0] == MAGIC;
+    }
+
+    @Override
+    public byte[] encode(List<ChatMessage> messages) {
+        Writer writer = new Writer(compressionThreshold);
+        writer.out.write(MAGIC);
+        writer.out.write(VERSION);
+        writer.writeVarint(messages.size());
+        for (ChatMessage message : messages) {
+            writeMessage(writer, message);
+        }
+        return writer.out.toByteArray();
+    }
+
+    @Override
+    public List<ChatMessage> decode(byte[] data) {
+        if (!canDecode(data)) {
+            throw new IllegalArgumentException("Not a binary chat message payload");
+        }
+        if (data[1] != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary chat message version: " + data[1]);
+        }
+        Reader reader = new Reader(data, 2);
+        int count = reader.readVarint();
+        List<ChatMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(readMessage(reader));
+        }
+        return messages;
+    }
+
+    private static void writeMessage(Writer writer, ChatMessage message) {
+        if (message instanceof SystemMessage systemMessage) {
+            writer.out.write(TAG_SYSTEM);
+            writer.writeString(systemMessage.text());
+        } else if (message instanceof UserMessage userMessage
+                && userMessage.hasSingleText() && userMessage.attributes().isEmpty()) {
+            writer.out.write(TAG_USER_TEXT);
+            writer.writeSymbol(userMessage.name());
+            writer.writeString(userMessage.singleText());
+        } else if (message instanceof AiMessage aiMessage && aiMessage.attributes().isEmpty()) {
+            writer.out.write(TAG_AI);
+            writer.writeString(aiMessage.text());
+            writer.writeString(aiMessage.thinking());
+            List<ToolExecutionRequest> requests = aiMessage.toolExecutionRequests();
+            writer.writeVarint(requests.size());
+            for (ToolExecutionRequest request : requests) {
+                writer.writeString(request.id());
+                writer.writeSymbol(request.name());
+                writer.writeString(request.arguments());
+            }
+        } else if (message instanceof ToolExecutionResultMessage resultMessage) {
+            writer.out.write(TAG_TOOL_RESULT);
+            writer.writeString(resultMessage.id());
+            writer.writeSymbol(resultMessage.toolName());
+            writer.writeString(resultMessage.text());
+        } else {
+            writer.out.write(TAG_JSON);
+            writer.writeString(messageToJson(message));
+        }
+    }
+
+    private static ChatMessage readMessage(Reader reader) {
+        int tag = reader.readByte();
+        switch (tag) {
+            case TAG_SYSTEM:
+                return SystemMessage.from(reader.readString());
+            case TAG_USER_TEXT: {
+                String name = reader.readSymbol();
+                String text = reader.readString();
+                return name == null ? UserMessage.from(text) : UserMessage.from(name, text);
+            }
+            case TAG_AI: {
+                String text = reader.readString();
+                String thinking = reader.readString();
+                int requestCount = reader.readVarint();
+                List<ToolExecutionRequest> requests = new ArrayList<>(requestCount);
+                for (int i = 0; i < requestCount; i++) {
+                    requests.add(ToolExecutionRequest.builder()
+                            .id(reader.readString())
+                            .name(reader.readSymbol())
+                            .arguments(reader.readString())
+                            .build());
+                }
+                return AiMessage.builder()
+                        .text(text)
+                        .thinking(thinking)
+                        .toolExecutionRequests(requests)
+                        .build();
+            }
+            case TAG_TOOL_RESULT:
+                return ToolExecutionResultMessage.from(reader.readString(), reader.readSymbol(), reader.readString());
+            case TAG_JSON:
+                return messageFromJson(reader.readString());
+            default:
+                throw new IllegalArgumentException("Unknown chat message tag: " + tag);
+        }
+    }
+
+    private static final class Writer {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        private final Map<String, Integer> symbols = new HashMap<>();
+        private final int compressionThreshold;
+
+        private Writer(int compressionThreshold) {
+            this.compressionThreshold = compressionThreshold;
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        private void writeSymbol(String value) {
+            if (value == null) {
+                writeVarint(MODE_NULL);
+                return;
+            }
+            Integer index = symbols.get(value);
+            if (index != null) {
+                writeVarint(index << 2 | MODE_SYMBOL);
+                return;
+            }
+            symbols.put(value, symbols.size());
+            writeString(value);
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarint(MODE_NULL);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length >= compressionThreshold) {
+                byte[] compressed = deflate(bytes);
+                if (compressed.length < bytes.length) {
+                    writeVarint(compressed.length << 2 | MODE_DEFLATE);
+                    writeVarint(bytes.length);
+                    out.writeBytes(compressed);
+                    return;
+                }
+            }
+            writeVarint(bytes.length << 2 | MODE_RAW);
+            out.writeBytes(bytes);
+        }
+
+        private static byte[] deflate(byte[] bytes) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            try {
+                deflater.setInput(bytes);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2);
+                byte[] buffer = new byte[Math.max(64, bytes.length / 2)];
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return compressed.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private final List<String> symbols = new ArrayList<>();
+        private int position;
+
+        private Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private int readByte() {
+            return data[position++] & 0xFF;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        /**
+         * Reads a symbol field. Literal values are registered in the same order as the writer
+         * assigned them, so back-references resolve to the same index.
+         */
+        private String readSymbol() {
+            int header = readVarint();
+            if ((header & 0b11) == MODE_SYMBOL) {
+                return symbols.get(header >>> 2);
+            }
+            String value = readString(header);
+            if (value != null) {
+                symbols.add(value);
+            }
+            return value;
+        }
+
+        private String readString() {
+            return readString(readVarint());
+        }
+
+        private String readString(int header) {
+            int length = header >>> 2;
+            switch (header & 0b11) {
+                case MODE_NULL:
+                    return null;
+                case MODE_DEFLATE:
+                    return new String(inflate(length, readVarint()), StandardCharsets.UTF_8);
+                case MODE_RAW: {
+                    String value = new String(data, position, length, StandardCharsets.UTF_8);
+                    position += length;
+                    return value;
+                }
+                default:
+                    throw new IllegalArgumentException("Symbol reference outside of a symbol field");
+            }
+        }
+
+        private byte[] inflate(int compressedLength, int rawLength) {
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(data, position, compressedLength);
+                byte[] raw = new byte[rawLength];
+                int inflated = 0;
+                while (inflated < rawLength) {
+                    int n = inflater.inflate(raw, inflated, rawLength - inflated);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != rawLength) {
+                    throw new IllegalArgumentException("Truncated compressed chat message string");
+                }
+                position += compressedLength;
+                return raw;
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("Corrupt compressed chat message string", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
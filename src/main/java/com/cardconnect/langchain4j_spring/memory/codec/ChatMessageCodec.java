@@ -0,0 +1,44 @@
+package com.cardconnect.langchain4j_spring.memory.codec;
+
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Encodes chat messages for storage by the persistent chat memory stores.
+ *
+ * <p>Encoded data must be self-describing: {@link #canDecode(byte[])} is used to pick the codec
+ * when reading a stored value, so values written by different codecs can live side by side and be
+ * migrated lazily.
+ */
+public interface ChatMessageCodec {
+
+    /**
+     * Unique name of the codec, used to select the codec for writing.
+     */
+    String name();
+
+    /**
+     * Encodes the given messages.
+     *
+     * @param messages the messages in conversation order
+     * @return the encoded representation
+     */
+    byte[] encode(List<ChatMessage> messages);
+
+    /**
+     * Decodes messages previously produced by {@link #encode(List)}.
+     *
+     * @param data the encoded representation
+     * @return the messages in conversation order
+     */
+    List<ChatMessage> decode(byte[] data);
+
+    /**
+     * Whether the given data was produced by this codec.
+     *
+     * @param data the encoded representation, never empty
+     * @return true if this codec can decode the data
+     */
+    boolean canDecode(byte[] data);
+}
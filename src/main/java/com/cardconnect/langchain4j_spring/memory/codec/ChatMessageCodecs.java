@@ -0,0 +1,67 @@
+package com.cardconnect.langchain4j_spring.memory.codec;
+
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Registry of the available chat message codecs.
+ *
+ * <p>New values are always written with the configured write codec. Stored values are decoded by
+ * the first codec that recognizes them, so a store can hold values of several codecs at once and
+ * rewrite them lazily with {@link #isCurrent(byte[])}.
+ */
+public class ChatMessageCodecs {
+
+    private final List<ChatMessageCodec> codecs;
+    private final ChatMessageCodec writeCodec;
+
+    /**
+     * @param codecs         all codecs that may have written stored values
+     * @param writeCodecName name of the codec used for new values
+     * @throws IllegalArgumentException if no codec with the given name is registered
+     */
+    public ChatMessageCodecs(List<ChatMessageCodec> codecs, String writeCodecName) {
+        this.codecs = List.copyOf(codecs);
+        this.writeCodec = codecs.stream()
+                .filter(codec -> codec.name().equalsIgnoreCase(writeCodecName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown chat message codec: " + writeCodecName));
+    }
+
+    /**
+     * The codec used for new values.
+     */
+    public ChatMessageCodec writeCodec() {
+        return writeCodec;
+    }
+
+    public byte[] encode(List<ChatMessage> messages) {
+        return writeCodec.encode(messages);
+    }
+
+    /**
+     * Decodes a stored value with the codec that wrote it.
+     *
+     * @throws IllegalArgumentException if the value is empty or no codec recognizes it
+     */
+    public List<ChatMessage> decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            throw new IllegalArgumentException("Empty chat message payload");
+        }
+        for (ChatMessageCodec codec : codecs) {
+            if (codec.canDecode(data)) {
+                return codec.decode(data);
+            }
+        }
+        throw new IllegalArgumentException("No chat message codec recognizes payload starting with 0x"
+                + Integer.toHexString(data[0] & 0xFF));
+    }
+
+    /**
+     * Whether the stored value was written by the current write codec and needs no migration.
+     */
+    public boolean isCurrent(byte[] data) {
+        return data != null && data.length > 0 && writeCodec.canDecode(data);
+    }
+}
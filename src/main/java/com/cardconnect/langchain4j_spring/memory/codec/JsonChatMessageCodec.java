@@ -0,0 +1,53 @@
+package com.cardconnect.langchain4j_spring.memory.codec;
+
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static dev.langchain4j.data.message.ChatMessageDeserializer.messageFromJson;
+import static dev.langchain4j.data.message.ChatMessageDeserializer.messagesFromJson;
+import static dev.langchain4j.data.message.ChatMessageSerializer.messagesToJson;
+
+/**
+ * Human-readable codec using the LangChain4j JSON representation.
+ * Also reads single JSON message objects as written by earlier versions of the message log.
+ */
+public class JsonChatMessageCodec implements ChatMessageCodec {
+
+    public static final String NAME = "json";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(List<ChatMessage> messages) {
+        return messagesToJson(messages).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public List<ChatMessage> decode(byte[] data) {
+        String json = new String(data, StandardCharsets.UTF_8);
+        if (firstNonWhitespace(data) == '{') {
+            return List.of(messageFromJson(json));
+        }
+        return messagesFromJson(json);
+    }
+
+    @Override
+    public boolean canDecode(byte[] data) {
+        int first = firstNonWhitespace(data);
+        return first == '[' || first == '{';
+    }
+
+    private static int firstNonWhitespace(byte[] data) {
+        for (byte b : data) {
+            if (!Character.isWhitespace(b)) {
+                return b;
+            }
+        }
+        return -1;
+    }
+}
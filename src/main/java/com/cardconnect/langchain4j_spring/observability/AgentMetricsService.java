@@ -1,26 +1,57 @@
 package com.cardconnect.langchain4j_spring.observability;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Custom metrics service for tracking AI agent performance.
  * Provides methods to record metrics for agent interactions.
+ *
+ * <p>Meters tagged by agent or tool are registered on first use and cached, so recording on the
+ * request path is a map lookup and an increment. The {@code agent.requests.by.type} counter has the
+ * same tag keys for every status ({@code error} is {@code none} for successes), as Prometheus requires.
  */
 @Component
 @Slf4j
 public class AgentMetricsService {
 
+    /**
+     * Distinct error types recorded as {@code error} tag; further ones are recorded as {@link #OTHER_ERROR}.
+     */
+    static final int MAX_ERROR_TYPES = 20;
+    static final String OTHER_ERROR = "other";
+    private static final String NO_ERROR = "none";
+
     private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, AgentMeters> agentMeters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter[]> toolMeters = new ConcurrentHashMap<>();
+    private final Set<String> errorTypes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean errorTypeOverflow = new AtomicBoolean();
     private final Counter totalRequestsCounter;
     private final Counter successfulRequestsCounter;
     private final Counter failedRequestsCounter;
     private final Timer agentResponseTimer;
+    private final ConcurrentMap<String, Timer> ragStageTimers = new ConcurrentHashMap<>();
+    private volatile Counter ragDocumentsCounter;
+
+    /**
+     * Bits of the last average RAG score. The gauge samples this field, which lives as long as the
+     * service; a gauge registered on a boxed value reads whatever survives garbage collection.
+     */
+    private final AtomicLong lastAverageScore = new AtomicLong(Double.doubleToLongBits(Double.NaN));
 
     public AgentMetricsService(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
@@ -41,6 +72,10 @@ public class AgentMetricsService {
         this.agentResponseTimer = Timer.builder("agent.response.time")
                 .description("Agent response time")
                 .register(meterRegistry);
+
+        Gauge.builder("rag.average.score", lastAverageScore, bits -> Double.longBitsToDouble(bits.get()))
+                .description("Average score of the content injected for the last RAG query")
+                .register(meterRegistry);
     }
 
     /**
@@ -49,37 +84,32 @@ public class AgentMetricsService {
     public void recordSuccess(String agentType, long durationMs) {
         totalRequestsCounter.increment();
         successfulRequestsCounter.increment();
+        agentResponseTimer.record(durationMs, TimeUnit.MILLISECONDS);
 
-        Counter.builder("agent.requests.by.type")
-                .tag("agent", agentType)
-                .tag("status", "success")
-                .description("Agent requests by type")
-                .register(meterRegistry)
-                .increment();
-
-        Timer.builder("agent.response.time.by.type")
-                .tag("agent", agentType)
-                .description("Response time by agent type")
-                .register(meterRegistry)
-                .record(durationMs, TimeUnit.MILLISECONDS);
+        AgentMeters meters = agentMeters(agentType);
+        meters.success.increment();
+        meters.responseTime.record(durationMs, TimeUnit.MILLISECONDS);
 
-        log.debug("Recorded successful {} agent request: {}ms", agentType, durationMs);
+        if (log.isDebugEnabled()) {
+            log.debug("Recorded successful {} agent request: {}ms", agentType, durationMs);
+        }
     }
 
     /**
-     * Record a failed agent request
+     * Record a failed agent request. Error types beyond the first {@value #MAX_ERROR_TYPES} are
+     * recorded as {@code other}.
      */
     public void recordFailure(String agentType, String errorType) {
         totalRequestsCounter.increment();
         failedRequestsCounter.increment();
 
-        Counter.builder("agent.requests.by.type")
-                .tag("agent", agentType)
-                .tag("status", "failed")
-                .tag("error", errorType)
-                .description("Agent requests by type")
-                .register(meterRegistry)
-                .increment();
+        AgentMeters meters = agentMeters(agentType);
+        String error = errorTag(errorType);
+        Counter failures = meters.failures.get(error);
+        if (failures == null) {
+            failures = meters.failures.computeIfAbsent(error, key -> requestsByType(agentType, "failed", key));
+        }
+        failures.increment();
 
         log.warn("Recorded failed {} agent request: {}", agentType, errorType);
     }
@@ -88,45 +118,219 @@ public class AgentMetricsService {
      * Record token usage for LLM calls
      */
     public void recordTokenUsage(String agentType, int inputTokens, int outputTokens) {
-        Counter.builder("agent.tokens.input")
-                .tag("agent", agentType)
-                .description("Input tokens used by agent")
-                .register(meterRegistry)
-                .increment(inputTokens);
+        AgentMeters meters = agentMeters(agentType);
+        meters.inputTokens.increment(inputTokens);
+        meters.outputTokens.increment(outputTokens);
 
-        Counter.builder("agent.tokens.output")
-                .tag("agent", agentType)
-                .description("Output tokens generated by agent")
-                .register(meterRegistry)
-                .increment(outputTokens);
-
-        log.debug("Recorded token usage for {}: input={}, output={}", agentType, inputTokens, outputTokens);
+        if (log.isDebugEnabled()) {
+            log.debug("Recorded token usage for {}: input={}, output={}", agentType, inputTokens, outputTokens);
+        }
     }
 
     /**
      * Record tool invocation
      */
     public void recordToolInvocation(String toolName, boolean success) {
-        Counter.builder("agent.tool.invocations")
+        Counter[] counters = toolMeters.get(toolName);
+        if (counters == null) {
+            counters = toolMeters.computeIfAbsent(toolName, tool -> new Counter[]{
+                    toolInvocations(tool, "success"), toolInvocations(tool, "failed")});
+        }
+        counters[success ? 0 : 1].increment();
+
+        if (log.isDebugEnabled()) {
+            log.debug("Recorded tool invocation: {} - {}", toolName, success ? "success" : "failed");
+        }
+    }
+
+    /**
+     * Start recording a streamed agent response.
+     * Meters are resolved once per agent, so that recording a token does not touch the registry.
+     */
+    public StreamRecording startStream(String agentType) {
+        AgentMeters meters = agentMeters(agentType);
+        return new StreamRecording(agentType, meters.timeToFirstToken(), meters.interToken(), meters.streamTokens());
+    }
+
+    /**
+     * Meters of one agent type, registered on first use. The lookup with an existing key allocates
+     * nothing, unlike a {@code Counter.builder(...).register(...)} call per request.
+     */
+    private AgentMeters agentMeters(String agentType) {
+        AgentMeters meters = agentMeters.get(agentType);
+        return meters != null ? meters : agentMeters.computeIfAbsent(agentType, AgentMeters::new);
+    }
+
+    // RAG meters are registered on the first retrieval only, so applications without RAG do not export them
+    private Counter ragDocumentsCounter() {
+        if (ragDocumentsCounter == null) {
+            ragDocumentsCounter = Counter.builder("rag.documents.retrieved")
+                    .description("Number of documents retrieved")
+                    .register(meterRegistry);
+        }
+        return ragDocumentsCounter;
+    }
+
+    private Timer ragStageTimer(String stage) {
+        Timer timer = ragStageTimers.get(stage);
+        return timer != null ? timer : ragStageTimers.computeIfAbsent(stage, key -> Timer.builder("rag.retrieval.stage")
+                .tag("stage", key)
+                .description("Time spent in a stage of the retrieval pipeline")
+                .register(meterRegistry));
+    }
+
+    /**
+     * The error type itself while fewer than {@value #MAX_ERROR_TYPES} distinct types were seen, otherwise
+     * {@code other}. Exception class names are unbounded, and every new one would be a new time series.
+     */
+    String errorTag(String errorType) {
+        if (errorTypes.contains(errorType)) {
+            return errorType;
+        }
+        synchronized (errorTypes) {
+            if (errorTypes.size() < MAX_ERROR_TYPES) {
+                errorTypes.add(errorType);
+                return errorType;
+            }
+        }
+        if (errorTypeOverflow.compareAndSet(false, true)) {
+            log.warn("More than {} agent error types, recording further ones as '{}'", MAX_ERROR_TYPES, OTHER_ERROR);
+        }
+        return OTHER_ERROR;
+    }
+
+    private Counter requestsByType(String agentType, String status, String error) {
+        return Counter.builder("agent.requests.by.type")
+                .tag("agent", agentType)
+                .tag("status", status)
+                .tag("error", error)
+                .description("Agent requests by type")
+                .register(meterRegistry);
+    }
+
+    private Counter toolInvocations(String toolName, String status) {
+        return Counter.builder("agent.tool.invocations")
                 .tag("tool", toolName)
-                .tag("status", success ? "success" : "failed")
+                .tag("status", status)
                 .description("Tool invocation count")
-                .register(meterRegistry)
-                .increment();
+                .register(meterRegistry);
+    }
+
+    private final class AgentMeters {
+
+        private final String agentType;
+        private final Counter success;
+        private final Timer responseTime;
+        private final Counter inputTokens;
+        private final Counter outputTokens;
+        private final ConcurrentMap<String, Counter> failures = new ConcurrentHashMap<>();
+        private volatile Timer timeToFirstToken;
+        private volatile Timer interToken;
+        private volatile Counter streamTokens;
+
+        private AgentMeters(String agentType) {
+            this.agentType = agentType;
+            this.success = requestsByType(agentType, "success", NO_ERROR);
+            this.responseTime = Timer.builder("agent.response.time.by.type")
+                    .tag("agent", agentType)
+                    .description("Response time by agent type")
+                    .register(meterRegistry);
+            this.inputTokens = Counter.builder("agent.tokens.input")
+                    .tag("agent", agentType)
+                    .description("Input tokens used by agent")
+                    .register(meterRegistry);
+            this.outputTokens = Counter.builder("agent.tokens.output")
+                    .tag("agent", agentType)
+                    .description("Output tokens generated by agent")
+                    .register(meterRegistry);
+        }
+
+        // Streaming meters are registered on the first stream only, so non-streaming agents do not export them
+        private Timer timeToFirstToken() {
+            if (timeToFirstToken == null) {
+                timeToFirstToken = Timer.builder("agent.stream.time.to.first.token")
+                        .tag("agent", agentType)
+                        .description("Time from request to the first streamed token")
+                        .register(meterRegistry);
+            }
+            return timeToFirstToken;
+        }
+
+        private Timer interToken() {
+            if (interToken == null) {
+                interToken = Timer.builder("agent.stream.inter.token")
+                        .tag("agent", agentType)
+                        .description("Time between two streamed tokens")
+                        .register(meterRegistry);
+            }
+            return interToken;
+        }
+
+        private Counter streamTokens() {
+            if (streamTokens == null) {
+                streamTokens = Counter.builder("agent.stream.tokens")
+                        .tag("agent", agentType)
+                        .description("Streamed partial responses (tokens)")
+                        .register(meterRegistry);
+            }
+            return streamTokens;
+        }
+    }
+
+    /**
+     * Per-request recorder for a streamed response. Token callbacks arrive sequentially
+     * from the model's streaming thread.
+     */
+    public final class StreamRecording {
+
+        private final String agentType;
+        private final Timer timeToFirstToken;
+        private final Timer interToken;
+        private final Counter tokens;
+        private final long startNanos = System.nanoTime();
+        private long lastTokenNanos;
+
+        private StreamRecording(String agentType, Timer timeToFirstToken, Timer interToken, Counter tokens) {
+            this.agentType = agentType;
+            this.timeToFirstToken = timeToFirstToken;
+            this.interToken = interToken;
+            this.tokens = tokens;
+        }
+
+        public void recordToken() {
+            long now = System.nanoTime();
+            if (lastTokenNanos == 0) {
+                timeToFirstToken.record(now - startNanos, TimeUnit.NANOSECONDS);
+            } else {
+                interToken.record(now - lastTokenNanos, TimeUnit.NANOSECONDS);
+            }
+            lastTokenNanos = now;
+            tokens.increment();
+        }
+
+        /**
+         * Token usage is recorded per model call by the {@link ChatModelMetricsListener}.
+         */
+        public void recordCompletion() {
+            recordSuccess(agentType, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
 
-        log.debug("Recorded tool invocation: {} - {}", toolName, success ? "success" : "failed");
+        public void recordError(Throwable error) {
+            recordFailure(agentType, error.getClass().getSimpleName());
+        }
     }
 
     /**
-     * Record RAG retrieval metrics
+     * Record RAG retrieval metrics, with the time spent in each stage of the retrieval pipeline
      */
-    public void recordRagRetrieval(int documentsRetrieved, double averageScore) {
-        Counter.builder("rag.documents.retrieved")
-                .description("Number of documents retrieved")
-                .register(meterRegistry)
-                .increment(documentsRetrieved);
+    public void recordRagRetrieval(int documentsRetrieved, double averageScore, Map<String, Duration> stageTimings) {
+        ragDocumentsCounter().increment(documentsRetrieved);
+        stageTimings.forEach((stage, duration) -> ragStageTimer(stage).record(duration));
 
-        meterRegistry.gauge("rag.average.score", averageScore);
+        // Skipped queries and retrievers without scores leave the last average in place
+        if (!Double.isNaN(averageScore)) {
+            lastAverageScore.set(Double.doubleToLongBits(averageScore));
+        }
 
         log.debug("Recorded RAG retrieval: documents={}, avgScore={}", documentsRetrieved, averageScore);
     }
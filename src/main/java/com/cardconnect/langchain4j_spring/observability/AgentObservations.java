@@ -0,0 +1,183 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import dev.langchain4j.agentic.agent.AgentBuilder;
+import dev.langchain4j.agentic.agent.AgentRequest;
+import dev.langchain4j.agentic.agent.AgentResponse;
+import dev.langchain4j.service.tool.ToolProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.ObservationView;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Child observations for the invocations of agents built with {@code AgenticServices.agentBuilder},
+ * so every sub-agent of a sequence, parallel, conditional, supervisor or planner workflow gets its own
+ * span under the request's span:
+ * <ul>
+ *   <li>{@code agent.invocation} - by {@code agent.name} and {@code outcome} (success/error); the
+ *       span duration is the execution time of the agent</li>
+ *   <li>high cardinality {@code queue.wait.ms} - time the invocation's task waited for an agent
+ *       executor thread, see {@link AgentTaskDecorator}</li>
+ *   <li>high cardinality {@code gen_ai.usage.input_tokens} / {@code gen_ai.usage.output_tokens} -
+ *       tokens of the agent's model calls, including those of its own sub-agents</li>
+ * </ul>
+ * Queue waits are also recorded as {@code agent.queue.wait} by {@code agent.name}. Tool calls are
+ * observed through {@link #tools(Object...)}.
+ *
+ * <p>The agentic framework calls the before and after listeners on the invoking thread, but not the
+ * after listener when the agent fails. Invocations left open are stopped as failed by
+ * {@link #closeAbandoned(int)} at the end of the task or request that started them.
+ */
+@Slf4j
+public class AgentObservations {
+
+    static final String AGENT_INVOCATION = "agent.invocation";
+    static final String AGENT_NAME = "agent.name";
+    static final String INPUT_TOKENS = "gen_ai.usage.input_tokens";
+    static final String OUTPUT_TOKENS = "gen_ai.usage.output_tokens";
+
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final AgentMetricsService metricsService;
+    private final ThreadLocal<Deque<Invocation>> invocations = ThreadLocal.withInitial(ArrayDeque::new);
+    private final ConcurrentMap<String, Timer> queueWaitTimers = new ConcurrentHashMap<>();
+
+    public AgentObservations(ObservationRegistry observationRegistry, MeterRegistry meterRegistry,
+                             AgentMetricsService metricsService) {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Registers the invocation listeners on an agent builder.
+     */
+    public <T> AgentBuilder<T> instrument(AgentBuilder<T> builder) {
+        return builder.beforeAgentInvocation(this::beforeInvocation)
+                .afterAgentInvocation(this::afterInvocation);
+    }
+
+    /**
+     * Tool provider for the {@code @Tool} methods of the given objects, observing every call.
+     */
+    public ToolProvider tools(Object... tools) {
+        return new ObservedToolProvider(observationRegistry, metricsService, tools);
+    }
+
+    void beforeInvocation(AgentRequest request) {
+        String agentName = request.agentName();
+        Context context = new Context();
+        Observation observation = Observation.createNotStarted(AGENT_INVOCATION, () -> context, observationRegistry)
+                .contextualName(agentName)
+                .lowCardinalityKeyValue(AGENT_NAME, agentName)
+                .highCardinalityKeyValue("agent.id", request.agentId());
+        Duration queueWait = AgentTaskDecorator.takeQueueWait();
+        if (queueWait != null) {
+            observation.highCardinalityKeyValue("queue.wait.ms", String.valueOf(queueWait.toMillis()));
+            queueWaitTimer(agentName).record(queueWait);
+        }
+        observation.start();
+        invocations.get().push(new Invocation(request.agentId(), observation, observation.openScope()));
+    }
+
+    private Timer queueWaitTimer(String agentName) {
+        Timer timer = queueWaitTimers.get(agentName);
+        return timer != null ? timer : queueWaitTimers.computeIfAbsent(agentName, key -> Timer.builder("agent.queue.wait")
+                .description("Time agent invocations waited for an agent executor thread")
+                .tag(AGENT_NAME, agentName)
+                .register(meterRegistry));
+    }
+
+    void afterInvocation(AgentResponse response) {
+        Deque<Invocation> stack = invocations.get();
+        // Invocations above this one failed without an after callback
+        while (!stack.isEmpty()) {
+            Invocation invocation = stack.pop();
+            boolean finished = invocation.agentId.equals(response.agentId());
+            invocation.stop(finished ? "success" : "error");
+            if (finished) {
+                return;
+            }
+        }
+        log.debug("No open invocation of agent {}", response.agentName());
+    }
+
+    /**
+     * Open agent invocations of the current thread, to be passed to {@link #closeAbandoned(int)}.
+     */
+    public int depth() {
+        return invocations.get().size();
+    }
+
+    /**
+     * Stops the agent invocations opened on the current thread beyond {@code depth} as failed.
+     */
+    public void closeAbandoned(int depth) {
+        Deque<Invocation> stack = invocations.get();
+        while (stack.size() > depth) {
+            Invocation invocation = stack.pop();
+            log.debug("Agent invocation {} ended without response", invocation.agentId);
+            invocation.stop("error");
+        }
+        if (stack.isEmpty()) {
+            invocations.remove();
+        }
+    }
+
+    /**
+     * Adds the tokens of a model call to the innermost agent invocation enclosing the observation.
+     */
+    static void addTokens(ObservationView observation, long inputTokens, long outputTokens) {
+        Context context = enclosing(observation);
+        if (context != null) {
+            context.inputTokens.addAndGet(inputTokens);
+            context.outputTokens.addAndGet(outputTokens);
+        }
+    }
+
+    private static Context enclosing(ObservationView observation) {
+        while (observation != null) {
+            if (observation.getContextView() instanceof Context context) {
+                return context;
+            }
+            observation = observation.getContextView().getParentObservation();
+        }
+        return null;
+    }
+
+    /**
+     * Observation context of an agent invocation, collecting the tokens of its model calls.
+     */
+    static final class Context extends Observation.Context {
+        private final AtomicLong inputTokens = new AtomicLong();
+        private final AtomicLong outputTokens = new AtomicLong();
+    }
+
+    private record Invocation(String agentId, Observation observation, Observation.Scope scope) {
+
+        void stop(String outcome) {
+            scope.close();
+            Context context = (Context) observation.getContext();
+            long input = context.inputTokens.get();
+            long output = context.outputTokens.get();
+            observation.lowCardinalityKeyValue("outcome", outcome)
+                    .highCardinalityKeyValue(INPUT_TOKENS, String.valueOf(input))
+                    .highCardinalityKeyValue(OUTPUT_TOKENS, String.valueOf(output));
+            Context parent = enclosing(context.getParentObservation());
+            if (parent != null) {
+                parent.inputTokens.addAndGet(input);
+                parent.outputTokens.addAndGet(output);
+            }
+            observation.stop();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import org.springframework.core.task.TaskDecorator;
+
+import java.time.Duration;
+
+/**
+ * Carries the submitting thread's context into agent executor tasks: the current observation, and
+ * with it the trace and the MDC, so sub-agents, tools and retrievers running off the request thread
+ * still report as children of the request's span.
+ *
+ * <p>Also measures how long each task waited in the executor's queue, taken once by the first
+ * observation started in the task through {@link #takeQueueWait()}. Agent invocations the task leaves
+ * open are stopped when it ends; a task run by the caller under the caller-runs policy leaves the
+ * caller's own invocations alone.
+ */
+public class AgentTaskDecorator implements TaskDecorator {
+
+    private static final ThreadLocal<Duration> QUEUE_WAIT = new ThreadLocal<>();
+
+    private final ContextSnapshotFactory snapshotFactory = ContextSnapshotFactory.builder().build();
+    private final AgentObservations agentObservations;
+
+    public AgentTaskDecorator(AgentObservations agentObservations) {
+        this.agentObservations = agentObservations;
+    }
+
+    @Override
+    public Runnable decorate(Runnable task) {
+        ContextSnapshot snapshot = snapshotFactory.captureAll();
+        long submitted = System.nanoTime();
+        return () -> {
+            Duration callerQueueWait = QUEUE_WAIT.get();
+            QUEUE_WAIT.set(Duration.ofNanos(System.nanoTime() - submitted));
+            int depth = agentObservations.depth();
+            try (ContextSnapshot.Scope scope = snapshot.setThreadLocals()) {
+                try {
+                    task.run();
+                } finally {
+                    agentObservations.closeAbandoned(depth);
+                }
+            } finally {
+                if (callerQueueWait != null) {
+                    QUEUE_WAIT.set(callerQueueWait);
+                } else {
+                    QUEUE_WAIT.remove();
+                }
+            }
+        };
+    }
+
+    /**
+     * Queue wait of the agent executor task running on this thread, or {@code null} outside of such a
+     * task or when already taken.
+     */
+    public static Duration takeQueueWait() {
+        Duration queueWait = QUEUE_WAIT.get();
+        QUEUE_WAIT.remove();
+        return queueWait;
+    }
+}
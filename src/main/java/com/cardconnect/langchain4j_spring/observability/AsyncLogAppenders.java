@@ -0,0 +1,56 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Moves the appenders of the root logger behind one logback {@link AsyncAppender}, so a request thread
+ * only enqueues its log events and formatting and console or file I/O happen on the appender's worker.
+ * Caller data is not captured, as that walks the stack of every event.
+ */
+public final class AsyncLogAppenders {
+
+    static final String NAME = "ASYNC";
+
+    private AsyncLogAppenders() {
+    }
+
+    /**
+     * @return the installed async appender, or {@code null} when the root logger has no appenders
+     * or already logs asynchronously
+     */
+    public static AsyncAppender install(LoggerContext context, int queueSize, boolean neverBlock) {
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        List<Appender<ILoggingEvent>> appenders = new ArrayList<>();
+        for (Iterator<Appender<ILoggingEvent>> it = root.iteratorForAppenders(); it.hasNext(); ) {
+            Appender<ILoggingEvent> appender = it.next();
+            if (appender instanceof AsyncAppender) {
+                return null;
+            }
+            appenders.add(appender);
+        }
+        if (appenders.isEmpty()) {
+            return null;
+        }
+
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(context);
+        async.setName(NAME);
+        async.setQueueSize(queueSize);
+        async.setNeverBlock(neverBlock);
+        async.setIncludeCallerData(false);
+        appenders.forEach(async::addAppender);
+        async.start();
+
+        root.addAppender(async);
+        appenders.forEach(root::detachAppender);
+        return async;
+    }
+}
@@ -0,0 +1,246 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.ChatResponseMetadata;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.ObservationView;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chat model listener recording every model call, tagged by {@code model} and by the calling
+ * {@code agent}:
+ * <ul>
+ *   <li>{@code llm.request.duration} - latency of the call, by {@code finish_reason} and {@code error}
+ *       ({@code none} where not applicable, so every series has the same tag keys)</li>
+ *   <li>{@code llm.tokens} - input and output tokens, by {@code type}</li>
+ * </ul>
+ * Token usage is also recorded per agent through {@link AgentMetricsService#recordTokenUsage}. Time to
+ * first token of streamed calls is recorded by {@link TimedStreamingChatModel}; a blocking call
+ * receives its first token with the whole response.
+ *
+ * <p>The agent is the innermost {@code agent.*} observation open when the call starts, e.g.
+ * {@code agent.router.stream} for the streaming router endpoint, or the {@code agent.name} of an
+ * {@link AgentObservations} invocation. Tokens are also added to that invocation. It is captured in
+ * {@link #onRequest}, as responses of streamed calls arrive on the model client's thread. The trace
+ * id is captured alongside and logged with failed calls and sampled payloads.
+ *
+ * <p>Payloads are only logged when enabled, for a sampled fraction of calls, and cut off after
+ * {@code maxPayloadChars}, so unsampled calls build no strings at all.
+ */
+@Slf4j
+public class ChatModelMetricsListener implements ChatModelListener {
+
+    static final String UNKNOWN = "unknown";
+    private static final String NONE = "none";
+    private static final String AGENT_OBSERVATION_PREFIX = "agent.";
+    private static final String STREAM_OBSERVATION_SUFFIX = ".stream";
+
+    private static final String START_NANOS = "metrics.startNanos";
+    private static final String AGENT = "metrics.agent";
+    private static final String TRACE_ID = "metrics.traceId";
+    private static final String OBSERVATION = "metrics.observation";
+    private static final String SAMPLED = "metrics.sampled";
+
+    private final AgentMetricsService metricsService;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final LangChain4jProperties.ModelCalls config;
+    private final ConcurrentMap<String, ConcurrentMap<String, ModelMeters>> modelMeters = new ConcurrentHashMap<>();
+
+    public ChatModelMetricsListener(AgentMetricsService metricsService,
+                                    MeterRegistry meterRegistry,
+                                    ObservationRegistry observationRegistry,
+                                    LangChain4jProperties.ModelCalls config) {
+        this.metricsService = metricsService;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.config = config;
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        Map<Object, Object> attributes = requestContext.attributes();
+        attributes.put(START_NANOS, System.nanoTime());
+        attributes.put(AGENT, currentAgent(observationRegistry));
+        Observation observation = observationRegistry.getCurrentObservation();
+        if (observation != null) {
+            attributes.put(OBSERVATION, observation);
+        }
+        String traceId = MDC.get("traceId");
+        if (traceId != null) {
+            attributes.put(TRACE_ID, traceId);
+        }
+
+        if (config.isPayloadLogging() && ThreadLocalRandom.current().nextDouble() < config.getPayloadSampleRate()) {
+            attributes.put(SAMPLED, Boolean.TRUE);
+            log.info("Model request [agent={}, trace={}]: {}", attributes.get(AGENT), traceId,
+                    abbreviate(requestContext.chatRequest().messages()));
+        }
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        Map<Object, Object> attributes = responseContext.attributes();
+        ChatResponse response = responseContext.chatResponse();
+        ChatResponseMetadata metadata = response.metadata();
+        String agent = agent(attributes);
+        String model = model(metadata != null ? metadata.modelName() : null, responseContext.chatRequest().modelName());
+        ModelMeters meters = meters(model, agent);
+
+        String finishReason = response.finishReason() != null ? response.finishReason().name().toLowerCase(Locale.ROOT) : NONE;
+        recordDuration(meters.duration(finishReason, NONE), attributes);
+
+        TokenUsage tokenUsage = response.tokenUsage();
+        if (tokenUsage != null) {
+            int input = tokenUsage.inputTokenCount() != null ? tokenUsage.inputTokenCount() : 0;
+            int output = tokenUsage.outputTokenCount() != null ? tokenUsage.outputTokenCount() : 0;
+            meters.inputTokens.increment(input);
+            meters.outputTokens.increment(output);
+            metricsService.recordTokenUsage(agent, input, output);
+            if (attributes.get(OBSERVATION) instanceof Observation observation) {
+                AgentObservations.addTokens(observation, input, output);
+            }
+        }
+
+        if (attributes.containsKey(SAMPLED)) {
+            log.info("Model response [agent={}, trace={}]: {}", agent, attributes.get(TRACE_ID),
+                    abbreviate(String.valueOf(response.aiMessage())));
+        }
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext errorContext) {
+        Map<Object, Object> attributes = errorContext.attributes();
+        String agent = agent(attributes);
+        String model = model(null, errorContext.chatRequest().modelName());
+        String errorType = metricsService.errorTag(errorContext.error().getClass().getSimpleName());
+        recordDuration(meters(model, agent).duration(NONE, errorType), attributes);
+
+        log.warn("Model call of {} agent to {} failed [trace={}]: {}", agent, model, attributes.get(TRACE_ID),
+                errorContext.error().getMessage());
+    }
+
+    /**
+     * The agent of the innermost open {@code agent.*} observation, without its {@code .stream} suffix.
+     * For agent invocations it is the invoked agent's name.
+     */
+    static String currentAgent(ObservationRegistry observationRegistry) {
+        ObservationView observation = observationRegistry.getCurrentObservation();
+        while (observation != null) {
+            Observation.ContextView context = observation.getContextView();
+            String name = context.getName();
+            if (context instanceof AgentObservations.Context) {
+                KeyValue agentName = context.getLowCardinalityKeyValue(AgentObservations.AGENT_NAME);
+                if (agentName != null) {
+                    return agentName.getValue();
+                }
+            }
+            if (name != null && name.startsWith(AGENT_OBSERVATION_PREFIX)) {
+                String agent = name.substring(AGENT_OBSERVATION_PREFIX.length());
+                return agent.endsWith(STREAM_OBSERVATION_SUFFIX)
+                        ? agent.substring(0, agent.length() - STREAM_OBSERVATION_SUFFIX.length())
+                        : agent;
+            }
+            observation = context.getParentObservation();
+        }
+        return UNKNOWN;
+    }
+
+    static String model(String responseModel, String requestModel) {
+        if (responseModel != null) {
+            return responseModel;
+        }
+        return requestModel != null ? requestModel : UNKNOWN;
+    }
+
+    private static String agent(Map<Object, Object> attributes) {
+        Object agent = attributes.get(AGENT);
+        return agent != null ? (String) agent : UNKNOWN;
+    }
+
+    private static void recordDuration(Timer timer, Map<Object, Object> attributes) {
+        if (attributes.get(START_NANOS) instanceof Long start) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String abbreviate(List<ChatMessage> messages) {
+        StringBuilder text = new StringBuilder();
+        for (ChatMessage message : messages) {
+            if (text.length() >= config.getMaxPayloadChars()) {
+                break;
+            }
+            text.append(message).append('\n');
+        }
+        return abbreviate(text.toString());
+    }
+
+    private String abbreviate(String text) {
+        int max = config.getMaxPayloadChars();
+        return text.length() <= max ? text : text.substring(0, max) + "... (" + text.length() + " chars)";
+    }
+
+    private ModelMeters meters(String model, String agent) {
+        ConcurrentMap<String, ModelMeters> byAgent = modelMeters.computeIfAbsent(model, key -> new ConcurrentHashMap<>());
+        ModelMeters meters = byAgent.get(agent);
+        return meters != null ? meters : byAgent.computeIfAbsent(agent, key -> new ModelMeters(model, agent));
+    }
+
+    private final class ModelMeters {
+
+        private final String model;
+        private final String agent;
+        private final Counter inputTokens;
+        private final Counter outputTokens;
+        private final ConcurrentMap<String, ConcurrentMap<String, Timer>> durations = new ConcurrentHashMap<>();
+
+        private ModelMeters(String model, String agent) {
+            this.model = model;
+            this.agent = agent;
+            this.inputTokens = tokens("input");
+            this.outputTokens = tokens("output");
+        }
+
+        private Timer duration(String finishReason, String error) {
+            return durations.computeIfAbsent(finishReason, key -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(error, key -> Timer.builder("llm.request.duration")
+                            .description("Latency of chat model calls")
+                            .tag("model", model)
+                            .tag("agent", agent)
+                            .tag("finish_reason", finishReason)
+                            .tag("error", error)
+                            .publishPercentileHistogram()
+                            .register(meterRegistry));
+        }
+
+        private Counter tokens(String type) {
+            return Counter.builder("llm.tokens")
+                    .description("Tokens of chat model calls")
+                    .tag("model", model)
+                    .tag("agent", agent)
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import com.cardconnect.langchain4j_spring.rag.DocumentIngestionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health indicator for the background document ingestion.
+ * Part of the readiness group, so the application only receives traffic once the documents are ingested.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionHealthIndicator implements HealthIndicator {
+
+    private final DocumentIngestionService documentIngestionService;
+
+    @Override
+    public Health health() {
+        DocumentIngestionService.Status status = documentIngestionService.getStatus();
+        Health.Builder builder = switch (status) {
+            case COMPLETED -> Health.up();
+            case PENDING, RUNNING -> Health.outOfService();
+            case FAILED -> Health.down().withDetail("error", documentIngestionService.getLastError());
+        };
+        return builder
+                .withDetail("status", status)
+                .withDetail("documents", documentIngestionService.getLastResults())
+                .build();
+    }
+}
@@ -1,27 +0,0 @@
-package com.cardconnect.langchain4j_spring.observability;
-
-import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
-import dev.langchain4j.model.chat.listener.ChatModelListener;
-import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
-import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
-import lombok.extern.slf4j.Slf4j;
-
-@Slf4j
-public class ModelListenerConfiguration implements ChatModelListener {
-
-
-    @Override
-    public void onRequest(ChatModelRequestContext requestContext) {
-        log.info("onRequest(): {}", requestContext.chatRequest());
-    }
-
-    @Override
-    public void onResponse(ChatModelResponseContext responseContext) {
-        log.info("onResponse(): {}", responseContext.chatResponse());
-    }
-
-    @Override
-    public void onError(ChatModelErrorContext errorContext) {
-        log.info("onError(): {}", errorContext.error().getMessage());
-    }
-};
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.invocation.InvocationContext;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutionResult;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Tool provider for the {@link Tool} methods of the given objects, as registered by
+ * {@code tools(...)} on an AI service or agent builder, running every tool call in an
+ * {@code agent.tool} observation by {@code tool} and {@code outcome} (success/error). Calls are also
+ * counted through {@link AgentMetricsService#recordToolInvocation}.
+ */
+public class ObservedToolProvider implements ToolProvider {
+
+    static final String AGENT_TOOL = "agent.tool";
+
+    private final ToolProviderResult tools;
+
+    public ObservedToolProvider(ObservationRegistry observationRegistry, AgentMetricsService metricsService,
+                                Object... toolObjects) {
+        ToolProviderResult.Builder builder = ToolProviderResult.builder();
+        for (Object toolObject : toolObjects) {
+            // Spring may hand out a subclass proxy, which does not carry the @Tool annotations
+            for (Method method : ClassUtils.getUserClass(toolObject).getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Tool.class)) {
+                    ToolSpecification specification = ToolSpecifications.toolSpecificationFrom(method);
+                    ToolExecutor executor = DefaultToolExecutor.builder()
+                            .object(toolObject)
+                            .originalMethod(method)
+                            .methodToInvoke(method)
+                            .wrapToolArgumentsExceptions(true)
+                            .propagateToolExecutionExceptions(true)
+                            .build();
+                    builder.add(specification,
+                            new ObservedToolExecutor(specification.name(), executor, observationRegistry, metricsService));
+                }
+            }
+        }
+        this.tools = builder.build();
+    }
+
+    @Override
+    public ToolProviderResult provideTools(ToolProviderRequest request) {
+        return tools;
+    }
+
+    private record ObservedToolExecutor(String name, ToolExecutor delegate, ObservationRegistry observationRegistry,
+                                        AgentMetricsService metricsService) implements ToolExecutor {
+
+        @Override
+        public String execute(ToolExecutionRequest request, Object memoryId) {
+            return observe(() -> delegate.execute(request, memoryId), result -> false);
+        }
+
+        @Override
+        public ToolExecutionResult executeWithContext(ToolExecutionRequest request, InvocationContext context) {
+            return observe(() -> delegate.executeWithContext(request, context), ToolExecutionResult::isError);
+        }
+
+        private <T> T observe(Supplier<T> call, Predicate<T> failed) {
+            Observation observation = Observation.createNotStarted(AGENT_TOOL, observationRegistry)
+                    .contextualName("tool " + name)
+                    .lowCardinalityKeyValue("tool", name);
+            Duration queueWait = AgentTaskDecorator.takeQueueWait();
+            if (queueWait != null) {
+                observation.highCardinalityKeyValue("queue.wait.ms", String.valueOf(queueWait.toMillis()));
+            }
+            observation.start();
+            boolean success = false;
+            try (Observation.Scope scope = observation.openScope()) {
+                T result = call.get();
+                success = !failed.test(result);
+                return result;
+            } catch (RuntimeException e) {
+                observation.error(e);
+                throw e;
+            } finally {
+                observation.lowCardinalityKeyValue("outcome", success ? "success" : "error");
+                observation.stop();
+                metricsService.recordToolInvocation(name, success);
+            }
+        }
+    }
+}
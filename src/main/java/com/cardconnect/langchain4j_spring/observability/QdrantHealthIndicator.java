@@ -3,6 +3,7 @@ package com.cardconnect.langchain4j_spring.observability;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
@@ -16,6 +17,8 @@ import java.util.Map;
  * Checks if Qdrant is running and collection exists.
  */
 @Component
+@ConditionalOnProperty(prefix = "app.langchain4j.rag.vector-store", name = "type", havingValue = "qdrant",
+        matchIfMissing = true)
 @Slf4j
 @RequiredArgsConstructor
 public class QdrantHealthIndicator implements HealthIndicator {
@@ -0,0 +1,106 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of the vector search behind a content retriever, tagged by the {@code collection} searched
+ * and the {@code source} the retriever is filtered to:
+ * <ul>
+ *   <li>{@code rag.retrieval.embedding} - time to embed the query</li>
+ *   <li>{@code rag.retrieval.search} - time of the vector search</li>
+ *   <li>{@code rag.retrieval.results} - matches per search</li>
+ *   <li>{@code rag.retrieval.score.top} / {@code rag.retrieval.score.average} - relevance score of the
+ *       best match and the average over all matches of a search</li>
+ * </ul>
+ *
+ * <p>Meters are registered once per retriever. The {@link #disabled()} instance registers nothing and
+ * only calls through, so switched-off metrics cost no clock reads and no meter updates.
+ */
+public final class RetrievalMetrics {
+
+    private static final RetrievalMetrics DISABLED = new RetrievalMetrics(null, null, null, null, null);
+    private static final double[] SCORE_BUCKETS = {0.5, 0.6, 0.7, 0.75, 0.8, 0.85, 0.9, 0.95};
+    private static final double[] RESULT_BUCKETS = {1, 2, 3, 5, 10, 20, 50};
+
+    private final Timer embeddingTimer;
+    private final Timer searchTimer;
+    private final DistributionSummary results;
+    private final DistributionSummary topScore;
+    private final DistributionSummary averageScore;
+
+    private RetrievalMetrics(Timer embeddingTimer, Timer searchTimer, DistributionSummary results,
+                             DistributionSummary topScore, DistributionSummary averageScore) {
+        this.embeddingTimer = embeddingTimer;
+        this.searchTimer = searchTimer;
+        this.results = results;
+        this.topScore = topScore;
+        this.averageScore = averageScore;
+    }
+
+    public static RetrievalMetrics create(MeterRegistry meterRegistry, String collection, String source) {
+        Tags tags = Tags.of("collection", collection, "source", source);
+        return new RetrievalMetrics(
+                Timer.builder("rag.retrieval.embedding")
+                        .description("Time to embed a retrieval query")
+                        .tags(tags)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                Timer.builder("rag.retrieval.search")
+                        .description("Vector search time of a retrieval query")
+                        .tags(tags)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                DistributionSummary.builder("rag.retrieval.results")
+                        .description("Matches found by a vector search")
+                        .tags(tags)
+                        .serviceLevelObjectives(RESULT_BUCKETS)
+                        .register(meterRegistry),
+                DistributionSummary.builder("rag.retrieval.score.top")
+                        .description("Relevance score of the best match of a vector search")
+                        .tags(tags)
+                        .serviceLevelObjectives(SCORE_BUCKETS)
+                        .register(meterRegistry),
+                DistributionSummary.builder("rag.retrieval.score.average")
+                        .description("Average relevance score of the matches of a vector search")
+                        .tags(tags)
+                        .serviceLevelObjectives(SCORE_BUCKETS)
+                        .register(meterRegistry));
+    }
+
+    public static RetrievalMetrics disabled() {
+        return DISABLED;
+    }
+
+    public <T> T timeEmbedding(Supplier<T> embedding) {
+        return embeddingTimer == null ? embedding.get() : embeddingTimer.record(embedding);
+    }
+
+    public <T> T timeSearch(Supplier<T> search) {
+        return searchTimer == null ? search.get() : searchTimer.record(search);
+    }
+
+    /**
+     * Records the matches of one search, ordered by descending score.
+     */
+    public void recordMatches(List<? extends EmbeddingMatch<?>> matches) {
+        if (results == null) {
+            return;
+        }
+        results.record(matches.size());
+        if (!matches.isEmpty()) {
+            topScore.record(matches.get(0).score());
+            double sum = 0;
+            for (EmbeddingMatch<?> match : matches) {
+                sum += match.score();
+            }
+            averageScore.record(sum / matches.size());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import dev.langchain4j.model.chat.StreamingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Wraps the streaming chat model bean in a {@link TimedStreamingChatModel}, so every streaming agent
+ * records time to first token. Dependencies are resolved lazily, as a post processor is instantiated
+ * before regular beans.
+ */
+@RequiredArgsConstructor
+public class StreamingChatModelPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final ObjectProvider<ObservationRegistry> observationRegistry;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof StreamingChatModel streamingChatModel) || bean instanceof TimedStreamingChatModel) {
+            return bean;
+        }
+        return new TimedStreamingChatModel(streamingChatModel, meterRegistry.getObject(),
+                observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
+    }
+}
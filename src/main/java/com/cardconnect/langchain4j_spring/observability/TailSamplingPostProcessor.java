@@ -0,0 +1,29 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Wraps the span exporter beans, e.g. the OTLP exporter, in a {@link TailSamplingSpanExporter}, so the
+ * batch span processor hands every finished span to the tail sampler first. Dependencies are resolved
+ * lazily, as a post processor is instantiated before regular beans.
+ */
+@RequiredArgsConstructor
+public class TailSamplingPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<LangChain4jProperties> properties;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof SpanExporter spanExporter) || bean instanceof TailSamplingSpanExporter) {
+            return bean;
+        }
+        return new TailSamplingSpanExporter(spanExporter,
+                properties.getObject().getObservability().getTailSampling(), meterRegistry.getObject());
+    }
+}
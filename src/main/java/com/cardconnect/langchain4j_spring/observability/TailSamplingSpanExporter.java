@@ -0,0 +1,197 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Span exporter deciding per trace, once the trace has finished, whether it is exported at all:
+ * <ul>
+ *   <li>{@code error} - a span of the trace failed, or the request ended with a server error</li>
+ *   <li>{@code slow} - the local root span took at least {@code slowThreshold}</li>
+ *   <li>{@code sampled} / {@code dropped} - otherwise by the sample rate of the root span's endpoint</li>
+ * </ul>
+ * Spans are held back until the local root span of their trace arrives. Spans ending after their
+ * root, e.g. of a streamed response, follow the decision made for the trace.
+ *
+ * <p>Decisions are counted as {@code tracing.tail.sampling.traces} by {@code decision}; traces
+ * decided without their root span count as {@code expired}, traces pushed out of a full buffer as
+ * {@code evicted}. Spans reach this exporter from the batch span processor's thread, never from the
+ * request thread.
+ */
+@Slf4j
+public class TailSamplingSpanExporter implements SpanExporter {
+
+    static final AttributeKey<String> URI = AttributeKey.stringKey("uri");
+    static final AttributeKey<String> OUTCOME = AttributeKey.stringKey("outcome");
+
+    private final SpanExporter delegate;
+    private final LangChain4jProperties.TailSampling config;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, List<SpanData>> pending = new LinkedHashMap<>();
+    private final Map<String, Long> pendingSince = new LinkedHashMap<>();
+    private final Map<String, Boolean> decided;
+    private final Map<String, Counter> decisions = new LinkedHashMap<>();
+
+    public TailSamplingSpanExporter(SpanExporter delegate,
+                                    LangChain4jProperties.TailSampling config,
+                                    MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.config = config;
+        int maxDecided = config.getMaxPendingTraces();
+        this.decided = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxDecided;
+            }
+        };
+        for (String decision : List.of("error", "slow", "sampled", "dropped", "expired", "evicted")) {
+            decisions.put(decision, Counter.builder("tracing.tail.sampling.traces")
+                    .description("Finished traces by tail sampling decision")
+                    .tag("decision", decision)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("tracing.tail.sampling.pending", this, TailSamplingSpanExporter::pendingTraces)
+                .description("Traces waiting for their root span")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<SpanData> exported = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (SpanData span : spans) {
+                String traceId = span.getTraceId();
+                Boolean keep = decided.get(traceId);
+                if (keep != null) {
+                    if (keep) {
+                        exported.add(span);
+                    }
+                    continue;
+                }
+                List<SpanData> trace = pending.computeIfAbsent(traceId, id -> new ArrayList<>());
+                pendingSince.putIfAbsent(traceId, now);
+                trace.add(span);
+                if (isLocalRoot(span)) {
+                    pending.remove(traceId);
+                    pendingSince.remove(traceId);
+                    if (decide(traceId, trace, span)) {
+                        exported.addAll(trace);
+                    }
+                }
+            }
+            expire(now, exported);
+        }
+        return exported.isEmpty() ? CompletableResultCode.ofSuccess() : delegate.export(exported);
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                log.debug("Dropping {} traces without root span on shutdown", pending.size());
+            }
+            pending.clear();
+            pendingSince.clear();
+        }
+        return delegate.shutdown();
+    }
+
+    private boolean decide(String traceId, List<SpanData> trace, SpanData root) {
+        String decision;
+        if (hasError(trace)) {
+            decision = "error";
+        } else if (root.getEndEpochNanos() - root.getStartEpochNanos() >= config.getSlowThreshold().toNanos()) {
+            decision = "slow";
+        } else {
+            decision = ThreadLocalRandom.current().nextDouble() < sampleRate(root.getAttributes().get(URI))
+                    ? "sampled" : "dropped";
+        }
+        decisions.get(decision).increment();
+        boolean keep = !"dropped".equals(decision);
+        decided.put(traceId, keep);
+        return keep;
+    }
+
+    /**
+     * Decides traces waiting longer than {@code pendingTimeout} without their root span, and drops the
+     * oldest waiting traces beyond {@code maxPendingTraces}.
+     */
+    private void expire(long now, List<SpanData> exported) {
+        long timeout = config.getPendingTimeout().toNanos();
+        Iterator<Map.Entry<String, Long>> oldest = pendingSince.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<String, Long> entry = oldest.next();
+            boolean full = pendingSince.size() > config.getMaxPendingTraces();
+            if (!full && now - entry.getValue() < timeout) {
+                break;
+            }
+            String traceId = entry.getKey();
+            List<SpanData> trace = pending.remove(traceId);
+            oldest.remove();
+            boolean keep = !full && hasError(trace);
+            decisions.get(full ? "evicted" : keep ? "error" : "expired").increment();
+            decided.put(traceId, keep);
+            if (keep) {
+                exported.addAll(trace);
+            }
+        }
+    }
+
+    private double sampleRate(String uri) {
+        if (uri == null) {
+            return config.getSampleRate();
+        }
+        Comparator<String> specificity = pathMatcher.getPatternComparator(uri);
+        String best = null;
+        for (String pattern : config.getEndpointSampleRates().keySet()) {
+            if (pathMatcher.match(pattern, uri) && (best == null || specificity.compare(pattern, best) < 0)) {
+                best = pattern;
+            }
+        }
+        return best != null ? config.getEndpointSampleRates().get(best) : config.getSampleRate();
+    }
+
+    private static boolean isLocalRoot(SpanData span) {
+        SpanContext parent = span.getParentSpanContext();
+        return !parent.isValid() || parent.isRemote();
+    }
+
+    private static boolean hasError(List<SpanData> trace) {
+        for (SpanData span : trace) {
+            if (span.getStatus().getStatusCode() == StatusCode.ERROR
+                    || "SERVER_ERROR".equals(span.getAttributes().get(OUTCOME))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized int pendingTraces() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,172 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming chat model recording {@code llm.time.to.first.token} by {@code model} and {@code agent}:
+ * the time from the call to its first partial response, thinking or tool call.
+ *
+ * <p>Chat model listeners are only notified of the complete response, so this is measured around the
+ * model instead. Everything else is passed to the wrapped model, including its listeners.
+ */
+public class TimedStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Timers by model and agent, so a call does not build and look up its timer in the registry.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Timer>> timers = new ConcurrentHashMap<>();
+
+    public TimedStreamingChatModel(StreamingChatModel delegate,
+                                   MeterRegistry meterRegistry,
+                                   ObservationRegistry observationRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        String model = ChatModelMetricsListener.model(chatRequest.modelName(), defaultModelName());
+        Timer timeToFirstToken = timeToFirstToken(model, ChatModelMetricsListener.currentAgent(observationRegistry));
+        delegate.chat(chatRequest, new FirstTokenHandler(handler, timeToFirstToken, System.nanoTime()));
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    private Timer timeToFirstToken(String model, String agent) {
+        ConcurrentMap<String, Timer> byAgent = timers.computeIfAbsent(model, key -> new ConcurrentHashMap<>());
+        Timer timer = byAgent.get(agent);
+        return timer != null ? timer : byAgent.computeIfAbsent(agent, key -> Timer.builder("llm.time.to.first.token")
+                .description("Time from a streamed chat model call to its first token")
+                .tag("model", model)
+                .tag("agent", agent)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private String defaultModelName() {
+        ChatRequestParameters parameters = delegate.defaultRequestParameters();
+        return parameters != null ? parameters.modelName() : null;
+    }
+
+    /**
+     * Records the first callback and forwards all of them. Callbacks of one stream arrive sequentially.
+     */
+    private static final class FirstTokenHandler implements StreamingChatResponseHandler {
+
+        private final StreamingChatResponseHandler delegate;
+        private final Timer timeToFirstToken;
+        private final long startNanos;
+        private boolean first = true;
+
+        private FirstTokenHandler(StreamingChatResponseHandler delegate, Timer timeToFirstToken, long startNanos) {
+            this.delegate = delegate;
+            this.timeToFirstToken = timeToFirstToken;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            recordFirst();
+            delegate.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+            recordFirst();
+            delegate.onPartialResponse(partialResponse, context);
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking) {
+            recordFirst();
+            delegate.onPartialThinking(partialThinking);
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking, PartialThinkingContext context) {
+            recordFirst();
+            delegate.onPartialThinking(partialThinking, context);
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall) {
+            recordFirst();
+            delegate.onPartialToolCall(partialToolCall);
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall, PartialToolCallContext context) {
+            recordFirst();
+            delegate.onPartialToolCall(partialToolCall, context);
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            recordFirst();
+            delegate.onCompleteToolCall(completeToolCall);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            delegate.onCompleteResponse(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            delegate.onError(error);
+        }
+
+        private void recordFirst() {
+            if (first) {
+                first = false;
+                timeToFirstToken.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.cardconnect.langchain4j_spring.observability;
 
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
 import io.micrometer.observation.Observation;
 import io.micrometer.observation.ObservationRegistry;
 import jakarta.servlet.http.HttpServletRequest;
@@ -21,6 +22,7 @@ import java.util.UUID;
 public class TracingInterceptor implements HandlerInterceptor {
 
     private final ObservationRegistry observationRegistry;
+    private final LangChain4jProperties properties;
 
     private static final String REQUEST_ID_HEADER = "X-Request-ID";
     private static final String TRACE_ID_HEADER = "X-Trace-ID";
@@ -57,12 +59,22 @@ public class TracingInterceptor implements HandlerInterceptor {
         if (startTime != null) {
             long duration = System.currentTimeMillis() - startTime;
 
-            log.info("Request completed: {} {} - Status: {} - Duration: {}ms [requestId={}]",
-                    request.getMethod(),
-                    request.getRequestURI(),
-                    response.getStatus(),
-                    duration,
-                    requestId);
+            // Only slow requests are logged at WARN; logging every request costs noticeable CPU under load
+            if (duration >= properties.getObservability().getSlowRequestThreshold().toMillis()) {
+                log.warn("Slow request completed: {} {} - Status: {} - Duration: {}ms [requestId={}]",
+                        request.getMethod(),
+                        request.getRequestURI(),
+                        response.getStatus(),
+                        duration,
+                        requestId);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Request completed: {} {} - Status: {} - Duration: {}ms [requestId={}]",
+                        request.getMethod(),
+                        request.getRequestURI(),
+                        response.getStatus(),
+                        duration,
+                        requestId);
+            }
         }
 
         if (ex != null) {
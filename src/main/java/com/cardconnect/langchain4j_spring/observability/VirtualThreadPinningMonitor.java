@@ -0,0 +1,92 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier thread, using the JFR
+ * {@code jdk.VirtualThreadPinned} event.
+ *
+ * <p>On Java 21 a virtual thread that blocks inside a {@code synchronized} block or native frame
+ * (e.g. H2 and older JDBC drivers) cannot unmount and holds a carrier thread, which quietly caps
+ * concurrency at the number of carriers. Every pinning longer than the threshold is recorded in the
+ * {@code jvm.threads.virtual.pinned} timer; the first occurrence per blocking frame is logged with
+ * its stack trace.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements DisposableBean {
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final int MAX_REPORTED_FRAMES = 1_000;
+    private static final int LOGGED_STACK_DEPTH = 12;
+
+    private final RecordingStream recordingStream;
+    private final Timer pinnedTimer;
+    private final Set<String> reportedFrames = ConcurrentHashMap.newKeySet();
+
+    public VirtualThreadPinningMonitor(Duration threshold, MeterRegistry meterRegistry) {
+        this.pinnedTimer = Timer.builder("jvm.threads.virtual.pinned")
+                .description("Time virtual threads spent pinned to their carrier thread")
+                .register(meterRegistry);
+
+        this.recordingStream = new RecordingStream();
+        this.recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        this.recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        this.recordingStream.startAsync();
+
+        log.info("Virtual thread pinning monitor started - threshold: {}", threshold);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedTimer.record(event.getDuration());
+
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace == null ? List.of() : stackTrace.getFrames();
+        String blockingFrame = firstApplicationFrame(frames);
+        if (reportedFrames.size() < MAX_REPORTED_FRAMES && reportedFrames.add(blockingFrame)) {
+            StringBuilder stack = new StringBuilder();
+            for (int i = 0; i < Math.min(frames.size(), LOGGED_STACK_DEPTH); i++) {
+                stack.append("\n\tat ").append(describe(frames.get(i)));
+            }
+            log.warn("Virtual thread pinned for {} ms in {}{}",
+                    event.getDuration().toMillis(), blockingFrame, stack);
+        } else {
+            log.debug("Virtual thread pinned for {} ms in {}", event.getDuration().toMillis(), blockingFrame);
+        }
+    }
+
+    /**
+     * The first frame outside the JDK, which is usually the code holding the monitor.
+     */
+    private static String firstApplicationFrame(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            String className = frame.getMethod().getType().getName();
+            if (!className.startsWith("java.") && !className.startsWith("jdk.") && !className.startsWith("sun.")) {
+                return describe(frame);
+            }
+        }
+        return frames.isEmpty() ? "unknown" : describe(frames.get(0));
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+
+    @Override
+    public void destroy() {
+        recordingStream.close();
+    }
+}
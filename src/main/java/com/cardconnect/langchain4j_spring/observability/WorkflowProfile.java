@@ -0,0 +1,133 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Profile of one workflow request: the graph of its sub-agent invocations and what it says about
+ * latency.
+ * <ul>
+ *   <li>{@code criticalPathMs} - the longest chain of invocations each starting after the previous one
+ *       ended; no amount of parallelism makes the request faster than this</li>
+ *   <li>{@code parallelism} - agent time (the self times of all invocations) per wall time, i.e. the
+ *       average number of agents running at once</li>
+ *   <li>{@code parallelEfficiency} - achieved speedup over the speedup the graph allows,
+ *       {@code criticalPathMs / wallMs}; the rest of the wall time is orchestration, queueing and
+ *       agents that could have run in parallel but did not</li>
+ * </ul>
+ *
+ * @param invocations sub-agent invocations in start order, with times relative to the request start
+ */
+public record WorkflowProfile(String workflow,
+                              String traceId,
+                              Instant startedAt,
+                              double wallMs,
+                              double criticalPathMs,
+                              List<String> criticalPath,
+                              double parallelism,
+                              double parallelEfficiency,
+                              List<Invocation> invocations) {
+
+    /**
+     * One sub-agent invocation.
+     *
+     * @param parentId the enclosing invocation, or {@code null} for invocations of the workflow itself
+     * @param selfMs   time not covered by nested invocations
+     */
+    public record Invocation(int id, Integer parentId, String agent, double startMs, double endMs, double selfMs,
+                             boolean critical) {
+
+        public double durationMs() {
+            return endMs - startMs;
+        }
+    }
+
+    /**
+     * An invocation as recorded, with nanosecond timestamps relative to the request start.
+     */
+    record Execution(int id, Integer parentId, String agent, long startNanos, long endNanos) {
+
+        long duration() {
+            return endNanos - startNanos;
+        }
+    }
+
+    static WorkflowProfile of(String workflow, String traceId, Instant startedAt, long wallNanos,
+                              List<Execution> executions) {
+        List<Execution> byEnd = new ArrayList<>(executions);
+        byEnd.sort(Comparator.comparingLong(Execution::endNanos));
+
+        // Longest chain in the happens-before graph: a precedes b when a ended before b started
+        int n = byEnd.size();
+        long[] longest = new long[n];
+        int[] previous = new int[n];
+        int last = -1;
+        for (int i = 0; i < n; i++) {
+            Execution execution = byEnd.get(i);
+            previous[i] = -1;
+            long before = 0;
+            for (int j = 0; j < i && byEnd.get(j).endNanos() <= execution.startNanos(); j++) {
+                if (longest[j] > before) {
+                    before = longest[j];
+                    previous[i] = j;
+                }
+            }
+            longest[i] = before + execution.duration();
+            if (last < 0 || longest[i] > longest[last]) {
+                last = i;
+            }
+        }
+        boolean[] critical = new boolean[n];
+        List<String> criticalPath = new ArrayList<>();
+        for (int i = last; i >= 0; i = previous[i]) {
+            critical[i] = true;
+            criticalPath.addFirst(byEnd.get(i).agent());
+        }
+
+        List<Invocation> invocations = new ArrayList<>(n);
+        long agentTime = 0;
+        for (int i = 0; i < n; i++) {
+            Execution execution = byEnd.get(i);
+            long self = execution.duration() - nestedTime(execution, executions);
+            agentTime += self;
+            invocations.add(new Invocation(execution.id(), execution.parentId(), execution.agent(),
+                    millis(execution.startNanos()), millis(execution.endNanos()), millis(self), critical[i]));
+        }
+        invocations.sort(Comparator.comparingDouble(Invocation::startMs).thenComparingInt(Invocation::id));
+
+        long criticalNanos = last >= 0 ? longest[last] : 0;
+        double wall = Math.max(wallNanos, 1);
+        return new WorkflowProfile(workflow, traceId, startedAt, millis(wallNanos), millis(criticalNanos),
+                List.copyOf(criticalPath), agentTime / wall, Math.min(1.0, criticalNanos / wall),
+                List.copyOf(invocations));
+    }
+
+    /**
+     * Time within the invocation covered by its direct children, counting overlapping children once.
+     */
+    private static long nestedTime(Execution parent, List<Execution> executions) {
+        long[][] children = executions.stream()
+                .filter(child -> Integer.valueOf(parent.id()).equals(child.parentId()))
+                .map(child -> new long[]{Math.max(child.startNanos(), parent.startNanos()),
+                        Math.min(child.endNanos(), parent.endNanos())})
+                .filter(interval -> interval[1] > interval[0])
+                .sorted(Comparator.comparingLong(interval -> interval[0]))
+                .toArray(long[][]::new);
+        long covered = 0;
+        long coveredUntil = Long.MIN_VALUE;
+        for (long[] interval : children) {
+            long start = Math.max(interval[0], coveredUntil);
+            if (interval[1] > start) {
+                covered += interval[1] - start;
+                coveredUntil = interval[1];
+            }
+        }
+        return covered;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
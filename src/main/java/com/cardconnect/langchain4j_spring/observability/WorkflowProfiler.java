@@ -0,0 +1,329 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.handler.TracingObservationHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Observation handler profiling agentic workflow requests. Every {@code agent.*} endpoint observation,
+ * e.g. {@code agent.novel} of {@code /script}, collects the {@link AgentObservations} invocations
+ * running within it into a {@link WorkflowProfile} when it stops. Profiles are published as
+ * <ul>
+ *   <li>{@code workflow.critical.path} - critical path length histogram, by {@code workflow}</li>
+ *   <li>{@code workflow.parallelism} / {@code workflow.parallel.efficiency} - average concurrency and
+ *       parallel efficiency, by {@code workflow}</li>
+ *   <li>{@code workflow.agent.self.time} - time of each invocation not spent in nested invocations,
+ *       by {@code workflow} and {@code agent}</li>
+ *   <li>{@code workflow.critical.path.agent} - invocations on the critical path, by {@code workflow}
+ *       and {@code agent}</li>
+ * </ul>
+ * and the most recent ones per workflow are kept for the {@code workflows} actuator endpoint. Requests
+ * without sub-agent invocations, e.g. of single AI services, are not profiled.
+ */
+@Slf4j
+public class WorkflowProfiler implements ObservationHandler<Observation.Context> {
+
+    private static final String AGENT_OBSERVATION_PREFIX = "agent.";
+
+    private final LangChain4jProperties.WorkflowProfiler config;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Deque<WorkflowProfile>> recent = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, WorkflowMeters> workflowMeters = new ConcurrentHashMap<>();
+
+    public WorkflowProfiler(LangChain4jProperties.WorkflowProfiler config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        String name = context.getName();
+        return name != null && name.startsWith(AGENT_OBSERVATION_PREFIX);
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        String name = context.getName();
+        if (AgentObservations.AGENT_INVOCATION.equals(name)) {
+            startInvocation(context);
+        } else if (!ObservedToolProvider.AGENT_TOOL.equals(name) && recording(context.getParentObservation()) == null) {
+            String workflow = name.substring(AGENT_OBSERVATION_PREFIX.length());
+            context.put(Recording.class, new Recording(workflow, System.nanoTime(), Instant.now()));
+        }
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Invocation invocation = context.get(Invocation.class);
+        if (invocation != null) {
+            invocation.endNanos = System.nanoTime();
+            return;
+        }
+        Recording recording = context.get(Recording.class);
+        if (recording != null) {
+            finish(recording, context);
+        }
+    }
+
+    /**
+     * Most recent profiles of the workflow, newest first.
+     */
+    public List<WorkflowProfile> recentProfiles(String workflow) {
+        Deque<WorkflowProfile> profiles = recent.get(workflow);
+        if (profiles == null) {
+            return List.of();
+        }
+        synchronized (profiles) {
+            return List.copyOf(profiles);
+        }
+    }
+
+    /**
+     * Summary of the recent profiles of every profiled workflow.
+     */
+    public Map<String, WorkflowSummary> summaries() {
+        Map<String, WorkflowSummary> summaries = new TreeMap<>();
+        for (String workflow : recent.keySet()) {
+            List<WorkflowProfile> profiles = recentProfiles(workflow);
+            if (!profiles.isEmpty()) {
+                summaries.put(workflow, WorkflowSummary.of(profiles));
+            }
+        }
+        return summaries;
+    }
+
+    private void startInvocation(Observation.Context context) {
+        Invocation parent = null;
+        ObservationView observation = context.getParentObservation();
+        while (observation != null) {
+            Observation.ContextView view = observation.getContextView();
+            Recording recording = view.get(Recording.class);
+            if (recording != null) {
+                int id = recording.ids.incrementAndGet();
+                if (id > config.getMaxInvocations()) {
+                    return;
+                }
+                KeyValue agent = context.getLowCardinalityKeyValue(AgentObservations.AGENT_NAME);
+                Invocation invocation = new Invocation(id, parent != null ? parent.id : null,
+                        agent != null ? agent.getValue() : ChatModelMetricsListener.UNKNOWN, System.nanoTime());
+                context.put(Invocation.class, invocation);
+                recording.invocations.add(invocation);
+                return;
+            }
+            if (parent == null) {
+                parent = view.get(Invocation.class);
+            }
+            observation = view.getParentObservation();
+        }
+    }
+
+    private void finish(Recording recording, Observation.Context context) {
+        long wallNanos = System.nanoTime() - recording.startNanos;
+        List<Invocation> invocations;
+        synchronized (recording.invocations) {
+            invocations = List.copyOf(recording.invocations);
+        }
+        List<WorkflowProfile.Execution> executions = new ArrayList<>(invocations.size());
+        for (Invocation invocation : invocations) {
+            // Invocations still running, e.g. of a streamed response, are left out
+            Long end = invocation.endNanos;
+            if (end != null) {
+                executions.add(new WorkflowProfile.Execution(invocation.id, invocation.parentId, invocation.agent,
+                        invocation.startNanos - recording.startNanos, end - recording.startNanos));
+            }
+        }
+        if (executions.isEmpty()) {
+            return;
+        }
+
+        WorkflowProfile profile = WorkflowProfile.of(recording.workflow, traceId(context), recording.startedAt,
+                wallNanos, executions);
+        record(profile);
+
+        Deque<WorkflowProfile> profiles = recent.computeIfAbsent(recording.workflow, key -> new ArrayDeque<>());
+        synchronized (profiles) {
+            profiles.addFirst(profile);
+            while (profiles.size() > config.getRecentProfiles()) {
+                profiles.removeLast();
+            }
+        }
+        log.debug("Workflow {} took {}ms, critical path {}ms {}", profile.workflow(), profile.wallMs(),
+                profile.criticalPathMs(), profile.criticalPath());
+    }
+
+    private void record(WorkflowProfile profile) {
+        WorkflowMeters meters = workflowMeters(profile.workflow());
+        meters.criticalPath.record(nanos(profile.criticalPathMs()));
+        meters.parallelism.record(profile.parallelism());
+        meters.parallelEfficiency.record(profile.parallelEfficiency());
+        for (WorkflowProfile.Invocation invocation : profile.invocations()) {
+            meters.selfTime(invocation.agent()).record(nanos(invocation.selfMs()));
+            if (invocation.critical()) {
+                meters.criticalPathAgent(invocation.agent()).increment();
+            }
+        }
+    }
+
+    /**
+     * Meters of one workflow, registered on first use so profiling a request does not build and look
+     * up every meter again.
+     */
+    private WorkflowMeters workflowMeters(String workflow) {
+        WorkflowMeters meters = workflowMeters.get(workflow);
+        return meters != null ? meters : workflowMeters.computeIfAbsent(workflow, WorkflowMeters::new);
+    }
+
+    private static String traceId(Observation.Context context) {
+        TracingObservationHandler.TracingContext tracingContext =
+                context.get(TracingObservationHandler.TracingContext.class);
+        Span span = tracingContext != null ? tracingContext.getSpan() : null;
+        return span != null ? span.context().traceId() : null;
+    }
+
+    private static Recording recording(ObservationView observation) {
+        while (observation != null) {
+            Recording recording = observation.getContextView().get(Recording.class);
+            if (recording != null) {
+                return recording;
+            }
+            observation = observation.getContextView().getParentObservation();
+        }
+        return null;
+    }
+
+    private static Duration nanos(double millis) {
+        return Duration.ofNanos((long) (millis * 1_000_000));
+    }
+
+    private final class WorkflowMeters {
+
+        private final String workflow;
+        private final Timer criticalPath;
+        private final DistributionSummary parallelism;
+        private final DistributionSummary parallelEfficiency;
+        private final ConcurrentMap<String, Timer> selfTimes = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Counter> criticalPathAgents = new ConcurrentHashMap<>();
+
+        private WorkflowMeters(String workflow) {
+            this.workflow = workflow;
+            this.criticalPath = Timer.builder("workflow.critical.path")
+                    .description("Critical path length of agentic workflow requests")
+                    .tag("workflow", workflow)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.parallelism = DistributionSummary.builder("workflow.parallelism")
+                    .description("Average number of sub-agents running at once during a workflow request")
+                    .tag("workflow", workflow)
+                    .serviceLevelObjectives(1, 2, 4, 8)
+                    .register(meterRegistry);
+            this.parallelEfficiency = DistributionSummary.builder("workflow.parallel.efficiency")
+                    .description("Critical path length per wall time of workflow requests")
+                    .tag("workflow", workflow)
+                    .serviceLevelObjectives(0.25, 0.5, 0.75, 0.9)
+                    .register(meterRegistry);
+        }
+
+        private Timer selfTime(String agent) {
+            Timer timer = selfTimes.get(agent);
+            if (timer == null) {
+                timer = selfTimes.computeIfAbsent(agent, key -> Timer.builder("workflow.agent.self.time")
+                        .description("Time of sub-agent invocations not spent in nested invocations")
+                        .tag("workflow", workflow)
+                        .tag("agent", key)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+            }
+            return timer;
+        }
+
+        private Counter criticalPathAgent(String agent) {
+            Counter counter = criticalPathAgents.get(agent);
+            if (counter == null) {
+                counter = criticalPathAgents.computeIfAbsent(agent, key -> Counter
+                        .builder("workflow.critical.path.agent")
+                        .description("Sub-agent invocations on the critical path of their workflow request")
+                        .tag("workflow", workflow)
+                        .tag("agent", key)
+                        .register(meterRegistry));
+            }
+            return counter;
+        }
+    }
+
+    /**
+     * Summary of the recent profiles of one workflow.
+     *
+     * @param criticalPathAgents how often each agent was on the critical path
+     */
+    public record WorkflowSummary(int profiles, double meanWallMs, double meanCriticalPathMs, double meanParallelism,
+                                  double meanParallelEfficiency, Map<String, Integer> criticalPathAgents) {
+
+        static WorkflowSummary of(List<WorkflowProfile> profiles) {
+            double wall = 0;
+            double criticalPath = 0;
+            double parallelism = 0;
+            double efficiency = 0;
+            Map<String, Integer> criticalPathAgents = new LinkedHashMap<>();
+            for (WorkflowProfile profile : profiles) {
+                wall += profile.wallMs();
+                criticalPath += profile.criticalPathMs();
+                parallelism += profile.parallelism();
+                efficiency += profile.parallelEfficiency();
+                for (WorkflowProfile.Invocation invocation : profile.invocations()) {
+                    if (invocation.critical()) {
+                        criticalPathAgents.merge(invocation.agent(), 1, Integer::sum);
+                    }
+                }
+            }
+            int n = profiles.size();
+            return new WorkflowSummary(n, wall / n, criticalPath / n, parallelism / n, efficiency / n,
+                    criticalPathAgents);
+        }
+    }
+
+    private record Recording(String workflow, long startNanos, Instant startedAt, AtomicInteger ids,
+                             List<Invocation> invocations) {
+
+        Recording(String workflow, long startNanos, Instant startedAt) {
+            this(workflow, startNanos, startedAt, new AtomicInteger(), Collections.synchronizedList(new ArrayList<>()));
+        }
+    }
+
+    private static final class Invocation {
+        private final int id;
+        private final Integer parentId;
+        private final String agent;
+        private final long startNanos;
+        private volatile Long endNanos;
+
+        private Invocation(int id, Integer parentId, String agent, long startNanos) {
+            this.id = id;
+            this.parentId = parentId;
+            this.agent = agent;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint of the {@link WorkflowProfiler}: {@code /actuator/workflows} summarizes the recent
+ * profiles of every workflow, {@code /actuator/workflows/{workflow}} lists them with their invocation
+ * graphs, newest first.
+ */
+@Endpoint(id = "workflows")
+@RequiredArgsConstructor
+public class WorkflowsEndpoint {
+
+    private final WorkflowProfiler profiler;
+
+    @ReadOperation
+    public Map<String, WorkflowProfiler.WorkflowSummary> workflows() {
+        return profiler.summaries();
+    }
+
+    @ReadOperation
+    public List<WorkflowProfile> workflow(@Selector String workflow) {
+        return profiler.recentProfiles(workflow);
+    }
+}
@@ -0,0 +1,212 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.Filter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the ingested segments, ranked with Okapi BM25.
+ *
+ * <p>Segments are added under the ids they have in the embedding store, so keyword and vector
+ * results can be fused by id. The index is not persisted: the {@link IncrementalDocumentIngestor}
+ * fills it on every start, re-splitting unchanged documents without embedding them.
+ *
+ * <p>Text is lower-cased and split into runs of letters and digits; common English stop words are
+ * dropped. Searches hold a read lock, changes a write lock. The number of indexed segments is
+ * published as {@code rag.keyword.index.size}.
+ */
+public class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "did", "do", "does", "for", "from", "has", "have",
+            "how", "i", "in", "is", "it", "its", "me", "my", "of", "on", "or", "that", "the", "their", "there",
+            "this", "to", "was", "were", "what", "when", "where", "which", "who", "why", "will", "with", "you");
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long totalLength;
+
+    public Bm25Index(MeterRegistry meterRegistry) {
+        Gauge.builder("rag.keyword.index.size", this, Bm25Index::size)
+                .description("Segments in the keyword index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds segments, replacing segments already indexed under the same ids.
+     */
+    public void addAll(List<String> ids, List<TextSegment> segments) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                unindex(id);
+                List<String> tokens = tokenize(segments.get(i).text());
+                Map<String, Integer> frequencies = new HashMap<>();
+                tokens.forEach(token -> frequencies.merge(token, 1, Integer::sum));
+                frequencies.forEach((term, frequency) ->
+                        postings.computeIfAbsent(term, key -> new HashMap<>()).put(id, frequency));
+                entries.put(id, new Entry(segments.get(i), tokens.size(), frequencies.keySet()));
+                totalLength += tokens.size();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::unindex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the segments whose metadata matches the filter.
+     */
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            List<String> matching = entries.entrySet().stream()
+                    .filter(entry -> filter.test(entry.getValue().segment().metadata()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            matching.forEach(this::unindex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean containsAll(Collection<String> ids) {
+        lock.readLock().lock();
+        try {
+            return entries.keySet().containsAll(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the segments with the highest BM25 score for the query terms.
+     *
+     * @param query      free text; tokenized like the indexed segments
+     * @param maxResults maximum number of hits
+     * @param filter     metadata filter the hits must match, or {@code null}
+     * @return hits by descending score; empty if no query term is indexed or {@code maxResults} is not positive
+     */
+    public List<Hit> search(String query, int maxResults, Filter filter) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || entries.isEmpty() || maxResults <= 0) {
+                return List.of();
+            }
+            double averageLength = Math.max(1.0, (double) totalLength / entries.size());
+            Map<String, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<String, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (entries.size() - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((id, frequency) -> {
+                    double norm = K1 * (1 - B + B * entries.get(id).length() / averageLength);
+                    scores.merge(id, idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+                });
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(maxResults + 1,
+                    (left, right) -> Double.compare(left.score(), right.score()));
+            for (Map.Entry<String, Double> score : scores.entrySet()) {
+                if (top.size() == maxResults && score.getValue() <= top.peek().score()) {
+                    continue;
+                }
+                Entry entry = entries.get(score.getKey());
+                if (filter != null && !filter.test(entry.segment().metadata())) {
+                    continue;
+                }
+                int matched = (int) terms.stream().filter(entry.terms()::contains).count();
+                top.add(new Hit(score.getKey(), entry.segment(), score.getValue(), matched == terms.size()));
+                if (top.size() > maxResults) {
+                    top.poll();
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort((left, right) -> Double.compare(right.score(), left.score()));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lower-cased runs of letters and digits, without stop words.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            String token = matcher.group();
+            if (!STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void unindex(String id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        totalLength -= entry.length();
+        for (String term : entry.terms()) {
+            Map<String, Integer> posting = postings.get(term);
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private record Entry(TextSegment segment, int length, Set<String> terms) {
+    }
+
+    /**
+     * A segment found by keyword search.
+     *
+     * @param allTerms whether the segment contains every query term
+     */
+    public record Hit(String id, TextSegment segment, double score, boolean allTerms) {
+    }
+}
@@ -0,0 +1,211 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caching decorator for an {@link EmbeddingModel}.
+ *
+ * <p>Vectors are keyed by a SHA-256 hash of the model name and the text, so the same text embedded by
+ * another model never shares an entry. Lookups go to a bounded in-memory LRU tier first and then, if
+ * configured, to a memory-mapped {@link EmbeddingDiskCache} that survives restarts. {@link #embedAll}
+ * sends only the distinct misses of a batch to the model, in a single call.
+ *
+ * <p>Segment metadata does not influence the embedding and is not part of the key.
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel, DisposableBean {
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final int maxEntries;
+    private final EmbeddingDiskCache diskCache;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<Key, float[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Counter memoryHitCounter;
+    private final Counter diskHitCounter;
+    private final Counter missCounter;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate,
+                                 LangChain4jProperties.EmbeddingCache config,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.modelName = String.valueOf(delegate.modelName());
+        this.maxEntries = config.getMaxEntries();
+        this.diskCache = config.isDiskEnabled()
+                ? new EmbeddingDiskCache(Path.of(config.getDiskPath()), config.getDiskMaxEntries())
+                : null;
+
+        this.memoryHitCounter = requestCounter(meterRegistry, "hit", "memory");
+        this.diskHitCounter = requestCounter(meterRegistry, "hit", "disk");
+        this.missCounter = requestCounter(meterRegistry, "miss", "none");
+
+        Gauge.builder("embedding.cache.size", this, CachingEmbeddingModel::memorySize)
+                .tag("tier", "memory")
+                .description("Embeddings held by the embedding cache")
+                .register(meterRegistry);
+        if (diskCache != null) {
+            Gauge.builder("embedding.cache.size", diskCache, EmbeddingDiskCache::size)
+                    .tag("tier", "disk")
+                    .description("Embeddings held by the embedding cache")
+                    .register(meterRegistry);
+        }
+        log.info("Caching embeddings of model {} - memory entries: {}, disk: {}",
+                modelName, maxEntries, diskCache != null ? config.getDiskPath() : "disabled");
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result, String tier) {
+        return Counter.builder("embedding.cache.requests")
+                .tag("result", result)
+                .tag("tier", tier)
+                .description("Texts to embed by embedding cache result")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        Embedding[] embeddings = new Embedding[textSegments.size()];
+        Map<Key, List<Integer>> misses = new LinkedHashMap<>();
+        List<TextSegment> missedSegments = new ArrayList<>();
+
+        for (int i = 0; i < textSegments.size(); i++) {
+            TextSegment segment = textSegments.get(i);
+            Key key = key(segment.text());
+            float[] vector = lookup(key);
+            if (vector != null) {
+                // Callers may normalize the vector in place, so never hand out the cached array
+                embeddings[i] = Embedding.from(vector.clone());
+                continue;
+            }
+            List<Integer> positions = misses.computeIfAbsent(key, k -> {
+                missedSegments.add(segment);
+                return new ArrayList<>(1);
+            });
+            positions.add(i);
+        }
+
+        if (misses.isEmpty()) {
+            return Response.from(List.of(embeddings));
+        }
+
+        missCounter.increment(missedSegments.size());
+        Response<List<Embedding>> response = delegate.embedAll(missedSegments);
+        List<Embedding> computed = response.content();
+        int index = 0;
+        for (Map.Entry<Key, List<Integer>> miss : misses.entrySet()) {
+            Embedding embedding = computed.get(index++);
+            store(miss.getKey(), embedding.vector().clone());
+            for (int position : miss.getValue()) {
+                embeddings[position] = embedding;
+            }
+        }
+        return Response.from(List.of(embeddings), response.tokenUsage(), response.finishReason(), response.metadata());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    @Override
+    public String modelName() {
+        return delegate.modelName();
+    }
+
+    private float[] lookup(Key key) {
+        synchronized (lock) {
+            float[] vector = entries.get(key);
+            if (vector != null) {
+                memoryHitCounter.increment();
+                return vector;
+            }
+        }
+        if (diskCache == null) {
+            return null;
+        }
+        float[] vector = diskCache.get(key.hi(), key.lo());
+        if (vector != null) {
+            diskHitCounter.increment();
+            putInMemory(key, vector);
+        }
+        return vector;
+    }
+
+    private void store(Key key, float[] vector) {
+        putInMemory(key, vector);
+        if (diskCache != null) {
+            try {
+                diskCache.put(key.hi(), key.lo(), vector);
+            } catch (RuntimeException e) {
+                log.warn("Failed to write embedding to the disk cache", e);
+            }
+        }
+    }
+
+    private void putInMemory(Key key, float[] vector) {
+        synchronized (lock) {
+            entries.put(key, vector);
+            if (entries.size() > maxEntries) {
+                Iterator<Key> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private Key key(String text) {
+        MessageDigest digest = sha256();
+        digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        long hi = hash.getLong();
+        long lo = hash.getLong();
+        // All-zero keys mark empty slots in the disk cache
+        return new Key(hi == 0 && lo == 0 ? 1 : hi, lo);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int memorySize() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (diskCache != null) {
+            diskCache.close();
+        }
+    }
+
+    private record Key(long hi, long lo) {
+    }
+}
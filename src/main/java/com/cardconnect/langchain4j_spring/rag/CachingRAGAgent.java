@@ -0,0 +1,238 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.assistant.RAGAgent;
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.service.TokenStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationListener;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Two-level answer cache in front of the RAG agent.
+ *
+ * <p>The first level matches the normalized question text (case, Unicode form, whitespace and
+ * trailing punctuation are ignored). On a miss the question is embedded and compared with the
+ * embeddings of all cached questions; the answer of the most similar one is returned if the cosine
+ * similarity reaches the configured threshold. Only on a miss of both levels the question goes to
+ * the agent, i.e. through retrieval and a full chat completion.
+ *
+ * <p>Entries are evicted least recently used first and expire after the configured TTL. Expired
+ * entries are removed when a lookup finds them, and every semantic lookup scans all entries. The whole
+ * cache is dropped when a document with new content is ingested. Streaming requests are not cached.
+ */
+@Slf4j
+public class CachingRAGAgent implements RAGAgent, ApplicationListener<DocumentIngestedEvent> {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s\\p{Punct}]+$");
+
+    private final RAGAgent delegate;
+    private final EmbeddingModel embeddingModel;
+    private final LangChain4jProperties.AnswerCache config;
+    private final long ttlNanos;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> documentIds = new HashMap<>();
+    private long generation;
+
+    private final Counter exactHitCounter;
+    private final Counter semanticHitCounter;
+    private final Counter missCounter;
+    private final Counter invalidationCounter;
+
+    public CachingRAGAgent(RAGAgent delegate,
+                           EmbeddingModel embeddingModel,
+                           LangChain4jProperties.AnswerCache config,
+                           MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.embeddingModel = embeddingModel;
+        this.config = config;
+        this.ttlNanos = config.getTtl().toNanos();
+
+        this.exactHitCounter = requestCounter(meterRegistry, "hit", "exact");
+        this.semanticHitCounter = requestCounter(meterRegistry, "hit", "semantic");
+        this.missCounter = requestCounter(meterRegistry, "miss", "none");
+        this.invalidationCounter = Counter.builder("rag.answer.cache.invalidations")
+                .description("Times the answer cache was dropped because a document was re-ingested")
+                .register(meterRegistry);
+
+        Gauge.builder("rag.answer.cache.hit.ratio", this, CachingRAGAgent::hitRatio)
+                .description("Ratio of RAG questions answered from the cache")
+                .register(meterRegistry);
+        Gauge.builder("rag.answer.cache.size", this, CachingRAGAgent::size)
+                .description("Answers held by the RAG answer cache")
+                .register(meterRegistry);
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result, String level) {
+        return Counter.builder("rag.answer.cache.requests")
+                .tag("result", result)
+                .tag("level", level)
+                .description("RAG questions by answer cache result")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String retrieve(String userMessage) {
+        String key = normalize(userMessage);
+        long now = System.nanoTime();
+
+        long expectedGeneration;
+        synchronized (lock) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isExpired(now, ttlNanos)) {
+                exactHitCounter.increment();
+                return entry.answer();
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            expectedGeneration = generation;
+        }
+
+        float[] embedding = null;
+        if (config.isSemanticEnabled()) {
+            embedding = normalizedEmbedding(userMessage);
+            Entry similar = findSimilar(embedding, now);
+            if (similar != null) {
+                semanticHitCounter.increment();
+                synchronized (lock) {
+                    if (generation == expectedGeneration) {
+                        put(key, new Entry(embedding, similar.answer(), similar.createdAt()));
+                    }
+                }
+                return similar.answer();
+            }
+        }
+
+        missCounter.increment();
+        String answer = delegate.retrieve(userMessage);
+        synchronized (lock) {
+            // An ingestion while the agent was answering may have made the answer stale
+            if (generation == expectedGeneration) {
+                put(key, new Entry(embedding, answer, now));
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public TokenStream retrieveStream(String userMessage) {
+        return delegate.retrieveStream(userMessage);
+    }
+
+    @Override
+    public void onApplicationEvent(DocumentIngestedEvent event) {
+        synchronized (lock) {
+            String previous = documentIds.put(event.getDocumentSource(), event.getDocumentId());
+            if (event.getDocumentId().equals(previous)) {
+                return;
+            }
+            int dropped = entries.size();
+            entries.clear();
+            generation++;
+            invalidationCounter.increment();
+            log.info("Document {} ingested with new content, dropped {} cached answers",
+                    event.getDocumentSource(), dropped);
+        }
+    }
+
+    /**
+     * Returns the most similar cached question above the threshold, or null, and removes the expired
+     * entries on the way. A linear scan is fine at the configured cache sizes; each comparison is one
+     * dot product.
+     */
+    private Entry findSimilar(float[] embedding, long now) {
+        double threshold = config.getSimilarityThreshold();
+        synchronized (lock) {
+            Entry best = null;
+            double bestScore = threshold;
+            for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+                Entry entry = iterator.next();
+                if (entry.isExpired(now, ttlNanos)) {
+                    iterator.remove();
+                    continue;
+                }
+                if (entry.embedding() == null) {
+                    continue;
+                }
+                double score = dot(embedding, entry.embedding());
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        entries.put(key, entry);
+        if (entries.size() > config.getMaxEntries()) {
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private float[] normalizedEmbedding(String text) {
+        float[] vector = embeddingModel.embed(text).content().vector();
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static String normalize(String question) {
+        String text = Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        text = WHITESPACE.matcher(text).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(text).replaceAll("").trim();
+    }
+
+    private double hitRatio() {
+        double hits = exactHitCounter.count() + semanticHitCounter.count();
+        double total = hits + missCounter.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    private record Entry(float[] embedding, String answer, long createdAt) {
+
+        boolean isExpired(long now, long ttlNanos) {
+            return now - createdAt > ttlNanos;
+        }
+    }
+}
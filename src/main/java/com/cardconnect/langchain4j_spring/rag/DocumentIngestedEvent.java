@@ -0,0 +1,28 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published after a document has been (re-)ingested into the embedding store.
+ * Anything derived from the previous content of the store, like cached answers, is stale from now on.
+ */
+@Getter
+public class DocumentIngestedEvent extends ApplicationEvent {
+
+    /**
+     * Content hash of the ingested document, stored as {@code document_id} metadata on its segments.
+     */
+    private final String documentId;
+
+    /**
+     * Source the document was loaded from, stored as {@code source} metadata on its segments.
+     */
+    private final String documentSource;
+
+    public DocumentIngestedEvent(Object source, String documentId, String documentSource) {
+        super(source);
+        this.documentId = documentId;
+        this.documentSource = documentSource;
+    }
+}
@@ -0,0 +1,212 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingests the configured document sources in the background once the application is ready.
+ *
+ * <p>Startup no longer waits for Ollama and Qdrant: the application starts, and ingestion runs on
+ * its own thread. Until it has completed, the {@code ingestion} health indicator keeps the readiness
+ * probe down. A failed ingestion is retried after the configured interval; thanks to the checkpoints
+ * of the {@link IncrementalDocumentIngestor}, a retry continues where the failed run stopped.
+ *
+ * <p>Sources are Spring resource locations, so classpath patterns work from a packaged jar as well as
+ * filesystem directories. Each document is tagged with the metadata configured for its location.
+ * Without a configured {@code source}, a document is identified by its path below the root directory
+ * of the location, e.g. {@code guides/setup.txt} for {@code file:/srv/documents/**}{@code /*.txt}, so
+ * files of the same name in different directories do not collide.
+ */
+@Slf4j
+public class DocumentIngestionService implements ApplicationListener<ApplicationReadyEvent>, DisposableBean {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final IngestionPipeline pipeline;
+    private final ResourceLoader resourceLoader;
+    private final LangChain4jProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("document-ingestion").daemon(true).factory());
+
+    private volatile Status status = Status.PENDING;
+    private volatile String lastError;
+    private volatile List<IncrementalDocumentIngestor.IngestionResult> lastResults = List.of();
+
+    public DocumentIngestionService(IngestionPipeline pipeline,
+                                    ResourceLoader resourceLoader,
+                                    LangChain4jProperties properties,
+                                    ApplicationEventPublisher eventPublisher,
+                                    MeterRegistry meterRegistry) {
+        this.pipeline = pipeline;
+        this.resourceLoader = resourceLoader;
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.successTimer = Timer.builder("rag.ingestion.duration")
+                .tag("outcome", "success")
+                .description("Duration of a document ingestion run")
+                .register(meterRegistry);
+        this.failureTimer = Timer.builder("rag.ingestion.duration")
+                .tag("outcome", "failure")
+                .description("Duration of a document ingestion run")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        log.info("Starting background document ingestion");
+        executor.execute(this::run);
+    }
+
+    /**
+     * Runs one ingestion and schedules a retry if it fails.
+     */
+    void run() {
+        status = Status.RUNNING;
+        long start = System.nanoTime();
+        try {
+            lastResults = ingestAll();
+            lastError = null;
+            status = Status.COMPLETED;
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            lastError = "Interrupted";
+            status = Status.FAILED;
+            log.info("Document ingestion interrupted");
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            Duration retryInterval = properties.getRag().getIngestion().getRetryInterval();
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            status = Status.FAILED;
+            log.error("Document ingestion failed, retrying in {}", retryInterval, e);
+            if (!executor.isShutdown()) {
+                executor.schedule(this::run, retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private List<IncrementalDocumentIngestor.IngestionResult> ingestAll() throws IOException, InterruptedException {
+        List<IncrementalDocumentIngestor.IngestionResult> results = pipeline.ingest(resolveSources());
+        results.forEach(result ->
+                eventPublisher.publishEvent(new DocumentIngestedEvent(this, result.documentId(), result.source())));
+        return results;
+    }
+
+    /**
+     * Resolves the configured locations to documents. The first document claiming a source wins,
+     * later ones are skipped, as they would overwrite each other's segments.
+     */
+    List<IngestionPipeline.SourceDocument> resolveSources() throws IOException {
+        ResourcePatternResolver resolver = ResourcePatternUtils.getResourcePatternResolver(resourceLoader);
+        Map<String, IngestionPipeline.SourceDocument> documents = new LinkedHashMap<>();
+        for (LangChain4jProperties.DocumentSource source : properties.getRag().getIngestion().getSources()) {
+            String rootUrl = rootUrl(resolver, source.getLocation());
+            Resource[] resources = resolver.getResources(source.getLocation());
+            if (resources.length == 0) {
+                log.warn("No documents found at {}", source.getLocation());
+            }
+            for (Resource resource : resources) {
+                if (!resource.isReadable() || resource.getFilename() == null) {
+                    continue;
+                }
+                Map<String, String> metadata = new LinkedHashMap<>();
+                metadata.put(IncrementalDocumentIngestor.SOURCE, relativePath(rootUrl, resource));
+                metadata.put("title", StringUtils.stripFilenameExtension(resource.getFilename()));
+                metadata.putAll(source.getMetadata());
+
+                IngestionPipeline.SourceDocument document = new IngestionPipeline.SourceDocument(resource, metadata);
+                IngestionPipeline.SourceDocument previous =
+                        documents.putIfAbsent(metadata.get(IncrementalDocumentIngestor.SOURCE), document);
+                if (previous != null) {
+                    log.warn("Skipping {}, its source {} is already taken by {}",
+                            resource, metadata.get(IncrementalDocumentIngestor.SOURCE), previous.resource());
+                }
+            }
+        }
+        return List.copyOf(documents.values());
+    }
+
+    /**
+     * URL of the directory a location is resolved from: the directory before the first pattern
+     * segment, or the parent directory of a single file. Null if it cannot be resolved, e.g. for
+     * {@code classpath*:} locations spanning several roots.
+     */
+    static String rootUrl(ResourcePatternResolver resolver, String location) {
+        if (location.startsWith(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX)) {
+            return null;
+        }
+        int prefixEnd = location.indexOf(':') + 1;
+        int rootEnd = location.lastIndexOf('/') + 1;
+        while (rootEnd > prefixEnd && PATH_MATCHER.isPattern(location.substring(prefixEnd, rootEnd))) {
+            rootEnd = location.lastIndexOf('/', rootEnd - 2) + 1;
+        }
+        try {
+            Resource root = resolver.getResource(location.substring(0, Math.max(rootEnd, prefixEnd)));
+            String url = root.getURL().toString();
+            return url.endsWith("/") ? url : url + "/";
+        } catch (IOException e) {
+            log.debug("Cannot resolve the root directory of {}", location, e);
+            return null;
+        }
+    }
+
+    /**
+     * Path of a resource below the root directory of its location, or its full URL if it is not below it.
+     */
+    static String relativePath(String rootUrl, Resource resource) throws IOException {
+        String url = resource.getURL().toString();
+        String path = rootUrl != null && url.startsWith(rootUrl) ? url.substring(rootUrl.length()) : url;
+        return UriUtils.decode(path, StandardCharsets.UTF_8);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public List<IncrementalDocumentIngestor.IngestionResult> getLastResults() {
+        return lastResults;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
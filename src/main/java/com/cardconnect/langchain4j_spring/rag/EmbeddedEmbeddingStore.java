@@ -0,0 +1,597 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process embedding store with exact search, for corpora small enough to scan on every query.
+ *
+ * <p>Vectors are normalized on insert and kept off-heap in one direct buffer, in blocks of
+ * {@value #BLOCK} rows laid out dimension by dimension. A search copies one block at a time to the
+ * heap and adds {@code query[d] * block[d][row]} for the rows of the block; the iterations of that
+ * inner loop are independent, so the JIT compiles it to SIMD instructions. The sum is the cosine
+ * similarity of each row. Metadata filters are only evaluated for rows that score high enough to
+ * make the results.
+ *
+ * <p>Every change is appended to a log next to the snapshot file before the call returns, so a
+ * restart replays the snapshot and then the log. Once the log holds {@code compactAfter} changes,
+ * and on {@link #close()}, the rows are written to a new snapshot, which is moved into place
+ * atomically, and the log starts over. An incomplete last change from a crash is dropped on load.
+ */
+@Slf4j
+public class EmbeddedEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    /**
+     * Rows per block: the number of similarities one pass over the dimensions computes.
+     */
+    static final int BLOCK = 16;
+
+    private static final int MAGIC = 0x45565354; // "EVST"
+    private static final int VERSION = 1;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final int compactAfter;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Timer searchTimer;
+
+    private int dimension;
+    private ByteBuffer storage;
+    private FloatBuffer vectors;
+    private int capacity;
+    private int count;
+    private String[] ids = new String[0];
+    private TextSegment[] segments = new TextSegment[0];
+    private final Map<String, Integer> rows = new HashMap<>();
+
+    private DataOutputStream changeLog;
+    private int loggedChanges;
+
+    public EmbeddedEmbeddingStore(Path snapshotPath, int compactAfter, MeterRegistry meterRegistry) {
+        this.snapshotPath = snapshotPath;
+        this.logPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".log");
+        this.compactAfter = compactAfter;
+        this.searchTimer = Timer.builder("embedded.store.search")
+                .description("Latency of searches in the embedded vector store")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("embedded.store.size", this, EmbeddedEmbeddingStore::size)
+                .description("Segments in the embedded vector store")
+                .register(meterRegistry);
+
+        long start = System.nanoTime();
+        replay(snapshotPath);
+        replay(logPath);
+        if (Files.exists(logPath)) {
+            // Fold the log into the snapshot, which also drops an incomplete last change
+            compact();
+        }
+        log.info("Embedded vector store {} loaded {} segments in {} ms", snapshotPath, count,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(segment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> newIds = embeddings.stream().map(embedding -> UUID.randomUUID().toString()).toList();
+        addAll(newIds, embeddings, null);
+        return newIds;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                float[] vector = normalize(embeddings.get(i).vector());
+                TextSegment segment = segments == null ? null : segments.get(i);
+                put(ids.get(i), vector, segment);
+                writeAdd(log(), ids.get(i), vector, segment);
+            }
+            logged(ids.size());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write embedded vector store log " + logPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        removeAll(List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (String id : ids) {
+                if (delete(id)) {
+                    writeRemove(log(), id);
+                    removed++;
+                }
+            }
+            logged(removed);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write embedded vector store log " + logPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            List<String> matching = new ArrayList<>();
+            for (int row = 0; row < count; row++) {
+                if (segments[row] != null && filter.test(segments[row].metadata())) {
+                    matching.add(ids[row]);
+                }
+            }
+            removeAll(matching);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            clear();
+            log().writeByte(CLEAR);
+            logged(1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write embedded vector store log " + logPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            if (count == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] query = normalize(request.queryEmbedding().vector());
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("Query embedding has dimension " + query.length
+                        + ", the embedded vector store holds vectors of dimension " + dimension);
+            }
+            return new EmbeddingSearchResult<>(scan(query, request.maxResults(), request.minScore(), request.filter()));
+        } finally {
+            lock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private record Candidate(int row, double score) {
+    }
+
+    private List<EmbeddingMatch<TextSegment>> scan(float[] query, int maxResults, double minScore, Filter filter) {
+        PriorityQueue<Candidate> top = new PriorityQueue<>(maxResults + 1, Comparator.comparingDouble(Candidate::score));
+        float[] block = new float[dimension * BLOCK];
+        float[] similarities = new float[BLOCK];
+        int blocks = (count + BLOCK - 1) / BLOCK;
+        for (int b = 0; b < blocks; b++) {
+            vectors.get(b * block.length, block, 0, block.length);
+            Arrays.fill(similarities, 0f);
+            for (int d = 0; d < dimension; d++) {
+                float q = query[d];
+                int offset = d * BLOCK;
+                for (int r = 0; r < BLOCK; r++) {
+                    similarities[r] += q * block[offset + r];
+                }
+            }
+
+            int rowsInBlock = Math.min(BLOCK, count - b * BLOCK);
+            for (int r = 0; r < rowsInBlock; r++) {
+                double score = RelevanceScore.fromCosineSimilarity(similarities[r]);
+                if (score < minScore || (top.size() == maxResults && score <= top.peek().score())) {
+                    continue;
+                }
+                int row = b * BLOCK + r;
+                if (filter != null && (segments[row] == null || !filter.test(segments[row].metadata()))) {
+                    continue;
+                }
+                top.add(new Candidate(row, score));
+                if (top.size() > maxResults) {
+                    top.poll();
+                }
+            }
+        }
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Candidate candidate = top.poll();
+            matches.add(new EmbeddingMatch<>(candidate.score(), ids[candidate.row()],
+                    Embedding.from(readRow(candidate.row())), segments[candidate.row()]));
+        }
+        return matches.reversed();
+    }
+
+    private void put(String id, float[] vector, TextSegment segment) {
+        if (dimension == 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("Embedding has dimension " + vector.length
+                    + ", the embedded vector store holds vectors of dimension " + dimension);
+        }
+        Integer row = rows.get(id);
+        if (row == null) {
+            ensureCapacity(count + 1);
+            row = count++;
+            rows.put(id, row);
+            ids[row] = id;
+        }
+        for (int d = 0; d < dimension; d++) {
+            vectors.put(index(row, d), vector[d]);
+        }
+        segments[row] = segment;
+    }
+
+    /**
+     * Removes a row by moving the last row into its place, so the rows stay contiguous.
+     */
+    private boolean delete(String id) {
+        Integer row = rows.remove(id);
+        if (row == null) {
+            return false;
+        }
+        int last = --count;
+        if (row != last) {
+            for (int d = 0; d < dimension; d++) {
+                vectors.put(index(row, d), vectors.get(index(last, d)));
+            }
+            ids[row] = ids[last];
+            segments[row] = segments[last];
+            rows.put(ids[row], row);
+        }
+        ids[last] = null;
+        segments[last] = null;
+        return true;
+    }
+
+    private void clear() {
+        rows.clear();
+        Arrays.fill(ids, null);
+        Arrays.fill(segments, null);
+        count = 0;
+    }
+
+    private int index(int row, int d) {
+        return (row / BLOCK) * dimension * BLOCK + d * BLOCK + row % BLOCK;
+    }
+
+    private float[] readRow(int row) {
+        float[] vector = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = vectors.get(index(row, d));
+        }
+        return vector;
+    }
+
+    private void ensureCapacity(int rowsNeeded) {
+        if (rowsNeeded <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(BLOCK * 64, capacity);
+        while (newCapacity < rowsNeeded) {
+            newCapacity *= 2;
+        }
+        long bytes = (long) newCapacity * dimension * Float.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Embedded vector store of " + newCapacity + " vectors of dimension "
+                    + dimension + " exceeds 2 GB, use Qdrant for a corpus of this size");
+        }
+        ByteBuffer newStorage = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        if (storage != null) {
+            newStorage.put(storage.duplicate().clear());
+            newStorage.clear();
+        }
+        storage = newStorage;
+        vectors = newStorage.asFloatBuffer();
+        ids = Arrays.copyOf(ids, newCapacity);
+        segments = Arrays.copyOf(segments, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = norm == 0 ? 0 : (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    // Snapshot and change log: a header (magic, version, dimension) followed by changes
+
+    private DataOutputStream log() throws IOException {
+        if (changeLog == null) {
+            changeLog = openLog();
+        }
+        return changeLog;
+    }
+
+    private void logged(int changes) throws IOException {
+        if (changeLog != null) {
+            changeLog.flush();
+        }
+        loggedChanges += changes;
+        if (loggedChanges >= compactAfter) {
+            compact();
+        }
+    }
+
+    private DataOutputStream openLog() throws IOException {
+        createParentDirectories();
+        boolean exists = Files.exists(logPath) && Files.size(logPath) > 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+        if (!exists) {
+            writeHeader(out);
+            out.flush();
+        }
+        return out;
+    }
+
+    private void compact() {
+        long start = System.nanoTime();
+        try {
+            closeLog();
+            createParentDirectories();
+            Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                writeHeader(out);
+                for (int row = 0; row < count; row++) {
+                    writeAdd(out, ids[row], readRow(row), segments[row]);
+                }
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Replaying the old log on top of the new snapshot leaves the same rows, so a crash here is harmless
+            Files.deleteIfExists(logPath);
+            loggedChanges = 0;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write embedded vector store snapshot " + snapshotPath, e);
+        }
+        log.debug("Wrote embedded vector store snapshot of {} segments in {} ms", count,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Applies the changes in a snapshot or log file.
+     */
+    private void replay(Path file) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalStateException("Embedded vector store file " + file + " has an unknown format");
+            }
+            int fileDimension = in.readInt();
+            if (dimension != 0 && fileDimension != 0 && fileDimension != dimension) {
+                throw new IllegalStateException("Embedded vector store file " + file + " holds vectors of dimension "
+                        + fileDimension + " instead of " + dimension);
+            }
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                switch (type) {
+                    case ADD -> {
+                        String id = in.readUTF();
+                        float[] vector = new float[in.readInt()];
+                        for (int d = 0; d < vector.length; d++) {
+                            vector[d] = in.readFloat();
+                        }
+                        TextSegment segment = in.readBoolean() ? readSegment(in) : null;
+                        put(id, vector, segment);
+                    }
+                    case REMOVE -> delete(in.readUTF());
+                    case CLEAR -> clear();
+                    default -> throw new IllegalStateException("Embedded vector store file " + file
+                            + " has an unknown change type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            log.warn("Embedded vector store file {} ends in an incomplete change, which is dropped", file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read embedded vector store file " + file, e);
+        }
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(dimension);
+    }
+
+    private static void writeAdd(DataOutputStream out, String id, float[] vector, TextSegment segment)
+            throws IOException {
+        out.writeByte(ADD);
+        out.writeUTF(id);
+        out.writeInt(vector.length);
+        for (float value : vector) {
+            out.writeFloat(value);
+        }
+        out.writeBoolean(segment != null);
+        if (segment != null) {
+            writeSegment(out, segment);
+        }
+    }
+
+    private static void writeRemove(DataOutputStream out, String id) throws IOException {
+        out.writeByte(REMOVE);
+        out.writeUTF(id);
+    }
+
+    private static void writeSegment(DataOutputStream out, TextSegment segment) throws IOException {
+        byte[] text = segment.text().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(text.length);
+        out.write(text);
+        Map<String, Object> metadata = segment.metadata().toMap();
+        out.writeInt(metadata.size());
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            out.writeUTF(entry.getKey());
+            switch (entry.getValue()) {
+                case Integer number -> {
+                    out.writeByte('I');
+                    out.writeInt(number);
+                }
+                case Long number -> {
+                    out.writeByte('J');
+                    out.writeLong(number);
+                }
+                case Float number -> {
+                    out.writeByte('F');
+                    out.writeFloat(number);
+                }
+                case Double number -> {
+                    out.writeByte('D');
+                    out.writeDouble(number);
+                }
+                case UUID uuid -> {
+                    out.writeByte('U');
+                    out.writeUTF(uuid.toString());
+                }
+                default -> {
+                    out.writeByte('S');
+                    out.writeUTF(String.valueOf(entry.getValue()));
+                }
+            }
+        }
+    }
+
+    private static TextSegment readSegment(DataInputStream in) throws IOException {
+        String text = new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+        int entries = in.readInt();
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        for (int i = 0; i < entries; i++) {
+            String key = in.readUTF();
+            metadata.put(key, switch (in.readByte()) {
+                case 'I' -> in.readInt();
+                case 'J' -> in.readLong();
+                case 'F' -> in.readFloat();
+                case 'D' -> in.readDouble();
+                case 'U' -> UUID.fromString(in.readUTF());
+                default -> in.readUTF();
+            });
+        }
+        return TextSegment.from(text, Metadata.from(metadata));
+    }
+
+    private void createParentDirectories() throws IOException {
+        if (snapshotPath.getParent() != null) {
+            Files.createDirectories(snapshotPath.getParent());
+        }
+    }
+
+    private void closeLog() throws IOException {
+        if (changeLog != null) {
+            changeLog.close();
+            changeLog = null;
+        }
+    }
+
+    /**
+     * Writes a snapshot if anything changed since the last one.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (loggedChanges > 0) {
+                compact();
+            }
+            closeLog();
+        } catch (IOException e) {
+            // Closing flushes the buffered changes, so the last of them may be missing on the next load
+            log.error("Failed to close embedded vector store log {}, recent changes may be lost", logPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Wraps the embedding model bean in a {@link CachingEmbeddingModel}, so the content retriever, the
+ * document ingestor and the answer cache all share one embedding cache.
+ *
+ * <p>The embedding model is created by the Ollama starter; wrapping it here keeps every consumer on
+ * the plain {@link EmbeddingModel} type. Dependencies are resolved lazily, as a post processor is
+ * instantiated before regular beans.
+ */
+@RequiredArgsConstructor
+public class EmbeddingCachePostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<LangChain4jProperties> properties;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof EmbeddingModel embeddingModel) || bean instanceof CachingEmbeddingModel) {
+            return bean;
+        }
+        LangChain4jProperties.EmbeddingCache config = properties.getObject().getRag().getEmbeddingCache();
+        if (!config.isEnabled()) {
+            return bean;
+        }
+        return new CachingEmbeddingModel(embeddingModel, config, meterRegistry.getObject());
+    }
+}
@@ -0,0 +1,231 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Persistent embedding cache tier: an open-addressing hash table of float vectors in a single
+ * memory-mapped file.
+ *
+ * <p>Layout: a 32-byte header (magic, version, dimension, capacity, entry count) followed by
+ * {@code capacity} fixed-size slots of a 128-bit key and {@code dimension} floats. A slot whose key
+ * is all zero is empty; keys are placed by linear probing. The vector is written before the key, so
+ * an interrupted write leaves an empty slot rather than a corrupt entry. The table never grows: once
+ * it is three quarters full, new vectors are only kept in memory.
+ *
+ * <p>The file is created with the dimension of the first stored vector; vectors of another dimension
+ * are not stored. A table that cannot be mapped, because it would exceed 2 GB or the file cannot be
+ * created, disables the disk tier with a single warning instead of failing embedding calls.
+ */
+@Slf4j
+final class EmbeddingDiskCache implements AutoCloseable {
+
+    private static final int MAGIC = 0x454D4243; // "EMBC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int KEY_BYTES = 16;
+    private static final int COUNT_OFFSET = 16;
+    private static final long MAX_BYTES = Integer.MAX_VALUE;
+
+    private final Path path;
+    private final int capacity;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int dimension;
+    private int slotBytes;
+    private long count;
+    private boolean fullReported;
+    private boolean mismatchReported;
+    private boolean disabled;
+
+    EmbeddingDiskCache(Path path, int maxEntries) {
+        this.path = path;
+        // Power of two with room for maxEntries at a load factor of 3/4
+        int minCapacity = (int) Math.min(1 << 30, Math.max(2, (long) maxEntries * 4 / 3 + 1));
+        this.capacity = Integer.highestOneBit(minCapacity - 1) << 1;
+        if (HEADER_BYTES + (long) capacity * (KEY_BYTES + Float.BYTES) > MAX_BYTES) {
+            disable("a table of " + capacity + " slots exceeds 2 GB, lower the maximum number of disk entries");
+            return;
+        }
+        if (Files.exists(path)) {
+            openExisting();
+        }
+    }
+
+    /**
+     * Largest vector dimension a table of this capacity can hold within 2 GB.
+     */
+    int maxDimension() {
+        return (int) ((MAX_BYTES - HEADER_BYTES) / capacity - KEY_BYTES) / Float.BYTES;
+    }
+
+    synchronized float[] get(long hi, long lo) {
+        if (buffer == null) {
+            return null;
+        }
+        int slot = find(hi, lo);
+        if (slot < 0 || isEmpty(slot)) {
+            return null;
+        }
+        float[] vector = new float[dimension];
+        buffer.slice(offset(slot) + KEY_BYTES, dimension * Float.BYTES).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    synchronized void put(long hi, long lo, float[] vector) {
+        if (disabled) {
+            return;
+        }
+        if (buffer == null) {
+            if (!create(vector.length)) {
+                return;
+            }
+        } else if (vector.length != dimension) {
+            if (!mismatchReported) {
+                mismatchReported = true;
+                log.warn("Embedding disk cache {} holds vectors of dimension {}, vectors of dimension {} are only "
+                        + "cached in memory; point disk-path to a new file for the new model", path, dimension,
+                        vector.length);
+            }
+            return;
+        }
+        if (count >= capacity * 3L / 4) {
+            if (!fullReported) {
+                fullReported = true;
+                log.warn("Embedding disk cache {} is full ({} entries), new embeddings are only cached in memory",
+                        path, count);
+            }
+            return;
+        }
+        int slot = find(hi, lo);
+        if (slot < 0 || !isEmpty(slot)) {
+            return;
+        }
+        int offset = offset(slot);
+        buffer.slice(offset + KEY_BYTES, dimension * Float.BYTES).asFloatBuffer().put(vector);
+        buffer.putLong(offset + Long.BYTES, lo);
+        buffer.putLong(offset, hi);
+        buffer.putLong(COUNT_OFFSET, ++count);
+    }
+
+    synchronized long size() {
+        return count;
+    }
+
+    /**
+     * Returns the slot holding the key, the empty slot where it belongs, or -1 if the table is full.
+     */
+    private int find(long hi, long lo) {
+        int mask = capacity - 1;
+        int start = (int) (lo ^ (lo >>> 32)) & mask;
+        for (int i = 0; i < capacity; i++) {
+            int slot = (start + i) & mask;
+            int offset = offset(slot);
+            long slotHi = buffer.getLong(offset);
+            long slotLo = buffer.getLong(offset + Long.BYTES);
+            if ((slotHi == 0 && slotLo == 0) || (slotHi == hi && slotLo == lo)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isEmpty(int slot) {
+        int offset = offset(slot);
+        return buffer.getLong(offset) == 0 && buffer.getLong(offset + Long.BYTES) == 0;
+    }
+
+    private int offset(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    private void openExisting() {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer header = channel.size() < HEADER_BYTES
+                    ? null
+                    : channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header == null || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getInt(12) != capacity || header.getInt(8) <= 0 || header.getInt(8) > maxDimension()) {
+                log.info("Embedding disk cache {} has an incompatible layout and will be recreated", path);
+                closeChannel();
+                return;
+            }
+            map(header.getInt(8));
+            count = buffer.getLong(COUNT_OFFSET);
+            log.info("Embedding disk cache {} opened with {} entries", path, count);
+        } catch (IOException e) {
+            log.warn("Embedding disk cache {} could not be opened and will be recreated", path, e);
+            closeChannel();
+        }
+    }
+
+    private boolean create(int newDimension) {
+        if (newDimension > maxDimension()) {
+            disable("vectors of dimension " + newDimension + " in " + capacity
+                    + " slots exceed 2 GB, lower the maximum number of disk entries");
+            return false;
+        }
+        closeChannel();
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            map(newDimension);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, newDimension);
+            buffer.putInt(12, capacity);
+            buffer.putLong(COUNT_OFFSET, 0);
+            count = 0;
+            fullReported = false;
+            log.info("Created embedding disk cache {} for {} vectors of dimension {}", path, capacity, newDimension);
+            return true;
+        } catch (IOException e) {
+            closeChannel();
+            disable("the file cannot be created: " + e);
+            return false;
+        }
+    }
+
+    private void disable(String reason) {
+        disabled = true;
+        log.warn("Embedding disk cache {} disabled, embeddings are only cached in memory: {}", path, reason);
+    }
+
+    private void map(int newDimension) throws IOException {
+        long size = HEADER_BYTES + (long) capacity * (KEY_BYTES + (long) newDimension * Float.BYTES);
+        dimension = newDimension;
+        slotBytes = KEY_BYTES + newDimension * Float.BYTES;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void closeChannel() {
+        buffer = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Failed to close embedding disk cache {}", path, e);
+            }
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (buffer != null) {
+            buffer.force();
+        }
+        closeChannel();
+    }
+}
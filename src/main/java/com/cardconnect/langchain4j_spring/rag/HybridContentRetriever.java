@@ -0,0 +1,247 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.filter.Filter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content retriever combining keyword search on a {@link Bm25Index} with the vector search of a
+ * {@link VectorContentRetriever}, which returns {@code candidates} results.
+ *
+ * <p>Both searches run in parallel, the keyword search on the given executor, and their candidate
+ * lists are merged with reciprocal-rank fusion: a segment scores {@code 1 / (k + rank)} for each
+ * list it appears in. Fusion works on ranks only, so the BM25 and cosine scores need no common
+ * scale, and keyword hits are not cut off by the vector {@code minScore}.
+ *
+ * <p>Short queries of at most {@code fastPathMaxTerms} words take a fast path: if some segments
+ * contain every query term, those are returned by BM25 rank and the embedding model is not called.
+ *
+ * <p>{@link ContentMetadata#SCORE} stays the relevance score of the vector search, and is only set
+ * for segments the vector search found, so the average score of the retrieved content keeps one
+ * scale. The fusion score and the BM25 score are put in the segment metadata under
+ * {@value #FUSED_SCORE} and {@value #KEYWORD_SCORE}.
+ *
+ * <p>Metrics:
+ * <ul>
+ *   <li>{@code rag.retriever.latency} - search time per {@code retriever} ({@code keyword}, {@code vector})</li>
+ *   <li>{@code rag.retriever.recall} - per query, the share of the returned segments each {@code retriever}
+ *       found on its own; shows how much each side contributes to the fused result</li>
+ *   <li>{@code rag.retrieval.latency} - total retrieval time per {@code path} ({@code fast}, {@code fused})</li>
+ * </ul>
+ */
+@Slf4j
+public class HybridContentRetriever implements ContentRetriever {
+
+    /**
+     * Segment metadata key of the reciprocal-rank fusion score.
+     */
+    public static final String FUSED_SCORE = "fused_score";
+
+    /**
+     * Segment metadata key of the BM25 score of segments the keyword search found.
+     */
+    public static final String KEYWORD_SCORE = "keyword_score";
+
+    private static final String KEYWORD = "keyword";
+    private static final String VECTOR = "vector";
+
+    private final Bm25Index keywordIndex;
+    private final VectorContentRetriever vectorRetriever;
+    private final int maxResults;
+    private final Filter filter;
+    private final LangChain4jProperties.Hybrid hybrid;
+    private final Executor executor;
+
+    private final Timer keywordTimer;
+    private final Timer vectorTimer;
+    private final Timer fastPathTimer;
+    private final Timer fusedTimer;
+    private final DistributionSummary keywordRecall;
+    private final DistributionSummary vectorRecall;
+
+    /**
+     * @param filter metadata filter of the keyword search; the vector retriever applies its own
+     */
+    public HybridContentRetriever(Bm25Index keywordIndex,
+                                  VectorContentRetriever vectorRetriever,
+                                  int maxResults,
+                                  Filter filter,
+                                  LangChain4jProperties.Hybrid hybrid,
+                                  Executor executor,
+                                  MeterRegistry meterRegistry) {
+        this.keywordIndex = keywordIndex;
+        this.vectorRetriever = vectorRetriever;
+        this.maxResults = maxResults;
+        this.filter = filter;
+        this.hybrid = hybrid;
+        this.executor = executor;
+
+        this.keywordTimer = retrieverTimer(KEYWORD, meterRegistry);
+        this.vectorTimer = retrieverTimer(VECTOR, meterRegistry);
+        this.fastPathTimer = retrievalTimer("fast", meterRegistry);
+        this.fusedTimer = retrievalTimer("fused", meterRegistry);
+        this.keywordRecall = recall(KEYWORD, meterRegistry);
+        this.vectorRecall = recall(VECTOR, meterRegistry);
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        long start = System.nanoTime();
+        String text = query.text();
+
+        CompletableFuture<List<Bm25Index.Hit>> keywordHits;
+        if (isShort(text)) {
+            List<Bm25Index.Hit> hits = keywordTimer.record(() -> keywordIndex.search(text, hybrid.getCandidates(), filter));
+            List<Bm25Index.Hit> exact = hits.stream().filter(Bm25Index.Hit::allTerms).limit(maxResults).toList();
+            if (!exact.isEmpty()) {
+                log.debug("Answered query from the keyword index with {} exact matches", exact.size());
+                fastPathTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return exact.stream().map(hit -> content(hit.id(), hit.segment(), null, hit.score(), null)).toList();
+            }
+            keywordHits = CompletableFuture.completedFuture(hits);
+        } else {
+            keywordHits = CompletableFuture.supplyAsync(
+                    () -> keywordTimer.record(() -> keywordIndex.search(text, hybrid.getCandidates(), filter)), executor);
+        }
+
+        List<Content> vectorMatches = vectorTimer.record(() -> vectorRetriever.retrieve(query));
+        List<Bm25Index.Hit> hits = join(keywordHits);
+
+        List<Content> contents = fuse(hits, vectorMatches);
+        fusedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return contents;
+    }
+
+    /**
+     * Reciprocal-rank fusion of both candidate lists, keeping the best {@code maxResults}.
+     */
+    private List<Content> fuse(List<Bm25Index.Hit> hits, List<Content> matches) {
+        Map<String, Fused> fused = new LinkedHashMap<>();
+        Set<String> keywordIds = new HashSet<>();
+        Set<String> vectorIds = new HashSet<>();
+        for (int rank = 0; rank < hits.size(); rank++) {
+            Bm25Index.Hit hit = hits.get(rank);
+            keywordIds.add(hit.id());
+            Fused result = fused.computeIfAbsent(hit.id(), id -> new Fused(id, hit.segment()));
+            result.score += rrf(rank);
+            result.keywordScore = hit.score();
+        }
+        for (int rank = 0; rank < matches.size(); rank++) {
+            Content match = matches.get(rank);
+            String embeddingId = (String) match.metadata().get(ContentMetadata.EMBEDDING_ID);
+            vectorIds.add(embeddingId);
+            Fused result = fused.computeIfAbsent(embeddingId, id -> new Fused(id, match.textSegment()));
+            result.score += rrf(rank);
+            result.vectorScore = (Double) match.metadata().get(ContentMetadata.SCORE);
+        }
+
+        List<Fused> ranked = new ArrayList<>(fused.values());
+        ranked.sort((left, right) -> Double.compare(right.score, left.score));
+        List<Fused> top = ranked.subList(0, Math.min(maxResults, ranked.size()));
+        if (!top.isEmpty()) {
+            keywordRecall.record((double) top.stream().filter(result -> keywordIds.contains(result.id)).count() / top.size());
+            vectorRecall.record((double) top.stream().filter(result -> vectorIds.contains(result.id)).count() / top.size());
+        }
+        return top.stream()
+                .map(result -> content(result.id, result.segment, result.vectorScore, result.keywordScore, result.score))
+                .toList();
+    }
+
+    private double rrf(int rank) {
+        return 1.0 / (hybrid.getRrfK() + rank + 1);
+    }
+
+    private boolean isShort(String text) {
+        return hybrid.getFastPathMaxTerms() > 0 && !text.isBlank()
+                && text.trim().split("\\s+").length <= hybrid.getFastPathMaxTerms();
+    }
+
+    /**
+     * @param vectorScore  relevance score of the vector search, or null if it did not find the segment
+     * @param keywordScore BM25 score, or null if the keyword search did not find the segment
+     * @param fusedScore   reciprocal-rank fusion score, or null on the fast path
+     */
+    private static Content content(String id, TextSegment segment, Double vectorScore, Double keywordScore,
+                                   Double fusedScore) {
+        Metadata metadata = segment.metadata().copy();
+        if (keywordScore != null) {
+            metadata.put(KEYWORD_SCORE, keywordScore);
+        }
+        if (fusedScore != null) {
+            metadata.put(FUSED_SCORE, fusedScore);
+        }
+        Map<ContentMetadata, Object> contentMetadata = new EnumMap<>(ContentMetadata.class);
+        contentMetadata.put(ContentMetadata.EMBEDDING_ID, id);
+        if (vectorScore != null) {
+            contentMetadata.put(ContentMetadata.SCORE, vectorScore);
+        }
+        return Content.from(TextSegment.from(segment.text(), metadata), contentMetadata);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Timer retrieverTimer(String retriever, MeterRegistry meterRegistry) {
+        return Timer.builder("rag.retriever.latency")
+                .description("Search time of one retriever")
+                .tag("retriever", retriever)
+                .register(meterRegistry);
+    }
+
+    private static Timer retrievalTimer(String path, MeterRegistry meterRegistry) {
+        return Timer.builder("rag.retrieval.latency")
+                .description("Time to retrieve the content for one query")
+                .tag("path", path)
+                .register(meterRegistry);
+    }
+
+    private static DistributionSummary recall(String retriever, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder("rag.retriever.recall")
+                .description("Share of the returned segments found by one retriever")
+                .tag("retriever", retriever)
+                .register(meterRegistry);
+    }
+
+    private static final class Fused {
+
+        private final String id;
+        private final TextSegment segment;
+        private double score;
+        private Double keywordScore;
+        private Double vectorScore;
+
+        private Fused(String id, TextSegment segment) {
+            this.id = id;
+            this.segment = segment;
+        }
+    }
+}
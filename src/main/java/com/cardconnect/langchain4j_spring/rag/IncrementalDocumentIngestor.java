@@ -0,0 +1,406 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * Content-addressed, incremental ingestion of documents into the embedding store.
+ *
+ * <p>Every segment produced by the splitter is hashed over its text and metadata and stored under an
+ * id derived from the document source and that hash. Comparing the ids with the
+ * {@link IngestionManifest} of the previous run gives the segments to add and the stale ones to
+ * delete; unchanged segments are neither embedded nor written. A document whose content hash matches
+ * the manifest is not even split, so a restart without changes costs no embedding calls.
+ *
+ * <p>With a {@link Bm25Index}, stored segments are also indexed for keyword search. The index lives
+ * in memory only, so an unchanged document whose segments are missing from it is split once more
+ * and indexed, still without embedding calls.
+ *
+ * <p>A source without a manifest entry may still have segments from an earlier, non-incremental
+ * ingestion, so all segments of that source are deleted by a metadata filter before the first
+ * incremental ingestion.
+ *
+ * <p>New segments are embedded and stored in batches, and the manifest is checkpointed after each
+ * batch. If the process dies mid-ingestion, the next run finds the stored segments in the manifest
+ * and only embeds the rest. {@link #ingest(Document)} does this for a single document; the
+ * {@link IngestionPipeline} drives {@link #plan(Document)}, {@link #embed(List)} and
+ * {@link #store(List, List)} from separate stages to batch segments across documents. Progress is
+ * published as {@code rag.ingestion.segments.embedded} and {@code rag.ingestion.queue.depth}.
+ */
+@Slf4j
+public class IncrementalDocumentIngestor {
+
+    public static final String DOCUMENT_ID = "document_id";
+    public static final String SEGMENT_HASH = "segment_hash";
+    public static final String SOURCE = "source";
+
+    /**
+     * Added by the splitter; it shifts whenever a segment is inserted before, so it is left out of the hash.
+     */
+    private static final String INDEX = "index";
+
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final EmbeddingModel embeddingModel;
+    private final DocumentSplitter documentSplitter;
+    private final IngestionManifest manifest;
+    private final Bm25Index keywordIndex;
+    private final LongSupplier storedSegments;
+    private final int batchSize;
+
+    private final AtomicInteger pendingSegments = new AtomicInteger();
+    private final Counter embeddedCounter;
+
+    public IncrementalDocumentIngestor(EmbeddingStore<TextSegment> embeddingStore,
+                                       EmbeddingModel embeddingModel,
+                                       DocumentSplitter documentSplitter,
+                                       IngestionManifest manifest,
+                                       int batchSize,
+                                       MeterRegistry meterRegistry) {
+        this(embeddingStore, embeddingModel, documentSplitter, manifest, null, batchSize, meterRegistry);
+    }
+
+    /**
+     * @param keywordIndex index kept in step with the stored segments, or {@code null} for none
+     */
+    public IncrementalDocumentIngestor(EmbeddingStore<TextSegment> embeddingStore,
+                                       EmbeddingModel embeddingModel,
+                                       DocumentSplitter documentSplitter,
+                                       IngestionManifest manifest,
+                                       Bm25Index keywordIndex,
+                                       int batchSize,
+                                       MeterRegistry meterRegistry) {
+        this(embeddingStore, embeddingModel, documentSplitter, manifest, keywordIndex, null, batchSize,
+                meterRegistry);
+    }
+
+    /**
+     * @param keywordIndex   index kept in step with the stored segments, or {@code null} for none
+     * @param storedSegments counts the segments in the embedding store for {@link #verifyManifest()},
+     *                       or {@code null} if the store cannot count them
+     */
+    public IncrementalDocumentIngestor(EmbeddingStore<TextSegment> embeddingStore,
+                                       EmbeddingModel embeddingModel,
+                                       DocumentSplitter documentSplitter,
+                                       IngestionManifest manifest,
+                                       Bm25Index keywordIndex,
+                                       LongSupplier storedSegments,
+                                       int batchSize,
+                                       MeterRegistry meterRegistry) {
+        this.embeddingStore = embeddingStore;
+        this.embeddingModel = embeddingModel;
+        this.documentSplitter = documentSplitter;
+        this.manifest = manifest;
+        this.keywordIndex = keywordIndex;
+        this.storedSegments = storedSegments;
+        this.batchSize = batchSize;
+
+        this.embeddedCounter = Counter.builder("rag.ingestion.segments.embedded")
+                .description("Document segments embedded and stored by ingestion")
+                .register(meterRegistry);
+        Gauge.builder("rag.ingestion.queue.depth", pendingSegments, AtomicInteger::get)
+                .description("Document segments waiting to be embedded")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Brings the segments of a document in the embedding store up to date.
+     *
+     * @param document   the document; its {@code source} and {@code document_id} metadata must be set
+     * @return what was changed in the store
+     */
+    public IngestionResult ingest(Document document) {
+        Plan plan = plan(document);
+        try {
+            List<PendingSegment> pending = plan.pending();
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                List<PendingSegment> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+                store(batch, embed(batch));
+            }
+        } catch (RuntimeException e) {
+            abandon(plan);
+            throw e;
+        } finally {
+            manifest.flush();
+        }
+        return plan.result();
+    }
+
+    /**
+     * Splits a document and works out which of its segments have to be embedded. Stale segments are
+     * removed from the store right away. A plan without pending segments is already complete.
+     *
+     * @param document   the document; its {@code source} and {@code document_id} metadata must be set
+     * @return the segments to embed and {@link #store(List, List)}
+     */
+    public Plan plan(Document document) {
+        String source = Objects.requireNonNull(document.metadata().getString(SOURCE), "source metadata");
+        String documentId = Objects.requireNonNull(document.metadata().getString(DOCUMENT_ID), "document_id metadata");
+
+        IngestionManifest.Entry previous = manifest.get(source);
+        if (previous != null && previous.complete() && previous.documentId().equals(documentId)) {
+            log.debug("Document {} is unchanged, skipping ingestion of {} segments", source, previous.segments().size());
+            if (keywordIndex != null && !keywordIndex.containsAll(previous.segments().keySet())) {
+                log.debug("Indexing {} unchanged segments of {} for keyword search", previous.segments().size(), source);
+                index(split(document, source), previous.segments().keySet());
+            }
+            return new Plan(source, documentId, previous.segments(), Map.of(), List.of(), 0);
+        }
+        if (previous != null && !previous.complete()) {
+            log.info("Resuming interrupted ingestion of {} with {} segments already stored",
+                    source, previous.segments().size());
+        }
+
+        Map<String, String> segmentHashes = new LinkedHashMap<>();
+        List<TextSegment> addedSegments = new ArrayList<>();
+        List<String> addedIds = new ArrayList<>();
+        Map<String, String> previousSegments = previous != null ? previous.segments() : Map.of();
+
+        Map<String, TextSegment> segments = split(document, source);
+        segments.forEach((id, segment) -> {
+            segmentHashes.put(id, segment.metadata().getString(SEGMENT_HASH));
+            if (!previousSegments.containsKey(id)) {
+                addedIds.add(id);
+                addedSegments.add(segment);
+            }
+        });
+        List<String> staleIds = previousSegments.keySet().stream()
+                .filter(id -> !segmentHashes.containsKey(id))
+                .toList();
+
+        if (previous == null) {
+            log.info("No ingestion manifest for {}, removing segments of earlier ingestions", source);
+            embeddingStore.removeAll(metadataKey(SOURCE).isEqualTo(source));
+        } else if (!staleIds.isEmpty()) {
+            embeddingStore.removeAll(staleIds);
+        }
+        if (keywordIndex != null) {
+            if (previous == null) {
+                keywordIndex.removeAll(metadataKey(SOURCE).isEqualTo(source));
+            }
+            keywordIndex.removeAll(staleIds);
+            index(segments, previousSegments.keySet());
+        }
+
+        // Checkpoint: what is in the store now; every stored batch is added on top of it
+        Map<String, String> stored = new LinkedHashMap<>(previousSegments);
+        staleIds.forEach(stored::remove);
+
+        List<PendingSegment> pending = new ArrayList<>(addedIds.size());
+        Plan plan = new Plan(source, documentId, segmentHashes, stored, pending, previous == null ? 0 : staleIds.size());
+        for (int i = 0; i < addedIds.size(); i++) {
+            pending.add(new PendingSegment(plan, addedIds.get(i), addedSegments.get(i)));
+        }
+        plan.remaining = pending.size();
+        pendingSegments.addAndGet(pending.size());
+        manifest.put(source, new IngestionManifest.Entry(documentId, new LinkedHashMap<>(stored), plan.isComplete()));
+        return plan;
+    }
+
+    /**
+     * Embeds a batch of pending segments, which may belong to different documents.
+     */
+    public List<Embedding> embed(List<PendingSegment> batch) {
+        return embeddingModel.embedAll(batch.stream().map(PendingSegment::segment).toList()).content();
+    }
+
+    /**
+     * Adds embedded segments to the store and checkpoints the manifest of their documents.
+     *
+     * @return the plans completed by this batch
+     */
+    public List<Plan> store(List<PendingSegment> batch, List<Embedding> embeddings) {
+        embeddingStore.addAll(
+                batch.stream().map(PendingSegment::id).toList(),
+                embeddings,
+                batch.stream().map(PendingSegment::segment).toList());
+        if (keywordIndex != null) {
+            keywordIndex.addAll(batch.stream().map(PendingSegment::id).toList(),
+                    batch.stream().map(PendingSegment::segment).toList());
+        }
+        embeddedCounter.increment(batch.size());
+        pendingSegments.addAndGet(-batch.size());
+
+        Map<Plan, List<String>> idsByPlan = new LinkedHashMap<>();
+        batch.forEach(segment -> idsByPlan.computeIfAbsent(segment.plan(), plan -> new ArrayList<>()).add(segment.id()));
+
+        List<Plan> completed = new ArrayList<>();
+        idsByPlan.forEach((plan, ids) -> {
+            // The manifest is written under the plan's lock, so an older checkpoint of the same
+            // document never overwrites a newer one
+            synchronized (plan) {
+                ids.forEach(id -> plan.stored.put(id, plan.segmentHashes.get(id)));
+                plan.remaining -= ids.size();
+                if (plan.isComplete()) {
+                    manifest.put(plan.source, new IngestionManifest.Entry(plan.documentId, plan.segmentHashes, true));
+                    log.info("Ingested {} - unchanged: {}, added: {}, removed: {}",
+                            plan.source, plan.result().unchanged(), plan.result().added(), plan.result().removed());
+                    completed.add(plan);
+                } else {
+                    manifest.put(plan.source,
+                            new IngestionManifest.Entry(plan.documentId, new LinkedHashMap<>(plan.stored), false));
+                }
+            }
+        });
+        return completed;
+    }
+
+    /**
+     * Gives up on the pending segments of a plan after a failure; the checkpoint stays in the manifest.
+     */
+    public void abandon(Plan plan) {
+        synchronized (plan) {
+            pendingSegments.addAndGet(-plan.remaining);
+            plan.remaining = 0;
+        }
+    }
+
+    /**
+     * Checks the manifest against the segments the embedding store holds, see
+     * {@link IngestionManifest#verify(long)}. Does nothing if the store cannot count its segments.
+     */
+    public void verifyManifest() {
+        if (storedSegments != null) {
+            manifest.verify(storedSegments.getAsLong());
+        }
+    }
+
+    /**
+     * Writes checkpoints held back by the manifest's checkpoint interval.
+     */
+    public void checkpoint() {
+        manifest.flush();
+    }
+
+    /**
+     * Splits a document into its segments by id, each carrying its hash as {@code segment_hash} metadata.
+     */
+    private Map<String, TextSegment> split(Document document, String source) {
+        Map<String, TextSegment> segments = new LinkedHashMap<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (TextSegment segment : documentSplitter.split(document)) {
+            String hash = hash(segment);
+            // Identical segments of one document get distinct ids
+            int occurrence = occurrences.merge(hash, 1, Integer::sum);
+            segment.metadata().put(SEGMENT_HASH, hash);
+            segments.put(segmentId(source, hash, occurrence), segment);
+        }
+        return segments;
+    }
+
+    /**
+     * Adds the segments that are already in the embedding store to the keyword index.
+     */
+    private void index(Map<String, TextSegment> segments, Set<String> storedIds) {
+        List<String> ids = segments.keySet().stream().filter(storedIds::contains).toList();
+        keywordIndex.addAll(ids, ids.stream().map(segments::get).toList());
+    }
+
+    /**
+     * Hash over the segment text and its metadata, except the position assigned by the splitter and the
+     * document id, which changes with every edit of the document. Unchanged segments therefore keep the
+     * {@code document_id} of the ingestion that stored them.
+     */
+    static String hash(TextSegment segment) {
+        MessageDigest digest = sha256();
+        digest.update(segment.text().getBytes(StandardCharsets.UTF_8));
+        new TreeMap<>(segment.metadata().toMap()).forEach((key, value) -> {
+            if (!INDEX.equals(key) && !SEGMENT_HASH.equals(key) && !DOCUMENT_ID.equals(key)) {
+                digest.update((byte) 0);
+                digest.update(key.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '=');
+                digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Deterministic UUID, as required by Qdrant point ids.
+     */
+    static String segmentId(String source, String hash, int occurrence) {
+        return UUID.nameUUIDFromBytes((source + '\u0000' + hash + '\u0000' + occurrence)
+                .getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Ingestion of one document in progress.
+     */
+    public static final class Plan {
+
+        private final String source;
+        private final String documentId;
+        private final Map<String, String> segmentHashes;
+        private final Map<String, String> stored;
+        private final List<PendingSegment> pending;
+        private final int removed;
+        private int remaining;
+
+        private Plan(String source, String documentId, Map<String, String> segmentHashes,
+                     Map<String, String> stored, List<PendingSegment> pending, int removed) {
+            this.source = source;
+            this.documentId = documentId;
+            this.segmentHashes = segmentHashes;
+            this.stored = stored;
+            this.pending = pending;
+            this.removed = removed;
+        }
+
+        public List<PendingSegment> pending() {
+            return pending;
+        }
+
+        public synchronized boolean isComplete() {
+            return remaining == 0;
+        }
+
+        public IngestionResult result() {
+            return new IngestionResult(source, documentId, segmentHashes.size() - pending.size(), pending.size(), removed);
+        }
+    }
+
+    /**
+     * A segment waiting to be embedded, with the id it is stored under.
+     */
+    public record PendingSegment(Plan plan, String id, TextSegment segment) {
+    }
+
+    /**
+     * Outcome of one ingestion: segments left as they were, newly embedded and deleted.
+     */
+    public record IngestionResult(String source, String documentId, int unchanged, int added, int removed) {
+    }
+}
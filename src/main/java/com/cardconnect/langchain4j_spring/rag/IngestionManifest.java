@@ -0,0 +1,148 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local record of what has been ingested into the embedding store, per document source: the content
+ * hash of the document and the id and hash of every stored segment.
+ *
+ * <p>Kept in a JSON file next to the application, since the H2 database does not survive a restart.
+ * The file is replaced atomically on every save. Entries are kept per store, e.g.
+ * {@code qdrant:documents}, so switching to another store or collection finds no entries and
+ * ingests every source into it. A store holding fewer segments than its entries record, e.g. a
+ * collection that was dropped and created again, is caught by {@link #verify(long)}.
+ *
+ * <p>With a checkpoint interval, updates within the interval are only kept in memory until the next
+ * save or {@link #flush()}, so ingesting thousands of documents does not rewrite the file for every
+ * batch. Losing those updates in a crash is harmless: segment ids are deterministic, so the next run
+ * embeds the unrecorded segments again and overwrites them in the store.
+ */
+@Slf4j
+public class IngestionManifest {
+
+    private static final TypeReference<Map<String, Map<String, Entry>>> TYPE = new TypeReference<>() {
+    };
+
+    /**
+     * Store of manifests created without one, e.g. in tests.
+     */
+    static final String DEFAULT_STORE = "default";
+
+    private final Path path;
+    private final String store;
+    private final long checkpointIntervalNanos;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Map<String, Entry>> stores;
+    private final Map<String, Entry> entries;
+
+    private boolean dirty;
+    private long lastSave = System.nanoTime();
+
+    public IngestionManifest(Path path) {
+        this(path, Duration.ZERO);
+    }
+
+    public IngestionManifest(Path path, Duration checkpointInterval) {
+        this(path, checkpointInterval, DEFAULT_STORE);
+    }
+
+    /**
+     * @param store identifies the embedding store and collection the entries are about; entries of
+     *              other stores in the same file are kept as they are
+     */
+    public IngestionManifest(Path path, Duration checkpointInterval, String store) {
+        this.path = path;
+        this.store = store;
+        this.checkpointIntervalNanos = checkpointInterval.toNanos();
+        this.stores = load(path);
+        this.entries = stores.computeIfAbsent(store, key -> new LinkedHashMap<>());
+    }
+
+    /**
+     * Checks the entries against the number of segments the store actually holds. If the store holds
+     * fewer, it lost segments the manifest still records, so all entries are dropped and every source
+     * is ingested again.
+     */
+    public synchronized void verify(long storedSegments) {
+        long recorded = entries.values().stream().mapToLong(entry -> entry.segments().size()).sum();
+        if (storedSegments < recorded) {
+            log.warn("Embedding store {} holds {} segments but the ingestion manifest records {}, "
+                    + "all sources will be re-ingested", store, storedSegments, recorded);
+            entries.clear();
+            save();
+        }
+    }
+
+    /**
+     * Returns the manifest entry of a source, or null if it was never ingested into this store.
+     */
+    public synchronized Entry get(String source) {
+        return entries.get(source);
+    }
+
+    public synchronized void put(String source, Entry entry) {
+        entries.put(source, entry);
+        dirty = true;
+        if (System.nanoTime() - lastSave >= checkpointIntervalNanos) {
+            save();
+        }
+    }
+
+    /**
+     * Writes updates that are only held in memory because of the checkpoint interval.
+     */
+    public synchronized void flush() {
+        if (dirty) {
+            save();
+        }
+    }
+
+    private Map<String, Map<String, Entry>> load(Path path) {
+        if (!Files.exists(path)) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            Map<String, Map<String, Entry>> loaded = new LinkedHashMap<>();
+            objectMapper.readValue(path.toFile(), TYPE).forEach((key, value) -> loaded.put(key, new LinkedHashMap<>(value)));
+            return loaded;
+        } catch (IOException e) {
+            log.warn("Ingestion manifest {} is unreadable, all sources will be re-ingested", path, e);
+            return new LinkedHashMap<>();
+        }
+    }
+
+    private void save() {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), stores);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            lastSave = System.nanoTime();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write ingestion manifest " + path, e);
+        }
+    }
+
+    /**
+     * @param documentId content hash of the whole document
+     * @param segments   segment id to segment hash of every segment in the store
+     * @param complete   false while the document is being ingested; the segments are then a checkpoint
+     *                   to resume from
+     */
+    public record Entry(String documentId, Map<String, String> segments, boolean complete) {
+    }
+}
@@ -0,0 +1,319 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ingests many documents through four stages: parse, split, embed and store.
+ *
+ * <p>Every stage runs on its own worker threads and hands its output to the next stage through a
+ * bounded queue. A full queue blocks the stage in front of it, so a slow embedding model or vector
+ * store holds back parsing instead of piling documents up in memory. The embed stage batches
+ * segments across documents, so thousands of small files cost a few {@code embedAll} calls per
+ * batch size instead of one per document. The store stage merges waiting batches up to the store
+ * batch size, for stores that write large {@code addAll} calls concurrently.
+ *
+ * <p>What to embed, what to delete and the checkpoints are left to the {@link IncrementalDocumentIngestor}.
+ * Unreadable or empty files are logged and skipped; a failing embedding model or store aborts the run
+ * and interrupts all workers.
+ */
+@Slf4j
+public class IngestionPipeline {
+
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    /**
+     * Longest time an embed worker waits for a batch to fill; small next to an embedding call.
+     */
+    private static final long BATCH_LINGER_MILLIS = 20;
+
+    private final IncrementalDocumentIngestor ingestor;
+    private final LangChain4jProperties.Pipeline settings;
+    private final int batchSize;
+    private final Timer parseTimer;
+    private final Timer splitTimer;
+    private final Timer embedTimer;
+    private final Timer storeTimer;
+
+    public IngestionPipeline(IncrementalDocumentIngestor ingestor,
+                             LangChain4jProperties.Pipeline settings,
+                             int batchSize,
+                             MeterRegistry meterRegistry) {
+        this.ingestor = ingestor;
+        this.settings = settings;
+        this.batchSize = batchSize;
+        this.parseTimer = stageTimer("parse", meterRegistry);
+        this.splitTimer = stageTimer("split", meterRegistry);
+        this.embedTimer = stageTimer("embed", meterRegistry);
+        this.storeTimer = stageTimer("store", meterRegistry);
+    }
+
+    private static Timer stageTimer(String stage, MeterRegistry meterRegistry) {
+        return Timer.builder("rag.ingestion.stage")
+                .tag("stage", stage)
+                .description("Time spent per item in a stage of the ingestion pipeline")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ingests the documents and waits until all of them are stored. The manifest is checked against
+     * the embedding store first, so a store that lost its segments is filled again.
+     *
+     * @return one result per ingested document, ordered by source
+     */
+    public List<IncrementalDocumentIngestor.IngestionResult> ingest(List<SourceDocument> documents)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        ingestor.verifyManifest();
+        List<IncrementalDocumentIngestor.IngestionResult> results = new Run(documents).await();
+        log.info("Ingested {} of {} documents in {} ms", results.size(), documents.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return results;
+    }
+
+    /**
+     * A file to ingest with the metadata configured for it; the content is read by the parse stage.
+     */
+    public record SourceDocument(Resource resource, Map<String, String> metadata) {
+
+        Document load() throws IOException {
+            byte[] content = resource.getContentAsByteArray();
+            Metadata documentMetadata = Metadata.from(metadata)
+                    .put(IncrementalDocumentIngestor.DOCUMENT_ID, DigestUtils.md5DigestAsHex(content));
+            return Document.from(new String(content, StandardCharsets.UTF_8), documentMetadata);
+        }
+    }
+
+    private record EmbeddedBatch(List<IncrementalDocumentIngestor.PendingSegment> segments, List<Embedding> embeddings) {
+    }
+
+    private static final class Stage {
+
+        private final AtomicInteger running;
+
+        private Stage(int workers) {
+            this.running = new AtomicInteger(workers);
+        }
+
+        private boolean done() {
+            return running.get() == 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Worker {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * State of one {@link #ingest(List)} call.
+     */
+    private final class Run {
+
+        private final List<SourceDocument> documents;
+        private final AtomicInteger nextDocument = new AtomicInteger();
+        private final BlockingQueue<Document> parsed = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        private final BlockingQueue<IncrementalDocumentIngestor.PendingSegment> split =
+                new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        private final BlockingQueue<EmbeddedBatch> embedded = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+
+        private final List<IncrementalDocumentIngestor.IngestionResult> results =
+                Collections.synchronizedList(new ArrayList<>());
+        private final Set<IncrementalDocumentIngestor.Plan> inProgress = ConcurrentHashMap.newKeySet();
+        private final List<Thread> threads = new ArrayList<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private final Stage parseStage;
+        private final Stage splitStage;
+        private final Stage embedStage;
+
+        private Run(List<SourceDocument> documents) {
+            this.documents = documents;
+            this.parseStage = start("parse", settings.getParseWorkers(), this::parse);
+            this.splitStage = start("split", settings.getSplitWorkers(), this::split);
+            this.embedStage = start("embed", settings.getEmbedWorkers(), this::embed);
+            start("store", settings.getStoreWorkers(), this::store);
+            threads.forEach(Thread::start);
+        }
+
+        private Stage start(String name, int workers, Worker worker) {
+            Stage stage = new Stage(workers);
+            ThreadFactory threadFactory = Thread.ofPlatform().name("ingestion-" + name + "-", 0).daemon(true).factory();
+            for (int i = 0; i < workers; i++) {
+                threads.add(threadFactory.newThread(() -> {
+                    try {
+                        worker.run();
+                    } catch (InterruptedException | RuntimeException | Error e) {
+                        fail(e);
+                    } finally {
+                        stage.running.decrementAndGet();
+                    }
+                }));
+            }
+            return stage;
+        }
+
+        private void parse() throws InterruptedException {
+            int index;
+            while (failure.get() == null && (index = nextDocument.getAndIncrement()) < documents.size()) {
+                SourceDocument source = documents.get(index);
+                long start = System.nanoTime();
+                Document document;
+                try {
+                    document = source.load();
+                } catch (IOException | IllegalArgumentException e) {
+                    log.warn("Skipping document {}, it cannot be read or is empty", source.resource(), e);
+                    continue;
+                }
+                parseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                parsed.put(document);
+            }
+        }
+
+        private void split() throws InterruptedException {
+            Document document;
+            while ((document = next(parsed, parseStage)) != null) {
+                long start = System.nanoTime();
+                IncrementalDocumentIngestor.Plan plan = ingestor.plan(document);
+                splitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (plan.isComplete()) {
+                    results.add(plan.result());
+                    continue;
+                }
+                inProgress.add(plan);
+                for (IncrementalDocumentIngestor.PendingSegment segment : plan.pending()) {
+                    split.put(segment);
+                }
+            }
+        }
+
+        private void embed() throws InterruptedException {
+            IncrementalDocumentIngestor.PendingSegment first;
+            while ((first = next(split, splitStage)) != null) {
+                List<IncrementalDocumentIngestor.PendingSegment> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                fill(batch);
+                long start = System.nanoTime();
+                List<Embedding> embeddings = ingestor.embed(batch);
+                embedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                embedded.put(new EmbeddedBatch(batch, embeddings));
+            }
+        }
+
+        /**
+         * Tops up a batch from the queue, waiting up to the linger time for segments still being split.
+         * Without it, fast embed workers behind a slow split stage would send many small batches.
+         */
+        private void fill(List<IncrementalDocumentIngestor.PendingSegment> batch) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_LINGER_MILLIS);
+            while (true) {
+                split.drainTo(batch, batchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= batchSize || remaining <= 0 || splitStage.done()) {
+                    return;
+                }
+                IncrementalDocumentIngestor.PendingSegment segment = split.poll(remaining, TimeUnit.NANOSECONDS);
+                if (segment == null) {
+                    return;
+                }
+                batch.add(segment);
+            }
+        }
+
+        private void store() throws InterruptedException {
+            EmbeddedBatch first;
+            while ((first = next(embedded, embedStage)) != null) {
+                // Merge embedded batches that are already waiting, so the store can write large batches
+                List<IncrementalDocumentIngestor.PendingSegment> segments = new ArrayList<>(first.segments());
+                List<Embedding> embeddings = new ArrayList<>(first.embeddings());
+                EmbeddedBatch batch;
+                while (segments.size() < settings.getStoreBatchSize() && (batch = embedded.poll()) != null) {
+                    segments.addAll(batch.segments());
+                    embeddings.addAll(batch.embeddings());
+                }
+                long start = System.nanoTime();
+                List<IncrementalDocumentIngestor.Plan> completed = ingestor.store(segments, embeddings);
+                storeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                for (IncrementalDocumentIngestor.Plan plan : completed) {
+                    inProgress.remove(plan);
+                    results.add(plan.result());
+                }
+            }
+        }
+
+        /**
+         * Takes the next item of a stage's input, or returns null once the stage in front of it is
+         * done and the queue is drained, or the run has failed.
+         */
+        private <T> T next(BlockingQueue<T> queue, Stage upstream) throws InterruptedException {
+            while (failure.get() == null) {
+                T item = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+                // Check done before empty: once upstream is done, nothing is added anymore
+                if (upstream.done() && queue.isEmpty()) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private void fail(Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+                threads.forEach(Thread::interrupt);
+            }
+        }
+
+        private List<IncrementalDocumentIngestor.IngestionResult> await() throws InterruptedException {
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                fail(e);
+                throw e;
+            } finally {
+                ingestor.checkpoint();
+            }
+
+            Throwable error = failure.get();
+            if (error != null) {
+                inProgress.forEach(ingestor::abandon);
+                if (error instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (error instanceof Error fatal) {
+                    throw fatal;
+                }
+                throw new IllegalStateException("Document ingestion was interrupted", error);
+            }
+            List<IncrementalDocumentIngestor.IngestionResult> sorted = new ArrayList<>(results);
+            sorted.sort(Comparator.comparing(IncrementalDocumentIngestor.IngestionResult::source));
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import io.qdrant.client.ConditionFactory;
+import io.qdrant.client.grpc.Common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Converts metadata filters to Qdrant filters for {@link TunedQdrantEmbeddingStore}.
+ *
+ * <p>Covers the equality and membership filters the retriever builds, combined with and/or/not.
+ * Range filters and other value types are not converted; the store leaves such searches to
+ * {@code QdrantEmbeddingStore}.
+ */
+final class QdrantFilters {
+
+    private QdrantFilters() {
+    }
+
+    /**
+     * @return the Qdrant filter, or empty if the filter holds a condition that is not converted
+     */
+    static Optional<Common.Filter> toQdrant(Filter filter) {
+        return Optional.ofNullable(convert(filter));
+    }
+
+    private static Common.Filter convert(Filter filter) {
+        return switch (filter) {
+            case And and -> combine(and.left(), and.right(), Common.Filter.Builder::addMust);
+            case Or or -> combine(or.left(), or.right(), Common.Filter.Builder::addShould);
+            case Not not -> {
+                Common.Filter expression = convert(not.expression());
+                yield expression == null ? null
+                        : Common.Filter.newBuilder().addMustNot(ConditionFactory.filter(expression)).build();
+            }
+            default -> {
+                Common.Condition condition = match(filter);
+                if (condition == null) {
+                    Common.Condition excluded = matchExcluded(filter);
+                    yield excluded == null ? null : Common.Filter.newBuilder().addMustNot(excluded).build();
+                }
+                yield Common.Filter.newBuilder().addMust(condition).build();
+            }
+        };
+    }
+
+    private interface Clause {
+        Common.Filter.Builder add(Common.Filter.Builder builder, Common.Condition condition);
+    }
+
+    private static Common.Filter combine(Filter left, Filter right, Clause clause) {
+        Common.Filter leftFilter = convert(left);
+        Common.Filter rightFilter = convert(right);
+        if (leftFilter == null || rightFilter == null) {
+            return null;
+        }
+        Common.Filter.Builder builder = Common.Filter.newBuilder();
+        clause.add(builder, ConditionFactory.filter(leftFilter));
+        clause.add(builder, ConditionFactory.filter(rightFilter));
+        return builder.build();
+    }
+
+    /**
+     * Conditions a point must meet.
+     */
+    private static Common.Condition match(Filter filter) {
+        return switch (filter) {
+            case IsEqualTo isEqualTo -> matchValue(isEqualTo.key(), isEqualTo.comparisonValue());
+            case IsIn isIn -> matchAny(isIn.key(), isIn.comparisonValues());
+            default -> null;
+        };
+    }
+
+    /**
+     * Conditions a point must not meet.
+     */
+    private static Common.Condition matchExcluded(Filter filter) {
+        return switch (filter) {
+            case IsNotEqualTo isNotEqualTo -> matchValue(isNotEqualTo.key(), isNotEqualTo.comparisonValue());
+            case IsNotIn isNotIn -> matchAny(isNotIn.key(), isNotIn.comparisonValues());
+            default -> null;
+        };
+    }
+
+    private static Common.Condition matchValue(String key, Object value) {
+        return switch (value) {
+            case String text -> ConditionFactory.matchKeyword(key, text);
+            case UUID uuid -> ConditionFactory.matchKeyword(key, uuid.toString());
+            case Integer number -> ConditionFactory.match(key, number.longValue());
+            case Long number -> ConditionFactory.match(key, number);
+            case Boolean bool -> ConditionFactory.match(key, bool);
+            default -> null;
+        };
+    }
+
+    private static Common.Condition matchAny(String key, Collection<?> values) {
+        List<String> keywords = new ArrayList<>();
+        List<Long> numbers = new ArrayList<>();
+        for (Object value : values) {
+            switch (value) {
+                case String text -> keywords.add(text);
+                case UUID uuid -> keywords.add(uuid.toString());
+                case Integer number -> numbers.add(number.longValue());
+                case Long number -> numbers.add(number);
+                default -> {
+                    return null;
+                }
+            }
+        }
+        if (numbers.isEmpty()) {
+            return ConditionFactory.matchKeywords(key, keywords);
+        }
+        return keywords.isEmpty() ? ConditionFactory.matchValues(key, numbers) : null;
+    }
+}
@@ -0,0 +1,32 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap, rule-based decision whether a query needs retrieved documents at all.
+ *
+ * <p>Small talk such as greetings and thanks, matched by the configured patterns, and queries made
+ * of stop words only carry nothing to search for; retrieving for them costs an embedding call and a
+ * vector search and only adds noise to the prompt.
+ */
+public class RetrievalClassifier {
+
+    private final List<Pattern> skipPatterns;
+
+    /**
+     * @param skipPatterns regular expressions matched against the whole lower-cased, trimmed query
+     */
+    public RetrievalClassifier(List<String> skipPatterns) {
+        this.skipPatterns = skipPatterns.stream().map(Pattern::compile).toList();
+    }
+
+    public boolean needsRetrieval(String query) {
+        String normalized = query.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        if (skipPatterns.stream().anyMatch(pattern -> pattern.matcher(normalized).matches())) {
+            return false;
+        }
+        return !Bm25Index.tokenize(normalized).isEmpty();
+    }
+}
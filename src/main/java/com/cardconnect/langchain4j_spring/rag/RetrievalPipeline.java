@@ -0,0 +1,327 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.observability.AgentMetricsService;
+import com.cardconnect.langchain4j_spring.observability.AgentTaskDecorator;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.AugmentationRequest;
+import dev.langchain4j.rag.AugmentationResult;
+import dev.langchain4j.rag.RetrievalAugmentor;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.aggregator.ReciprocalRankFuser;
+import dev.langchain4j.rag.content.injector.ContentInjector;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Retrieval augmentor running the query-side stages of RAG in order:
+ * <ol>
+ *   <li>{@code classify} - queries the {@link RetrievalClassifier} rejects are passed on unchanged</li>
+ *   <li>{@code retrieve} - all content retrievers are queried in parallel; a retriever that does not
+ *       answer within its timeout is left out of this query</li>
+ *   <li>{@code deduplicate} - the result lists are fused by reciprocal rank, and segments whose word
+ *       shingles nearly match a better ranked segment are dropped</li>
+ *   <li>{@code budget} - segments are kept by rank while their estimated tokens fit the budget</li>
+ *   <li>{@code inject} - the kept segments are added to the user message</li>
+ * </ol>
+ *
+ * <p>Stage timings go to {@link AgentMetricsService#recordRagRetrieval} unless RAG metrics are disabled.
+ * Every retriever call is timed as {@code rag.retriever.calls} by {@code retriever} and {@code outcome}
+ * (success/error/timeout); skipped queries are counted as {@code rag.retrieval.skipped}. Each call also
+ * runs in a {@code rag.retriever} observation, a child of the caller's span carrying the call's queue
+ * wait as {@code queue.wait.ms}.
+ */
+@Slf4j
+public class RetrievalPipeline implements RetrievalAugmentor {
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final int SHINGLE_SIZE = 3;
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final Map<String, ContentRetriever> retrievers;
+    private final RetrievalClassifier classifier;
+    private final ContentInjector contentInjector;
+    private final LangChain4jProperties.Augmentation config;
+    private final Executor executor;
+    private final AgentMetricsService metricsService;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final Counter skippedCounter;
+    private final ConcurrentMap<String, ConcurrentMap<String, Timer>> retrieverTimers = new ConcurrentHashMap<>();
+
+    /**
+     * @param retrievers     content retrievers by name, used for their timeouts and metrics
+     * @param metricsService receives the stage timings, or {@code null} if RAG metrics are disabled
+     */
+    public RetrievalPipeline(Map<String, ContentRetriever> retrievers,
+                             RetrievalClassifier classifier,
+                             ContentInjector contentInjector,
+                             LangChain4jProperties.Augmentation config,
+                             Executor executor,
+                             AgentMetricsService metricsService,
+                             MeterRegistry meterRegistry) {
+        this(retrievers, classifier, contentInjector, config, executor, metricsService, meterRegistry,
+                ObservationRegistry.NOOP);
+    }
+
+    /**
+     * @param retrievers     content retrievers by name, used for their timeouts, metrics and observations
+     * @param metricsService receives the stage timings, or {@code null} if RAG metrics are disabled
+     */
+    public RetrievalPipeline(Map<String, ContentRetriever> retrievers,
+                             RetrievalClassifier classifier,
+                             ContentInjector contentInjector,
+                             LangChain4jProperties.Augmentation config,
+                             Executor executor,
+                             AgentMetricsService metricsService,
+                             MeterRegistry meterRegistry,
+                             ObservationRegistry observationRegistry) {
+        this.retrievers = retrievers;
+        this.classifier = classifier;
+        this.contentInjector = contentInjector;
+        this.config = config;
+        this.executor = executor;
+        this.metricsService = metricsService;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+
+        this.skippedCounter = Counter.builder("rag.retrieval.skipped")
+                .description("Queries answered without retrieval")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public AugmentationResult augment(AugmentationRequest request) {
+        Map<String, Duration> stages = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        ChatMessage message = request.chatMessage();
+
+        String text = message instanceof UserMessage userMessage && userMessage.hasSingleText()
+                ? userMessage.singleText() : null;
+        boolean retrieve = text != null && (!config.isClassifierEnabled() || classifier.needsRetrieval(text));
+        start = lap(stages, "classify", start);
+        if (!retrieve) {
+            log.debug("Skipping retrieval for query without document needs");
+            skippedCounter.increment();
+            if (metricsService != null) {
+                metricsService.recordRagRetrieval(0, Double.NaN, stages);
+            }
+            return new AugmentationResult(message, List.of());
+        }
+
+        List<List<Content>> results = retrieveAll(Query.from(text, request.metadata()));
+        start = lap(stages, "retrieve", start);
+
+        List<Content> unique = deduplicate(ReciprocalRankFuser.fuse(results));
+        start = lap(stages, "deduplicate", start);
+
+        List<Content> contents = budget(unique);
+        start = lap(stages, "budget", start);
+
+        ChatMessage augmented = contents.isEmpty() ? message : contentInjector.inject(contents, message);
+        lap(stages, "inject", start);
+
+        if (metricsService != null) {
+            metricsService.recordRagRetrieval(contents.size(), averageScore(contents), stages);
+        }
+        return new AugmentationResult(augmented, contents);
+    }
+
+    private List<List<Content>> retrieveAll(Query query) {
+        long start = System.nanoTime();
+        Map<String, CompletableFuture<List<Content>>> futures = new LinkedHashMap<>();
+        // Set by whoever records the call first, so a retriever finishing after its timeout is not counted twice
+        Map<String, AtomicBoolean> recorded = new HashMap<>();
+        retrievers.forEach((name, retriever) -> {
+            AtomicBoolean callRecorded = new AtomicBoolean();
+            recorded.put(name, callRecorded);
+            futures.put(name, CompletableFuture.supplyAsync(
+                    () -> retrieve(name, retriever, query, callRecorded), executor));
+        });
+
+        List<List<Content>> results = new ArrayList<>(futures.size());
+        for (Map.Entry<String, CompletableFuture<List<Content>>> entry : futures.entrySet()) {
+            String name = entry.getKey();
+            Duration timeout = config.getRetrieverTimeouts().getOrDefault(name, config.getRetrieverTimeout());
+            try {
+                long remaining = timeout.toNanos() - (System.nanoTime() - start);
+                results.add(entry.getValue().get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                // The retriever keeps running on the executor; its result is dropped
+                entry.getValue().cancel(true);
+                if (recorded.get(name).compareAndSet(false, true)) {
+                    timer(name, "timeout").record(timeout);
+                }
+                log.warn("Content retriever {} did not answer within {}, continuing without it", name, timeout);
+            } catch (ExecutionException e) {
+                log.warn("Content retriever {} failed, continuing without it", name, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(future -> future.cancel(true));
+                throw new IllegalStateException("Interrupted while retrieving content", e);
+            }
+        }
+        return results;
+    }
+
+    private List<Content> retrieve(String name, ContentRetriever retriever, Query query, AtomicBoolean recorded) {
+        Observation observation = Observation.createNotStarted("rag.retriever", observationRegistry)
+                .contextualName("retrieve " + name)
+                .lowCardinalityKeyValue("retriever", name);
+        Duration queueWait = AgentTaskDecorator.takeQueueWait();
+        if (queueWait != null) {
+            observation.highCardinalityKeyValue("queue.wait.ms", String.valueOf(queueWait.toMillis()));
+        }
+        observation.start();
+        long start = System.nanoTime();
+        try (Observation.Scope scope = observation.openScope()) {
+            List<Content> contents = retriever.retrieve(query);
+            if (recorded.compareAndSet(false, true)) {
+                timer(name, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            observation.highCardinalityKeyValue("rag.results", String.valueOf(contents.size()));
+            return contents;
+        } catch (RuntimeException e) {
+            if (recorded.compareAndSet(false, true)) {
+                timer(name, "error").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    /**
+     * Drops segments nearly identical to a better ranked one, e.g. overlapping chunks or the same
+     * paragraph ingested from two documents.
+     */
+    private List<Content> deduplicate(List<Content> contents) {
+        List<Content> unique = new ArrayList<>(contents.size());
+        List<Set<String>> kept = new ArrayList<>(contents.size());
+        for (Content content : contents) {
+            Set<String> shingles = shingles(content.textSegment().text());
+            if (kept.stream().noneMatch(other -> jaccard(shingles, other) >= config.getDuplicateThreshold())) {
+                unique.add(content);
+                kept.add(shingles);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Keeps segments by rank while their estimated tokens fit {@code maxContextTokens}. A first segment
+     * larger than the whole budget is cut to it, so a query with results never goes without context.
+     */
+    private List<Content> budget(List<Content> contents) {
+        int budget = config.getMaxContextTokens();
+        List<Content> kept = new ArrayList<>();
+        int used = 0;
+        for (Content content : contents) {
+            int tokens = estimateTokens(content.textSegment().text());
+            if (used + tokens > budget) {
+                if (kept.isEmpty()) {
+                    TextSegment segment = content.textSegment();
+                    kept.add(Content.from(TextSegment.from(segment.text().substring(0, budget * CHARS_PER_TOKEN),
+                            segment.metadata()), content.metadata()));
+                }
+                break;
+            }
+            kept.add(content);
+            used += tokens;
+        }
+        return kept;
+    }
+
+    /**
+     * About four characters per token for English text; the chat model's tokenizer is not available here.
+     */
+    static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    static Set<String> shingles(String text) {
+        List<String> words = new ArrayList<>();
+        Matcher matcher = WORD.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            words.add(matcher.group());
+        }
+        Set<String> shingles = new HashSet<>();
+        if (words.size() < SHINGLE_SIZE) {
+            shingles.add(String.join(" ", words));
+            return shingles;
+        }
+        for (int i = 0; i + SHINGLE_SIZE <= words.size(); i++) {
+            shingles.add(String.join(" ", words.subList(i, i + SHINGLE_SIZE)));
+        }
+        return shingles;
+    }
+
+    private static double jaccard(Set<String> left, Set<String> right) {
+        int intersection = 0;
+        for (String shingle : left) {
+            if (right.contains(shingle)) {
+                intersection++;
+            }
+        }
+        int union = left.size() + right.size() - intersection;
+        return union == 0 ? 1.0 : (double) intersection / union;
+    }
+
+    private static double averageScore(List<Content> contents) {
+        return contents.stream()
+                .map(content -> content.metadata().get(ContentMetadata.SCORE))
+                .filter(Double.class::isInstance)
+                .mapToDouble(Double.class::cast)
+                .average()
+                .orElse(Double.NaN);
+    }
+
+    private static long lap(Map<String, Duration> stages, String stage, long start) {
+        long now = System.nanoTime();
+        stages.put(stage, Duration.ofNanos(now - start));
+        return now;
+    }
+
+    private Timer timer(String retriever, String outcome) {
+        ConcurrentMap<String, Timer> byOutcome = retrieverTimers.get(retriever);
+        if (byOutcome == null) {
+            byOutcome = retrieverTimers.computeIfAbsent(retriever, key -> new ConcurrentHashMap<>());
+        }
+        Timer timer = byOutcome.get(outcome);
+        return timer != null ? timer : byOutcome.computeIfAbsent(outcome, key -> Timer.builder("rag.retriever.calls")
+                .description("Content retriever calls of the RAG pipeline")
+                .tag("retriever", retriever)
+                .tag("outcome", key)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,483 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.qdrant.client.PointIdFactory;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.ValueFactory;
+import io.qdrant.client.VectorsFactory;
+import io.qdrant.client.WithPayloadSelectorFactory;
+import io.qdrant.client.WithVectorsSelectorFactory;
+import io.qdrant.client.grpc.Common;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Qdrant embedding store that writes {@link #addAll(List, List, List)} as concurrent, batched upserts
+ * and searches with the configured {@link LangChain4jProperties.Search search params}.
+ *
+ * <p>The points are cut into batches of a fixed size and sent through the async client, with up to
+ * {@code maxInFlight} upserts outstanding at a time. A failed batch is retried on its own with
+ * exponential backoff; the other batches are not affected. The call returns once every batch is
+ * stored, or throws if a batch still fails after the last retry. Point ids are deterministic, so
+ * batches stored before such a failure are simply overwritten by the next ingestion.
+ *
+ * <p>{@code QdrantEmbeddingStore} cannot pass search params, so searches are sent through the async
+ * client as well: with the HNSW {@code ef}, exact search, and rescoring and oversampling of quantized
+ * vectors. A search whose filter {@link QdrantFilters} cannot convert goes to that store instead.
+ * Matches only carry their embedding with {@code withVectors}, so searches do not read the original
+ * vectors from disk just to drop them.
+ * Points are built and read like {@code QdrantEmbeddingStore} does, so removal and all other
+ * operations are left to it.
+ *
+ * <p>The collection is set up on first use rather than at startup, so the application starts while
+ * Qdrant is down. A failed setup is tried again by the next operation.
+ */
+@Slf4j
+public class TunedQdrantEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    /**
+     * Payload key of the segment text, as read by {@code QdrantEmbeddingStore}.
+     */
+    public static final String PAYLOAD_TEXT_KEY = "text_segment";
+
+    /**
+     * Sends one batch of points to Qdrant.
+     */
+    @FunctionalInterface
+    public interface PointUpserter {
+        CompletableFuture<?> upsert(List<Points.PointStruct> points);
+    }
+
+    /**
+     * Sends one search request to Qdrant.
+     */
+    @FunctionalInterface
+    public interface PointSearcher {
+        CompletableFuture<List<Points.ScoredPoint>> search(Points.SearchPoints request);
+    }
+
+    /**
+     * Counts the points of the collection.
+     */
+    @FunctionalInterface
+    public interface PointCounter {
+        CompletableFuture<Long> count();
+    }
+
+    /**
+     * Creates the collection, or updates it to the configured settings. Must be safe to run again.
+     */
+    @FunctionalInterface
+    public interface CollectionSetup {
+        void run();
+    }
+
+    private final EmbeddingStore<TextSegment> delegate;
+    private final PointUpserter upserter;
+    private final PointSearcher searcher;
+    private final PointCounter counter;
+    private final CollectionSetup collectionSetup;
+    private final Points.SearchParams searchParams;
+    private final Duration searchTimeout;
+    private final boolean withVectors;
+    private final int batchSize;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+
+    private final Counter pointsCounter;
+    private final Counter retriesCounter;
+    private final Counter failedPointsCounter;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Timer searchTimer;
+    private final Counter delegatedSearchesCounter;
+
+    private final Object collectionLock = new Object();
+    private volatile boolean collectionReady;
+
+    public TunedQdrantEmbeddingStore(EmbeddingStore<TextSegment> delegate,
+                                     PointUpserter upserter,
+                                     PointSearcher searcher,
+                                     PointCounter counter,
+                                     CollectionSetup collectionSetup,
+                                     LangChain4jProperties.Search search,
+                                     int batchSize,
+                                     int maxInFlight,
+                                     int maxRetries,
+                                     Duration retryBackoff,
+                                     MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.upserter = upserter;
+        this.searcher = searcher;
+        this.counter = counter;
+        this.collectionSetup = collectionSetup;
+        this.searchParams = searchParams(search);
+        this.searchTimeout = search.getTimeout();
+        this.withVectors = search.isWithVectors();
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+
+        this.pointsCounter = Counter.builder("qdrant.upsert.points")
+                .description("Points upserted into Qdrant")
+                .register(meterRegistry);
+        this.retriesCounter = Counter.builder("qdrant.upsert.retries")
+                .description("Upsert batches retried after a failure")
+                .register(meterRegistry);
+        this.failedPointsCounter = Counter.builder("qdrant.upsert.failed.points")
+                .description("Points whose upsert failed after all retries")
+                .register(meterRegistry);
+        this.successTimer = batchTimer("success", meterRegistry);
+        this.failureTimer = batchTimer("failure", meterRegistry);
+        Gauge.builder("qdrant.upsert.in.flight", inFlight, semaphore -> maxInFlight - semaphore.availablePermits())
+                .description("Upsert batches waiting for Qdrant")
+                .register(meterRegistry);
+        this.searchTimer = Timer.builder("qdrant.search")
+                .description("Latency of Qdrant searches with the configured search params")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.delegatedSearchesCounter = Counter.builder("qdrant.search.delegated")
+                .description("Searches left to QdrantEmbeddingStore because their filter is not converted")
+                .register(meterRegistry);
+    }
+
+    static Points.SearchParams searchParams(LangChain4jProperties.Search search) {
+        Points.SearchParams.Builder params = Points.SearchParams.newBuilder()
+                .setExact(search.isExact())
+                .setQuantization(Points.QuantizationSearchParams.newBuilder()
+                        .setRescore(search.isRescore())
+                        .setOversampling(search.getOversampling()));
+        if (search.getHnswEf() > 0) {
+            params.setHnswEf(search.getHnswEf());
+        }
+        return params.build();
+    }
+
+    private static Timer batchTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("qdrant.upsert.batch")
+                .tag("outcome", outcome)
+                .description("Latency of one upsert batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Upserts through the async client of {@code QdrantEmbeddingStore}.
+     */
+    public static PointUpserter upserter(QdrantClient client, String collectionName, Duration timeout) {
+        return points -> toCompletableFuture(client.upsertAsync(collectionName, points, timeout));
+    }
+
+    /**
+     * Searches through the async client of {@code QdrantEmbeddingStore}.
+     */
+    public static PointSearcher searcher(QdrantClient client, String collectionName) {
+        return request -> toCompletableFuture(client.searchAsync(request.toBuilder()
+                .setCollectionName(collectionName)
+                .build()));
+    }
+
+    /**
+     * Counts exactly through the async client of {@code QdrantEmbeddingStore}.
+     */
+    public static PointCounter counter(QdrantClient client, String collectionName) {
+        return () -> toCompletableFuture(client.countAsync(collectionName, null, true));
+    }
+
+    /**
+     * Number of points in the collection, waiting at most the search timeout.
+     */
+    public long count() {
+        ensureCollection();
+        CompletableFuture<Long> count = counter.count();
+        try {
+            return count.get(searchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting Qdrant points", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Qdrant count failed", e.getCause());
+        } catch (TimeoutException e) {
+            count.cancel(true);
+            throw new IllegalStateException("Qdrant count timed out after " + searchTimeout, e);
+        }
+    }
+
+    private void ensureCollection() {
+        if (collectionReady) {
+            return;
+        }
+        synchronized (collectionLock) {
+            if (!collectionReady) {
+                collectionSetup.run();
+                collectionReady = true;
+            }
+        }
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        ensureCollection();
+        List<Points.PointStruct> points = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            points.add(toPoint(ids.get(i), embeddings.get(i), segments == null ? null : segments.get(i)));
+        }
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        try {
+            for (int from = 0; from < points.size(); from += batchSize) {
+                List<Points.PointStruct> batch = points.subList(from, Math.min(from + batchSize, points.size()));
+                inFlight.acquire();
+                if (batches.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    // A batch has run out of retries, the call fails anyway
+                    inFlight.release();
+                    break;
+                }
+                batches.add(upsert(batch, 0).whenComplete((result, error) -> inFlight.release()));
+            }
+            CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while upserting into Qdrant", e);
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Qdrant upsert failed after " + maxRetries + " retries", e.getCause());
+        }
+        log.debug("Upserted {} points in {} batches in {} ms", points.size(), batches.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private CompletableFuture<Void> upsert(List<Points.PointStruct> batch, int attempt) {
+        long start = System.nanoTime();
+        CompletableFuture<?> upsert;
+        try {
+            upsert = upserter.upsert(batch);
+        } catch (RuntimeException e) {
+            upsert = CompletableFuture.failedFuture(e);
+        }
+        return upsert.handle((result, error) -> {
+            long elapsed = System.nanoTime() - start;
+            if (error == null) {
+                successTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                pointsCounter.increment(batch.size());
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            failureTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            if (attempt >= maxRetries) {
+                failedPointsCounter.increment(batch.size());
+                return CompletableFuture.<Void>failedFuture(error);
+            }
+            retriesCounter.increment();
+            long backoff = retryBackoff.toMillis() << attempt;
+            log.warn("Upsert of {} points failed, retrying in {} ms: {}", batch.size(), backoff, error.toString());
+            return CompletableFuture.runAsync(() -> { },
+                            CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> upsert(batch, attempt + 1));
+        }).thenCompose(Function.identity());
+    }
+
+    static Points.PointStruct toPoint(String id, Embedding embedding, TextSegment segment) {
+        Points.PointStruct.Builder point = Points.PointStruct.newBuilder()
+                .setId(PointIdFactory.id(UUID.fromString(id)))
+                .setVectors(VectorsFactory.vectors(embedding.vector()));
+        if (segment != null) {
+            Map<String, JsonWithInt.Value> payload = new LinkedHashMap<>();
+            segment.metadata().toMap().forEach((key, value) -> payload.put(key, toValue(value)));
+            payload.put(PAYLOAD_TEXT_KEY, ValueFactory.value(segment.text()));
+            point.putAllPayload(payload);
+        }
+        return point.build();
+    }
+
+    private static JsonWithInt.Value toValue(Object value) {
+        return switch (value) {
+            case Integer number -> ValueFactory.value(number.longValue());
+            case Long number -> ValueFactory.value(number);
+            case Float number -> ValueFactory.value(number.doubleValue());
+            case Double number -> ValueFactory.value(number);
+            case Boolean bool -> ValueFactory.value(bool);
+            default -> ValueFactory.value(String.valueOf(value));
+        };
+    }
+
+    private static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Futures.addCallback(future, new FutureCallback<>() {
+            @Override
+            public void onSuccess(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                result.completeExceptionally(error);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        ensureCollection();
+        return delegate.add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        ensureCollection();
+        delegate.add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        ensureCollection();
+        return delegate.add(embedding, segment);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        ensureCollection();
+        return delegate.addAll(embeddings);
+    }
+
+    @Override
+    public void remove(String id) {
+        ensureCollection();
+        delegate.remove(id);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        ensureCollection();
+        delegate.removeAll(ids);
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        ensureCollection();
+        delegate.removeAll(filter);
+    }
+
+    @Override
+    public void removeAll() {
+        ensureCollection();
+        delegate.removeAll();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        ensureCollection();
+        Points.SearchPoints.Builder search = Points.SearchPoints.newBuilder()
+                .addAllVector(request.queryEmbedding().vectorAsList())
+                .setLimit(request.maxResults())
+                .setParams(searchParams)
+                .setWithPayload(WithPayloadSelectorFactory.enable(true))
+                .setWithVectors(WithVectorsSelectorFactory.enable(withVectors))
+                .setTimeout(Math.max(1, searchTimeout.toSeconds()));
+        if (request.filter() != null) {
+            Optional<Common.Filter> filter = QdrantFilters.toQdrant(request.filter());
+            if (filter.isEmpty()) {
+                log.debug("Filter {} is not converted, searching without search params", request.filter());
+                delegatedSearchesCounter.increment();
+                return delegate.search(request);
+            }
+            search.setFilter(filter.get());
+        }
+
+        long start = System.nanoTime();
+        List<Points.ScoredPoint> points;
+        try {
+            points = searcher.search(search.build()).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Qdrant search failed", e.getCause());
+        } finally {
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(points.size());
+        for (Points.ScoredPoint point : points) {
+            EmbeddingMatch<TextSegment> match = toMatch(point);
+            if (match.score() >= request.minScore()) {
+                matches.add(match);
+            }
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * Reads a point like {@code QdrantEmbeddingStore} does. The score is Qdrant's cosine similarity,
+     * which is exact on the original vectors when quantized candidates are rescored. Points returned
+     * without vectors become matches without an embedding.
+     */
+    static EmbeddingMatch<TextSegment> toMatch(Points.ScoredPoint point) {
+        Map<String, JsonWithInt.Value> payload = point.getPayloadMap();
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        payload.forEach((key, value) -> {
+            if (!key.equals(PAYLOAD_TEXT_KEY)) {
+                Object metadataValue = toMetadataValue(value);
+                if (metadataValue != null) {
+                    metadata.put(key, metadataValue);
+                }
+            }
+        });
+        JsonWithInt.Value text = payload.get(PAYLOAD_TEXT_KEY);
+        TextSegment segment = text == null ? null : TextSegment.from(text.getStringValue(), Metadata.from(metadata));
+        Embedding embedding = null;
+        if (point.hasVectors()) {
+            Points.VectorOutput vector = point.getVectors().getVector();
+            embedding = Embedding.from(vector.hasDense() ? vector.getDense().getDataList() : vector.getDataList());
+        }
+        return new EmbeddingMatch<>(RelevanceScore.fromCosineSimilarity(point.getScore()),
+                point.getId().getUuid(), embedding, segment);
+    }
+
+    private static Object toMetadataValue(JsonWithInt.Value value) {
+        return switch (value.getKindCase()) {
+            case STRING_VALUE -> value.getStringValue();
+            case INTEGER_VALUE -> value.getIntegerValue();
+            case DOUBLE_VALUE -> value.getDoubleValue();
+            default -> null;
+        };
+    }
+}
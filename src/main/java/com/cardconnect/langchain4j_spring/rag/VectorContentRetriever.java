@@ -0,0 +1,66 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.observability.RetrievalMetrics;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content retriever searching the embedding store for the query embedding, like langchain4j's
+ * {@code EmbeddingStoreContentRetriever}, with the query embedding and the vector search timed
+ * separately and the matches recorded in {@link RetrievalMetrics}.
+ *
+ * <p>Every content carries the relevance score and the embedding id of its match.
+ */
+public class VectorContentRetriever implements ContentRetriever {
+
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final EmbeddingModel embeddingModel;
+    private final int maxResults;
+    private final double minScore;
+    private final Filter filter;
+    private final RetrievalMetrics metrics;
+
+    public VectorContentRetriever(EmbeddingStore<TextSegment> embeddingStore,
+                                  EmbeddingModel embeddingModel,
+                                  int maxResults,
+                                  double minScore,
+                                  Filter filter,
+                                  RetrievalMetrics metrics) {
+        this.embeddingStore = embeddingStore;
+        this.embeddingModel = embeddingModel;
+        this.maxResults = maxResults;
+        this.minScore = minScore;
+        this.filter = filter;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        Embedding embedding = metrics.timeEmbedding(() -> embeddingModel.embed(query.text()).content());
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(embedding)
+                .maxResults(maxResults)
+                .minScore(minScore)
+                .filter(filter)
+                .build();
+        List<EmbeddingMatch<TextSegment>> matches = metrics.timeSearch(() -> embeddingStore.search(request).matches());
+        metrics.recordMatches(matches);
+        return matches.stream()
+                .map(match -> Content.from(match.embedded(), Map.of(
+                        ContentMetadata.SCORE, match.score(),
+                        ContentMetadata.EMBEDDING_ID, match.embeddingId())))
+                .toList();
+    }
+}
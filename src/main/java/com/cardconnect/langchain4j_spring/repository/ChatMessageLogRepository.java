@@ -0,0 +1,60 @@
+package com.cardconnect.langchain4j_spring.repository;
+
+import com.cardconnect.langchain4j_spring.entity.ChatMessageLogEntity;
+import com.cardconnect.langchain4j_spring.entity.ChatMessageLogId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for per-message chat memory rows.
+ * Modifying queries must be executed within a transaction.
+ */
+@Repository
+public interface ChatMessageLogRepository extends JpaRepository<ChatMessageLogEntity, ChatMessageLogId> {
+
+    /**
+     * Find all messages of a session in conversation order.
+     *
+     * @param memoryId the session identifier
+     * @return the persisted messages ordered by sequence number
+     */
+    List<ChatMessageLogEntity> findByMemoryIdOrderBySeqAsc(Long memoryId);
+
+    /**
+     * Delete the given messages of a session.
+     *
+     * @param memoryId the session identifier
+     * @param seqs     sequence numbers of the messages to delete
+     */
+    @Modifying
+    @Query("DELETE FROM ChatMessageLogEntity m WHERE m.memoryId = :memoryId AND m.seq IN :seqs")
+    void deleteByMemoryIdAndSeqIn(@Param("memoryId") Long memoryId, @Param("seqs") Collection<Long> seqs);
+
+    /**
+     * Replace the payload of a message with its codec-encoded form and clear the legacy JSON.
+     *
+     * @param memoryId     the session identifier
+     * @param seq          sequence number of the message
+     * @param payloadBytes the encoded message
+     */
+    @Modifying
+    @Query("UPDATE ChatMessageLogEntity m SET m.payloadBytes = :payloadBytes, m.payload = NULL "
+            + "WHERE m.memoryId = :memoryId AND m.seq = :seq")
+    void updatePayloadBytes(@Param("memoryId") Long memoryId, @Param("seq") Long seq,
+                            @Param("payloadBytes") byte[] payloadBytes);
+
+    /**
+     * Delete all messages of a session.
+     *
+     * @param memoryId the session identifier
+     */
+    @Modifying
+    @Query("DELETE FROM ChatMessageLogEntity m WHERE m.memoryId = :memoryId")
+    void deleteByMemoryId(@Param("memoryId") Long memoryId);
+}
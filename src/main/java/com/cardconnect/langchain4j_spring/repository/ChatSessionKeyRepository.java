@@ -0,0 +1,12 @@
+package com.cardconnect.langchain4j_spring.repository;
+
+import com.cardconnect.langchain4j_spring.entity.ChatSessionKeyEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for session id to chat memory key claims.
+ */
+@Repository
+public interface ChatSessionKeyRepository extends JpaRepository<ChatSessionKeyEntity, Long> {
+}
@@ -0,0 +1,13 @@
+-- Append-only chat memory storage: one row per message instead of one JSON blob per session.
+-- Rows are ordered by SEQ within a MEMORY_ID; evicted messages are deleted, new ones appended.
+
+CREATE TABLE chat_message_log
+(
+    memory_id BIGINT      NOT NULL,
+    seq       BIGINT      NOT NULL,
+    role      VARCHAR(32) NOT NULL,
+    payload   LONGVARCHAR NOT NULL,
+    PRIMARY KEY (memory_id, seq)
+);
+
+COMMENT ON TABLE chat_message_log IS 'Per-message chat memory rows, ordered by seq within a memory id';
@@ -0,0 +1,9 @@
+-- Codec-encoded chat memory payloads (see app.langchain4j.chat-memory.codec).
+-- The JSON text columns are kept for rows written before this migration; they are re-encoded
+-- into the binary columns and cleared the first time the session is read.
+
+ALTER TABLE chat_message_entity ADD COLUMN content_bytes BLOB;
+ALTER TABLE chat_message_entity ALTER COLUMN content SET NULL;
+
+ALTER TABLE chat_message_log ADD COLUMN payload_bytes BLOB;
+ALTER TABLE chat_message_log ALTER COLUMN payload SET NULL;
@@ -0,0 +1,13 @@
+-- Maps external session ids (String/UUID) to the 64-bit keys used as chat memory ids.
+-- Keys are a keyed hash of the session id; on a collision the next free key is probed,
+-- so a key is claimed by exactly one session. Rows are never deleted, they terminate probe chains.
+
+CREATE TABLE chat_session_key
+(
+    session_key BIGINT       NOT NULL PRIMARY KEY,
+    session_id  VARCHAR(255) NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_chat_session_key_session_id ON chat_session_key(session_id);
+
+COMMENT ON TABLE chat_session_key IS 'Collision-free mapping of session ids to chat memory keys';
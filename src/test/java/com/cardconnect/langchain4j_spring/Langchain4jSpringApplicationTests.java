@@ -3,7 +3,7 @@ package com.cardconnect.langchain4j_spring;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "app.langchain4j.chat-memory.session-key.hash-key=0f1e2d3c4b5a69788796a5b4c3d2e1f0")
 class Langchain4jSpringApplicationTests {
 
 	@Test
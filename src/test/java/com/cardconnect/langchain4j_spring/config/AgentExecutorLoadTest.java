@@ -0,0 +1,123 @@
+package com.cardconnect.langchain4j_spring.config;
+
+import com.cardconnect.langchain4j_spring.execution.AgentExecutorRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load comparison of the execution models for blocking agent work.
+ *
+ * <p>Each simulated request blocks for the duration of a model call, like a Tomcat thread waiting on
+ * Ollama. The platform pool is sized like Tomcat's default connector, so it caps the in-flight
+ * requests; the virtual executor is bounded only by its pool size and takes every request at once
+ * with a handful of carrier threads.
+ *
+ * <p>The wall time and thread comparison only runs when {@code EXECUTOR_BENCHMARK} is set, e.g.
+ * {@code EXECUTOR_BENCHMARK=true mvn test -Dtest=AgentExecutorLoadTest}.
+ */
+@Slf4j
+class AgentExecutorLoadTest {
+
+    private static final int REQUESTS = 2_000;
+    private static final long MODEL_LATENCY_MS = 200;
+
+    @Test
+    void shouldServeAllRequestsConcurrently_onVirtualThreads() throws Exception {
+        // When
+        LoadResult platform = run("platform pool (200)", executor(false, 200));
+        LoadResult virtual = run("virtual threads", executor(true, REQUESTS));
+
+        // Then
+        assertEquals(200, platform.peakInFlight());
+        assertEquals(REQUESTS, virtual.peakInFlight());
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "EXECUTOR_BENCHMARK", matches = ".+")
+    void shouldReportWallTimeAndThreads_ofPlatformPoolAndVirtualThreads() throws Exception {
+        LoadResult platform = run("platform pool (200)", executor(false, 200));
+        LoadResult virtual = run("virtual threads", executor(true, REQUESTS));
+
+        assertTrue(virtual.peakThreads() < platform.peakThreads(),
+                "virtual threads must not need a platform thread per request");
+        assertTrue(virtual.elapsedMs() * 3 < platform.elapsedMs(),
+                "virtual threads should not queue requests behind a fixed pool");
+    }
+
+    private static ExecutorService executor(boolean virtualThreads, int maxSize) {
+        LangChain4jProperties.ExecutorPool pool = new LangChain4jProperties.ExecutorPool();
+        pool.setCoreSize(maxSize);
+        pool.setMaxSize(maxSize);
+        pool.setQueueCapacity(REQUESTS);
+        LangChain4jProperties.Execution execution = new LangChain4jProperties.Execution();
+        execution.setPools(Map.of("load", pool));
+        return new AgentExecutorRegistry(execution, virtualThreads, new SimpleMeterRegistry()).get("load");
+    }
+
+    private LoadResult run(String name, ExecutorService executor) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        AtomicInteger peakThreads = new AtomicInteger(threads.getThreadCount());
+        AtomicLong peakHeap = new AtomicLong(baselineHeap);
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+
+        Thread sampler = Thread.ofPlatform().daemon(true).start(() -> {
+            while (done.getCount() > 0) {
+                peakThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        try (executor) {
+            for (int i = 0; i < REQUESTS; i++) {
+                executor.execute(() -> {
+                    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(MODEL_LATENCY_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        inFlight.decrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        sampler.join();
+
+        LoadResult result = new LoadResult(elapsedMs, peakInFlight.get(), peakThreads.get(),
+                (peakHeap.get() - baselineHeap) / (1024 * 1024));
+        log.info(String.format("%-20s requests=%d elapsed=%d ms peakInFlight=%d peakPlatformThreads=%d heapGrowth=%d MB",
+                name, REQUESTS, result.elapsedMs(), result.peakInFlight(), result.peakThreads(), result.heapGrowthMb()));
+        return result;
+    }
+
+    private record LoadResult(long elapsedMs, int peakInFlight, int peakThreads, long heapGrowthMb) {
+    }
+}
@@ -0,0 +1,116 @@
+package com.cardconnect.langchain4j_spring.config;
+
+import io.qdrant.client.grpc.Collections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QdrantConfigTest {
+
+    private final QdrantConfig config = new QdrantConfig();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(config, "collectionName", "documents");
+        ReflectionTestUtils.setField(config, "hnswM", 32);
+        ReflectionTestUtils.setField(config, "hnswEfConstruct", 200);
+        ReflectionTestUtils.setField(config, "hnswOnDisk", false);
+        ReflectionTestUtils.setField(config, "vectorsOnDisk", true);
+        ReflectionTestUtils.setField(config, "payloadOnDisk", true);
+        ReflectionTestUtils.setField(config, "quantizationEnabled", true);
+        ReflectionTestUtils.setField(config, "quantizationQuantile", 0.99f);
+        ReflectionTestUtils.setField(config, "quantizationAlwaysRam", true);
+        ReflectionTestUtils.setField(config, "payloadIndexes", List.of("source", "author", "document_id"));
+    }
+
+    @Test
+    void shouldCreateCollectionWithHnswQuantizationAndOnDiskSettings() {
+        // When
+        Collections.CreateCollection request = config.createCollectionRequest(768);
+
+        // Then
+        Collections.VectorParams vectors = request.getVectorsConfig().getParams();
+        assertEquals(768, vectors.getSize());
+        assertEquals(Collections.Distance.Cosine, vectors.getDistance());
+        assertTrue(vectors.getOnDisk());
+        assertTrue(request.getOnDiskPayload());
+        assertEquals(32, request.getHnswConfig().getM());
+        assertEquals(200, request.getHnswConfig().getEfConstruct());
+        Collections.ScalarQuantization scalar = request.getQuantizationConfig().getScalar();
+        assertEquals(Collections.QuantizationType.Int8, scalar.getType());
+        assertEquals(0.99f, scalar.getQuantile());
+        assertTrue(scalar.getAlwaysRam());
+    }
+
+    @Test
+    void shouldUpdateOnlyDifferingSettings_whenCollectionExists() {
+        // Given - created before tuning: default HNSW graph, vectors in RAM, no quantization
+        Collections.CollectionConfig existing = existingConfig(16, 100, false, true, false);
+
+        // When
+        Optional<Collections.UpdateCollection> update = config.updateCollectionRequest(existing);
+
+        // Then
+        assertTrue(update.isPresent());
+        assertEquals("documents", update.get().getCollectionName());
+        assertEquals(32, update.get().getHnswConfig().getM());
+        assertTrue(update.get().getVectorsConfig().getParams().getOnDisk());
+        assertEquals(Collections.QuantizationType.Int8, update.get().getQuantizationConfig().getScalar().getType());
+        assertFalse(update.get().hasParams());
+    }
+
+    @Test
+    void shouldNotUpdate_whenCollectionMatchesSettings() {
+        // Given
+        Collections.CollectionConfig existing = existingConfig(32, 200, true, true, true);
+
+        // When
+        Optional<Collections.UpdateCollection> update = config.updateCollectionRequest(existing);
+
+        // Then
+        assertTrue(update.isEmpty());
+    }
+
+    @Test
+    void shouldCreateOnlyMissingPayloadIndexes() {
+        // Given
+        Collections.CollectionInfo info = Collections.CollectionInfo.newBuilder()
+                .putPayloadSchema("source", Collections.PayloadSchemaInfo.newBuilder()
+                        .setDataType(Collections.PayloadSchemaType.Keyword)
+                        .build())
+                .build();
+
+        // When / Then
+        assertEquals(List.of("author", "document_id"), config.missingPayloadIndexes(info));
+        assertEquals(List.of("source", "author", "document_id"), config.missingPayloadIndexes(null));
+    }
+
+    private static Collections.CollectionConfig existingConfig(int m, int efConstruct, boolean vectorsOnDisk,
+                                                               boolean payloadOnDisk, boolean quantized) {
+        Collections.CollectionConfig.Builder config = Collections.CollectionConfig.newBuilder()
+                .setParams(Collections.CollectionParams.newBuilder()
+                        .setOnDiskPayload(payloadOnDisk)
+                        .setVectorsConfig(Collections.VectorsConfig.newBuilder()
+                                .setParams(Collections.VectorParams.newBuilder()
+                                        .setSize(768)
+                                        .setDistance(Collections.Distance.Cosine)
+                                        .setOnDisk(vectorsOnDisk))))
+                .setHnswConfig(Collections.HnswConfigDiff.newBuilder()
+                        .setM(m)
+                        .setEfConstruct(efConstruct)
+                        .setOnDisk(false));
+        if (quantized) {
+            config.setQuantizationConfig(Collections.QuantizationConfig.newBuilder()
+                    .setScalar(Collections.ScalarQuantization.newBuilder()
+                            .setType(Collections.QuantizationType.Int8)
+                            .setQuantile(0.99f)
+                            .setAlwaysRam(true)));
+        }
+        return config.build();
+    }
+}
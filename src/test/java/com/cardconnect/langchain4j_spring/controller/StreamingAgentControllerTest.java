@@ -0,0 +1,214 @@
+package com.cardconnect.langchain4j_spring.controller;
+
+import com.cardconnect.langchain4j_spring.assistant.CustomerSupportAgent;
+import com.cardconnect.langchain4j_spring.assistant.RAGAgent;
+import com.cardconnect.langchain4j_spring.assistant.RouterAgent;
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.observability.AgentMetricsService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the streaming endpoints against real AI services backed by a local fake streaming model
+ * that emits its tokens from a separate thread, like the Ollama client does.
+ */
+class StreamingAgentControllerTest {
+
+    private final ExecutorService modelThread = Executors.newSingleThreadExecutor();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<String> tokens = List.of("Hello", " there", "!");
+    private RuntimeException failure;
+    private CountDownLatch firstTokenSent;
+    private final CountDownLatch generationCancelled = new CountDownLatch(1);
+    private final CountDownLatch generationEnded = new CountDownLatch(1);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        StreamingChatModel streamingChatModel = new FakeStreamingChatModel();
+
+        CustomerSupportAgent customerSupportAgent = AiServices.builder(CustomerSupportAgent.class)
+                .streamingChatModel(streamingChatModel)
+                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(10))
+                .build();
+        RouterAgent routerAgent = AiServices.builder(RouterAgent.class)
+                .streamingChatModel(streamingChatModel)
+                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(10))
+                .build();
+        RAGAgent ragAgent = AiServices.builder(RAGAgent.class)
+                .streamingChatModel(streamingChatModel)
+                .build();
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new StreamingAgentController(customerSupportAgent, routerAgent,
+                ragAgent, new AgentMetricsService(meterRegistry), new LangChain4jProperties())).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        modelThread.shutdownNow();
+    }
+
+    @Test
+    void shouldStreamTokens_thenCompleteResponse() throws Exception {
+        // When
+        String body = performStream("/api/v1/agent/support/stream",
+                "{\"sessionId\":\"user123\",\"message\":\"Get booking BN123\"}");
+
+        // Then
+        assertTrue(body.indexOf("event:token\ndata:Hello\n\n") < body.indexOf("event:token\ndata: there\n\n"));
+        assertTrue(body.contains("event:done\ndata:{\"response\":\"Hello there!\",\"sessionId\":\"user123\""), body);
+        assertEquals(3.0, meterRegistry.get("agent.stream.tokens").tag("agent", "support").counter().count());
+        assertEquals(1, meterRegistry.get("agent.stream.time.to.first.token").tag("agent", "support").timer().count());
+        assertEquals(2, meterRegistry.get("agent.stream.inter.token").tag("agent", "support").timer().count());
+        assertEquals(1, meterRegistry.get("agent.response.time.by.type").tag("agent", "support").timer().count());
+        // Token usage is recorded by the chat model listener, once per model call
+        assertEquals(0.0, meterRegistry.get("agent.tokens.output").tag("agent", "support").counter().count());
+    }
+
+    @Test
+    void shouldStreamRouterAndRagResponses() throws Exception {
+        // When
+        String router = performStream("/api/v1/agent/ask/stream", "{\"sessionId\":\"user456\",\"message\":\"What is diabetes?\"}");
+        String rag = performStream("/api/v1/agent/chat/stream?message=Who is Charlie?", null);
+
+        // Then
+        assertTrue(router.contains("event:done"));
+        assertTrue(rag.contains("event:token\ndata:Hello"));
+        assertFalse(rag.contains("sessionId"));
+    }
+
+    @Test
+    void shouldSendErrorEvent_whenModelFails() throws Exception {
+        // Given
+        failure = new IllegalStateException("model unavailable");
+
+        // When
+        String body = performStream("/api/v1/agent/chat/stream?message=Who is Charlie?", null);
+
+        // Then
+        assertTrue(body.contains("event:error\ndata:IllegalStateException"), body);
+        assertEquals(1.0, meterRegistry.get("agent.requests.failed").counter().count());
+    }
+
+    @Test
+    void shouldCancelGeneration_andRecordStreamOnce_whenStreamTimesOut() throws Exception {
+        // Given - the model holds the stream open after its first token
+        firstTokenSent = new CountDownLatch(1);
+        MvcResult result = mockMvc.perform(post("/api/v1/agent/chat/stream?message=Who is Charlie?")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(firstTokenSent.await(5, TimeUnit.SECONDS));
+
+        // When
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        // Then - the late completion of the cancelled generation is not recorded as a success
+        assertTrue(generationCancelled.await(5, TimeUnit.SECONDS));
+        assertTrue(generationEnded.await(5, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.get("agent.requests.failed").counter().count());
+        assertEquals(1.0, meterRegistry.get("agent.requests.total").counter().count());
+        assertFalse(result.getResponse().getContentAsString().contains("event:done"));
+    }
+
+    private String performStream(String uri, String json) throws Exception {
+        var builder = post(uri).accept(MediaType.TEXT_EVENT_STREAM);
+        if (json != null) {
+            builder.contentType(MediaType.APPLICATION_JSON).content(json);
+        }
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM));
+        return result.getResponse().getContentAsString();
+    }
+
+    private class FakeStreamingChatModel implements StreamingChatModel {
+
+        @Override
+        public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            modelThread.execute(() -> {
+                if (failure != null) {
+                    handler.onError(failure);
+                    return;
+                }
+                AtomicBoolean cancelled = new AtomicBoolean();
+                StreamingHandle streamingHandle = new StreamingHandle() {
+                    @Override
+                    public void cancel() {
+                        cancelled.set(true);
+                        generationCancelled.countDown();
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return cancelled.get();
+                    }
+                };
+                StringBuilder text = new StringBuilder();
+                for (String token : tokens) {
+                    text.append(token);
+                    handler.onPartialResponse(new PartialResponse(token), new PartialResponseContext(streamingHandle));
+                    if (firstTokenSent != null) {
+                        firstTokenSent.countDown();
+                        awaitQuietly(generationCancelled);
+                    }
+                }
+                handler.onCompleteResponse(ChatResponse.builder()
+                        .aiMessage(AiMessage.from(text.toString()))
+                        .tokenUsage(new TokenUsage(12, 7))
+                        .build());
+                generationEnded.countDown();
+            });
+        }
+
+        private static void awaitQuietly(CountDownLatch latch) {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.cardconnect.langchain4j_spring.execution;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentExecutorRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AgentExecutorRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (registry != null) {
+            registry.close();
+        }
+    }
+
+    @Test
+    void shouldCreateDefaultExecutors_withMetrics() {
+        // When
+        registry = new AgentExecutorRegistry(new LangChain4jProperties.Execution(), false, meterRegistry);
+
+        // Then
+        assertNotNull(registry.get(AgentExecutorRegistry.WORKFLOW));
+        assertNotNull(registry.get(AgentExecutorRegistry.TOOLS));
+        assertEquals(16.0, meterRegistry.get("executor.pool.max").tag("name", "workflow").gauge().value());
+        assertEquals(100.0, meterRegistry.get("executor.queue.remaining").tag("name", "tools").gauge().value());
+        assertThrows(IllegalArgumentException.class, () -> registry.get("unknown"));
+    }
+
+    @Test
+    void shouldRunMaxSizeTasksAtOnce_beforeQueueing() throws InterruptedException {
+        // Given
+        registry = registry(3, 10, LangChain4jProperties.RejectionPolicy.ABORT);
+        ExecutorService executor = registry.get("test");
+        CountDownLatch started = new CountDownLatch(3);
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                awaitRelease();
+            });
+        }
+
+        // Then
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(3.0, meterRegistry.get("executor.active").tag("name", "test").gauge().value());
+        assertEquals(1.0, meterRegistry.get("executor.queued").tag("name", "test").gauge().value());
+    }
+
+    @Test
+    void shouldRejectQueuedPool_whoseMaxSizeIsAboveCoreSize() {
+        // Given
+        LangChain4jProperties.ExecutorPool pool = new LangChain4jProperties.ExecutorPool();
+        pool.setCoreSize(4);
+        pool.setMaxSize(16);
+        LangChain4jProperties.Execution execution = new LangChain4jProperties.Execution();
+        execution.setPools(Map.of("test", pool));
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> new AgentExecutorRegistry(execution, false, meterRegistry));
+    }
+
+    @Test
+    void shouldRejectAndCount_whenPoolAndQueueAreFull() throws InterruptedException {
+        // Given - one thread and one queue slot
+        registry = registry(1, 1, LangChain4jProperties.RejectionPolicy.ABORT);
+        ExecutorService executor = registry.get("test");
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        started.await();
+        executor.execute(this::awaitRelease);
+
+        // When / Then
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(this::awaitRelease));
+        assertEquals(1.0, meterRegistry.get("executor.rejected").tag("name", "test").counter().count());
+        assertEquals(1.0, meterRegistry.get("executor.active").tag("name", "test").gauge().value());
+        assertEquals(1.0, meterRegistry.get("executor.queued").tag("name", "test").gauge().value());
+    }
+
+    @Test
+    void shouldRunOnCaller_whenSaturatedWithCallerRunsPolicy() throws InterruptedException {
+        // Given
+        registry = registry(1, 0, LangChain4jProperties.RejectionPolicy.CALLER_RUNS);
+        ExecutorService executor = registry.get("test");
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        started.await();
+
+        // When
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        executor.execute(() -> runner.set(Thread.currentThread()));
+
+        // Then
+        assertSame(Thread.currentThread(), runner.get());
+        assertEquals(1.0, meterRegistry.get("executor.rejected").tag("name", "test").counter().count());
+    }
+
+    @Test
+    void shouldRunTasksOnVirtualThreads_whenEnabled() throws Exception {
+        // Given
+        registry = new AgentExecutorRegistry(new LangChain4jProperties.Execution(), true, meterRegistry);
+
+        // When
+        boolean virtual = registry.get(AgentExecutorRegistry.WORKFLOW).submit(() -> Thread.currentThread().isVirtual()).get();
+
+        // Then
+        assertTrue(virtual);
+    }
+
+    @Test
+    void shouldInterruptRunningTasks_whenShutdownTimeoutExpires() throws InterruptedException {
+        // Given
+        registry = registry(1, 0, LangChain4jProperties.RejectionPolicy.ABORT);
+        ExecutorService executor = registry.get("test");
+        executor.execute(this::awaitRelease);
+
+        // When
+        registry.close();
+
+        // Then - the interrupted task exits right after shutdownNow
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    private AgentExecutorRegistry registry(int maxSize, int queueCapacity, LangChain4jProperties.RejectionPolicy policy) {
+        LangChain4jProperties.ExecutorPool pool = new LangChain4jProperties.ExecutorPool();
+        pool.setCoreSize(maxSize);
+        pool.setMaxSize(maxSize);
+        pool.setQueueCapacity(queueCapacity);
+        pool.setRejectionPolicy(policy);
+        LangChain4jProperties.Execution execution = new LangChain4jProperties.Execution();
+        execution.setShutdownTimeout(Duration.ofMillis(100));
+        execution.setPools(Map.of("test", pool));
+        return new AgentExecutorRegistry(execution, false, meterRegistry);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.cardconnect.langchain4j_spring.execution;
+
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.HoroscopeGenerator;
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.PersonExtractor;
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.SignExtractor;
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.StoryFinder;
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.Writer;
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.agentic.Agent;
+import dev.langchain4j.agentic.AgenticServices;
+import dev.langchain4j.agentic.UntypedAgent;
+import dev.langchain4j.agentic.planner.AgentInstance;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.V;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyGraphPlannerTest {
+
+    private final AgentExecutorRegistry agentExecutors =
+            new AgentExecutorRegistry(new LangChain4jProperties.Execution(), false, new SimpleMeterRegistry());
+    private final WriterModel model = new WriterModel();
+
+    @AfterEach
+    void tearDown() {
+        agentExecutors.close();
+    }
+
+    @Test
+    void shouldPlanWaves_fromArgumentsAndOutputKeys() {
+        // Given
+        List<AgentInstance> agents = writerAgents().stream().map(AgentInstance.class::cast).toList();
+
+        // When
+        List<List<AgentInstance>> waves = DependencyGraphPlanner.waves(agents, "writeup");
+
+        // Then
+        assertEquals(List.of(List.of("extractPerson", "extractSign"), List.of("horoscope"), List.of("findStory"),
+                List.of("write")), names(waves));
+    }
+
+    @Test
+    void shouldRunIndependentAgentsInParallel_andJoinTheirOutputs() {
+        // Given
+        UntypedAgent writer = new DependencyGraphPlanner(agentExecutors.get(AgentExecutorRegistry.WORKFLOW))
+                .build("writeup", writerAgents().toArray());
+
+        // When
+        String writeup = (String) writer.invoke(Map.of("prompt", "My name is Mario and my zodiac sign is pisces"));
+
+        // Then
+        assertEquals(2, model.maxConcurrent.get());
+        assertTrue(model.prompts.get("horoscope").contains("Mario who is a pisces"));
+        assertTrue(model.prompts.get("story").contains("Mario who has the following horoscope: A lucky week."));
+        assertEquals("Writeup about Mario", writeup);
+    }
+
+    @Test
+    void shouldLeaveOutAgents_theGoalDoesNotDependOn() {
+        // Given
+        List<AgentInstance> agents = writerAgents().stream().map(AgentInstance.class::cast).toList();
+
+        // When
+        List<List<AgentInstance>> waves = DependencyGraphPlanner.waves(agents, "horoscope");
+
+        // Then
+        assertEquals(List.of(List.of("extractPerson", "extractSign"), List.of("horoscope")), names(waves));
+    }
+
+    @Test
+    void shouldReject_cyclesAndGoalsNoAgentWrites() {
+        // Given
+        List<AgentInstance> agents = List.of(
+                (AgentInstance) AgenticServices.agentBuilder(Asker.class).chatModel(model).outputKey("question").build(),
+                (AgentInstance) AgenticServices.agentBuilder(Answerer.class).chatModel(model).outputKey("answer").build());
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> DependencyGraphPlanner.waves(agents, "answer"));
+        assertThrows(IllegalArgumentException.class, () -> DependencyGraphPlanner.waves(agents, "writeup"));
+    }
+
+    private List<Object> writerAgents() {
+        return List.of(
+                AgenticServices.agentBuilder(PersonExtractor.class).chatModel(model).outputKey("person").build(),
+                AgenticServices.agentBuilder(SignExtractor.class).chatModel(model).outputKey("sign").build(),
+                AgenticServices.agentBuilder(HoroscopeGenerator.class).chatModel(model).outputKey("horoscope").build(),
+                AgenticServices.agentBuilder(StoryFinder.class).chatModel(model).outputKey("story").build(),
+                AgenticServices.agentBuilder(Writer.class).chatModel(model).outputKey("writeup").build());
+    }
+
+    private static List<List<String>> names(List<List<AgentInstance>> waves) {
+        return waves.stream().map(wave -> wave.stream().map(AgentInstance::name).toList()).toList();
+    }
+
+    /**
+     * Answers the prompts of the writer agents after 100ms, counting how many calls run at once.
+     */
+    private static class WriterModel implements ChatModel {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private final Map<String, String> prompts = new ConcurrentHashMap<>();
+
+        @Override
+        public ChatResponse doChat(ChatRequest chatRequest) {
+            maxConcurrent.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+                String prompt = ((UserMessage) chatRequest.messages().getLast()).singleText();
+                String answer;
+                if (prompt.startsWith("Extract a person")) {
+                    answer = "Mario";
+                } else if (prompt.startsWith("Extract the zodiac sign")) {
+                    answer = "pisces";
+                } else if (prompt.startsWith("Generate the horoscope")) {
+                    prompts.put("horoscope", prompt);
+                    answer = "A lucky week.";
+                } else if (prompt.startsWith("Find a story")) {
+                    prompts.put("story", prompt);
+                    answer = "Mario found a treasure.";
+                } else {
+                    answer = "Writeup about Mario";
+                }
+                return ChatResponse.builder().aiMessage(AiMessage.from(answer)).build();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    public interface Asker {
+
+        @dev.langchain4j.service.UserMessage("Ask a question about {{answer}}")
+        @Agent("Asks a question")
+        String ask(@V("answer") String answer);
+    }
+
+    public interface Answerer {
+
+        @dev.langchain4j.service.UserMessage("Answer {{question}}")
+        @Agent("Answers a question")
+        String answer(@V("question") String question);
+    }
+}
@@ -0,0 +1,104 @@
+package com.cardconnect.langchain4j_spring.execution;
+
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.HoroscopeGenerator;
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.PersonExtractor;
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.SignExtractor;
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.StoryFinder;
+import com.cardconnect.langchain4j_spring.agentic.agents.planner.Writer;
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.agentic.AgenticServices;
+import dev.langchain4j.agentic.UntypedAgent;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Wall time of the {@code /write} workflow with one agent at a time, as the goal-oriented planner
+ * runs it, and with the {@link DependencyGraphPlanner}. Every model call takes a fixed latency, so
+ * the numbers only show the effect of the plan: five calls in a row against four waves, with the
+ * person and sign extractors running at once.
+ *
+ * <p>Only runs when {@code PLANNER_BENCHMARK} is set, e.g.
+ * {@code PLANNER_BENCHMARK=true mvn test -Dtest=PlannerBenchmarkTest}. Optional:
+ * {@code PLANNER_BENCHMARK_REQUESTS} (20), {@code PLANNER_BENCHMARK_LATENCY_MS} (200).
+ */
+@Slf4j
+@EnabledIfEnvironmentVariable(named = "PLANNER_BENCHMARK", matches = ".+")
+class PlannerBenchmarkTest {
+
+    private static final Map<String, Object> INPUT =
+            Map.of("prompt", "My name is Mario and my zodiac sign is pisces");
+
+    @Test
+    void shouldReportWallTime_ofSequentialAndDependencyGraphPlans() {
+        int requests = Integer.parseInt(System.getenv().getOrDefault("PLANNER_BENCHMARK_REQUESTS", "20"));
+        long latencyMs = Long.parseLong(System.getenv().getOrDefault("PLANNER_BENCHMARK_LATENCY_MS", "200"));
+        ChatModel model = fixedLatencyModel(latencyMs);
+
+        try (AgentExecutorRegistry agentExecutors =
+                     new AgentExecutorRegistry(new LangChain4jProperties.Execution(), false, new SimpleMeterRegistry())) {
+            UntypedAgent sequential = AgenticServices.sequenceBuilder()
+                    .subAgents(writerAgents(model))
+                    .outputKey("writeup")
+                    .build();
+            UntypedAgent dependencyGraph = new DependencyGraphPlanner(agentExecutors.get(AgentExecutorRegistry.WORKFLOW))
+                    .build("writeup", writerAgents(model));
+
+            log.info("{} requests per plan, {}ms per model call", requests, latencyMs);
+            log.info(String.format("%-18s %12s %12s %12s", "plan", "mean ms", "p50 ms", "max ms"));
+            double sequentialMean = run("sequential", sequential, requests);
+            double dependencyGraphMean = run("dependency-graph", dependencyGraph, requests);
+            log.info(String.format("wall time reduction %.1f%%", 100 * (1 - dependencyGraphMean / sequentialMean)));
+
+            assertTrue(dependencyGraphMean < sequentialMean);
+        }
+    }
+
+    private static double run(String plan, UntypedAgent agent, int requests) {
+        agent.invoke(INPUT);
+        long[] millis = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            assertNotNull(agent.invoke(INPUT));
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(millis);
+        double mean = Arrays.stream(millis).average().orElse(0);
+        log.info(String.format("%-18s %12.1f %12d %12d", plan, mean, millis[requests / 2], millis[requests - 1]));
+        return mean;
+    }
+
+    private static Object[] writerAgents(ChatModel model) {
+        return new Object[]{
+                AgenticServices.agentBuilder(PersonExtractor.class).chatModel(model).outputKey("person").build(),
+                AgenticServices.agentBuilder(SignExtractor.class).chatModel(model).outputKey("sign").build(),
+                AgenticServices.agentBuilder(HoroscopeGenerator.class).chatModel(model).outputKey("horoscope").build(),
+                AgenticServices.agentBuilder(StoryFinder.class).chatModel(model).outputKey("story").build(),
+                AgenticServices.agentBuilder(Writer.class).chatModel(model).outputKey("writeup").build()};
+    }
+
+    private static ChatModel fixedLatencyModel(long latencyMs) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest chatRequest) {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+                return ChatResponse.builder().aiMessage(AiMessage.from("Mario")).build();
+            }
+        };
+    }
+}
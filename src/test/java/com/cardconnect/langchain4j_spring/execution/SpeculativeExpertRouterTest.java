@@ -0,0 +1,170 @@
+package com.cardconnect.langchain4j_spring.execution;
+
+import com.cardconnect.langchain4j_spring.agentic.agents.conditional.CategoryRouter;
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.dto.RequestCategory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpeculativeExpertRouterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AgentExecutorRegistry agentExecutors =
+            new AgentExecutorRegistry(new LangChain4jProperties.Execution(), false, meterRegistry);
+    private final LangChain4jProperties.Speculation config = new LangChain4jProperties.Speculation();
+    private final AtomicInteger medicalCalls = new AtomicInteger();
+    private final CountDownLatch medicalCancelled = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        agentExecutors.close();
+    }
+
+    @Test
+    void shouldKeepSpeculativeExpert_whenGuessMatchesClassification() {
+        // Given
+        SpeculativeExpertRouter router = router(classifyingAs(RequestCategory.MEDICAL), 100);
+
+        // When
+        String answer = router.ask("My doctor says the pain in my knee is nothing serious");
+
+        // Then
+        assertEquals("Rest your knee.", answer);
+        assertEquals(1, medicalCalls.get());
+        assertEquals(1.0, requests("hit"));
+        assertEquals(1.0, meterRegistry.get("agent.speculation.hit.ratio").gauge().value());
+        assertEquals(1, meterRegistry.get("agent.speculation.saved").timer().count());
+        assertTrue(meterRegistry.get("agent.speculation.saved").timer().totalTime(TimeUnit.MILLISECONDS) > 50);
+    }
+
+    @Test
+    void shouldCancelWrongGuess_andCallClassifiedExpert() throws InterruptedException {
+        // Given
+        SpeculativeExpertRouter router = router(classifyingAs(RequestCategory.LEGAL), 10_000);
+
+        // When
+        String answer = router.ask("Can my doctor share my medical records without consent?");
+
+        // Then
+        assertEquals("Ask a lawyer.", answer);
+        assertTrue(medicalCancelled.await(5, TimeUnit.SECONDS));
+        assertEquals(1.0, requests("miss"));
+        assertEquals(0.0, meterRegistry.get("agent.speculation.hit.ratio").gauge().value());
+        assertEquals(1.0, meterRegistry.get("agent.speculation.calls").tag("result", "cancelled").counter().count());
+    }
+
+    @Test
+    void shouldRouteWithoutSpeculation_onceBudgetIsSpent() {
+        // Given
+        config.setBudget(1);
+        SpeculativeExpertRouter router = router(classifyingAs(RequestCategory.MEDICAL), 0);
+
+        // When
+        router.ask("I have a fever and a headache");
+        String answer = router.ask("I have a fever again");
+
+        // Then
+        assertEquals("Rest your knee.", answer);
+        assertEquals(2, medicalCalls.get());
+        assertEquals(1.0, requests("hit"));
+        assertEquals(1.0, requests("skipped"));
+    }
+
+    @Test
+    void shouldSkipSpeculation_whenCallerRunsExecutorIsSaturated() throws InterruptedException {
+        // Given - the only worker is busy and nothing can be queued, so the pool would run tasks on the caller
+        List<String> calls = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor saturated = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        saturated.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        SpeculativeExpertRouter router = new SpeculativeExpertRouter(request -> {
+            calls.add("classify");
+            return RequestCategory.MEDICAL;
+        }, Map.of(RequestCategory.MEDICAL, request -> {
+            calls.add("medical");
+            return "Rest your knee.";
+        }), saturated, config, meterRegistry);
+
+        try {
+            // When
+            String answer = router.ask("My doctor says the pain in my knee is nothing serious");
+
+            // Then - the expert is only called once the request is classified
+            assertEquals("Rest your knee.", answer);
+            assertEquals(List.of("classify", "medical"), calls);
+            assertEquals(1.0, requests("skipped"));
+        } finally {
+            release.countDown();
+            saturated.shutdown();
+            assertTrue(saturated.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void shouldGuessByKeywords_andByRecentCategoriesWithoutKeywords() {
+        // Given
+        CategoryPrior prior = new CategoryPrior(config);
+        List.of(RequestCategory.TECHNICAL, RequestCategory.TECHNICAL, RequestCategory.LEGAL, RequestCategory.UNKNOWN)
+                .forEach(prior::record);
+
+        // When
+        List<CategoryPrior.Guess> byKeywords = prior.guess("Which lawyer can review my software contract?");
+        List<CategoryPrior.Guess> byHistory = prior.guess("Hello there");
+
+        // Then
+        assertEquals(RequestCategory.LEGAL, byKeywords.get(0).category());
+        assertEquals(2.0 / 3, byKeywords.get(0).probability(), 0.001);
+        assertEquals(List.of(new CategoryPrior.Guess(RequestCategory.TECHNICAL, 0.5),
+                new CategoryPrior.Guess(RequestCategory.LEGAL, 0.25)), byHistory);
+    }
+
+    private SpeculativeExpertRouter router(CategoryRouter categoryRouter, long medicalLatencyMs) {
+        return new SpeculativeExpertRouter(categoryRouter, Map.of(
+                RequestCategory.MEDICAL, request -> {
+                    medicalCalls.incrementAndGet();
+                    try {
+                        Thread.sleep(medicalLatencyMs);
+                    } catch (InterruptedException e) {
+                        medicalCancelled.countDown();
+                        throw new IllegalStateException(e);
+                    }
+                    return "Rest your knee.";
+                },
+                RequestCategory.LEGAL, request -> "Ask a lawyer."),
+                agentExecutors.get(AgentExecutorRegistry.WORKFLOW), config, meterRegistry);
+    }
+
+    private static CategoryRouter classifyingAs(RequestCategory category) {
+        return request -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return category;
+        };
+    }
+
+    private double requests(String outcome) {
+        return meterRegistry.get("agent.speculation.requests").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,145 @@
+package com.cardconnect.langchain4j_spring.memory;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingChatMemoryStoreTest {
+
+    @Mock
+    private ChatMemoryStore delegate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CachingChatMemoryStore store;
+
+    @BeforeEach
+    void setUp() {
+        LangChain4jProperties.MemoryCache config = new LangChain4jProperties.MemoryCache();
+        config.setEnabled(true);
+        config.setMaxEntries(2);
+        config.setFlushInterval(Duration.ofHours(1)); // flushes are triggered explicitly
+        config.setMaxDirtyEntries(100);
+        config.setMaxFlushAttempts(3);
+
+        meterRegistry = new SimpleMeterRegistry();
+        store = new CachingChatMemoryStore(delegate, config, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        store.destroy();
+    }
+
+    @Test
+    void shouldServeReadsFromCache_afterFirstLoad() {
+        // Given
+        when(delegate.getMessages(1L)).thenReturn(List.of(UserMessage.from("hi")));
+
+        // When
+        store.getMessages(1L);
+        List<ChatMessage> messages = store.getMessages(1L);
+
+        // Then
+        assertEquals(List.of(UserMessage.from("hi")), messages);
+        verify(delegate, times(1)).getMessages(1L);
+        assertEquals(0.5, meterRegistry.get("chat.memory.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void shouldCoalesceUpdates_untilFlush() {
+        // Given
+        List<ChatMessage> latest = List.of(UserMessage.from("hi"), AiMessage.from("hello"));
+        store.updateMessages(1L, List.of(UserMessage.from("hi")));
+        store.updateMessages(1L, latest);
+
+        // When
+        verify(delegate, never()).updateMessages(any(), any());
+        store.flush();
+
+        // Then
+        verify(delegate, times(1)).updateMessages(1L, latest);
+        assertEquals(latest, store.getMessages(1L));
+        verify(delegate, never()).getMessages(any());
+        assertEquals(0.0, meterRegistry.get("chat.memory.cache.dirty").gauge().value());
+    }
+
+    @Test
+    void shouldNeverEvictDirtySessions() {
+        // Given - cache bound is two sessions
+        store.updateMessages(1L, List.of(UserMessage.from("one")));
+        store.updateMessages(2L, List.of(UserMessage.from("two")));
+        store.updateMessages(3L, List.of(UserMessage.from("three")));
+
+        // When
+        List<ChatMessage> first = store.getMessages(1L);
+
+        // Then
+        assertEquals(List.of(UserMessage.from("one")), first);
+        verify(delegate, never()).getMessages(any());
+    }
+
+    @Test
+    void shouldFlushDirtySessions_onShutdown() throws InterruptedException {
+        // Given
+        store.updateMessages(1L, List.of(UserMessage.from("hi")));
+        store.deleteMessages(2L);
+
+        // When
+        store.destroy();
+
+        // Then
+        verify(delegate).updateMessages(1L, List.of(UserMessage.from("hi")));
+        verify(delegate).deleteMessages(2L);
+    }
+
+    @Test
+    void shouldKeepSessionDirty_whenFlushFails() {
+        // Given
+        doThrow(new RuntimeException("db down")).doNothing().when(delegate).updateMessages(any(), any());
+        store.updateMessages(1L, List.of(UserMessage.from("hi")));
+
+        // When
+        store.flush();
+        store.flush();
+
+        // Then
+        verify(delegate, times(2)).updateMessages(1L, List.of(UserMessage.from("hi")));
+        assertEquals(1.0, meterRegistry.get("chat.memory.cache.flush.failures").counter().count());
+    }
+
+    @Test
+    void shouldDropPendingUpdate_afterMaxFlushAttempts() {
+        // Given
+        doThrow(new RuntimeException("db down")).when(delegate).updateMessages(any(), any());
+        when(delegate.getMessages(1L)).thenReturn(List.of());
+        store.updateMessages(1L, List.of(UserMessage.from("hi")));
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            store.flush();
+        }
+
+        // Then - the session is reloaded from the delegate instead of serving the unwritten window
+        verify(delegate, times(3)).updateMessages(1L, List.of(UserMessage.from("hi")));
+        assertEquals(0.0, meterRegistry.get("chat.memory.cache.dirty").gauge().value());
+        assertEquals(1.0, meterRegistry.get("chat.memory.cache.dropped").counter().count());
+        assertEquals(List.of(), store.getMessages(1L));
+    }
+}
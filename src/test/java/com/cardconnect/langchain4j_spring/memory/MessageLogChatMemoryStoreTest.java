@@ -0,0 +1,240 @@
+package com.cardconnect.langchain4j_spring.memory;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.entity.ChatMessageEntity;
+import com.cardconnect.langchain4j_spring.entity.ChatMessageLogEntity;
+import com.cardconnect.langchain4j_spring.memory.codec.BinaryChatMessageCodec;
+import com.cardconnect.langchain4j_spring.memory.codec.ChatMessageCodecs;
+import com.cardconnect.langchain4j_spring.memory.codec.JsonChatMessageCodec;
+import com.cardconnect.langchain4j_spring.repository.ChatMessageLogRepository;
+import com.cardconnect.langchain4j_spring.repository.ChatMessageRepository;
+import com.cardconnect.langchain4j_spring.repository.ChatSessionKeyRepository;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static dev.langchain4j.data.message.ChatMessageSerializer.messageToJson;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MessageLogChatMemoryStoreTest {
+
+    private static final long MEMORY_ID = 42L;
+
+    @Mock
+    private ChatMessageLogRepository chatMessageLogRepository;
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private ChatSessionKeyRepository chatSessionKeyRepository;
+
+    private final TreeMap<Long, ChatMessageLogEntity> rows = new TreeMap<>();
+    private final AtomicLong logBytesWritten = new AtomicLong();
+    private final AtomicLong blobBytesWritten = new AtomicLong();
+
+    private final ChatMessageCodecs codecs = new ChatMessageCodecs(
+            List.of(new BinaryChatMessageCodec(512), new JsonChatMessageCodec()), BinaryChatMessageCodec.NAME);
+
+    private SessionKeyResolver sessionKeyResolver;
+    private MessageLogChatMemoryStore store;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(chatMessageLogRepository.findByMemoryIdOrderBySeqAsc(anyLong())).thenAnswer(invocation ->
+                rows.values().stream().sorted(Comparator.comparing(ChatMessageLogEntity::getSeq)).toList());
+        when(chatMessageLogRepository.saveAll(anyCollection())).thenAnswer(invocation -> {
+            Collection<ChatMessageLogEntity> entities = invocation.getArgument(0);
+            for (ChatMessageLogEntity entity : entities) {
+                assertFalse(rows.containsKey(entity.getSeq()), "rows must never be rewritten");
+                rows.put(entity.getSeq(), entity);
+                logBytesWritten.addAndGet(entity.getPayloadBytes().length);
+            }
+            return new ArrayList<>(entities);
+        });
+        doAnswer(invocation -> {
+            Collection<Long> seqs = invocation.getArgument(1);
+            seqs.forEach(rows::remove);
+            return null;
+        }).when(chatMessageLogRepository).deleteByMemoryIdAndSeqIn(anyLong(), anyCollection());
+
+        when(chatMessageRepository.save(any(ChatMessageEntity.class))).thenAnswer(invocation -> {
+            ChatMessageEntity entity = invocation.getArgument(0);
+            blobBytesWritten.addAndGet(entity.getContentBytes().length);
+            when(chatMessageRepository.findById(entity.getMemoryId())).thenReturn(Optional.of(entity));
+            return entity;
+        });
+
+        doAnswer(invocation -> {
+            ChatMessageLogEntity row = rows.get((Long) invocation.getArgument(1));
+            row.setPayloadBytes(invocation.getArgument(2));
+            row.setPayload(null);
+            return null;
+        }).when(chatMessageLogRepository).updatePayloadBytes(anyLong(), anyLong(), any(byte[].class));
+
+        LangChain4jProperties.SessionKey sessionKey = new LangChain4jProperties.SessionKey();
+        sessionKey.setHashKey(SessionKeyResolverTest.HASH_KEY);
+        sessionKeyResolver = new SessionKeyResolver(chatSessionKeyRepository, TransactionOperations.withoutTransaction(),
+                sessionKey, new SimpleMeterRegistry());
+        store = new MessageLogChatMemoryStore(chatMessageLogRepository, TransactionOperations.withoutTransaction(),
+                codecs, sessionKeyResolver);
+    }
+
+    @Test
+    void shouldAppendOnlyNewMessages_whenWindowGrows() {
+        // Given
+        store.updateMessages(MEMORY_ID, List.of(UserMessage.from("hi"), AiMessage.from("hello")));
+
+        // When
+        store.updateMessages(MEMORY_ID, List.of(UserMessage.from("hi"), AiMessage.from("hello"),
+                UserMessage.from("how are you?")));
+
+        // Then
+        assertEquals(3, rows.size());
+        assertEquals(List.of(0L, 1L, 2L), new ArrayList<>(rows.keySet()));
+        assertEquals("USER", rows.get(2L).getRole());
+        verify(chatMessageLogRepository, never()).deleteByMemoryIdAndSeqIn(anyLong(), anyCollection());
+    }
+
+    @Test
+    void shouldTrimEvictedRows_whenWindowSlides() {
+        // Given
+        ChatMessage system = SystemMessage.from("be nice");
+        store.updateMessages(MEMORY_ID, List.of(system, UserMessage.from("a"), AiMessage.from("b")));
+
+        // When - window keeps the system message and drops the oldest exchange
+        store.updateMessages(MEMORY_ID, List.of(system, AiMessage.from("b"), UserMessage.from("c")));
+
+        // Then
+        assertEquals(List.of(0L, 2L, 3L), new ArrayList<>(rows.keySet()));
+        assertEquals(List.of(system, AiMessage.from("b"), UserMessage.from("c")), store.getMessages(MEMORY_ID));
+    }
+
+    @Test
+    void shouldKeepConversationOrder_whenDuplicateMessagesAreEvicted() {
+        // Given
+        store.updateMessages(MEMORY_ID, List.of(UserMessage.from("hi"), AiMessage.from("one"),
+                UserMessage.from("hi"), AiMessage.from("two")));
+
+        // When
+        List<ChatMessage> window = List.of(UserMessage.from("hi"), AiMessage.from("two"), UserMessage.from("bye"));
+        store.updateMessages(MEMORY_ID, window);
+
+        // Then
+        assertEquals(window, store.getMessages(MEMORY_ID));
+    }
+
+    @Test
+    void shouldStoreStringMemoryIdUnderResolvedKey() {
+        // Given
+        when(chatSessionKeyRepository.findById(anyLong())).thenReturn(Optional.empty());
+
+        // When
+        store.updateMessages("session", List.of(UserMessage.from("hi")));
+
+        // Then
+        verify(chatMessageLogRepository).findByMemoryIdOrderBySeqAsc(sessionKeyResolver.resolve("session"));
+        assertEquals(List.of(UserMessage.from("hi")), store.getMessages("session"));
+    }
+
+    @Test
+    void shouldRejectUnsupportedMemoryId() {
+        assertThrows(IllegalArgumentException.class, () -> store.getMessages(42));
+    }
+
+    @Test
+    void shouldMigrateLegacyJsonRows_whenRead() {
+        // Given - rows written before codecs were introduced
+        List<ChatMessage> legacy = List.of(UserMessage.from("hi"), AiMessage.from("hello"));
+        rows.put(0L, new ChatMessageLogEntity(MEMORY_ID, 0L, "USER", messageToJson(legacy.get(0)), null));
+        rows.put(1L, new ChatMessageLogEntity(MEMORY_ID, 1L, "AI", messageToJson(legacy.get(1)), null));
+
+        // When
+        List<ChatMessage> messages = store.getMessages(MEMORY_ID);
+        store.updateMessages(MEMORY_ID, List.of(legacy.get(0), legacy.get(1), UserMessage.from("bye")));
+
+        // Then
+        assertEquals(legacy, messages);
+        assertNull(rows.get(0L).getPayload());
+        assertTrue(codecs.isCurrent(rows.get(1L).getPayloadBytes()));
+        assertEquals(List.of(0L, 1L, 2L), new ArrayList<>(rows.keySet()));
+        verify(chatMessageLogRepository, never()).deleteByMemoryIdAndSeqIn(anyLong(), anyCollection());
+    }
+
+    @Test
+    void shouldFailRead_whenRowCannotBeDecoded() {
+        // Given
+        rows.put(0L, new ChatMessageLogEntity(MEMORY_ID, 0L, "USER", "not json", null));
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> store.getMessages(MEMORY_ID));
+    }
+
+    /**
+     * Replays the same conversation through both stores and compares the payload bytes handed to
+     * the repository per turn. The blob store rewrites the full window, the log store only the new messages.
+     */
+    @Test
+    void shouldWriteFewerBytesPerTurn_thanBlobStore() {
+        // Given
+        int maxMessages = 10;
+        int turns = 50;
+        ChatMemoryStore blobStore = new PersistentChatMemoryStore(chatMessageRepository, codecs, sessionKeyResolver);
+        ChatMemory logMemory = windowMemory(store, maxMessages);
+        ChatMemory blobMemory = windowMemory(blobStore, maxMessages);
+
+        // When
+        for (int turn = 0; turn < turns; turn++) {
+            ChatMessage user = UserMessage.from("Question number " + turn + " about booking BN123 for John Doe");
+            ChatMessage ai = AiMessage.from("Answer number " + turn + ": the booking runs from 2024-06-01 to 2024-06-05");
+            logMemory.add(user);
+            logMemory.add(ai);
+            blobMemory.add(user);
+            blobMemory.add(ai);
+        }
+
+        // Then
+        assertEquals(blobMemory.messages(), logMemory.messages());
+        assertEquals(maxMessages, rows.size());
+        long logBytesPerTurn = logBytesWritten.get() / turns;
+        long blobBytesPerTurn = blobBytesWritten.get() / turns;
+        assertTrue(logBytesPerTurn * 4 < blobBytesPerTurn, "bytes written per turn: message-log="
+                + logBytesPerTurn + ", blob=" + blobBytesPerTurn);
+    }
+
+    private static ChatMemory windowMemory(ChatMemoryStore chatMemoryStore, int maxMessages) {
+        return MessageWindowChatMemory.builder()
+                .id(MEMORY_ID)
+                .chatMemoryStore(chatMemoryStore)
+                .maxMessages(maxMessages)
+                .build();
+    }
+}
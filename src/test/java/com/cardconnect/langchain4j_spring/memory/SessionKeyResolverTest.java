@@ -0,0 +1,177 @@
+package com.cardconnect.langchain4j_spring.memory;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.entity.ChatSessionKeyEntity;
+import com.cardconnect.langchain4j_spring.repository.ChatSessionKeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class SessionKeyResolverTest {
+
+    static final String HASH_KEY = "0f1e2d3c4b5a69788796a5b4c3d2e1f0";
+
+    private final Map<Long, ChatSessionKeyEntity> claims = new HashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatSessionKeyRepository repository = backedByClaims(mock(ChatSessionKeyRepository.class));
+
+    @Test
+    void shouldResolveSameKey_forSameSession() {
+        // Given
+        SessionKeyResolver resolver = resolver(100);
+        UUID uuid = UUID.randomUUID();
+
+        // When
+        long first = resolver.resolve("session-1");
+        long second = resolver.resolve("session-1");
+
+        // Then
+        assertEquals(first, second);
+        assertTrue(first < 0, "hashed keys must not overlap with non-negative Long ids");
+        assertEquals(resolver.resolve(uuid), resolver.resolve(uuid.toString()));
+        assertEquals(42L, resolver.resolve(42L));
+        verify(repository, times(1)).findById(first);
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve(42));
+    }
+
+    @Test
+    void shouldProbeNextKey_whenHashIsClaimedByAnotherSession() {
+        // Given
+        SessionKeyResolver resolver = resolver(100);
+        long hashed = resolver.hash("session-1") | Long.MIN_VALUE;
+        claims.put(hashed, new ChatSessionKeyEntity(hashed, "someone-else"));
+
+        // When
+        long key = resolver.resolve("session-1");
+
+        // Then
+        assertEquals((resolver.hash("session-1") + 1) | Long.MIN_VALUE, key);
+        assertEquals("session-1", claims.get(key).getSessionId());
+        assertEquals(1.0, meterRegistry.get("chat.session.key.collisions").counter().count());
+    }
+
+    @Test
+    void shouldReuseKey_whenSameSessionWasClaimedConcurrently() {
+        // Given - another instance inserts the claim between our lookup and our insert
+        SessionKeyResolver resolver = resolver(100);
+        long hashed = resolver.hash("session-1") | Long.MIN_VALUE;
+        doAnswer(invocation -> {
+            claims.put(hashed, new ChatSessionKeyEntity(hashed, "session-1"));
+            throw duplicateKey();
+        }).when(repository).saveAndFlush(any());
+
+        // When
+        long key = resolver.resolve("session-1");
+
+        // Then
+        assertEquals(hashed, key);
+        assertEquals(0.0, meterRegistry.get("chat.session.key.collisions").counter().count());
+    }
+
+    @Test
+    void shouldRethrow_whenInsertFailsForOtherReasonThanDuplicateKey() {
+        // Given
+        SessionKeyResolver resolver = resolver(100);
+        doThrow(new DataIntegrityViolationException("value too long for column SESSION_ID"))
+                .when(repository).saveAndFlush(any());
+
+        // When / Then
+        assertThrows(DataIntegrityViolationException.class, () -> resolver.resolve("session-1"));
+        verify(repository, times(1)).saveAndFlush(any());
+        assertEquals(0.0, meterRegistry.get("chat.session.key.collisions").counter().count());
+    }
+
+    @Test
+    void shouldRequireConfiguredHashKey() {
+        // Given
+        LangChain4jProperties.SessionKey config = new LangChain4jProperties.SessionKey();
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> new SessionKeyResolver(repository,
+                TransactionOperations.withoutTransaction(), config, meterRegistry));
+    }
+
+    /**
+     * Resolves a million random session ids and checks that every session gets its own key and
+     * keeps it after being evicted from the cache, where the legacy hashCode mapping already collides.
+     */
+    @Test
+    void shouldKeepAMillionSessionsApart() {
+        // Given
+        int sessions = 1_000_000;
+        // Stub-only: millions of calls must not be recorded for verification
+        SessionKeyResolver resolver = resolver(backedByClaims(mock(ChatSessionKeyRepository.class, withSettings().stubOnly())), 10_000);
+        Random random = new Random(42);
+        String[] sessionIds = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            sessionIds[i] = new UUID(random.nextLong(), random.nextLong()).toString();
+        }
+
+        // When
+        Set<Long> keys = new HashSet<>(sessions * 2);
+        Set<Long> legacyKeys = new HashSet<>(sessions * 2);
+        for (String sessionId : sessionIds) {
+            keys.add(resolver.resolve(sessionId));
+        }
+        for (String sessionId : sessionIds) {
+            legacyKeys.add(Math.abs((long) sessionId.hashCode()));
+        }
+
+        // Then
+        assertEquals(sessions, keys.size());
+        assertTrue(legacyKeys.size() < sessions, "legacy hashCode keys should collide for a million sessions");
+        assertEquals(sessions, claims.size());
+        for (int i = 0; i < sessions; i += 997) {
+            assertEquals(sessionIds[i], claims.get(resolver.resolve(sessionIds[i])).getSessionId());
+        }
+    }
+
+    private SessionKeyResolver resolver(int cacheSize) {
+        return resolver(repository, cacheSize);
+    }
+
+    private SessionKeyResolver resolver(ChatSessionKeyRepository repository, int cacheSize) {
+        LangChain4jProperties.SessionKey config = new LangChain4jProperties.SessionKey();
+        config.setHashKey(HASH_KEY);
+        config.setCacheSize(cacheSize);
+        return new SessionKeyResolver(repository, TransactionOperations.withoutTransaction(), config, meterRegistry);
+    }
+
+    private ChatSessionKeyRepository backedByClaims(ChatSessionKeyRepository repository) {
+        when(repository.findById(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(claims.get(invocation.<Long>getArgument(0))));
+        when(repository.saveAndFlush(any())).thenAnswer(invocation -> {
+            ChatSessionKeyEntity entity = invocation.getArgument(0);
+            if (claims.putIfAbsent(entity.getSessionKey(), entity) != null) {
+                throw duplicateKey();
+            }
+            return entity;
+        });
+        return repository;
+    }
+
+    /**
+     * A primary key violation as Hibernate reports it.
+     */
+    private static DataIntegrityViolationException duplicateKey() {
+        return new DataIntegrityViolationException("duplicate key", new ConstraintViolationException("duplicate key",
+                new SQLException("Unique index or primary key violation", "23505"), "insert into chat_session_key",
+                ConstraintViolationException.ConstraintKind.UNIQUE, "PRIMARY_KEY"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.cardconnect.langchain4j_spring.memory.codec;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ImageContent;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class BinaryChatMessageCodecTest {
+
+    private final BinaryChatMessageCodec binary = new BinaryChatMessageCodec(512);
+    private final JsonChatMessageCodec json = new JsonChatMessageCodec();
+    private final ChatMessageCodecs codecs = new ChatMessageCodecs(List.of(binary, json), BinaryChatMessageCodec.NAME);
+
+    @Test
+    void shouldRoundTripAllMessageTypes() {
+        // Given
+        List<ChatMessage> messages = List.of(
+                SystemMessage.from("You are a booking assistant"),
+                UserMessage.from("John", "Cancel booking BN123"),
+                AiMessage.builder()
+                        .thinking("look the booking up first")
+                        .toolExecutionRequests(List.of(ToolExecutionRequest.builder()
+                                .id("call-1").name("getBookingDetails").arguments("{\"bookingNumber\":\"BN123\"}").build()))
+                        .build(),
+                ToolExecutionResultMessage.from("call-1", "getBookingDetails", "x".repeat(2_000)),
+                AiMessage.from("Booking BN123 is cancelled"),
+                UserMessage.from(TextContent.from("what is this?"), ImageContent.from("https://example.com/a.png")),
+                AiMessage.builder().text("with attributes").attributes(Map.of("k", "v")).build());
+
+        // When
+        byte[] encoded = binary.encode(messages);
+
+        // Then
+        assertEquals(messages, binary.decode(encoded));
+        assertArrayEquals(encoded, binary.encode(messages), "encoding must be deterministic");
+        assertTrue(encoded.length < json.encode(messages).length);
+    }
+
+    @Test
+    void shouldDecodeWithWritingCodec_whenFormatsAreMixed() {
+        // Given
+        List<ChatMessage> messages = List.of(UserMessage.from("hi"), AiMessage.from("hello"));
+        byte[] legacy = json.encode(messages);
+
+        // When / Then
+        assertEquals(messages, codecs.decode(legacy));
+        assertFalse(codecs.isCurrent(legacy));
+        assertTrue(codecs.isCurrent(codecs.encode(messages)));
+        assertThrows(IllegalArgumentException.class, () -> codecs.decode(new byte[]{0x01, 0x02}));
+    }
+
+    @Test
+    void shouldStoreWindowsSmallerThanJson() {
+        for (int windowSize : new int[]{10, 50, 100}) {
+            // Given
+            List<ChatMessage> window = conversation(windowSize);
+
+            // When
+            byte[] binaryBytes = binary.encode(window);
+            byte[] jsonBytes = json.encode(window);
+
+            // Then
+            assertEquals(window, binary.decode(binaryBytes));
+            assertTrue(binaryBytes.length * 2 < jsonBytes.length, "window of " + windowSize + ": binary="
+                    + binaryBytes.length + " bytes, json=" + jsonBytes.length + " bytes");
+        }
+    }
+
+    /**
+     * Encode and decode time against JSON for typical windows. Only runs when {@code CODEC_BENCHMARK}
+     * is set, e.g. {@code CODEC_BENCHMARK=true mvn test -Dtest=BinaryChatMessageCodecTest}.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "CODEC_BENCHMARK", matches = ".+")
+    void shouldReportEncodeDecodeTime_ofBinaryAndJson() {
+        log.info(String.format("%-8s %14s %14s %14s %14s", "window", "binary bytes", "binary us", "json bytes", "json us"));
+        for (int windowSize : new int[]{10, 50, 100}) {
+            List<ChatMessage> window = conversation(windowSize);
+            long binaryNanos = time(binary, window);
+            long jsonNanos = time(json, window);
+            log.info(String.format("%-8d %14d %14d %14d %14d", windowSize, binary.encode(window).length,
+                    binaryNanos / 1_000, json.encode(window).length, jsonNanos / 1_000));
+        }
+    }
+
+    private static List<ChatMessage> conversation(int size) {
+        List<ChatMessage> messages = new ArrayList<>(size);
+        messages.add(SystemMessage.from("You are a customer support agent of a car rental company"));
+        for (int i = 0; messages.size() < size; i++) {
+            messages.add(UserMessage.from("Show me the details of booking BN" + i));
+            messages.add(AiMessage.from(List.of(ToolExecutionRequest.builder()
+                    .id("call-" + i).name("getBookingDetails").arguments("{\"bookingNumber\":\"BN" + i + "\"}").build())));
+            messages.add(ToolExecutionResultMessage.from("call-" + i, "getBookingDetails",
+                    ("{\"bookingNumber\":\"BN" + i + "\",\"customer\":{\"name\":\"John\",\"surname\":\"Doe\"},"
+                            + "\"beginDate\":\"2024-06-01\",\"endDate\":\"2024-06-05\"}").repeat(8)));
+            messages.add(AiMessage.from("Booking BN" + i + " runs from 2024-06-01 to 2024-06-05 for John Doe"));
+        }
+        return messages.subList(0, size);
+    }
+
+    private static long time(ChatMessageCodec codec, List<ChatMessage> window) {
+        int iterations = 200;
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(codec.encode(window));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(codec.encode(window));
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+}
@@ -0,0 +1,124 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class AgentMetricsServiceTest {
+
+    private static final int WARMUP_CALLS = 50_000;
+    private static final int MEASURED_CALLS = 200_000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AgentMetricsService metricsService = new AgentMetricsService(meterRegistry);
+
+    @Test
+    void shouldKeepAverageScoreGaugeUpdated_acrossRetrievalsAndGarbageCollection() {
+        // When
+        metricsService.recordRagRetrieval(3, 0.8, Map.of("retrieve", Duration.ofMillis(12)));
+        System.gc();
+        double first = meterRegistry.get("rag.average.score").gauge().value();
+        metricsService.recordRagRetrieval(2, 0.9, Map.of("retrieve", Duration.ofMillis(8)));
+        metricsService.recordRagRetrieval(0, Double.NaN, Map.of("classify", Duration.ofNanos(500)));
+
+        // Then - a query without scores leaves the last average in place
+        assertEquals(0.8, first);
+        assertEquals(0.9, meterRegistry.get("rag.average.score").gauge().value());
+        assertEquals(5.0, meterRegistry.get("rag.documents.retrieved").counter().count());
+        assertEquals(2, meterRegistry.get("rag.retrieval.stage").tag("stage", "retrieve").timer().count());
+    }
+
+    @Test
+    void shouldRecordSuccess_onTheSameMeters() {
+        // When
+        metricsService.recordSuccess("rag", 42);
+        metricsService.recordSuccess("rag", 58);
+
+        // Then
+        assertEquals(1, meterRegistry.get("agent.requests.by.type").tag("agent", "rag").counters().size());
+        assertEquals(2.0, meterRegistry.get("agent.requests.by.type")
+                .tags("agent", "rag", "status", "success", "error", "none").counter().count());
+        Timer timer = meterRegistry.get("agent.response.time.by.type").tag("agent", "rag").timer();
+        assertEquals(2, timer.count());
+        assertEquals(100, timer.totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Only runs when {@code METRICS_BENCHMARK} is set, e.g.
+     * {@code METRICS_BENCHMARK=true mvn test -Dtest=AgentMetricsServiceTest}.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "METRICS_BENCHMARK", matches = ".+")
+    void shouldRecordSuccessWithoutAllocating_unlikeRegisteringMetersPerCall() {
+        // Given - what recordSuccess did before the meters were cached
+        Runnable registerPerCall = () -> {
+            Counter.builder("agent.requests.by.type")
+                    .tag("agent", "rag")
+                    .tag("status", "success")
+                    .tag("error", "none")
+                    .description("Agent requests by type")
+                    .register(meterRegistry)
+                    .increment();
+            Timer.builder("agent.response.time.by.type")
+                    .tag("agent", "rag")
+                    .description("Response time by agent type")
+                    .register(meterRegistry)
+                    .record(42, TimeUnit.MILLISECONDS);
+        };
+
+        // When
+        double before = allocatedBytesPerCall(registerPerCall);
+        double after = allocatedBytesPerCall(() -> metricsService.recordSuccess("rag", 42));
+
+        // Then
+        log.info("Allocated bytes per recordSuccess call: {} registering meters per call, {} with cached meters",
+                before, after);
+        assertTrue(before > 100, "registering per call: " + before);
+        assertTrue(after < 8, "cached meters: " + after);
+        assertEquals(2L * (WARMUP_CALLS + MEASURED_CALLS), meterRegistry.get("agent.response.time.by.type")
+                .tag("agent", "rag").timer().count());
+    }
+
+    @Test
+    void shouldCapErrorTypeTags_andKeepTagKeysEqualForAllStatuses() {
+        // When
+        for (int i = 0; i < AgentMetricsService.MAX_ERROR_TYPES + 5; i++) {
+            metricsService.recordFailure("router", "Error" + i);
+        }
+        metricsService.recordFailure("router", "Error0");
+        metricsService.recordSuccess("router", 10);
+
+        // Then
+        assertEquals(AgentMetricsService.MAX_ERROR_TYPES + 1, meterRegistry.get("agent.requests.by.type")
+                .tags("agent", "router", "status", "failed").counters().size());
+        assertEquals(5.0, meterRegistry.get("agent.requests.by.type")
+                .tags("status", "failed", "error", AgentMetricsService.OTHER_ERROR).counter().count());
+        assertEquals(2.0, meterRegistry.get("agent.requests.by.type").tag("error", "Error0").counter().count());
+        assertEquals(1.0, meterRegistry.get("agent.requests.by.type")
+                .tags("status", "success", "error", "none").counter().count());
+    }
+
+    private static double allocatedBytesPerCall(Runnable call) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.run();
+        }
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            call.run();
+        }
+        return (double) (threads.getThreadAllocatedBytes(threadId) - start) / MEASURED_CALLS;
+    }
+}
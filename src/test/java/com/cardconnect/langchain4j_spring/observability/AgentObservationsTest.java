@@ -0,0 +1,198 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.execution.AgentExecutorRegistry;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agentic.Agent;
+import dev.langchain4j.agentic.AgenticServices;
+import dev.langchain4j.agentic.UntypedAgent;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.V;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import io.micrometer.common.KeyValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentObservationsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+    private final ConcurrentLinkedQueue<Observation.Context> stopped = new ConcurrentLinkedQueue<>();
+    private final AgentMetricsService metricsService = new AgentMetricsService(meterRegistry);
+    private final AgentObservations agentObservations =
+            new AgentObservations(observationRegistry, meterRegistry, metricsService);
+    private final AgentExecutorRegistry agentExecutors = new AgentExecutorRegistry(
+            new LangChain4jProperties.Execution(), false, meterRegistry, new AgentTaskDecorator(agentObservations));
+
+    AgentObservationsTest() {
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public void onStop(Observation.Context context) {
+                stopped.add(context);
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        agentExecutors.close();
+    }
+
+    @Test
+    void shouldObserveParallelSubAgents_asChildrenOfRequest_withTokensAndQueueWait() {
+        // Given
+        UntypedAgent reviewers = AgenticServices.parallelBuilder()
+                .subAgents(agent(HrReviewer.class, model(false)), agent(ManagerReviewer.class, model(false)))
+                .executor(agentExecutors.get(AgentExecutorRegistry.WORKFLOW))
+                .build();
+        Observation request = Observation.createNotStarted("http.server.requests", observationRegistry);
+
+        // When
+        request.observe(() -> reviewers.invoke(Map.of("cv", "Java developer")));
+
+        // Then
+        List<Observation.Context> agents = invocations();
+        assertEquals(2, agents.size());
+        assertEquals(List.of("HrReviewer", "ManagerReviewer"),
+                agents.stream().map(context -> value(context, AgentObservations.AGENT_NAME)).sorted().toList());
+        for (Observation.Context context : agents) {
+            assertSame(request, context.getParentObservation());
+            assertEquals("success", value(context, "outcome"));
+            assertEquals("12", value(context, AgentObservations.INPUT_TOKENS));
+            assertEquals("7", value(context, AgentObservations.OUTPUT_TOKENS));
+            assertNotNull(value(context, "queue.wait.ms"));
+        }
+        assertEquals(1, meterRegistry.get("agent.queue.wait").tag("agent.name", "HrReviewer").timer().count());
+        assertEquals(7.0, meterRegistry.get("llm.tokens").tags("agent", "HrReviewer", "type", "output")
+                .counter().count());
+    }
+
+    @Test
+    void shouldStopFailedSubAgent_asError_atRequestEnd() {
+        // Given
+        UntypedAgent reviewers = AgenticServices.parallelBuilder()
+                .subAgents(agent(HrReviewer.class, model(true)))
+                .executor(agentExecutors.get(AgentExecutorRegistry.WORKFLOW))
+                .build();
+
+        // When
+        assertThrows(RuntimeException.class, () -> reviewers.invoke(Map.of("cv", "Java developer")));
+        // As at the end of the request, after the task ran on an executor or the caller thread
+        agentExecutors.close();
+        agentObservations.closeAbandoned(0);
+
+        // Then
+        List<Observation.Context> agents = invocations();
+        assertEquals(1, agents.size());
+        assertEquals("error", value(agents.get(0), "outcome"));
+        assertNull(observationRegistry.getCurrentObservation());
+    }
+
+    @Test
+    void shouldObserveToolCalls_andCountThem() {
+        // Given
+        ToolProviderResult tools = agentObservations.tools(new CalculatorTool()).provideTools(null);
+        ToolExecutor executor = tools.tools().entrySet().iterator().next().getValue();
+
+        // When
+        String result = executor.execute(ToolExecutionRequest.builder()
+                .name("add").arguments("{\"a\": 2, \"b\": 3}").build(), null);
+
+        // Then
+        assertEquals("5", result);
+        Observation.Context tool = stopped.stream()
+                .filter(context -> ObservedToolProvider.AGENT_TOOL.equals(context.getName()))
+                .findFirst().orElseThrow();
+        assertEquals("add", value(tool, "tool"));
+        assertEquals("success", value(tool, "outcome"));
+        assertEquals(1.0, meterRegistry.get("agent.tool.invocations").tags("tool", "add", "status", "success")
+                .counter().count());
+    }
+
+    private <T> T agent(Class<T> type, ChatModel chatModel) {
+        return agentObservations.instrument(AgenticServices.agentBuilder(type))
+                .chatModel(chatModel)
+                .build();
+    }
+
+    private ChatModel model(boolean failing) {
+        ChatModelListener listener = new ChatModelMetricsListener(metricsService, meterRegistry, observationRegistry,
+                new LangChain4jProperties.ModelCalls());
+        return new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest chatRequest) {
+                if (failing) {
+                    throw new IllegalStateException("Ollama unavailable");
+                }
+                return ChatResponse.builder()
+                        .aiMessage(AiMessage.from("Solid experience."))
+                        .tokenUsage(new TokenUsage(12, 7))
+                        .build();
+            }
+
+            @Override
+            public List<ChatModelListener> listeners() {
+                return List.of(listener);
+            }
+        };
+    }
+
+    private List<Observation.Context> invocations() {
+        return stopped.stream()
+                .filter(context -> AgentObservations.AGENT_INVOCATION.equals(context.getName()))
+                .toList();
+    }
+
+    private static String value(Observation.Context context, String key) {
+        KeyValue keyValue = context.getLowCardinalityKeyValue(key);
+        if (keyValue == null) {
+            keyValue = context.getHighCardinalityKeyValue(key);
+        }
+        return keyValue != null ? keyValue.getValue() : null;
+    }
+
+    public interface HrReviewer {
+
+        @dev.langchain4j.service.UserMessage("Review this CV from an HR perspective: {{cv}}")
+        @Agent(name = "HrReviewer", outputKey = "hrReview")
+        String review(@V("cv") String cv);
+    }
+
+    public interface ManagerReviewer {
+
+        @dev.langchain4j.service.UserMessage("Review this CV from a manager perspective: {{cv}}")
+        @Agent(name = "ManagerReviewer", outputKey = "managerReview")
+        String review(@V("cv") String cv);
+    }
+
+    static class CalculatorTool {
+
+        @Tool("Adds two numbers")
+        int add(@P("first number") int a, @P("second number") int b) {
+            return a + b;
+        }
+    }
+}
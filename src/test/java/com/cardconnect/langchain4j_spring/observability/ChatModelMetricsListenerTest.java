@@ -0,0 +1,129 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatModelMetricsListenerTest {
+
+    private static final String MODEL = "qwen3:0.6b";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+    private final LangChain4jProperties.ModelCalls config = new LangChain4jProperties.ModelCalls();
+    private final ChatModelMetricsListener listener = new ChatModelMetricsListener(
+            new AgentMetricsService(meterRegistry), meterRegistry, observationRegistry, config);
+    private final ChatRequest request = ChatRequest.builder()
+            .messages(UserMessage.from("Where does Charlie live?"))
+            .modelName(MODEL)
+            .build();
+
+    ChatModelMetricsListenerTest() {
+        observationRegistry.observationConfig().observationHandler(context -> true);
+    }
+
+    @Test
+    void shouldRecordLatencyAndTokens_byModelAndCallingAgent() {
+        // Given - the call starts within the agent's observation, the response arrives outside of it
+        Map<Object, Object> attributes = new HashMap<>();
+        Observation.createNotStarted("agent.router.stream", observationRegistry).observe(() ->
+                listener.onRequest(new ChatModelRequestContext(request, ModelProvider.OLLAMA, attributes)));
+        ChatResponse response = ChatResponse.builder()
+                .aiMessage(AiMessage.from("In VeggieVille."))
+                .modelName(MODEL)
+                .tokenUsage(new TokenUsage(12, 7))
+                .finishReason(FinishReason.STOP)
+                .build();
+
+        // When
+        listener.onResponse(new ChatModelResponseContext(response, request, ModelProvider.OLLAMA, attributes));
+
+        // Then
+        assertEquals(1, meterRegistry.get("llm.request.duration")
+                .tags("model", MODEL, "agent", "router", "finish_reason", "stop", "error", "none").timer().count());
+        assertEquals(12.0, meterRegistry.get("llm.tokens")
+                .tags("model", MODEL, "agent", "router", "type", "input").counter().count());
+        assertEquals(7.0, meterRegistry.get("llm.tokens")
+                .tags("model", MODEL, "agent", "router", "type", "output").counter().count());
+        assertEquals(7.0, meterRegistry.get("agent.tokens.output").tag("agent", "router").counter().count());
+    }
+
+    @Test
+    void shouldRecordErrorType_andUnknownAgent_whenCalledOutsideAgentObservation() {
+        // Given
+        Map<Object, Object> attributes = new HashMap<>();
+        listener.onRequest(new ChatModelRequestContext(request, ModelProvider.OLLAMA, attributes));
+
+        // When
+        listener.onError(new ChatModelErrorContext(new IllegalStateException("Ollama unavailable"), request,
+                ModelProvider.OLLAMA, attributes));
+
+        // Then
+        assertEquals(1, meterRegistry.get("llm.request.duration")
+                .tags("model", MODEL, "agent", "unknown", "finish_reason", "none", "error", "IllegalStateException")
+                .timer().count());
+    }
+
+    @Test
+    void shouldRecordTimeToFirstToken_onceForStreamedCall() {
+        // Given
+        StreamingChatModel model = new StreamingChatModel() {
+            @Override
+            public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                handler.onPartialResponse("In ");
+                handler.onPartialResponse("VeggieVille.");
+                handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("In VeggieVille.")).build());
+            }
+        };
+        List<String> tokens = new ArrayList<>();
+        StreamingChatResponseHandler handler = new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                tokens.add(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                fail(error);
+            }
+        };
+
+        TimedStreamingChatModel timedModel = new TimedStreamingChatModel(model, meterRegistry, observationRegistry);
+
+        // When
+        for (int i = 0; i < 2; i++) {
+            Observation.createNotStarted("agent.support.stream", observationRegistry).observe(() ->
+                    timedModel.chat(request, handler));
+        }
+
+        // Then
+        assertEquals(List.of("In ", "VeggieVille.", "In ", "VeggieVille."), tokens);
+        assertEquals(2, meterRegistry.get("llm.time.to.first.token")
+                .tags("model", MODEL, "agent", "support").timer().count());
+    }
+}
@@ -0,0 +1,143 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import ch.qos.logback.classic.Level;
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import io.micrometer.tracing.handler.PropagatingReceiverTracingObservationHandler;
+import io.micrometer.tracing.otel.bridge.OtelCurrentTraceContext;
+import io.micrometer.tracing.otel.bridge.OtelPropagator;
+import io.micrometer.tracing.otel.bridge.OtelTracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Request overhead of the observability stack: the same endpoint served without observation, with
+ * every trace exported, and with tail sampling. Each traced request runs the HTTP server observation
+ * with an OpenTelemetry span and the {@link TracingInterceptor}; spans are exported in batches to an
+ * exporter that only counts them, so the numbers leave out network I/O.
+ *
+ * <p>Only runs when {@code OBSERVABILITY_BENCHMARK} is set, e.g.
+ * {@code OBSERVABILITY_BENCHMARK=true mvn test -Dtest=ObservabilityOverheadBenchmarkTest}. Optional:
+ * {@code OBSERVABILITY_BENCHMARK_REQUESTS} (20000). Reports wall time on the request thread and
+ * process CPU time, both per request.
+ */
+@Slf4j
+@EnabledIfEnvironmentVariable(named = "OBSERVABILITY_BENCHMARK", matches = ".+")
+class ObservabilityOverheadBenchmarkTest {
+
+    @Test
+    void shouldReportRequestOverhead_withObservabilityOnAndOff() throws Exception {
+        int requests = Integer.parseInt(System.getenv().getOrDefault("OBSERVABILITY_BENCHMARK_REQUESTS", "20000"));
+        // As in the prod profile: request completion is only logged at DEBUG
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(TracingInterceptor.class)).setLevel(Level.INFO);
+
+        log.info("{} requests per mode", requests);
+        log.info(String.format("%-14s %14s %14s %10s", "mode", "wall us/req", "cpu us/req", "exported"));
+        run("off", MockMvcBuilders.standaloneSetup(new PingController()).build(), null, requests);
+
+        LangChain4jProperties.TailSampling exportAll = new LangChain4jProperties.TailSampling();
+        exportAll.setSampleRate(1.0);
+        traced("all traces", exportAll, requests);
+
+        LangChain4jProperties.TailSampling tail = new LangChain4jProperties.TailSampling();
+        tail.setSampleRate(0.05);
+        traced("tail sampling", tail, requests);
+    }
+
+    private void traced(String mode, LangChain4jProperties.TailSampling sampling, int requests) throws Exception {
+        AtomicLong exported = new AtomicLong();
+        SpanExporter counting = new SpanExporter() {
+            @Override
+            public CompletableResultCode export(Collection<SpanData> spans) {
+                exported.addAndGet(spans.size());
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode flush() {
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        };
+        try (SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(BatchSpanProcessor.builder(
+                        new TailSamplingSpanExporter(counting, sampling, new SimpleMeterRegistry())).build())
+                .build()) {
+            OtelTracer tracer = new OtelTracer(tracerProvider.get("benchmark"), new OtelCurrentTraceContext(), event -> { });
+            OtelPropagator propagator = new OtelPropagator(
+                    ContextPropagators.create(W3CTraceContextPropagator.getInstance()), tracerProvider.get("benchmark"));
+            ObservationRegistry observationRegistry = ObservationRegistry.create();
+            observationRegistry.observationConfig().observationHandler(
+                    new ObservationHandler.FirstMatchingCompositeObservationHandler(
+                            new PropagatingReceiverTracingObservationHandler<>(tracer, propagator),
+                            new DefaultTracingObservationHandler(tracer)));
+
+            MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new PingController())
+                    .addFilters(new ServerHttpObservationFilter(observationRegistry))
+                    .addInterceptors(new TracingInterceptor(observationRegistry, new LangChain4jProperties()))
+                    .build();
+            run(mode, mockMvc, exported, requests);
+        }
+    }
+
+    private static void run(String mode, MockMvc mockMvc, AtomicLong exported, int requests) throws Exception {
+        for (int i = 0; i < requests / 4; i++) {
+            mockMvc.perform(get("/api/v1/agent/ping")).andExpect(status().isOk());
+        }
+        long exportedBefore = exported != null ? exported.get() : 0;
+        long cpuStart = processCpuNanos();
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            mockMvc.perform(get("/api/v1/agent/ping")).andExpect(status().isOk());
+        }
+        long wall = System.nanoTime() - start;
+        long cpu = processCpuNanos() - cpuStart;
+
+        log.info(String.format("%-14s %14.1f %14.1f %10s", mode, wall / 1_000.0 / requests, cpu / 1_000.0 / requests,
+                exported != null ? String.valueOf(exported.get() - exportedBefore) : "-"));
+        assertTrue(wall > 0);
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    @RestController
+    static class PingController {
+
+        @GetMapping("/api/v1/agent/ping")
+        String ping() {
+            return "pong";
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TailSamplingSpanExporterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LangChain4jProperties.TailSampling config = new LangChain4jProperties.TailSampling();
+    private final List<SpanData> exported = new ArrayList<>();
+    private SdkTracerProvider tracerProvider;
+
+    @AfterEach
+    void tearDown() {
+        tracerProvider.close();
+    }
+
+    @Test
+    void shouldAlwaysExportErroredAndSlowTraces_andSampleTheOthers() {
+        // Given
+        config.setSampleRate(0.0);
+        Tracer tracer = tracer();
+
+        // When
+        Span failed = tracer.spanBuilder("http post").startSpan();
+        tracer.spanBuilder("ollama chat").setParent(Context.root().with(failed)).startSpan()
+                .setStatus(StatusCode.ERROR).end();
+        failed.end();
+        end(tracer.spanBuilder("http post").setStartTimestamp(1, TimeUnit.SECONDS).startSpan(), Duration.ofSeconds(3));
+        end(tracer.spanBuilder("http post").setStartTimestamp(1, TimeUnit.SECONDS).startSpan(), Duration.ofMillis(50));
+
+        // Then
+        assertEquals(List.of("ollama chat", "http post", "http post"), names());
+        assertEquals(1.0, decisions("error"));
+        assertEquals(1.0, decisions("slow"));
+        assertEquals(1.0, decisions("dropped"));
+    }
+
+    @Test
+    void shouldSampleByMostSpecificEndpointPattern() {
+        // Given
+        config.setSampleRate(0.0);
+        config.setEndpointSampleRates(Map.of("/api/**", 0.0, "/api/v1/agent/**/stream", 1.0));
+        Tracer tracer = tracer();
+
+        // When
+        tracer.spanBuilder("http post").setAttribute("uri", "/api/v1/agent/ask").startSpan().end();
+        tracer.spanBuilder("http post").setAttribute("uri", "/api/v1/agent/ask/stream").startSpan().end();
+
+        // Then
+        assertEquals(1, exported.size());
+        assertEquals("/api/v1/agent/ask/stream", exported.get(0).getAttributes().get(TailSamplingSpanExporter.URI));
+    }
+
+    @Test
+    void shouldHoldSpansUntilRootEnds_andExportLaterSpansByTraceDecision() {
+        // Given
+        config.setSampleRate(1.0);
+        Tracer tracer = tracer();
+        Span root = tracer.spanBuilder("http post").startSpan();
+        Context parent = Context.root().with(root);
+
+        // When
+        tracer.spanBuilder("retrieve").setParent(parent).startSpan().end();
+        List<String> beforeRoot = names();
+        Span stream = tracer.spanBuilder("stream").setParent(parent).startSpan();
+        root.end();
+        stream.end();
+
+        // Then
+        assertEquals(List.of(), beforeRoot);
+        assertEquals(List.of("retrieve", "http post", "stream"), names());
+        assertEquals(1.0, decisions("sampled"));
+    }
+
+    @Test
+    void shouldDecideTraceWithoutRoot_afterPendingTimeout() {
+        // Given
+        config.setPendingTimeout(Duration.ZERO);
+        Tracer tracer = tracer();
+        Span root = tracer.spanBuilder("http post").startSpan();
+
+        // When
+        tracer.spanBuilder("ollama chat").setParent(Context.root().with(root)).startSpan()
+                .setStatus(StatusCode.ERROR).end();
+        tracer.spanBuilder("retrieve").setParent(Context.root().with(tracer.spanBuilder("job").startSpan()))
+                .startSpan().end();
+
+        // Then
+        assertEquals(List.of("ollama chat"), names());
+        assertEquals(1.0, decisions("error"));
+        assertEquals(1.0, decisions("expired"));
+    }
+
+    private Tracer tracer() {
+        SpanExporter collecting = new SpanExporter() {
+            @Override
+            public CompletableResultCode export(Collection<SpanData> spans) {
+                exported.addAll(spans);
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode flush() {
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        };
+        tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(
+                        new TailSamplingSpanExporter(collecting, config, meterRegistry)))
+                .build();
+        return tracerProvider.get("test");
+    }
+
+    private static void end(Span span, Duration duration) {
+        span.end(TimeUnit.SECONDS.toNanos(1) + duration.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private List<String> names() {
+        return exported.stream().map(SpanData::getName).toList();
+    }
+
+    private double decisions(String decision) {
+        return meterRegistry.get("tracing.tail.sampling.traces").tag("decision", decision).counter().count();
+    }
+}
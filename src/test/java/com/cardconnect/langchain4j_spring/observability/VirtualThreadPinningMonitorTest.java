@@ -0,0 +1,46 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(10), meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        monitor.destroy();
+    }
+
+    @Test
+    void shouldRecordPinning_whenVirtualThreadBlocksInsideSynchronized() throws InterruptedException {
+        // Given - the pattern of a JDBC driver blocking on I/O while holding a monitor
+        Object lock = new Object();
+
+        // When
+        Thread.ofVirtual().start(() -> {
+            synchronized (lock) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).join();
+
+        // Then - JFR streams events in batches, roughly once per second
+        Timer pinned = meterRegistry.get("jvm.threads.virtual.pinned").timer();
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (pinned.count() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertTrue(pinned.count() >= 1, "pinned virtual thread should have been reported");
+    }
+}
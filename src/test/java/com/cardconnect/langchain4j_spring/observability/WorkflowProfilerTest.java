@@ -0,0 +1,141 @@
+package com.cardconnect.langchain4j_spring.observability;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.execution.AgentExecutorRegistry;
+import dev.langchain4j.agentic.Agent;
+import dev.langchain4j.agentic.AgenticServices;
+import dev.langchain4j.agentic.UntypedAgent;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.V;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkflowProfilerTest {
+
+    private static final long MS = 1_000_000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+    private final WorkflowProfiler profiler =
+            new WorkflowProfiler(new LangChain4jProperties.WorkflowProfiler(), meterRegistry);
+    private final AgentObservations agentObservations =
+            new AgentObservations(observationRegistry, meterRegistry, new AgentMetricsService(meterRegistry));
+    private final AgentExecutorRegistry agentExecutors = new AgentExecutorRegistry(
+            new LangChain4jProperties.Execution(), false, meterRegistry, new AgentTaskDecorator(agentObservations));
+
+    WorkflowProfilerTest() {
+        observationRegistry.observationConfig().observationHandler(profiler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        agentExecutors.close();
+    }
+
+    @Test
+    void shouldComputeCriticalPath_parallelism_andEfficiency() {
+        // Given - a writer, then two reviewers in parallel, then an editor
+        List<WorkflowProfile.Execution> executions = List.of(
+                new WorkflowProfile.Execution(1, null, "Writer", 0, 100 * MS),
+                new WorkflowProfile.Execution(2, null, "HrReviewer", 110 * MS, 300 * MS),
+                new WorkflowProfile.Execution(3, null, "ManagerReviewer", 110 * MS, 200 * MS),
+                new WorkflowProfile.Execution(4, null, "Editor", 310 * MS, 400 * MS));
+
+        // When
+        WorkflowProfile profile = WorkflowProfile.of("interview", null, Instant.now(), 500 * MS, executions);
+
+        // Then
+        assertEquals(List.of("Writer", "HrReviewer", "Editor"), profile.criticalPath());
+        assertEquals(380.0, profile.criticalPathMs(), 0.001);
+        assertEquals(470.0 / 500, profile.parallelism(), 0.001);
+        assertEquals(380.0 / 500, profile.parallelEfficiency(), 0.001);
+        assertEquals(List.of("Writer", "HrReviewer", "ManagerReviewer", "Editor"),
+                profile.invocations().stream().map(WorkflowProfile.Invocation::agent).toList());
+        assertFalse(profile.invocations().get(2).critical());
+    }
+
+    @Test
+    void shouldLeaveNestedInvocations_outOfSelfTime() {
+        // Given - a supervisor calling two overlapping sub-agents
+        List<WorkflowProfile.Execution> executions = List.of(
+                new WorkflowProfile.Execution(1, null, "Supervisor", 0, 100 * MS),
+                new WorkflowProfile.Execution(2, 1, "WithdrawAgent", 10 * MS, 50 * MS),
+                new WorkflowProfile.Execution(3, 1, "CreditAgent", 30 * MS, 70 * MS));
+
+        // When
+        WorkflowProfile profile = WorkflowProfile.of("bank", null, Instant.now(), 100 * MS, executions);
+
+        // Then
+        assertEquals(40.0, profile.invocations().get(0).selfMs(), 0.001);
+        assertEquals(List.of("Supervisor"), profile.criticalPath());
+        // Both sub-agents run between 30 and 50ms
+        assertEquals(1.2, profile.parallelism(), 0.001);
+    }
+
+    @Test
+    void shouldProfileSubAgentsOfWorkflowRequest_withMetricsAndSummary() {
+        // Given
+        UntypedAgent reviewers = AgenticServices.parallelBuilder()
+                .subAgents(agent(HrReviewer.class), agent(ManagerReviewer.class))
+                .executor(agentExecutors.get(AgentExecutorRegistry.WORKFLOW))
+                .build();
+
+        // When - two requests of the workflow record on the same meters
+        for (int i = 0; i < 2; i++) {
+            Observation.createNotStarted("agent.interview", observationRegistry)
+                    .observe(() -> reviewers.invoke(Map.of("cv", "Java developer")));
+        }
+        Observation.createNotStarted("agent.rag", observationRegistry).observe(() -> { });
+
+        // Then
+        List<WorkflowProfile> profiles = profiler.recentProfiles("interview");
+        assertEquals(2, profiles.size());
+        WorkflowProfile profile = profiles.get(0);
+        assertEquals(2, profile.invocations().size());
+        assertFalse(profile.criticalPath().isEmpty());
+        assertTrue(profile.parallelEfficiency() > 0 && profile.parallelEfficiency() <= 1);
+        assertEquals(2, profiler.summaries().get("interview").profiles());
+        assertFalse(profiler.summaries().containsKey("rag"));
+        assertEquals(2, meterRegistry.get("workflow.critical.path").tag("workflow", "interview").timer().count());
+        assertEquals(2, meterRegistry.get("workflow.agent.self.time")
+                .tags("workflow", "interview", "agent", "HrReviewer").timer().count());
+    }
+
+    private <T> T agent(Class<T> type) {
+        return agentObservations.instrument(AgenticServices.agentBuilder(type))
+                .chatModel(new ChatModel() {
+                    @Override
+                    public ChatResponse doChat(ChatRequest chatRequest) {
+                        return ChatResponse.builder().aiMessage(AiMessage.from("Solid experience.")).build();
+                    }
+                })
+                .build();
+    }
+
+    public interface HrReviewer {
+
+        @UserMessage("Review this CV from an HR perspective: {{cv}}")
+        @Agent(name = "HrReviewer", outputKey = "hrReview")
+        String review(@V("cv") String cv);
+    }
+
+    public interface ManagerReviewer {
+
+        @UserMessage("Review this CV from a manager perspective: {{cv}}")
+        @Agent(name = "ManagerReviewer", outputKey = "managerReview")
+        String review(@V("cv") String cv);
+    }
+}
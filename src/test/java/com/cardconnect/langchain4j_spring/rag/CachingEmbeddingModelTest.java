@@ -0,0 +1,199 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingEmbeddingModelTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LangChain4jProperties.EmbeddingCache config = new LangChain4jProperties.EmbeddingCache();
+    private final FakeEmbeddingModel model = new FakeEmbeddingModel("nomic-embed-text", 4);
+    private final List<CachingEmbeddingModel> caches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        config.setDiskPath(tempDir.resolve("embeddings.bin").toString());
+        config.setDiskMaxEntries(100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        caches.forEach(CachingEmbeddingModel::destroy);
+    }
+
+    @Test
+    void shouldSendOnlyDistinctMissesToModel_whenEmbeddingBatch() {
+        // Given
+        CachingEmbeddingModel cache = cache(model);
+        cache.embed("carrot");
+
+        // When
+        Response<List<Embedding>> response = cache.embedAll(segments("carrot", "potato", "tomato", "potato"));
+
+        // Then
+        assertEquals(List.of(List.of("carrot"), List.of("potato", "tomato")), model.batches);
+        assertEquals(4, response.content().size());
+        assertArrayEquals(model.vector("carrot"), response.content().get(0).vector());
+        assertArrayEquals(model.vector("potato"), response.content().get(3).vector());
+        assertEquals(2, response.tokenUsage().inputTokenCount());
+        assertEquals(1.0, meterRegistry.get("embedding.cache.requests").tag("tier", "memory").counter().count());
+        assertEquals(3.0, meterRegistry.get("embedding.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void shouldNotExposeCachedVector_whenCallerNormalizesInPlace() {
+        // Given
+        CachingEmbeddingModel cache = cache(model);
+        cache.embed("carrot").content().normalize();
+
+        // When
+        float[] vector = cache.embed("carrot").content().vector();
+
+        // Then
+        assertArrayEquals(model.vector("carrot"), vector);
+    }
+
+    @Test
+    void shouldServeFromDisk_afterRestart() {
+        // Given
+        config.setDiskEnabled(true);
+        CachingEmbeddingModel first = cache(model);
+        first.embedAll(segments("carrot", "potato"));
+        first.destroy();
+
+        // When
+        FakeEmbeddingModel restartedModel = new FakeEmbeddingModel("nomic-embed-text", 4);
+        CachingEmbeddingModel restarted = cache(restartedModel);
+        Response<List<Embedding>> response = restarted.embedAll(segments("carrot", "potato"));
+
+        // Then
+        assertTrue(restartedModel.batches.isEmpty());
+        assertArrayEquals(model.vector("potato"), response.content().get(1).vector());
+        assertEquals(2.0, meterRegistry.get("embedding.cache.requests").tag("tier", "disk").counter().count());
+        assertEquals(2.0, meterRegistry.get("embedding.cache.size").tag("tier", "disk").gauge().value());
+    }
+
+    @Test
+    void shouldNotShareEntries_betweenModels() {
+        // Given
+        config.setDiskEnabled(true);
+        cache(model).embed("carrot");
+
+        // When
+        FakeEmbeddingModel otherModel = new FakeEmbeddingModel("all-minilm", 3);
+        Embedding embedding = cache(otherModel).embed("carrot").content();
+
+        // Then
+        assertEquals(List.of(List.of("carrot")), otherModel.batches);
+        assertEquals(3, embedding.dimension());
+    }
+
+    @Test
+    void shouldKeepDiskEntries_whenModelOfOtherDimensionIsCached() {
+        // Given
+        config.setDiskEnabled(true);
+        CachingEmbeddingModel first = cache(model);
+        first.embed("carrot");
+        cache(new FakeEmbeddingModel("all-minilm", 3)).embed("carrot");
+        caches.forEach(CachingEmbeddingModel::destroy);
+
+        // When
+        FakeEmbeddingModel restartedModel = new FakeEmbeddingModel("nomic-embed-text", 4);
+        cache(restartedModel).embed("carrot");
+
+        // Then
+        assertTrue(restartedModel.batches.isEmpty());
+    }
+
+    @Test
+    void shouldDisableDiskTier_whenTableExceeds2Gb() {
+        // Given
+        config.setDiskEnabled(true);
+        config.setDiskMaxEntries(100_000_000);
+        CachingEmbeddingModel cache = cache(model);
+
+        // When
+        Embedding embedding = cache.embed("carrot").content();
+
+        // Then
+        assertArrayEquals(model.vector("carrot"), embedding.vector());
+        assertFalse(java.nio.file.Files.exists(tempDir.resolve("embeddings.bin")));
+        assertEquals(0.0, meterRegistry.get("embedding.cache.size").tag("tier", "disk").gauge().value());
+    }
+
+    @Test
+    void shouldKeepWorking_whenDiskCacheIsFull() {
+        // Given
+        config.setDiskEnabled(true);
+        config.setDiskMaxEntries(2);
+        CachingEmbeddingModel cache = cache(model);
+
+        // When
+        List<String> texts = List.of("a", "b", "c", "d", "e", "f", "g", "h");
+        Response<List<Embedding>> response = cache.embedAll(segments(texts.toArray(String[]::new)));
+
+        // Then
+        assertEquals(8, response.content().size());
+        assertTrue(meterRegistry.get("embedding.cache.size").tag("tier", "disk").gauge().value() < 8);
+    }
+
+    private CachingEmbeddingModel cache(EmbeddingModel delegate) {
+        CachingEmbeddingModel cache = new CachingEmbeddingModel(delegate, config, meterRegistry);
+        caches.add(cache);
+        return cache;
+    }
+
+    private static List<TextSegment> segments(String... texts) {
+        return java.util.Arrays.stream(texts).map(TextSegment::from).toList();
+    }
+
+    private static class FakeEmbeddingModel implements EmbeddingModel {
+
+        private final String name;
+        private final int dimension;
+        private final List<List<String>> batches = new ArrayList<>();
+
+        FakeEmbeddingModel(String name, int dimension) {
+            this.name = name;
+            this.dimension = dimension;
+        }
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            batches.add(textSegments.stream().map(TextSegment::text).toList());
+            List<Embedding> embeddings = textSegments.stream().map(segment -> Embedding.from(vector(segment.text()))).toList();
+            return Response.from(embeddings, new TokenUsage(textSegments.size(), 0));
+        }
+
+        float[] vector(String text) {
+            float[] vector = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = text.hashCode() % (i + 7) + i;
+            }
+            return vector;
+        }
+
+        @Override
+        public String modelName() {
+            return name;
+        }
+    }
+}
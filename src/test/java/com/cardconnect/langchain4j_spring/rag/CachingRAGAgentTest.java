@@ -0,0 +1,163 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.assistant.RAGAgent;
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingRAGAgentTest {
+
+    @Mock
+    private RAGAgent delegate;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LangChain4jProperties.AnswerCache config = new LangChain4jProperties.AnswerCache();
+    private CachingRAGAgent cache;
+
+    @BeforeEach
+    void setUp() {
+        config.setSimilarityThreshold(0.9);
+        cache = new CachingRAGAgent(delegate, embeddingModel, config, meterRegistry);
+    }
+
+    @Test
+    void shouldAnswerFromExactCache_whenQuestionDiffersOnlyInFormatting() {
+        // Given
+        embed("Who is Charlie?", 1, 0, 0);
+        when(delegate.retrieve("Who is Charlie?")).thenReturn("A happy carrot.");
+
+        // When
+        String first = cache.retrieve("Who is Charlie?");
+        String second = cache.retrieve("  who   is CHARLIE ");
+
+        // Then
+        assertEquals("A happy carrot.", first);
+        assertEquals("A happy carrot.", second);
+        verify(delegate, times(1)).retrieve(anyString());
+        verify(embeddingModel, times(1)).embed(anyString());
+        assertEquals(1.0, meterRegistry.get("rag.answer.cache.requests").tag("level", "exact").counter().count());
+        assertEquals(0.5, meterRegistry.get("rag.answer.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void shouldAnswerFromSemanticCache_whenQuestionIsSimilar() {
+        // Given
+        embed("Who is Charlie?", 1, 0, 0);
+        embed("Tell me who Charlie is", 0.95f, 0.1f, 0);
+        embed("Where does Charlie live?", 0, 1, 0);
+        when(delegate.retrieve(anyString())).thenReturn("A happy carrot.", "In VeggieVille.");
+
+        // When
+        cache.retrieve("Who is Charlie?");
+        String similar = cache.retrieve("Tell me who Charlie is");
+        String different = cache.retrieve("Where does Charlie live?");
+
+        // Then
+        assertEquals("A happy carrot.", similar);
+        assertEquals("In VeggieVille.", different);
+        verify(delegate, times(2)).retrieve(anyString());
+        assertEquals(1.0, meterRegistry.get("rag.answer.cache.requests").tag("level", "semantic").counter().count());
+        assertEquals(2.0, meterRegistry.get("rag.answer.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void shouldDropCache_whenDocumentIsIngestedWithNewContent() {
+        // Given
+        embed("Who is Charlie?", 1, 0, 0);
+        when(delegate.retrieve("Who is Charlie?")).thenReturn("A happy carrot.", "A sad carrot.");
+        cache.onApplicationEvent(new DocumentIngestedEvent(this, "md5-v1", "story.txt"));
+        cache.retrieve("Who is Charlie?");
+
+        // When
+        cache.onApplicationEvent(new DocumentIngestedEvent(this, "md5-v1", "story.txt"));
+        String unchanged = cache.retrieve("Who is Charlie?");
+        cache.onApplicationEvent(new DocumentIngestedEvent(this, "md5-v2", "story.txt"));
+        String changed = cache.retrieve("Who is Charlie?");
+
+        // Then
+        assertEquals("A happy carrot.", unchanged);
+        assertEquals("A sad carrot.", changed);
+        assertEquals(2.0, meterRegistry.get("rag.answer.cache.invalidations").counter().count());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsed_whenFull() {
+        // Given
+        config.setMaxEntries(2);
+        config.setSemanticEnabled(false);
+        when(delegate.retrieve(anyString())).thenAnswer(invocation -> "answer to " + invocation.getArgument(0));
+
+        // When
+        cache.retrieve("one");
+        cache.retrieve("two");
+        cache.retrieve("one");
+        cache.retrieve("three");
+        cache.retrieve("one");
+        cache.retrieve("two");
+
+        // Then
+        verify(delegate, times(2)).retrieve("two");
+        verify(delegate, times(1)).retrieve("one");
+        verifyNoInteractions(embeddingModel);
+        assertEquals(2.0, meterRegistry.get("rag.answer.cache.size").gauge().value());
+    }
+
+    @Test
+    void shouldReloadAnswer_whenEntryExpired() throws InterruptedException {
+        // Given
+        config.setTtl(Duration.ofMillis(10));
+        config.setSemanticEnabled(false);
+        cache = new CachingRAGAgent(delegate, embeddingModel, config, new SimpleMeterRegistry());
+        when(delegate.retrieve("Who is Charlie?")).thenReturn("A happy carrot.");
+
+        // When
+        cache.retrieve("Who is Charlie?");
+        Thread.sleep(20);
+        cache.retrieve("Who is Charlie?");
+
+        // Then
+        verify(delegate, times(2)).retrieve("Who is Charlie?");
+    }
+
+    @Test
+    void shouldRemoveExpiredEntries_whenLookupsFindThem() throws InterruptedException {
+        // Given
+        config.setTtl(Duration.ofMillis(10));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache = new CachingRAGAgent(delegate, embeddingModel, config, registry);
+        embed("Who is Charlie?", 1, 0, 0);
+        embed("Who is Tom?", 0, 1, 0);
+        embed("Where is VeggieVille?", 0, 0, 1);
+        when(delegate.retrieve(anyString())).thenReturn("Somewhere in the garden.");
+        cache.retrieve("Who is Charlie?");
+        cache.retrieve("Who is Tom?");
+        Thread.sleep(20);
+
+        // When - an unrelated question scans the expired entries
+        cache.retrieve("Where is VeggieVille?");
+
+        // Then
+        assertEquals(1.0, registry.get("rag.answer.cache.size").gauge().value());
+    }
+
+    private void embed(String text, float... vector) {
+        lenient().when(embeddingModel.embed(text)).thenReturn(Response.from(Embedding.from(vector)));
+    }
+}
@@ -0,0 +1,138 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.observability.IngestionHealthIndicator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentIngestionServiceTest {
+
+    @Mock
+    private IngestionPipeline pipeline;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final LangChain4jProperties properties = new LangChain4jProperties();
+    private DocumentIngestionService service;
+    private IngestionHealthIndicator healthIndicator;
+
+    @BeforeEach
+    void setUp() {
+        properties.getRag().getIngestion().setRetryInterval(Duration.ofHours(1));
+        addSource("classpath:/static/story-about-happy-carrot.txt",
+                Map.of("source", "story-about-happy-carrot", "author", "John Doe", "type", "story"));
+        service = new DocumentIngestionService(pipeline, new DefaultResourceLoader(), properties, eventPublisher,
+                new SimpleMeterRegistry());
+        healthIndicator = new IngestionHealthIndicator(service);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void shouldReportOutOfService_untilIngestionCompleted() throws Exception {
+        // Given
+        when(pipeline.ingest(anyList())).thenReturn(List.of(
+                new IncrementalDocumentIngestor.IngestionResult("story-about-happy-carrot", "abc", 0, 12, 0)));
+        assertEquals(Status.OUT_OF_SERVICE, healthIndicator.health().getStatus());
+
+        // When
+        service.run();
+
+        // Then
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+        verify(eventPublisher).publishEvent(any(DocumentIngestedEvent.class));
+    }
+
+    @Test
+    void shouldReportDown_whenIngestionFails() throws Exception {
+        // Given
+        when(pipeline.ingest(anyList())).thenThrow(new IllegalStateException("Ollama unavailable"));
+
+        // When
+        service.run();
+
+        // Then
+        assertEquals(DocumentIngestionService.Status.FAILED, service.getStatus());
+        assertEquals(Status.DOWN, healthIndicator.health().getStatus());
+        assertEquals("IllegalStateException: Ollama unavailable", healthIndicator.health().getDetails().get("error"));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void shouldResolvePatternsWithConfiguredMetadata_andSkipDuplicateSources() throws Exception {
+        // Given - the story is matched a second time by its file name
+        addSource("classpath:/static/*.txt", Map.of("language", "English"));
+        addSource("classpath:/static/story-about-happy-carrot.txt", Map.of());
+
+        // When
+        List<IngestionPipeline.SourceDocument> documents = service.resolveSources();
+
+        // Then
+        assertEquals(7, documents.size());
+        IngestionPipeline.SourceDocument story = documents.get(0);
+        assertEquals("story-about-happy-carrot", story.metadata().get("source"));
+        assertEquals("John Doe", story.metadata().get("author"));
+        IngestionPipeline.SourceDocument terms = documents.stream()
+                .filter(document -> document.metadata().get("source").equals("swift-terms-of-use.txt"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals("swift-terms-of-use", terms.metadata().get("title"));
+        assertEquals("English", terms.metadata().get("language"));
+        assertEquals(1, documents.stream()
+                .filter(document -> document.metadata().get("source").equals("story-about-happy-carrot.txt"))
+                .count());
+    }
+
+    @Test
+    void shouldDefaultSourceToPathBelowLocationRoot_whenFileNamesRepeat(@TempDir Path documents) throws Exception {
+        // Given
+        Files.createDirectories(documents.resolve("billing"));
+        Files.createDirectories(documents.resolve("support hours"));
+        Files.writeString(documents.resolve("billing/faq.txt"), "How do I pay?");
+        Files.writeString(documents.resolve("support hours/faq.txt"), "When are you open?");
+        properties.getRag().getIngestion().getSources().clear();
+        addSource(documents.toUri() + "**/*.txt", Map.of());
+
+        // When
+        List<IngestionPipeline.SourceDocument> resolved = service.resolveSources();
+
+        // Then
+        assertEquals(List.of("billing/faq.txt", "support hours/faq.txt"), resolved.stream()
+                .map(document -> document.metadata().get("source"))
+                .sorted()
+                .toList());
+        assertEquals("faq", resolved.get(0).metadata().get("title"));
+    }
+
+    private void addSource(String location, Map<String, String> metadata) {
+        LangChain4jProperties.DocumentSource source = new LangChain4jProperties.DocumentSource();
+        source.setLocation(location);
+        source.getMetadata().putAll(metadata);
+        properties.getRag().getIngestion().getSources().add(source);
+    }
+}
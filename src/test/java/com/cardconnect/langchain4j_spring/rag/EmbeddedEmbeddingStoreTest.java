@@ -0,0 +1,194 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class EmbeddedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 64;
+    private static final List<String> SOURCES = List.of("story", "terms", "cv");
+
+    @TempDir
+    Path tempDir;
+
+    private final Random random = new Random(7);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<EmbeddedEmbeddingStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(EmbeddedEmbeddingStore::close);
+    }
+
+    @Test
+    void shouldFindSameMatchesAsExactInMemoryStore_withMetadataFilter() {
+        // Given
+        EmbeddedEmbeddingStore store = store(10_000);
+        InMemoryEmbeddingStore<TextSegment> reference = new InMemoryEmbeddingStore<>();
+        Points points = points(5_000);
+        store.addAll(points.ids, points.embeddings, points.segments);
+        reference.addAll(points.ids, points.embeddings, points.segments);
+        Filter filter = metadataKey("source").isEqualTo("story").and(metadataKey("author").isIn("pjaiswal", "jdoe"));
+
+        // When / Then
+        long embeddedNanos = 0;
+        long referenceNanos = 0;
+        for (int i = 0; i < 50; i++) {
+            EmbeddingSearchRequest request = request(randomEmbedding(), i % 2 == 0 ? filter : null);
+            long start = System.nanoTime();
+            List<EmbeddingMatch<TextSegment>> matches = store.search(request).matches();
+            embeddedNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            List<EmbeddingMatch<TextSegment>> expected = reference.search(request).matches();
+            referenceNanos += System.nanoTime() - start;
+
+            assertEquals(expected.stream().map(EmbeddingMatch::embeddingId).toList(),
+                    matches.stream().map(EmbeddingMatch::embeddingId).toList());
+            for (int m = 0; m < matches.size(); m++) {
+                assertEquals(expected.get(m).score(), matches.get(m).score(), 1e-5);
+            }
+            if (request.filter() != null) {
+                assertTrue(matches.stream().allMatch(match -> match.embedded().metadata().getString("source").equals("story")));
+            }
+        }
+        log.info("50 searches over 5000 vectors: embedded store {} ms, in-memory store {} ms",
+                TimeUnit.NANOSECONDS.toMillis(embeddedNanos), TimeUnit.NANOSECONDS.toMillis(referenceNanos));
+        assertEquals(50, meterRegistry.get("embedded.store.search").timer().count());
+    }
+
+    @Test
+    void shouldKeepRowsContiguous_whenRemovingByIdAndFilter() {
+        // Given
+        EmbeddedEmbeddingStore store = store(10_000);
+        Points points = points(100);
+        store.addAll(points.ids, points.embeddings, points.segments);
+
+        // When
+        store.remove(points.ids.get(0));
+        store.removeAll(metadataKey("source").isEqualTo("terms"));
+
+        // Then - the last row moved into the removed rows is still found by its own vector
+        long remaining = points.segments.stream().skip(1)
+                .filter(segment -> !segment.metadata().getString("source").equals("terms"))
+                .count();
+        assertEquals(remaining, store.size());
+        assertEquals(remaining, meterRegistry.get("embedded.store.size").gauge().value());
+        EmbeddingMatch<TextSegment> best = store.search(request(points.embeddings.get(99), null)).matches().get(0);
+        assertEquals(points.ids.get(99), best.embeddingId());
+        assertEquals(points.segments.get(99), best.embedded());
+        assertTrue(store.search(request(points.embeddings.get(0), metadataKey("source").isEqualTo("terms")))
+                .matches().isEmpty());
+    }
+
+    @Test
+    void shouldRestoreFromSnapshotAndLog_afterCrash() {
+        // Given - the first batch is compacted into the snapshot, later changes are only logged
+        EmbeddedEmbeddingStore store = store(100);
+        Points points = points(260);
+        store.addAll(points.ids.subList(0, 250), points.embeddings.subList(0, 250), points.segments.subList(0, 250));
+        store.addAll(points.ids.subList(250, 260), points.embeddings.subList(250, 260), points.segments.subList(250, 260));
+        store.removeAll(points.ids.subList(0, 5));
+        TextSegment typed = TextSegment.from("typed", new Metadata().put("index", 3).put("offset", 7L)
+                .put("weight", 0.5).put("ratio", 0.25f).put("id", UUID.nameUUIDFromBytes(new byte[]{1})));
+        Embedding typedEmbedding = randomEmbedding();
+        store.addAll(List.of("typed"), List.of(typedEmbedding), List.of(typed));
+
+        // When - reopened without close()
+        EmbeddedEmbeddingStore restored = store(100);
+
+        // Then
+        assertEquals(256, restored.size());
+        for (int i : new int[]{5, 100, 255, 259}) {
+            EmbeddingMatch<TextSegment> best = restored.search(request(points.embeddings.get(i), null)).matches().get(0);
+            assertEquals(points.ids.get(i), best.embeddingId());
+            assertEquals(points.segments.get(i), best.embedded());
+        }
+        assertEquals(typed, restored.search(request(typedEmbedding, null)).matches().get(0).embedded());
+        assertTrue(restored.search(request(points.embeddings.get(0), null)).matches().stream()
+                .noneMatch(match -> match.embeddingId().equals(points.ids.get(0))));
+        assertFalse(Files.exists(tempDir.resolve("vectors.bin.log")));
+    }
+
+    @Test
+    void shouldDropIncompleteLastChange_whenLogIsTruncated() throws IOException {
+        // Given
+        EmbeddedEmbeddingStore store = store(10_000);
+        Points points = points(10);
+        store.addAll(points.ids, points.embeddings, points.segments);
+        Files.write(tempDir.resolve("vectors.bin.log"), new byte[]{1, 0, 36, 'a'}, StandardOpenOption.APPEND);
+
+        // When
+        EmbeddedEmbeddingStore restored = store(10_000);
+
+        // Then
+        assertEquals(10, restored.size());
+        restored.add(points.embeddings.get(0));
+        assertEquals(11, store(10_000).size());
+    }
+
+    private EmbeddedEmbeddingStore store(int compactAfter) {
+        EmbeddedEmbeddingStore store = new EmbeddedEmbeddingStore(tempDir.resolve("vectors.bin"), compactAfter,
+                meterRegistry);
+        stores.add(store);
+        return store;
+    }
+
+    private static EmbeddingSearchRequest request(Embedding query, Filter filter) {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(query)
+                .maxResults(10)
+                .minScore(0.0)
+                .filter(filter)
+                .build();
+    }
+
+    private Points points(int count) {
+        Points points = new Points();
+        for (int i = 0; i < count; i++) {
+            points.ids.add(UUID.nameUUIDFromBytes(("point-" + i).getBytes()).toString());
+            points.embeddings.add(randomEmbedding());
+            points.segments.add(TextSegment.from("segment " + i, Metadata.from("source", SOURCES.get(i % 3))
+                    .put("author", i % 2 == 0 ? "pjaiswal" : "someone")
+                    .put("index", i)));
+        }
+        return points;
+    }
+
+    private Embedding randomEmbedding() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return Embedding.from(vector);
+    }
+
+    private static class Points {
+        private final List<String> ids = new ArrayList<>();
+        private final List<Embedding> embeddings = new ArrayList<>();
+        private final List<TextSegment> segments = new ArrayList<>();
+    }
+}
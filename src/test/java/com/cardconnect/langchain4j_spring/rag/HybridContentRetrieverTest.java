@@ -0,0 +1,133 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.observability.RetrievalMetrics;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HybridContentRetrieverTest {
+
+    private static final Filter STORY = metadataKey("source").isEqualTo("story");
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InMemoryEmbeddingStore<TextSegment> embeddingStore = new InMemoryEmbeddingStore<>();
+    private final Bm25Index keywordIndex = new Bm25Index(meterRegistry);
+    private final LangChain4jProperties.Hybrid hybrid = new LangChain4jProperties.Hybrid();
+
+    @BeforeEach
+    void setUp() {
+        add("charlie", "Charlie the happy carrot lives in VeggieVille.", "story", 1, 0, 0);
+        add("tom", "Tom the tomato waters the garden every morning.", "story", 0, 1, 0);
+        add("square", "The vegetables gather in the town square in the evening.", "story", 0.5f, 0.866f, 0);
+        add("terms", "These terms apply to every customer in VeggieVille.", "terms", 1, 0, 0);
+    }
+
+    @Test
+    void shouldAnswerExactTermQueryFromKeywordIndex_withoutCallingEmbeddingModel() {
+        // When
+        List<Content> contents = retriever(Runnable::run).retrieve(Query.from("VeggieVille"));
+
+        // Then
+        assertEquals(List.of("charlie"), ids(contents));
+        verifyNoInteractions(embeddingModel);
+        assertEquals(1, meterRegistry.get("rag.retrieval.latency").tag("path", "fast").timer().count());
+        assertEquals(0, meterRegistry.get("rag.retriever.latency").tag("retriever", "vector").timer().count());
+    }
+
+    @Test
+    void shouldReturnNoKeywordHits_whenMaxResultsIsNotPositive() {
+        // When / Then
+        assertTrue(keywordIndex.search("VeggieVille", 0, null).isEmpty());
+        assertTrue(keywordIndex.search("VeggieVille", -1, null).isEmpty());
+    }
+
+    @Test
+    void shouldFuseKeywordAndVectorResults_byReciprocalRank() {
+        // Given - the vector search only finds charlie above the minimum score
+        when(embeddingModel.embed(anyString())).thenReturn(Response.from(Embedding.from(new float[]{1, 0, 0})));
+
+        // When - too long for the fast path, and "Charlie garden" alone has no segment with both terms
+        List<Content> contents = retriever(Runnable::run)
+                .retrieve(Query.from("Where does Charlie water the garden every morning?"));
+        List<Content> shortQuery = retriever(Runnable::run).retrieve(Query.from("Charlie garden"));
+
+        // Then - charlie is found by both and ranks first; tom is found by keywords only
+        assertEquals(List.of("charlie", "tom"), ids(contents));
+        assertTrue(contents.get(0).textSegment().metadata().getDouble(HybridContentRetriever.FUSED_SCORE)
+                > contents.get(1).textSegment().metadata().getDouble(HybridContentRetriever.FUSED_SCORE));
+        assertEquals(1.0, (double) contents.get(0).metadata().get(ContentMetadata.SCORE), 1e-6);
+        assertFalse(contents.get(1).metadata().containsKey(ContentMetadata.SCORE));
+        assertNotNull(contents.get(1).textSegment().metadata().getDouble(HybridContentRetriever.KEYWORD_SCORE));
+        assertEquals(List.of("charlie", "tom"), ids(shortQuery));
+        verify(embeddingModel, times(2)).embed(anyString());
+        assertEquals(2, meterRegistry.get("rag.retrieval.latency").tag("path", "fused").timer().count());
+        assertEquals(1.0, meterRegistry.get("rag.retriever.recall").tag("retriever", "keyword").summary().mean());
+        assertEquals(0.5, meterRegistry.get("rag.retriever.recall").tag("retriever", "vector").summary().mean());
+    }
+
+    @Test
+    void shouldRunKeywordSearchOnExecutor_whileVectorSearchIsRunning() {
+        // Given - the vector search only completes once the keyword search has finished on the executor
+        CountDownLatch keywordSearched = new CountDownLatch(1);
+        Executor executor = task -> Thread.ofPlatform().start(() -> {
+            task.run();
+            keywordSearched.countDown();
+        });
+        when(embeddingModel.embed(anyString())).thenAnswer(invocation -> {
+            assertTrue(keywordSearched.await(5, TimeUnit.SECONDS));
+            return Response.from(Embedding.from(new float[]{0, 1, 0}));
+        });
+
+        // When
+        List<Content> contents = retriever(executor)
+                .retrieve(Query.from("Who waters the garden in the morning?"));
+
+        // Then
+        assertEquals("tom", ids(contents).get(0));
+        assertEquals(1, meterRegistry.get("rag.retriever.latency").tag("retriever", "keyword").timer().count());
+    }
+
+    private HybridContentRetriever retriever(Executor executor) {
+        VectorContentRetriever vectorRetriever = new VectorContentRetriever(embeddingStore, embeddingModel,
+                hybrid.getCandidates(), 0.9, STORY, RetrievalMetrics.disabled());
+        return new HybridContentRetriever(keywordIndex, vectorRetriever, 2, STORY, hybrid, executor, meterRegistry);
+    }
+
+    private void add(String id, String text, String source, float... vector) {
+        TextSegment segment = TextSegment.from(text, Metadata.from("source", source));
+        embeddingStore.add(id, Embedding.from(vector), segment);
+        keywordIndex.addAll(List.of(id), List.of(segment));
+    }
+
+    private static List<String> ids(List<Content> contents) {
+        return contents.stream().map(content -> (String) content.metadata().get(ContentMetadata.EMBEDDING_ID)).toList();
+    }
+}
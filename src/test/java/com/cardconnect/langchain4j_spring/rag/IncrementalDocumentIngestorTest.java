@@ -0,0 +1,239 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalDocumentIngestorTest {
+
+    private static final String STORY = """
+            Charlie is a happy carrot who lives in VeggieVille.
+
+            Every morning Charlie waters the garden with his friend Tom the tomato.
+
+            In the evening the vegetables gather in the town square to tell stories.
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private final InMemoryEmbeddingStore<TextSegment> embeddingStore = new InMemoryEmbeddingStore<>();
+    private final CountingEmbeddingModel embeddingModel = new CountingEmbeddingModel();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Path manifestPath;
+
+    @BeforeEach
+    void setUp() {
+        manifestPath = tempDir.resolve("manifest.json");
+    }
+
+    @Test
+    void shouldEmbedNothing_whenRestartedWithUnchangedDocument() {
+        // Given
+        ingestor().ingest(document(STORY));
+        int embedded = embeddingModel.embeddedTexts.size();
+
+        // When - a restart reads the manifest from disk
+        IncrementalDocumentIngestor.IngestionResult result = ingestor().ingest(document(STORY));
+
+        // Then
+        assertEquals(3, embedded);
+        assertEquals(3, embeddingModel.embeddedTexts.size());
+        assertEquals(new IncrementalDocumentIngestor.IngestionResult("story.txt", documentId(STORY), 3, 0, 0), result);
+        assertEquals(3, storedTexts().size());
+    }
+
+    @Test
+    void shouldIngestAgain_whenStoreIsSwitchedOrLostItsSegments() {
+        // Given
+        ingestor(new IngestionManifest(manifestPath, Duration.ZERO, "qdrant:documents")).ingest(document(STORY));
+        embeddingModel.embeddedTexts.clear();
+
+        // When - another collection, then the same collection emptied behind the manifest's back
+        ingestor(new IngestionManifest(manifestPath, Duration.ZERO, "qdrant:archive")).ingest(document(STORY));
+        int embeddedForArchive = embeddingModel.embeddedTexts.size();
+        embeddingStore.removeAll();
+        IncrementalDocumentIngestor documents = new IncrementalDocumentIngestor(embeddingStore, embeddingModel,
+                DocumentSplitters.recursive(80, 0),
+                new IngestionManifest(manifestPath, Duration.ZERO, "qdrant:documents"),
+                null, () -> storedTexts().size(), 1, new SimpleMeterRegistry());
+        documents.verifyManifest();
+        documents.ingest(document(STORY));
+
+        // Then
+        assertEquals(3, embeddedForArchive);
+        assertEquals(6, embeddingModel.embeddedTexts.size());
+        assertEquals(3, storedTexts().size());
+    }
+
+    @Test
+    void shouldEmbedOnlyChangedSegments_andRemoveStaleOnes() {
+        // Given
+        ingestor().ingest(document(STORY));
+        embeddingModel.embeddedTexts.clear();
+        String edited = STORY.replace("Tom the tomato", "Polly the potato");
+
+        // When
+        IncrementalDocumentIngestor.IngestionResult result = ingestor().ingest(document(edited));
+
+        // Then
+        assertEquals(new IncrementalDocumentIngestor.IngestionResult("story.txt", documentId(edited), 2, 1, 1), result);
+        assertEquals(1, embeddingModel.embeddedTexts.size());
+        assertTrue(embeddingModel.embeddedTexts.get(0).contains("Polly the potato"));
+        List<String> stored = storedTexts();
+        assertEquals(3, stored.size());
+        assertTrue(stored.stream().noneMatch(text -> text.contains("Tom the tomato")));
+    }
+
+    @Test
+    void shouldResumeFromCheckpoint_whenIngestionFailedMidway() {
+        // Given - the model fails on the second batch
+        embeddingModel.failAfter = 1;
+        assertThrows(IllegalStateException.class, () -> ingestor().ingest(document(STORY)));
+        embeddingModel.failAfter = Integer.MAX_VALUE;
+
+        // When
+        IncrementalDocumentIngestor.IngestionResult result = ingestor().ingest(document(STORY));
+
+        // Then
+        assertEquals(new IncrementalDocumentIngestor.IngestionResult("story.txt", documentId(STORY), 1, 2, 0), result);
+        assertEquals(3, embeddingModel.embeddedTexts.size());
+        assertEquals(3, storedTexts().size());
+        assertEquals(3.0, meterRegistry.get("rag.ingestion.segments.embedded").counter().count());
+        assertEquals(0.0, meterRegistry.get("rag.ingestion.queue.depth").gauge().value());
+    }
+
+    @Test
+    void shouldRemoveSegmentsOfEarlierIngestion_whenNoManifestExists() {
+        // Given - segments stored by the former removeAll + re-ingest startup
+        TextSegment legacy = TextSegment.from("old copy of the story", Metadata.from("source", "story.txt"));
+        TextSegment otherSource = TextSegment.from("another document", Metadata.from("source", "other.txt"));
+        embeddingStore.add(Embedding.from(new float[]{1, 0, 0}), legacy);
+        embeddingStore.add(Embedding.from(new float[]{1, 0, 0}), otherSource);
+
+        // When
+        ingestor().ingest(document(STORY));
+
+        // Then
+        List<String> stored = storedTexts();
+        assertEquals(4, stored.size());
+        assertFalse(stored.contains("old copy of the story"));
+        assertTrue(stored.contains("another document"));
+    }
+
+    @Test
+    void shouldRebuildKeywordIndexWithoutEmbedding_andKeepItInStepWithStore() {
+        // Given
+        ingestor(new Bm25Index(meterRegistry)).ingest(document(STORY));
+        embeddingModel.embeddedTexts.clear();
+
+        // When - a restart starts with an empty keyword index
+        Bm25Index keywordIndex = new Bm25Index(meterRegistry);
+        ingestor(keywordIndex).ingest(document(STORY));
+
+        // Then
+        assertTrue(embeddingModel.embeddedTexts.isEmpty());
+        assertEquals(3, keywordIndex.size());
+        assertEquals(1, keywordIndex.search("tomato", 10, null).size());
+
+        // When - the changed segment is replaced in both store and index
+        ingestor(keywordIndex).ingest(document(STORY.replace("Tom the tomato", "Polly the potato")));
+
+        // Then
+        assertEquals(3, keywordIndex.size());
+        assertTrue(keywordIndex.search("tomato", 10, null).isEmpty());
+        Bm25Index.Hit potato = keywordIndex.search("potato", 10, null).get(0);
+        assertTrue(storedTexts().contains(potato.segment().text()));
+    }
+
+    @Test
+    void shouldUseDeterministicSegmentIds() {
+        // Given
+        TextSegment segment = TextSegment.from("Charlie", Metadata.from("source", "story.txt").put("index", "0"));
+        TextSegment moved = TextSegment.from("Charlie", Metadata.from("source", "story.txt").put("index", "7"));
+
+        // When
+        String hash = IncrementalDocumentIngestor.hash(segment);
+
+        // Then
+        assertEquals(hash, IncrementalDocumentIngestor.hash(moved));
+        assertEquals(IncrementalDocumentIngestor.segmentId("story.txt", hash, 1),
+                IncrementalDocumentIngestor.segmentId("story.txt", hash, 1));
+        assertNotEquals(IncrementalDocumentIngestor.segmentId("story.txt", hash, 1),
+                IncrementalDocumentIngestor.segmentId("story.txt", hash, 2));
+    }
+
+    private IncrementalDocumentIngestor ingestor() {
+        return ingestor((Bm25Index) null);
+    }
+
+    private IncrementalDocumentIngestor ingestor(Bm25Index keywordIndex) {
+        return new IncrementalDocumentIngestor(embeddingStore, embeddingModel,
+                DocumentSplitters.recursive(80, 0), new IngestionManifest(manifestPath), keywordIndex, 1,
+                meterRegistry);
+    }
+
+    private IncrementalDocumentIngestor ingestor(IngestionManifest manifest) {
+        return new IncrementalDocumentIngestor(embeddingStore, embeddingModel,
+                DocumentSplitters.recursive(80, 0), manifest, 1, new SimpleMeterRegistry());
+    }
+
+    private static Document document(String text) {
+        Metadata metadata = Metadata.from("source", "story.txt")
+                .put("document_id", documentId(text))
+                .put("author", "John Doe");
+        return Document.from(text, metadata);
+    }
+
+    private static String documentId(String text) {
+        return Integer.toHexString(text.hashCode());
+    }
+
+    private List<String> storedTexts() {
+        return embeddingStore.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(Embedding.from(new float[]{1, 0, 0}))
+                        .maxResults(100)
+                        .minScore(0.0)
+                        .build())
+                .matches().stream()
+                .map(EmbeddingMatch::embedded)
+                .map(TextSegment::text)
+                .toList();
+    }
+
+    private static class CountingEmbeddingModel implements EmbeddingModel {
+
+        private final List<String> embeddedTexts = new ArrayList<>();
+        private int failAfter = Integer.MAX_VALUE;
+        private int calls;
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            if (calls++ >= failAfter) {
+                throw new IllegalStateException("Ollama unavailable");
+            }
+            textSegments.forEach(segment -> embeddedTexts.add(segment.text()));
+            return Response.from(textSegments.stream()
+                    .map(segment -> Embedding.from(new float[]{1, 0, 0}))
+                    .toList());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput and backpressure of the ingestion pipeline over a generated corpus, with an embedding
+ * model that takes a fixed time per {@code embedAll} call, like a remote model would.
+ */
+@Slf4j
+class IngestionPipelineTest {
+
+    private static final int DOCUMENTS = 2_000;
+    private static final int SEGMENTS_PER_DOCUMENT = 2;
+    private static final int BATCH_SIZE = 32;
+    private static final Duration EMBED_LATENCY = Duration.ofMillis(20);
+
+    @TempDir
+    Path tempDir;
+
+    private List<IngestionPipeline.SourceDocument> corpus;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        corpus = new ArrayList<>(DOCUMENTS);
+        Path directory = Files.createDirectories(tempDir.resolve("corpus"));
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Path file = directory.resolve("document-" + i + ".txt");
+            Files.writeString(file, """
+                    Document %d tells how Charlie the carrot planted row %d.
+
+                    On day %d Tom the tomato watered all of the rows again.
+                    """.formatted(i, i, i));
+            corpus.add(new IngestionPipeline.SourceDocument(new FileSystemResource(file),
+                    Map.of("source", file.getFileName().toString())));
+        }
+    }
+
+    @Test
+    void shouldBatchSegmentsAcrossDocuments_withParallelEmbedWorkers() throws Exception {
+        // Given
+        Fixture fixture = new Fixture(tempDir.resolve("manifest.json"), 4, 256);
+
+        // When
+        fixture.timeIngest();
+
+        // Then
+        assertEquals(DOCUMENTS, fixture.results.size());
+        assertEquals(DOCUMENTS * SEGMENTS_PER_DOCUMENT, fixture.storedSegments());
+        assertEquals(DOCUMENTS * SEGMENTS_PER_DOCUMENT, fixture.model.embedded.get());
+        // Segments are batched across documents, not embedded one document at a time
+        assertTrue(fixture.model.calls.get() < DOCUMENTS / 4, "embedAll calls: " + fixture.model.calls.get());
+    }
+
+    /**
+     * Wall-clock comparison, so only run when {@code INGESTION_BENCHMARK} is set, e.g.
+     * {@code INGESTION_BENCHMARK=true mvn test -Dtest=IngestionPipelineTest}.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "INGESTION_BENCHMARK", matches = ".+")
+    void shouldIngestCorpusFaster_withParallelEmbedWorkers() throws Exception {
+        // Given
+        Fixture sequential = new Fixture(tempDir.resolve("sequential.json"), 1, 256);
+        Fixture parallel = new Fixture(tempDir.resolve("parallel.json"), 4, 256);
+
+        // When
+        long sequentialNanos = sequential.timeIngest();
+        long parallelNanos = parallel.timeIngest();
+
+        // Then
+        log.info("Ingested {} documents: 1 embed worker {} docs/s, 4 embed workers {} docs/s",
+                DOCUMENTS, docsPerSecond(sequentialNanos), docsPerSecond(parallelNanos));
+        assertTrue(parallelNanos * 3 < sequentialNanos * 2,
+                "parallel " + parallelNanos / 1_000_000 + " ms, sequential " + sequentialNanos / 1_000_000 + " ms");
+    }
+
+    @Test
+    void shouldEmbedNothing_whenCorpusIsUnchanged() throws Exception {
+        // Given
+        Fixture fixture = new Fixture(tempDir.resolve("manifest.json"), 2, 256);
+        fixture.timeIngest();
+        int calls = fixture.model.calls.get();
+
+        // When - a restart reads the manifest from disk
+        Fixture restarted = new Fixture(tempDir.resolve("manifest.json"), 2, 256);
+        List<IncrementalDocumentIngestor.IngestionResult> results = restarted.pipeline.ingest(corpus);
+
+        // Then
+        assertTrue(calls > 0);
+        assertEquals(0, restarted.model.calls.get());
+        assertEquals(DOCUMENTS, results.size());
+        assertTrue(results.stream().allMatch(result -> result.added() == 0 && result.unchanged() == SEGMENTS_PER_DOCUMENT));
+    }
+
+    @Test
+    void shouldHoldBackParsing_whenEmbeddingIsBlocked() throws Exception {
+        // Given
+        Fixture fixture = new Fixture(tempDir.resolve("manifest.json"), 1, 4);
+        fixture.model.gate = new CountDownLatch(1);
+        AtomicInteger parsed = new AtomicInteger();
+        List<IngestionPipeline.SourceDocument> counted = corpus.stream()
+                .map(document -> new IngestionPipeline.SourceDocument(new FileSystemResource(
+                        ((FileSystemResource) document.resource()).getFile()) {
+                    @Override
+                    public byte[] getContentAsByteArray() throws IOException {
+                        parsed.incrementAndGet();
+                        return super.getContentAsByteArray();
+                    }
+                }, document.metadata()))
+                .toList();
+
+        // When
+        CompletableFuture<List<IncrementalDocumentIngestor.IngestionResult>> ingestion =
+                CompletableFuture.supplyAsync(() -> fixture.ingestUnchecked(counted));
+        Thread.sleep(300);
+        int parsedWhileBlocked = parsed.get();
+        fixture.model.gate.countDown();
+
+        // Then - only what fits in the queues was read, everything is ingested once unblocked
+        assertTrue(parsedWhileBlocked < 50, "parsed while blocked: " + parsedWhileBlocked);
+        assertEquals(DOCUMENTS, ingestion.get(30, TimeUnit.SECONDS).size());
+        assertEquals(DOCUMENTS, parsed.get());
+    }
+
+    @Test
+    void shouldAbortAndResume_whenEmbeddingFails() throws Exception {
+        // Given
+        Fixture fixture = new Fixture(tempDir.resolve("manifest.json"), 2, 256);
+        fixture.model.failAfter = 20;
+
+        // When
+        assertThrows(IllegalStateException.class, () -> fixture.pipeline.ingest(corpus));
+        int embeddedBeforeFailure = fixture.model.embedded.get();
+        fixture.model.failAfter = Integer.MAX_VALUE;
+        List<IncrementalDocumentIngestor.IngestionResult> results = fixture.pipeline.ingest(corpus);
+
+        // Then - stored segments are not embedded again
+        assertEquals(DOCUMENTS, results.size());
+        assertEquals(DOCUMENTS * SEGMENTS_PER_DOCUMENT, fixture.storedSegments());
+        assertTrue(embeddedBeforeFailure > 0);
+        assertTrue(fixture.model.embedded.get() < DOCUMENTS * SEGMENTS_PER_DOCUMENT + embeddedBeforeFailure);
+        assertEquals(0.0, fixture.meterRegistry.get("rag.ingestion.queue.depth").gauge().value());
+    }
+
+    private static long docsPerSecond(long nanos) {
+        return DOCUMENTS * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    private class Fixture {
+
+        private final InMemoryEmbeddingStore<TextSegment> embeddingStore = new InMemoryEmbeddingStore<>();
+        private final LatencyEmbeddingModel model = new LatencyEmbeddingModel();
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private final IngestionPipeline pipeline;
+        private List<IncrementalDocumentIngestor.IngestionResult> results;
+
+        private Fixture(Path manifestPath, int embedWorkers, int queueCapacity) {
+            LangChain4jProperties.Pipeline settings = new LangChain4jProperties.Pipeline();
+            settings.setSplitWorkers(4);
+            settings.setEmbedWorkers(embedWorkers);
+            settings.setQueueCapacity(queueCapacity);
+            IncrementalDocumentIngestor ingestor = new IncrementalDocumentIngestor(embeddingStore, model,
+                    DocumentSplitters.recursive(80, 0), new IngestionManifest(manifestPath, Duration.ofSeconds(1)),
+                    BATCH_SIZE, meterRegistry);
+            this.pipeline = new IngestionPipeline(ingestor, settings, BATCH_SIZE, meterRegistry);
+        }
+
+        private long timeIngest() throws InterruptedException {
+            long start = System.nanoTime();
+            results = pipeline.ingest(corpus);
+            return System.nanoTime() - start;
+        }
+
+        private List<IncrementalDocumentIngestor.IngestionResult> ingestUnchecked(
+                List<IngestionPipeline.SourceDocument> documents) {
+            try {
+                return pipeline.ingest(documents);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private int storedSegments() {
+            return embeddingStore.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(Embedding.from(new float[]{1, 0, 0}))
+                            .maxResults(DOCUMENTS * SEGMENTS_PER_DOCUMENT * 2)
+                            .minScore(0.0)
+                            .build())
+                    .matches().size();
+        }
+    }
+
+    private static class LatencyEmbeddingModel implements EmbeddingModel {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger embedded = new AtomicInteger();
+        private volatile int failAfter = Integer.MAX_VALUE;
+        private volatile CountDownLatch gate;
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            try {
+                if (gate != null) {
+                    gate.await();
+                }
+                Thread.sleep(EMBED_LATENCY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            if (calls.incrementAndGet() > failAfter) {
+                throw new IllegalStateException("Ollama unavailable");
+            }
+            embedded.addAndGet(textSegments.size());
+            return Response.from(textSegments.stream()
+                    .map(segment -> Embedding.from(new float[]{1, 0, 0}))
+                    .toList());
+        }
+    }
+}
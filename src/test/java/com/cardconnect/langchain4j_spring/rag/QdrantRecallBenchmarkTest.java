@@ -0,0 +1,213 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.QdrantGrpcClient;
+import io.qdrant.client.grpc.Collections;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Recall versus latency of the approximate Qdrant search, for a grid of search-time {@code hnsw_ef}
+ * and oversampling values on a collection tuned like {@code QdrantConfig} creates it, next to the
+ * exact scan of the {@link EmbeddedEmbeddingStore} over the same points.
+ *
+ * <p>Needs a Qdrant instance and only runs when {@code QDRANT_BENCHMARK_HOST} is set, e.g.
+ * {@code QDRANT_BENCHMARK_HOST=localhost mvn test -Dtest=QdrantRecallBenchmarkTest}. Optional:
+ * {@code QDRANT_BENCHMARK_PORT} (6334), {@code QDRANT_BENCHMARK_POINTS} (20000) and
+ * {@code QDRANT_BENCHMARK_DIMENSION} (768). Exact search gives the ground truth; recall@10 is the
+ * share of its results an approximate search finds. The collection is deleted afterwards.
+ */
+@Slf4j
+@EnabledIfEnvironmentVariable(named = "QDRANT_BENCHMARK_HOST", matches = ".+")
+class QdrantRecallBenchmarkTest {
+
+    private static final int QUERIES = 200;
+    private static final int TOP_K = 10;
+    private static final int[] HNSW_EF = {16, 32, 64, 128, 256};
+    private static final double[] OVERSAMPLING = {1.0, 2.0, 4.0};
+
+    private final int points = intEnv("QDRANT_BENCHMARK_POINTS", 20_000);
+    private final int dimension = intEnv("QDRANT_BENCHMARK_DIMENSION", 768);
+    private final Random random = new Random(42);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReportRecallAndLatency_perSearchParams() throws Exception {
+        String collection = "recall-benchmark-" + UUID.randomUUID();
+        QdrantClient client = new QdrantClient(QdrantGrpcClient.newBuilder(
+                System.getenv("QDRANT_BENCHMARK_HOST"), intEnv("QDRANT_BENCHMARK_PORT", 6334), false).build());
+        try {
+            client.createCollectionAsync(tunedCollection(collection)).get();
+            List<String> ids = new ArrayList<>(points);
+            List<Embedding> embeddings = new ArrayList<>(points);
+            List<TextSegment> segments = new ArrayList<>(points);
+            for (int i = 0; i < points; i++) {
+                ids.add(UUID.randomUUID().toString());
+                embeddings.add(randomEmbedding());
+                segments.add(TextSegment.from("point " + i));
+            }
+            load(client, collection, ids, embeddings, segments);
+
+            List<Embedding> queries = new ArrayList<>(QUERIES);
+            for (int i = 0; i < QUERIES; i++) {
+                queries.add(randomEmbedding());
+            }
+            LangChain4jProperties.Search exact = new LangChain4jProperties.Search();
+            exact.setExact(true);
+            List<Set<String>> groundTruth = new ArrayList<>(QUERIES);
+            for (Embedding query : queries) {
+                groundTruth.add(ids(search(store(client, collection, exact), query)));
+            }
+
+            log.info("{} points of dimension {}, {} queries, recall@{}", points, dimension, QUERIES, TOP_K);
+            log.info(String.format("%8s %12s %8s %10s %10s", "hnsw_ef", "oversampling", "recall", "p50 ms", "p95 ms"));
+            double bestRecall = 0;
+            for (int ef : HNSW_EF) {
+                for (double oversampling : OVERSAMPLING) {
+                    LangChain4jProperties.Search search = new LangChain4jProperties.Search();
+                    search.setHnswEf(ef);
+                    search.setOversampling(oversampling);
+                    TunedQdrantEmbeddingStore store = store(client, collection, search);
+
+                    long[] latencies = new long[QUERIES];
+                    double recall = 0;
+                    for (int i = 0; i < QUERIES; i++) {
+                        long start = System.nanoTime();
+                        Set<String> found = ids(search(store, queries.get(i)));
+                        latencies[i] = System.nanoTime() - start;
+                        found.retainAll(groundTruth.get(i));
+                        recall += (double) found.size() / TOP_K;
+                    }
+                    recall /= QUERIES;
+                    bestRecall = Math.max(bestRecall, recall);
+                    report(String.valueOf(ef), String.format("%.1f", oversampling), recall, latencies);
+                }
+            }
+            assertTrue(bestRecall > 0.9, "best recall@" + TOP_K + ": " + bestRecall);
+
+            try (EmbeddedEmbeddingStore embedded = new EmbeddedEmbeddingStore(tempDir.resolve("vectors.bin"),
+                    Integer.MAX_VALUE, new SimpleMeterRegistry())) {
+                embedded.addAll(ids, embeddings, segments);
+                long[] latencies = new long[QUERIES];
+                double recall = 0;
+                for (int i = 0; i < QUERIES; i++) {
+                    long start = System.nanoTime();
+                    Set<String> found = ids(embedded.search(EmbeddingSearchRequest.builder()
+                            .queryEmbedding(queries.get(i))
+                            .maxResults(TOP_K)
+                            .minScore(0.0)
+                            .build()).matches());
+                    latencies[i] = System.nanoTime() - start;
+                    found.retainAll(groundTruth.get(i));
+                    recall += (double) found.size() / TOP_K;
+                }
+                report("embedded", "exact", recall / QUERIES, latencies);
+            }
+        } finally {
+            client.deleteCollectionAsync(collection).get();
+            client.close();
+        }
+    }
+
+    private Collections.CreateCollection tunedCollection(String collection) {
+        return Collections.CreateCollection.newBuilder()
+                .setCollectionName(collection)
+                .setVectorsConfig(Collections.VectorsConfig.newBuilder()
+                        .setParams(Collections.VectorParams.newBuilder()
+                                .setSize(dimension)
+                                .setDistance(Collections.Distance.Cosine)
+                                .setOnDisk(true)))
+                .setHnswConfig(Collections.HnswConfigDiff.newBuilder().setM(16).setEfConstruct(100))
+                .setOnDiskPayload(true)
+                .setQuantizationConfig(Collections.QuantizationConfig.newBuilder()
+                        .setScalar(Collections.ScalarQuantization.newBuilder()
+                                .setType(Collections.QuantizationType.Int8)
+                                .setQuantile(0.99f)
+                                .setAlwaysRam(true)))
+                .build();
+    }
+
+    private static void report(String ef, String oversampling, double recall, long[] latencies) {
+        Arrays.sort(latencies);
+        log.info(String.format("%8s %12s %8.3f %10.2f %10.2f", ef, oversampling, recall,
+                latencies[latencies.length / 2] / 1e6, latencies[latencies.length * 95 / 100] / 1e6));
+    }
+
+    private void load(QdrantClient client, String collection, List<String> ids, List<Embedding> embeddings,
+                      List<TextSegment> segments) throws Exception {
+        TunedQdrantEmbeddingStore store = store(client, collection, new LangChain4jProperties.Search());
+        long start = System.nanoTime();
+        store.addAll(ids, embeddings, segments);
+        // Search only once the HNSW index and the quantized vectors are built
+        while (client.getCollectionInfoAsync(collection).get().getStatus() != Collections.CollectionStatus.Green) {
+            Thread.sleep(500);
+        }
+        log.info("Loaded and indexed {} points in {} ms", points,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private TunedQdrantEmbeddingStore store(QdrantClient client, String collection,
+                                            LangChain4jProperties.Search search) {
+        // Removal and unconverted filters go to the delegate; the benchmark uses neither
+        return new TunedQdrantEmbeddingStore(null,
+                TunedQdrantEmbeddingStore.upserter(client, collection, Duration.ofSeconds(30)),
+                TunedQdrantEmbeddingStore.searcher(client, collection),
+                TunedQdrantEmbeddingStore.counter(client, collection),
+                () -> {
+                },
+                search, 256, 4, 3, Duration.ofMillis(200), new SimpleMeterRegistry());
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(TunedQdrantEmbeddingStore store, Embedding query) {
+        return store.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(query)
+                        .maxResults(TOP_K)
+                        .minScore(0.0)
+                        .build())
+                .matches();
+    }
+
+    private static Set<String> ids(List<EmbeddingMatch<TextSegment>> matches) {
+        Set<String> ids = new HashSet<>();
+        matches.forEach(match -> ids.add(match.embeddingId()));
+        return ids;
+    }
+
+    private Embedding randomEmbedding() {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        Embedding embedding = Embedding.from(vector);
+        embedding.normalize();
+        return embedding;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -0,0 +1,170 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import com.cardconnect.langchain4j_spring.observability.AgentMetricsService;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.rag.AugmentationRequest;
+import dev.langchain4j.rag.AugmentationResult;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.injector.DefaultContentInjector;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Metadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetrievalPipelineTest {
+
+    private static final String CHARLIE = "Charlie is a happy carrot who lives in VeggieVille with his friends.";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LangChain4jProperties.Augmentation config = new LangChain4jProperties.Augmentation();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, ContentRetriever> retrievers = new LinkedHashMap<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldSkipRetrieval_whenQueryNeedsNoDocuments() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        retrievers.put("story", query -> {
+            calls.incrementAndGet();
+            return List.of(Content.from(CHARLIE));
+        });
+
+        // When
+        AugmentationResult thanks = augment("Thanks!");
+        AugmentationResult stopWords = augment("Who are you?");
+        AugmentationResult question = augment("Where does Charlie live?");
+
+        // Then
+        assertEquals("Thanks!", ((UserMessage) thanks.chatMessage()).singleText());
+        assertTrue(thanks.contents().isEmpty());
+        assertTrue(stopWords.contents().isEmpty());
+        assertEquals(1, question.contents().size());
+        assertEquals(1, calls.get());
+        assertEquals(2.0, meterRegistry.get("rag.retrieval.skipped").counter().count());
+        assertEquals(3, meterRegistry.get("rag.retrieval.stage").tag("stage", "classify").timer().count());
+        assertEquals(1, meterRegistry.get("rag.retrieval.stage").tag("stage", "inject").timer().count());
+    }
+
+    @Test
+    void shouldContinueWithoutRetriever_whenItExceedsItsTimeout() throws InterruptedException {
+        // Given
+        config.setRetrieverTimeouts(Map.of("slow", Duration.ofMillis(50)));
+        retrievers.put("slow", query -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(Content.from("too late"));
+        });
+        retrievers.put("failing", query -> {
+            throw new IllegalStateException("Qdrant unavailable");
+        });
+        retrievers.put("fast", query -> List.of(Content.from(CHARLIE)));
+
+        // When
+        long start = System.nanoTime();
+        AugmentationResult result = augment("Where does Charlie live?");
+
+        // Then
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+        assertEquals(List.of(CHARLIE), texts(result.contents()));
+        assertEquals(1, meterRegistry.get("rag.retriever.calls")
+                .tags("retriever", "slow", "outcome", "timeout").timer().count());
+        assertEquals(1, meterRegistry.get("rag.retriever.calls")
+                .tags("retriever", "failing", "outcome", "error").timer().count());
+        assertEquals(1, meterRegistry.get("rag.retriever.calls")
+                .tags("retriever", "fast", "outcome", "success").timer().count());
+
+        // When - the slow retriever finishes after its timeout
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Then - its call stays counted as a timeout only
+        assertNull(meterRegistry.find("rag.retriever.calls")
+                .tags("retriever", "slow", "outcome", "success").timer());
+    }
+
+    @Test
+    void shouldDropNearDuplicates_andKeepContextWithinTokenBudget() {
+        // Given - the same chunk from two retrievers, once re-formatted, and a segment over the budget
+        config.setMaxContextTokens(30);
+        String garden = "Tom the tomato waters the garden.";
+        retrievers.put("vector", query -> List.of(Content.from(CHARLIE), Content.from(garden),
+                Content.from("The town square ".repeat(20))));
+        retrievers.put("keyword", query -> List.of(Content.from("  charlie is a happy carrot who lives in "
+                + "VeggieVille with his friends"), Content.from(CHARLIE)));
+
+        // When
+        AugmentationResult result = augment("Tell me about Charlie and the garden");
+
+        // Then
+        assertEquals(List.of(CHARLIE, garden), texts(result.contents()));
+        String prompt = ((UserMessage) result.chatMessage()).singleText();
+        assertTrue(prompt.contains(garden));
+        assertFalse(prompt.contains("town square"));
+        assertTrue(RetrievalPipeline.estimateTokens(CHARLIE + garden) <= 30);
+        assertEquals(2.0, meterRegistry.get("rag.documents.retrieved").counter().count());
+    }
+
+    @Test
+    void shouldCutFirstSegmentToBudget_whenItAloneExceedsIt() {
+        // Given
+        config.setMaxContextTokens(5);
+        retrievers.put("story", query -> List.of(Content.from(CHARLIE)));
+
+        // When
+        AugmentationResult result = augment("Who is Charlie?");
+
+        // Then
+        assertEquals(List.of(CHARLIE.substring(0, 20)), texts(result.contents()));
+    }
+
+    @Test
+    void shouldRecordNoStageTimings_whenRagMetricsAreDisabled() {
+        // Given
+        retrievers.put("story", query -> List.of(Content.from(CHARLIE)));
+
+        // When
+        AugmentationResult result = augment("Who is Charlie?", null);
+
+        // Then
+        assertEquals(List.of(CHARLIE), texts(result.contents()));
+        assertNull(meterRegistry.find("rag.retrieval.stage").timer());
+        assertNull(meterRegistry.find("rag.documents.retrieved").counter());
+    }
+
+    private AugmentationResult augment(String text) {
+        return augment(text, new AgentMetricsService(meterRegistry));
+    }
+
+    private AugmentationResult augment(String text, AgentMetricsService metricsService) {
+        RetrievalPipeline pipeline = new RetrievalPipeline(retrievers, new RetrievalClassifier(config.getSkipPatterns()),
+                new DefaultContentInjector(), config, executor, metricsService, meterRegistry);
+        ChatMessage message = UserMessage.from(text);
+        return pipeline.augment(new AugmentationRequest(message, Metadata.from(message, "session", List.of())));
+    }
+
+    private static List<String> texts(List<Content> contents) {
+        return contents.stream().map(content -> content.textSegment().text()).toList();
+    }
+}
@@ -0,0 +1,357 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.config.LangChain4jProperties;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qdrant.client.grpc.Common;
+import io.qdrant.client.grpc.Points;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TunedQdrantEmbeddingStoreTest {
+
+    private static final int POINTS = 1_000;
+    private static final int BATCH_SIZE = 64;
+    private static final int MAX_IN_FLIGHT = 4;
+
+    @Mock
+    private EmbeddingStore<TextSegment> qdrantStore;
+
+    private final FakeQdrant qdrant = new FakeQdrant(Duration.ofMillis(50));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LangChain4jProperties.Search search = new LangChain4jProperties.Search();
+    private TunedQdrantEmbeddingStore store;
+
+    @BeforeEach
+    void setUp() {
+        search.setHnswEf(128);
+        search.setOversampling(3.0);
+        store = new TunedQdrantEmbeddingStore(qdrantStore, qdrant, qdrant, qdrant, qdrant, search,
+                BATCH_SIZE, MAX_IN_FLIGHT, 2, Duration.ofMillis(10), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        qdrant.scheduler.shutdownNow();
+    }
+
+    @Test
+    void shouldUpsertBatchesConcurrently_upToMaxInFlight() {
+        // Given
+        TestPoints points = points(POINTS);
+
+        // When
+        long start = System.nanoTime();
+        store.addAll(points.ids, points.embeddings, points.segments);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then - 16 batches of 50 ms, 4 at a time
+        assertEquals(POINTS, qdrant.stored.size());
+        assertEquals(16, qdrant.upserts.get());
+        assertEquals(MAX_IN_FLIGHT, qdrant.maxInFlight.get());
+        assertTrue(elapsedMillis < 16 * 50 / 2, "elapsed " + elapsedMillis + " ms");
+        assertEquals(POINTS, meterRegistry.get("qdrant.upsert.points").counter().count());
+        assertEquals(16, meterRegistry.get("qdrant.upsert.batch").tag("outcome", "success").timer().count());
+        assertEquals(0.0, meterRegistry.get("qdrant.upsert.in.flight").gauge().value());
+        verifyNoInteractions(qdrantStore);
+    }
+
+    @Test
+    void shouldRetryOnlyTheFailedBatch() {
+        // Given - the first attempt of the batch holding point 100 fails
+        TestPoints points = points(POINTS);
+        qdrant.failures.put(points.ids.get(100), 1);
+
+        // When
+        store.addAll(points.ids, points.embeddings, points.segments);
+
+        // Then
+        assertEquals(POINTS, qdrant.stored.size());
+        assertEquals(17, qdrant.upserts.get());
+        assertEquals(1, meterRegistry.get("qdrant.upsert.retries").counter().count());
+        assertEquals(1, meterRegistry.get("qdrant.upsert.batch").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void shouldFail_whenBatchFailsAfterAllRetries() {
+        // Given
+        TestPoints points = points(BATCH_SIZE * 2);
+        qdrant.failures.put(points.ids.get(0), Integer.MAX_VALUE);
+
+        // When
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> store.addAll(points.ids, points.embeddings, points.segments));
+
+        // Then - 1 attempt and 2 retries of the first batch; the second batch is stored
+        assertEquals("UNAVAILABLE", exception.getCause().getMessage());
+        assertEquals(2, meterRegistry.get("qdrant.upsert.retries").counter().count());
+        assertEquals(BATCH_SIZE, meterRegistry.get("qdrant.upsert.failed.points").counter().count());
+        assertEquals(BATCH_SIZE, qdrant.stored.size());
+    }
+
+    @Test
+    void shouldBuildPointsReadableByQdrantEmbeddingStore() {
+        // Given
+        String id = UUID.randomUUID().toString();
+        TextSegment segment = TextSegment.from("Charlie is a happy carrot",
+                Metadata.from("source", "story.txt").put("index", 3).put("score", 0.5));
+
+        // When
+        Points.PointStruct point = TunedQdrantEmbeddingStore.toPoint(id, Embedding.from(new float[]{1, 2, 3}), segment);
+
+        // Then
+        assertEquals(id, point.getId().getUuid());
+        assertEquals(List.of(1f, 2f, 3f), point.getVectors().getVector().getDense().getDataList());
+        assertEquals("Charlie is a happy carrot", point.getPayloadMap().get("text_segment").getStringValue());
+        assertEquals("story.txt", point.getPayloadMap().get("source").getStringValue());
+        assertEquals(3, point.getPayloadMap().get("index").getIntegerValue());
+        assertEquals(0.5, point.getPayloadMap().get("score").getDoubleValue());
+    }
+
+    @Test
+    void shouldSearchWithSearchParamsAndConvertedFilter() {
+        // Given - a match above and one below the minimum relevance of 0.75
+        String id = UUID.randomUUID().toString();
+        TextSegment segment = TextSegment.from("Charlie is a happy carrot",
+                Metadata.from("source", "story.txt").put("index", 3));
+        qdrant.searchResults = List.of(
+                scored(TunedQdrantEmbeddingStore.toPoint(id, Embedding.from(new float[]{1, 0, 0}), segment), 0.9f),
+                scored(TunedQdrantEmbeddingStore.toPoint(UUID.randomUUID().toString(),
+                        Embedding.from(new float[]{0, 1, 0}), segment), 0.2f));
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1, 0, 0}))
+                .maxResults(3)
+                .minScore(0.75)
+                .filter(metadataKey("source").isEqualTo("story.txt").and(metadataKey("author").isIn("pjaiswal", "jdoe")))
+                .build();
+
+        // When
+        EmbeddingSearchResult<TextSegment> result = store.search(request);
+
+        // Then
+        Points.SearchPoints sent = qdrant.searchRequest;
+        assertEquals(List.of(1f, 0f, 0f), sent.getVectorList());
+        assertEquals(3, sent.getLimit());
+        assertEquals(128, sent.getParams().getHnswEf());
+        assertTrue(sent.getParams().getQuantization().getRescore());
+        assertEquals(3.0, sent.getParams().getQuantization().getOversampling());
+        assertFalse(sent.getWithVectors().getEnable());
+        List<Common.Condition> must = sent.getFilter().getMustList();
+        assertEquals(2, must.size());
+        assertEquals("story.txt", must.get(0).getFilter().getMust(0).getField().getMatch().getKeyword());
+        assertEquals(Set.of("pjaiswal", "jdoe"),
+                Set.copyOf(must.get(1).getFilter().getMust(0).getField().getMatch().getKeywords().getStringsList()));
+
+        assertEquals(1, result.matches().size());
+        EmbeddingMatch<TextSegment> match = result.matches().get(0);
+        assertEquals(id, match.embeddingId());
+        assertEquals(0.95, match.score(), 1e-6);
+        assertEquals(segment.text(), match.embedded().text());
+        assertEquals("story.txt", match.embedded().metadata().getString("source"));
+        assertEquals(3, match.embedded().metadata().getInteger("index"));
+        assertNull(match.embedding());
+        assertEquals(1, meterRegistry.get("qdrant.search").timer().count());
+        verifyNoInteractions(qdrantStore);
+    }
+
+    @Test
+    void shouldReturnEmbeddings_whenVectorsAreRequested() {
+        // Given
+        search.setWithVectors(true);
+        store = new TunedQdrantEmbeddingStore(qdrantStore, qdrant, qdrant, qdrant, qdrant, search,
+                BATCH_SIZE, MAX_IN_FLIGHT, 2, Duration.ofMillis(10), meterRegistry);
+        qdrant.searchResults = List.of(scored(TunedQdrantEmbeddingStore.toPoint(UUID.randomUUID().toString(),
+                Embedding.from(new float[]{1, 0, 0}), TextSegment.from("Charlie is a happy carrot")), 0.9f));
+
+        // When
+        EmbeddingSearchResult<TextSegment> result = store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1, 0, 0}))
+                .build());
+
+        // Then
+        assertTrue(qdrant.searchRequest.getWithVectors().getEnable());
+        assertEquals(List.of(1f, 0f, 0f), result.matches().get(0).embedding().vectorAsList());
+    }
+
+    @Test
+    void shouldLeaveSearchToQdrantEmbeddingStore_whenFilterIsNotConverted() {
+        // Given
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1, 0, 0}))
+                .filter(metadataKey("index").isGreaterThan(2))
+                .build();
+        EmbeddingSearchResult<TextSegment> expected = new EmbeddingSearchResult<>(List.of());
+        when(qdrantStore.search(request)).thenReturn(expected);
+
+        // When
+        EmbeddingSearchResult<TextSegment> result = store.search(request);
+
+        // Then
+        assertSame(expected, result);
+        assertNull(qdrant.searchRequest);
+        assertEquals(1, meterRegistry.get("qdrant.search.delegated").counter().count());
+        verify(qdrantStore).search(request);
+    }
+
+    @Test
+    void shouldSetUpCollectionOnFirstUse_andRetryAFailedSetup() {
+        // Given - Qdrant is down for the first setup
+        qdrant.setupFailures = 1;
+
+        // When
+        assertThrows(IllegalStateException.class, store::count);
+        long count = store.count();
+        store.count();
+
+        // Then
+        assertEquals(0, count);
+        assertEquals(2, qdrant.setups.get());
+    }
+
+    @Test
+    void shouldCancelCount_whenQdrantDoesNotAnswerWithinSearchTimeout() {
+        // Given
+        search.setTimeout(Duration.ofMillis(50));
+        CompletableFuture<Long> pending = new CompletableFuture<>();
+        store = new TunedQdrantEmbeddingStore(qdrantStore, qdrant, qdrant, () -> pending, qdrant, search,
+                BATCH_SIZE, MAX_IN_FLIGHT, 2, Duration.ofMillis(10), meterRegistry);
+
+        // When
+        IllegalStateException error = assertThrows(IllegalStateException.class, store::count);
+
+        // Then
+        assertTrue(error.getMessage().contains("timed out"));
+        assertTrue(pending.isCancelled());
+    }
+
+    private static Points.ScoredPoint scored(Points.PointStruct point, float score) {
+        return Points.ScoredPoint.newBuilder()
+                .setId(point.getId())
+                .putAllPayload(point.getPayloadMap())
+                .setScore(score)
+                .setVectors(Points.VectorsOutput.newBuilder()
+                        .setVector(Points.VectorOutput.newBuilder()
+                                .setDense(point.getVectors().getVector().getDense())))
+                .build();
+    }
+
+    private static TestPoints points(int count) {
+        TestPoints points = new TestPoints();
+        for (int i = 0; i < count; i++) {
+            points.ids.add(UUID.nameUUIDFromBytes(("point-" + i).getBytes()).toString());
+            points.embeddings.add(Embedding.from(new float[]{i, 1, 0}));
+            points.segments.add(TextSegment.from("segment " + i, Metadata.from("source", "story.txt")));
+        }
+        return points;
+    }
+
+    private static class TestPoints {
+        private final List<String> ids = new ArrayList<>();
+        private final List<Embedding> embeddings = new ArrayList<>();
+        private final List<TextSegment> segments = new ArrayList<>();
+    }
+
+    /**
+     * Stands in for the Qdrant points service: answers every upsert asynchronously after a fixed
+     * latency, and fails attempts on batches holding a point listed in {@code failures}. Searches
+     * are recorded and answered with {@code searchResults}.
+     */
+    private static class FakeQdrant implements TunedQdrantEmbeddingStore.PointUpserter,
+            TunedQdrantEmbeddingStore.PointSearcher, TunedQdrantEmbeddingStore.PointCounter,
+            TunedQdrantEmbeddingStore.CollectionSetup {
+
+        private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(8);
+        private final Duration latency;
+        private final Set<String> stored = ConcurrentHashMap.newKeySet();
+        private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+        private final AtomicInteger upserts = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicInteger setups = new AtomicInteger();
+        private int setupFailures;
+        private List<Points.ScoredPoint> searchResults = List.of();
+        private Points.SearchPoints searchRequest;
+
+        private FakeQdrant(Duration latency) {
+            this.latency = latency;
+        }
+
+        @Override
+        public void run() {
+            setups.incrementAndGet();
+            if (setupFailures > 0) {
+                setupFailures--;
+                throw new IllegalStateException("UNAVAILABLE");
+            }
+        }
+
+        @Override
+        public CompletableFuture<Long> count() {
+            return CompletableFuture.completedFuture((long) stored.size());
+        }
+
+        @Override
+        public CompletableFuture<?> upsert(List<Points.PointStruct> points) {
+            upserts.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<Void> response = new CompletableFuture<>();
+            scheduler.schedule(() -> {
+                inFlight.decrementAndGet();
+                Optional<String> failing = points.stream()
+                        .map(point -> point.getId().getUuid())
+                        .filter(id -> failures.getOrDefault(id, 0) > 0)
+                        .findFirst();
+                if (failing.isPresent()) {
+                    failures.merge(failing.get(), -1, Integer::sum);
+                    response.completeExceptionally(new IllegalStateException("UNAVAILABLE"));
+                } else {
+                    points.forEach(point -> stored.add(point.getId().getUuid()));
+                    response.complete(null);
+                }
+            }, latency.toMillis(), TimeUnit.MILLISECONDS);
+            return response;
+        }
+
+        @Override
+        public CompletableFuture<List<Points.ScoredPoint>> search(Points.SearchPoints request) {
+            searchRequest = request;
+            if (request.getWithVectors().getEnable()) {
+                return CompletableFuture.completedFuture(searchResults);
+            }
+            return CompletableFuture.completedFuture(searchResults.stream()
+                    .map(point -> point.toBuilder().clearVectors().build())
+                    .toList());
+        }
+    }
+}
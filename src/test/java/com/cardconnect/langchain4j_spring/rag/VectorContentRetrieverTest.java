@@ -0,0 +1,86 @@
+package com.cardconnect.langchain4j_spring.rag;
+
+import com.cardconnect.langchain4j_spring.observability.RetrievalMetrics;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VectorContentRetrieverTest {
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InMemoryEmbeddingStore<TextSegment> embeddingStore = new InMemoryEmbeddingStore<>();
+
+    @BeforeEach
+    void setUp() {
+        embeddingStore.add("charlie", Embedding.from(new float[]{1, 0, 0}),
+                TextSegment.from("Charlie the happy carrot", Metadata.from("source", "story")));
+        embeddingStore.add("square", Embedding.from(new float[]{0.6f, 0.8f, 0}),
+                TextSegment.from("The town square", Metadata.from("source", "story")));
+        embeddingStore.add("terms", Embedding.from(new float[]{1, 0, 0}),
+                TextSegment.from("Terms of use", Metadata.from("source", "terms")));
+        when(embeddingModel.embed(anyString())).thenReturn(Response.from(Embedding.from(new float[]{1, 0, 0})));
+    }
+
+    @Test
+    void shouldRecordLatenciesResultCountAndScores_taggedByCollectionAndSource() {
+        // Given
+        VectorContentRetriever retriever = new VectorContentRetriever(embeddingStore, embeddingModel, 3, 0.5,
+                metadataKey("source").isEqualTo("story"), RetrievalMetrics.create(meterRegistry, "documents", "story"));
+
+        // When
+        List<Content> contents = retriever.retrieve(Query.from("Who is Charlie?"));
+
+        // Then
+        assertEquals(List.of("charlie", "square"), contents.stream()
+                .map(content -> content.metadata().get(ContentMetadata.EMBEDDING_ID)).toList());
+        assertEquals(1.0, (double) contents.get(0).metadata().get(ContentMetadata.SCORE), 1e-6);
+        assertEquals(1, meterRegistry.get("rag.retrieval.embedding").tags("collection", "documents", "source", "story")
+                .timer().count());
+        assertEquals(1, meterRegistry.get("rag.retrieval.search").tag("collection", "documents").timer().count());
+        assertEquals(2.0, summary("rag.retrieval.results").totalAmount());
+        assertEquals(1.0, summary("rag.retrieval.score.top").totalAmount(), 1e-6);
+        assertEquals(0.9, summary("rag.retrieval.score.average").totalAmount(), 1e-6);
+    }
+
+    @Test
+    void shouldRegisterNoMeters_whenMetricsAreDisabled() {
+        // Given
+        VectorContentRetriever retriever = new VectorContentRetriever(embeddingStore, embeddingModel, 3, 0.5,
+                null, RetrievalMetrics.disabled());
+
+        // When
+        List<Content> contents = retriever.retrieve(Query.from("Who is Charlie?"));
+
+        // Then
+        assertEquals(3, contents.size());
+        assertTrue(meterRegistry.getMeters().isEmpty());
+    }
+
+    private DistributionSummary summary(String name) {
+        return meterRegistry.get(name).tags("collection", "documents", "source", "story").summary();
+    }
+}